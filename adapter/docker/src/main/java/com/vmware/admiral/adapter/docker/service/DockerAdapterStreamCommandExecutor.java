@@ -19,8 +19,10 @@ import java.security.NoSuchAlgorithmException;
 
 public interface DockerAdapterStreamCommandExecutor {
     String EVENT_TYPE_CONTAINER = "container";
+    String EVENT_TYPE_CONTAINER_CREATE = "create";
     String EVENT_TYPE_CONTAINER_START = "start";
     String EVENT_TYPE_CONTAINER_DIE = "die";
+    String EVENT_TYPE_CONTAINER_DESTROY = "destroy";
 
     URLConnection openConnection(CommandInput input, URL url) throws NoSuchAlgorithmException, KeyManagementException, IOException;
 
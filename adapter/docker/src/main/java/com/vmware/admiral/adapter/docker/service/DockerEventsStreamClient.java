@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.docker.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Non-blocking client for the docker {@code /events} stream. The subscriptions to all hosts are
+ * multiplexed on a small, fixed number of event loop threads.
+ *
+ * The response body is split on new lines and every line is parsed to an {@link Events} object.
+ * The events of a host are handed over in batches, a batch only after the previous one is
+ * processed, so they are processed in the order they were received. Reading from a host is
+ * paused while too many of its events are still being processed. A lost
+ * connection is re-established with the {@code since} parameter set to the time of the last
+ * received event, or to the time of the docker host when the first connection was established,
+ * so no events are missed in between.
+ */
+final class DockerEventsStreamClient {
+
+    /**
+     * Callback for the events of a single host subscription.
+     */
+    interface EventsHandler {
+        /**
+         * Called when the first connection to the host is established.
+         */
+        void subscribed();
+
+        /**
+         * Handles a batch of events, in the order they were received. The returned result
+         * completes when the events are processed.
+         */
+        DeferredResult<?> handle(List<Events> events);
+
+        /**
+         * Called when the connection to the host is lost and can not be re-established.
+         */
+        void failed(Throwable e);
+    }
+
+    private static final Logger logger = Logger
+            .getLogger(DockerEventsStreamClient.class.getName());
+
+    private static final int EVENT_LOOP_THREADS = Integer.getInteger(
+            "com.vmware.admiral.adapter.events.threads", 2);
+    private static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger(
+            "com.vmware.admiral.adapter.events.connect.timeout.millis", 10000);
+    private static final int RECONNECT_RETRIES = Integer.getInteger(
+            "com.vmware.admiral.adapter.events.reconnect.retries", 3);
+    private static final long RECONNECT_WAIT_MILLIS = Long.getLong(
+            "com.vmware.admiral.adapter.events.reconnect.wait.millis", 1000);
+    private static final int MAX_PENDING_EVENTS = Integer.getInteger(
+            "com.vmware.admiral.adapter.events.max.pending", 128);
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final EventLoopGroup group;
+    private final Bootstrap bootstrap;
+
+    // Subscriptions by docker host authority
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    DockerEventsStreamClient() {
+        this.group = new NioEventLoopGroup(EVENT_LOOP_THREADS,
+                new DefaultThreadFactory("EventsReader", true));
+        this.bootstrap = new Bootstrap()
+                .group(this.group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS);
+    }
+
+    boolean isSubscribed(String authority) {
+        return this.subscriptions.containsKey(authority);
+    }
+
+    int getSubscriptionCount() {
+        return this.subscriptions.size();
+    }
+
+    /**
+     * Subscribes for the events stream at the given uri. Returns {@code false} if there is
+     * already a subscription for the same host.
+     *
+     * @param sslContext the SSL context for secure hosts, {@code null} otherwise
+     */
+    boolean subscribe(URI eventsUri, SSLContext sslContext, EventsHandler handler) {
+        Subscription subscription = new Subscription(eventsUri, sslContext, handler);
+        if (this.subscriptions.putIfAbsent(subscription.authority, subscription) != null) {
+            return false;
+        }
+        subscription.connect();
+        return true;
+    }
+
+    /**
+     * Closes the subscription for the given host. Returns {@code false} if there is none.
+     */
+    boolean unsubscribe(String authority) {
+        Subscription subscription = this.subscriptions.remove(authority);
+        if (subscription == null) {
+            return false;
+        }
+        subscription.close();
+        return true;
+    }
+
+    /**
+     * Closes all subscriptions and shuts down the event loop threads. The client can not be used
+     * afterwards.
+     */
+    void stop() {
+        for (String authority : this.subscriptions.keySet()) {
+            unsubscribe(authority);
+        }
+        this.group.shutdownGracefully();
+    }
+
+    static String formatSince(long timeNanos) {
+        return String.format("%d.%09d", TimeUnit.NANOSECONDS.toSeconds(timeNanos),
+                timeNanos % TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private final class Subscription {
+        final URI uri;
+        final String authority;
+        final SSLContext sslContext;
+        final EventsHandler handler;
+
+        final AtomicInteger retries = new AtomicInteger();
+        final AtomicInteger pendingEvents = new AtomicInteger();
+
+        // events received while the previous batch is processed, guarded by this
+        List<Events> receivedEvents = new ArrayList<>();
+        boolean processing;
+
+        volatile Channel channel;
+        volatile boolean closed;
+        volatile Throwable lastFailure;
+
+        // docker time of the first connection, used for resuming when no events were received
+        volatile long connectTimeNanos;
+        // docker time of the last received event
+        volatile long lastEventTimeNanos;
+
+        Subscription(URI uri, SSLContext sslContext, EventsHandler handler) {
+            this.uri = uri;
+            this.authority = uri.getAuthority();
+            this.sslContext = sslContext;
+            this.handler = handler;
+        }
+
+        void connect() {
+            if (this.closed || group.isShuttingDown()) {
+                return;
+            }
+
+            String hostName = this.uri.getHost();
+            int port = this.uri.getPort() != -1 ? this.uri.getPort()
+                    : (UriUtils.HTTPS_SCHEME.equals(this.uri.getScheme()) ? 443 : 80);
+            URI target = getResumeUri();
+
+            Bootstrap b = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    if (Subscription.this.sslContext != null) {
+                        SSLEngine engine = Subscription.this.sslContext
+                                .createSSLEngine(hostName, port);
+                        engine.setUseClientMode(true);
+                        ch.pipeline().addLast(new SslHandler(engine));
+                    }
+                    ch.pipeline().addLast(new HttpClientCodec());
+                    ch.pipeline().addLast(new EventsStreamHandler(Subscription.this, target));
+                }
+            });
+
+            b.connect(hostName, port).addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess()) {
+                    reconnect(f.cause());
+                    return;
+                }
+                this.channel = f.channel();
+                if (this.closed) {
+                    this.channel.close();
+                }
+            });
+        }
+
+        URI getResumeUri() {
+            long since = this.lastEventTimeNanos != 0 ? this.lastEventTimeNanos
+                    : this.connectTimeNanos;
+            if (since == 0) {
+                return this.uri;
+            }
+            return UriUtils.extendUriWithQuery(this.uri, "since", formatSince(since));
+        }
+
+        void connected(HttpResponse response) {
+            this.retries.set(0);
+            this.lastFailure = null;
+            logger.info(String.format("Listening for events on [%s]", this.authority));
+            if (this.connectTimeNanos == 0) {
+                this.connectTimeNanos = getDockerTimeNanos(response);
+                this.handler.subscribed();
+            }
+        }
+
+        /**
+         * Returns the time of the docker host from the {@code Date} header of the response, so
+         * that a clock skew does not lose events on resume. The header has a precision of a
+         * second and is rounded down, the events of that second may be received twice.
+         */
+        long getDockerTimeNanos(HttpResponse response) {
+            String date = response.headers().get(HttpHeaderNames.DATE);
+            Date dockerTime = date != null ? DateFormatter.parseHttpDate(date) : null;
+            if (dockerTime == null) {
+                logger.warning(String.format("No valid Date header in events response of [%s],"
+                        + " using local time for resuming", this.authority));
+                return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+            }
+            return TimeUnit.MILLISECONDS.toNanos(dockerTime.getTime());
+        }
+
+        void disconnected() {
+            if (this.closed) {
+                logger.info(String.format("Closed connection to host [%s]", this.authority));
+                return;
+            }
+            Throwable cause = this.lastFailure != null ? this.lastFailure
+                    : new IOException("Connection closed by host");
+            reconnect(cause);
+        }
+
+        void reconnect(Throwable cause) {
+            if (this.closed) {
+                return;
+            }
+
+            int attempt = this.retries.incrementAndGet();
+            if (attempt > RECONNECT_RETRIES) {
+                this.closed = true;
+                subscriptions.remove(this.authority, this);
+                this.handler.failed(cause);
+                return;
+            }
+
+            long delay = RECONNECT_WAIT_MILLIS << (attempt - 1);
+            logger.info(String.format("Lost connection to [%s], reconnecting in %d ms."
+                    + " Error: [%s]", this.authority, delay, cause.getMessage()));
+            group.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        }
+
+        void close() {
+            this.closed = true;
+            Channel ch = this.channel;
+            if (ch != null) {
+                ch.close();
+            }
+        }
+
+        void onEvent(Channel ch, String line) {
+            Events event;
+            try {
+                event = mapper.readValue(line, Events.class);
+            } catch (IOException e) {
+                logger.warning(String.format("Failed to parse event from [%s]: %s",
+                        this.authority, e.getMessage()));
+                return;
+            }
+
+            Long timeNano = event.getTimeNano();
+            if (timeNano != null) {
+                if (timeNano < this.lastEventTimeNanos) {
+                    // already handled before the connection was re-established
+                    return;
+                }
+                this.lastEventTimeNanos = timeNano;
+            }
+
+            synchronized (this) {
+                this.receivedEvents.add(event);
+            }
+            if (this.pendingEvents.incrementAndGet() >= MAX_PENDING_EVENTS) {
+                ch.config().setAutoRead(false);
+            }
+        }
+
+        /**
+         * Hands over the received events, unless the previous batch is still being processed.
+         */
+        void processEvents(Channel ch) {
+            List<Events> events;
+            synchronized (this) {
+                if (this.processing || this.receivedEvents.isEmpty()) {
+                    return;
+                }
+                this.processing = true;
+                events = this.receivedEvents;
+                this.receivedEvents = new ArrayList<>();
+            }
+
+            DeferredResult<?> result;
+            try {
+                result = this.handler.handle(events);
+            } catch (Throwable t) {
+                logger.warning(String.format("Failed to handle events from [%s]: %s",
+                        this.authority, Utils.toString(t)));
+                result = null;
+            }
+
+            if (result == null) {
+                onEventsProcessed(ch, events.size());
+            } else {
+                result.whenComplete((r, e) -> onEventsProcessed(ch, events.size()));
+            }
+        }
+
+        void onEventsProcessed(Channel ch, int count) {
+            synchronized (this) {
+                this.processing = false;
+            }
+            if (this.pendingEvents.addAndGet(-count) <= MAX_PENDING_EVENTS / 2
+                    && !ch.config().isAutoRead()) {
+                ch.config().setAutoRead(true);
+            }
+            processEvents(ch);
+        }
+    }
+
+    /**
+     * Sends the events request and splits the streamed response on new lines.
+     */
+    private static final class EventsStreamHandler extends SimpleChannelInboundHandler<HttpObject> {
+        private final Subscription subscription;
+        private final URI target;
+        private ByteBuf lineBuffer;
+        private boolean failed;
+
+        EventsStreamHandler(Subscription subscription, URI target) {
+            this.subscription = subscription;
+            this.target = target;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            this.lineBuffer = ctx.alloc().buffer();
+
+            String path = this.target.getRawPath();
+            if (this.target.getRawQuery() != null) {
+                path += "?" + this.target.getRawQuery();
+            }
+            FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                    HttpMethod.GET, path);
+            request.headers().set(HttpHeaderNames.HOST, this.subscription.authority);
+            request.headers().set(HttpHeaderNames.ACCEPT, "application/json");
+            ctx.writeAndFlush(request);
+
+            super.channelActive(ctx);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) {
+            if (this.failed) {
+                return;
+            }
+
+            if (msg instanceof HttpResponse) {
+                HttpResponseStatus status = ((HttpResponse) msg).status();
+                if (!HttpResponseStatus.OK.equals(status)) {
+                    fail(ctx, new IOException(String.format(
+                            "Unexpected response status [%s]", status)));
+                    return;
+                }
+                this.subscription.connected((HttpResponse) msg);
+            }
+
+            if (msg instanceof HttpContent) {
+                this.lineBuffer.writeBytes(((HttpContent) msg).content());
+                readLines(ctx);
+
+                if (msg instanceof LastHttpContent) {
+                    ctx.close();
+                }
+            }
+        }
+
+        private void readLines(ChannelHandlerContext ctx) {
+            ByteBuf buf = this.lineBuffer;
+            int eol;
+            while ((eol = buf.indexOf(buf.readerIndex(), buf.writerIndex(), (byte) '\n')) != -1) {
+                String line = buf.toString(buf.readerIndex(), eol - buf.readerIndex(),
+                        StandardCharsets.UTF_8).trim();
+                buf.readerIndex(eol + 1);
+                if (!line.isEmpty()) {
+                    this.subscription.onEvent(ctx.channel(), line);
+                }
+            }
+            buf.discardReadBytes();
+            this.subscription.processEvents(ctx.channel());
+
+            if (buf.readableBytes() > MAX_LINE_LENGTH) {
+                fail(ctx, new IOException("Event exceeds the maximum length of "
+                        + MAX_LINE_LENGTH + " bytes"));
+            }
+        }
+
+        private void fail(ChannelHandlerContext ctx, Throwable cause) {
+            this.failed = true;
+            this.subscription.lastFailure = cause;
+            ctx.close();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            fail(ctx, cause);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if (this.lineBuffer != null) {
+                this.lineBuffer.release();
+                this.lineBuffer = null;
+            }
+            this.subscription.disconnected();
+
+            super.channelInactive(ctx);
+        }
+    }
+}
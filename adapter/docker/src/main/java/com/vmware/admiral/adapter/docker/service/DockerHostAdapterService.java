@@ -26,23 +26,38 @@ import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_ALIAS_PR
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_CERT_PROP_NAME;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import com.vmware.admiral.adapter.common.ContainerHostOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.common.util.ConversionUtil;
 import com.vmware.admiral.common.util.PropertyUtils;
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.ContainerHostService;
 import com.vmware.admiral.compute.ContainerHostUtil;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.ContainerStatsService;
+import com.vmware.admiral.compute.container.ContainerStatsService.ContainerStatsBatch;
 import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
 import com.vmware.admiral.compute.container.HostNetworkListDataCollection.NetworkListCallback;
 import com.vmware.admiral.compute.container.HostVolumeListDataCollection.VolumeListCallback;
 import com.vmware.admiral.compute.container.ShellContainerExecutorService;
 import com.vmware.admiral.compute.container.ShellContainerExecutorService.ShellContainerExecutorResult;
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsEvaluator;
 import com.vmware.admiral.compute.container.volume.ContainerVolumeService.ContainerVolumeState;
 import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
@@ -53,6 +68,7 @@ import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
+import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * Service for fulfilling ContainerHostRequest backed by a docker server
@@ -74,6 +90,21 @@ public class DockerHostAdapterService extends AbstractDockerAdapterService {
     private static final String VCH_CPU_LIMIT = " VCH CPU limit";
     private static final String VCH_CPU_USAGE = " VCH CPU usage";
 
+    private static final String ALLOW_VCH_STATS_COLLECTION_PROP_NAME = "allow.vch.stats.collection";
+
+    /**
+     * Maximum number of container stats requests executed in parallel against a single host
+     * during bulk stats collection.
+     */
+    private static final int CONTAINERS_STATS_MAX_CONCURRENT_REQUESTS = Integer.getInteger(
+            "com.vmware.admiral.adapter.docker.containers.stats.max.concurrent.requests", 8);
+
+    /**
+     * Last collected stats per host and container, used to send only the changed stats.
+     */
+    private final Map<String, Map<String, ContainerStats>> lastContainersStats =
+            new ConcurrentHashMap<>();
+
     @Override
     public void handlePatch(Operation op) {
         ContainerHostRequest request = op.getBody(ContainerHostRequest.class);
@@ -138,6 +169,9 @@ public class DockerHostAdapterService extends AbstractDockerAdapterService {
         case STATS:
             doStats(request, computeState);
             break;
+        case CONTAINERS_STATS:
+            doContainersStats(request, computeState, commandInput);
+            break;
         case EVENTS_SUBSCRIBE:
             setAuthorizationContext(op, getSystemAuthorizationContext());
             doEventsSubscription(request, op, computeState, commandInput);
@@ -237,6 +271,149 @@ public class DockerHostAdapterService extends AbstractDockerAdapterService {
         }));
     }
 
+    /**
+     * Collects the stats of all running containers of the host and sends them in a single batch
+     * to the {@link ContainerStatsService}. The Docker API has no endpoint for the stats of
+     * multiple containers, so the stats are fetched per container but with a bounded number of
+     * parallel requests and only the stats which have changed since the previous collection are
+     * sent.
+     */
+    private void doContainersStats(ContainerHostRequest request, ComputeState computeState,
+            CommandInput commandInput) {
+        boolean allowVchStatsCollection = Boolean
+                .valueOf(ConfigurationUtil.getProperty(ALLOW_VCH_STATS_COLLECTION_PROP_NAME));
+        if (ContainerHostUtil.isVicHost(computeState) && !allowVchStatsCollection) {
+            patchTaskStage(request, TaskStage.FINISHED, null);
+            return;
+        }
+
+        updateSslTrust(request, commandInput);
+
+        String hostLink = computeState.documentSelfLink;
+        QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
+                ContainerState.FIELD_NAME_PARENT_LINK, hostLink,
+                ContainerState.FIELD_NAME_POWER_STATE, PowerState.RUNNING.name());
+        QueryUtil.addExpandOption(q);
+
+        List<ContainerState> containers = new ArrayList<>();
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class).query(q, (r) -> {
+            if (r.hasException()) {
+                logWarning("Failure while querying running containers of host [%s]: %s",
+                        hostLink, Utils.toString(r.getException()));
+                fail(request, r.getException());
+            } else if (r.hasResult()) {
+                containers.add(r.getResult());
+            } else {
+                ContainersStatsContext context = new ContainersStatsContext();
+                context.request = request;
+                context.hostLink = hostLink;
+                context.commandInput = commandInput;
+                context.containers = containers;
+                context.remaining.set(containers.size());
+                fetchContainersStats(context);
+            }
+        });
+    }
+
+    private void fetchContainersStats(ContainersStatsContext context) {
+        if (context.containers.isEmpty()) {
+            lastContainersStats.remove(context.hostLink);
+            patchTaskStage(context.request, TaskStage.FINISHED, null);
+            return;
+        }
+
+        logFine("Collecting stats of %d containers of host [%s] %s", context.containers.size(),
+                context.hostLink, context.request.getRequestTrackingLog());
+
+        int parallelRequests = Math.min(CONTAINERS_STATS_MAX_CONCURRENT_REQUESTS,
+                context.containers.size());
+        for (int i = 0; i < parallelRequests; i++) {
+            fetchNextContainerStats(context);
+        }
+    }
+
+    private void fetchNextContainerStats(ContainersStatsContext context) {
+        int index = context.next.getAndIncrement();
+        if (index >= context.containers.size()) {
+            return;
+        }
+        ContainerState container = context.containers.get(index);
+
+        CommandInput statsCommandInput = new CommandInput(context.commandInput).withProperty(
+                DOCKER_CONTAINER_ID_PROP_NAME, container.id);
+        getCommandExecutor().fetchContainerStats(statsCommandInput, (o, ex) -> {
+            if (ex != null) {
+                // the container may have been stopped or removed since the query
+                logFine("Failure while fetching stats for container [%s] of host [%s]: %s",
+                        container.documentSelfLink, context.hostLink, Utils.toString(ex));
+            } else {
+                context.stats.put(container.documentSelfLink,
+                        ContainerStatsEvaluator.calculateStatsValues(o.getBody(String.class)));
+            }
+
+            if (context.remaining.decrementAndGet() == 0) {
+                sendContainersStats(context);
+            } else {
+                fetchNextContainerStats(context);
+            }
+        });
+    }
+
+    private void sendContainersStats(ContainersStatsContext context) {
+        Map<String, ContainerStats> previousStats = lastContainersStats.getOrDefault(
+                context.hostLink, Collections.emptyMap());
+
+        ContainerStatsBatch batch = new ContainerStatsBatch();
+        batch.hostLink = context.hostLink;
+        batch.statsByContainerLink = new HashMap<>();
+        batch.unchangedContainerLinks = new ArrayList<>();
+        for (Entry<String, ContainerStats> entry : context.stats.entrySet()) {
+            if (hasSameStats(previousStats.get(entry.getKey()), entry.getValue())) {
+                batch.unchangedContainerLinks.add(entry.getKey());
+            } else {
+                batch.statsByContainerLink.put(entry.getKey(), entry.getValue());
+            }
+        }
+        // replacing the previous stats also drops the ones of removed or stopped containers
+        lastContainersStats.put(context.hostLink, context.stats);
+
+        logFine("Sending stats of host [%s]: %d changed, %d unchanged %s", context.hostLink,
+                batch.statsByContainerLink.size(), batch.unchangedContainerLinks.size(),
+                context.request.getRequestTrackingLog());
+
+        sendRequest(Operation.createPost(this, ContainerStatsService.SELF_LINK)
+                .setBodyNoCloning(batch)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        // send all stats on the next collection
+                        lastContainersStats.remove(context.hostLink);
+                        logWarning("Failure while updating containers stats of host [%s]: %s",
+                                context.hostLink, Utils.toString(ex));
+                    }
+                    patchTaskStage(context.request, TaskStage.FINISHED, ex);
+                }));
+    }
+
+    private static boolean hasSameStats(ContainerStats previous, ContainerStats current) {
+        return previous != null
+                && previous.cpuUsage == current.cpuUsage
+                && previous.memUsage == current.memUsage
+                && previous.memLimit == current.memLimit
+                && previous.networkIn == current.networkIn
+                && previous.networkOut == current.networkOut
+                && Objects.equals(previous.containerStopped, current.containerStopped);
+    }
+
+    private static class ContainersStatsContext {
+        ContainerHostRequest request;
+        String hostLink;
+        CommandInput commandInput;
+        List<ContainerState> containers;
+        Map<String, ContainerStats> stats = new ConcurrentHashMap<>();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger();
+    }
+
     private Map<String, Object> parseStatsOutput(String commandOutput, String hostLink) {
         Map<String, Object> properties = new HashMap<>();
 
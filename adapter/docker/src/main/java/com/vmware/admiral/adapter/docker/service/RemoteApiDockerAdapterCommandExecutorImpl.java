@@ -14,11 +14,8 @@ package com.vmware.admiral.adapter.docker.service;
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_ALIAS_PROP_NAME;
 import static com.vmware.admiral.compute.ContainerHostService.SSL_TRUST_CERT_PROP_NAME;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
@@ -26,16 +23,13 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -47,8 +41,6 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509ExtendedKeyManager;
 import javax.net.ssl.X509TrustManager;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.yaml.snakeyaml.util.UriEncoder;
 
 import com.vmware.admiral.adapter.docker.util.DockerStreamUtil;
@@ -61,6 +53,9 @@ import com.vmware.admiral.common.util.ServiceClientFactory;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.common.util.ServiceUtils;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerEvent;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
 import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
 import com.vmware.photon.controller.model.security.util.CertificateUtil;
@@ -90,31 +85,21 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
             "com.vmware.admiral.adapter.ssltrust.delegate.retries", 5);
     private static final long SSL_TRUST_RETRIES_WAIT = Long.getLong(
             "com.vmware.admiral.adapter.ssltrust.delegate.retries.wait.millis", 500);
-    private static final int URL_CONNECTION_READ_TIMEOUT = Integer.getInteger(
-            "com.vmware.admiral.adapter.url.connection.read.timeout", 20000);
-    private static final String THREAD_POOL_QUEUE_SIZE_PROP_NAME = "com.vmware.admiral.adapter.thread.pool.queue.size";
-    private static final int THREAD_POOL_QUEUE_SIZE = Integer.getInteger(
-            THREAD_POOL_QUEUE_SIZE_PROP_NAME, 1000);
-    private static final int THREAD_POOL_KEEPALIVE_SECONDS = Integer.getInteger(
-            "com.vmware.admiral.adapter.thread.pool.keepalive.seconds", 30);
 
     public static final String MEDIA_TYPE_APPLICATION_TAR = "application/tar";
 
     private static volatile RemoteApiDockerAdapterCommandExecutorImpl INSTANCE;
 
-    private static final Pattern ERROR_PATTERN = Pattern.compile("\"error\":\"(.*)\"");
+    private static final List<String> CONTAINER_EVENT_ACTIONS = Arrays.asList(
+            EVENT_TYPE_CONTAINER_CREATE, EVENT_TYPE_CONTAINER_START, EVENT_TYPE_CONTAINER_DIE,
+            EVENT_TYPE_CONTAINER_DESTROY);
 
-    private static final AtomicInteger threadCount = new AtomicInteger(0);
-    private static final ThreadFactory threadFactory =
-            (r) -> new Thread(r, "EventsReader-" + threadCount.incrementAndGet());
+    // stream only the container events which are used for the synchronization
+    private static final String CONTAINER_EVENTS_FILTER = String.format(
+            "{\"type\":[\"%s\"],\"event\":[\"%s\"]}", EVENT_TYPE_CONTAINER,
+            String.join("\",\"", CONTAINER_EVENT_ACTIONS));
 
-    private static ExecutorService executor = new ThreadPoolExecutor(
-            THREAD_POOL_QUEUE_SIZE,
-            THREAD_POOL_QUEUE_SIZE,
-            THREAD_POOL_KEEPALIVE_SECONDS,
-            TimeUnit.SECONDS, new LinkedBlockingQueue<>(THREAD_POOL_QUEUE_SIZE),
-            threadFactory,
-            new ThreadPoolExecutor.AbortPolicy());
+    private static final Pattern ERROR_PATTERN = Pattern.compile("\"error\":\"(.*)\"");
 
     private final ServiceHost host;
     private final ServiceClient serviceClient;
@@ -122,8 +107,8 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     private final ServiceClient attachServiceClient;
     // Used for commands like load image from tar
     private final ServiceClient largeDataClient;
-    // Used for storing the runnning threads which handles opened connections to hosts
-    private volatile Map<String, Thread> runningThreads = new HashMap<>();
+    // Used for the event streams of all subscribed hosts
+    private final DockerEventsStreamClient eventsClient = new DockerEventsStreamClient();
 
     private final DelegatingX509KeyManager keyManager = new DelegatingX509KeyManager();
     private ServerX509TrustManager trustManager;
@@ -183,6 +168,7 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         if (largeDataClient != null) {
             largeDataClient.stop();
         }
+        eventsClient.stop();
 
         INSTANCE = null;
     }
@@ -538,13 +524,13 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         URI baseUri = UriUtils.extendUri(input.getDockerUri(), "/events");
         logger.info("Subscribing for events: " + baseUri);
 
-        if (runningThreads.get(baseUri.getAuthority()) != null) {
+        if (eventsClient.isSubscribed(baseUri.getAuthority())) {
             logger.info("Connection is already opened: " + baseUri.getAuthority());
             return;
         }
 
         // add filter for containers type
-        input.withProperty("filters", "{\"type\":[\"container\"]}");
+        input.withProperty("filters", CONTAINER_EVENTS_FILTER);
 
         // append all the query parameters which are sent as input.
         URI extendedUri = extendUriWithQuery(baseUri, input);
@@ -566,14 +552,12 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         URI baseUri = UriUtils.extendUri(input.getDockerUri(), "/events");
         logger.info("Unsubscribing for events: " + baseUri);
 
-        Thread runningThread = runningThreads.get(input.getDockerUri().getAuthority());
-
-        if (runningThread == null) {
+        if (!eventsClient.unsubscribe(input.getDockerUri().getAuthority())) {
             logger.info("Connection already closed!");
             return;
         }
 
-        runningThread.interrupt();
+        updateEventsStreamState(computeState.documentSelfLink, false);
     }
 
     // network operations
@@ -732,30 +716,7 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
     @Override
     public URLConnection openConnection(CommandInput input, URL url) throws NoSuchAlgorithmException, KeyManagementException, IOException {
         if (isSecure(URI.create(url.toString()))) {
-
-            String clientKey = null;
-            String clientCert = null;
-
-            if (input != null && input.getCredentials() != null) {
-                clientKey = EncryptionUtils.decrypt(input.getCredentials().privateKey);
-                clientCert = input.getCredentials().publicKey;
-            }
-
-            // TODO use an LRU cache to limit the number of stored
-            // KeyManagers while minimizing time wasted repeatedly
-            // recreating them
-            KeyManager[] keytManagers = null;
-            if (clientKey != null && !clientKey.isEmpty()) {
-                X509ExtendedKeyManager delegateKeyManager;
-                delegateKeyManager = (X509ExtendedKeyManager) CertificateUtil
-                        .getKeyManagers("default", clientKey, clientCert)[0];
-                keytManagers = new KeyManager[]{delegateKeyManager};
-            }
-
-            TrustManager[] trustManagers = new TrustManager[]{ServerX509TrustManager.init(null)};
-
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(keytManagers, trustManagers, new SecureRandom());
+            SSLContext sslContext = createEventsSslContext(input);
 
             HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
             conn.setHostnameVerifier((s, sslSession) -> true);
@@ -777,6 +738,38 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         return conn;
     }
 
+    /**
+     * Creates the SSL context for the events stream of a secure host, authenticating with the
+     * client certificate from the input credentials.
+     */
+    private SSLContext createEventsSslContext(CommandInput input)
+            throws NoSuchAlgorithmException, KeyManagementException {
+        String clientKey = null;
+        String clientCert = null;
+
+        if (input != null && input.getCredentials() != null) {
+            clientKey = EncryptionUtils.decrypt(input.getCredentials().privateKey);
+            clientCert = input.getCredentials().publicKey;
+        }
+
+        // TODO use an LRU cache to limit the number of stored
+        // KeyManagers while minimizing time wasted repeatedly
+        // recreating them
+        KeyManager[] keytManagers = null;
+        if (clientKey != null && !clientKey.isEmpty()) {
+            X509ExtendedKeyManager delegateKeyManager;
+            delegateKeyManager = (X509ExtendedKeyManager) CertificateUtil
+                    .getKeyManagers("default", clientKey, clientCert)[0];
+            keytManagers = new KeyManager[]{delegateKeyManager};
+        }
+
+        TrustManager[] trustManagers = new TrustManager[]{ServerX509TrustManager.init(null)};
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keytManagers, trustManagers, new SecureRandom());
+        return sslContext;
+    }
+
     /**
      * Common settings on all outgoing requests to the docker server
      */
@@ -1040,98 +1033,8 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         }
     }
 
-    /**
-     * Used for creation of a new thread for each host event subscription.
-     */
-    private class EventsMonitor implements Runnable {
-
-        public Operation op;
-        public URI hostUri;
-        public CommandInput input;
-        public ComputeState computeState;
-        public boolean simulatedIOException;
-
-        public EventsMonitor(Operation op,
-                URI hostUri,
-                CommandInput input,
-                ComputeState computeState,
-                boolean simulatedIOException) {
-            this.op = op;
-            this.hostUri = hostUri;
-            this.input = input;
-            this.computeState = computeState;
-            this.simulatedIOException = simulatedIOException;
-        }
-
-        @Override
-        public void run() {
-            logger.info(String.format("Simulation of IOException enabled: [%s]",
-                    simulatedIOException));
-            OperationContext childContext = OperationContext.getOperationContext();
-
-            boolean shouldRestoreContext = true;
-
-            try {
-                // set system user context
-                OperationContext.setFrom(op);
-
-                URL url = new URL(hostUri.toString());
-                URLConnection con = openConnection(input, url);
-
-                // setting "read timeout" to reset the blocking stream (reader.readLine()).
-                // Otherwise there is no way to close the connection.
-                con.setReadTimeout(URL_CONNECTION_READ_TIMEOUT);
-
-                final String hostName = url.getAuthority();
-                runningThreads.put(hostName, Thread.currentThread());
-
-                try (BufferedReader in = new BufferedReader(new InputStreamReader(
-                        con.getInputStream()))) {
-                    readData(in, simulatedIOException);
-                } catch (InterruptedException e) {
-                    logger.fine(String.format("[%s] is thrown.", e.getClass().getName()));
-                } catch (IOException e) {
-                    logger.info(String.format("IOException when listening [%s]. Error: [%s]",
-                            hostName, e.getMessage()));
-
-                    shouldRestoreContext = false;
-
-                    ComputeState state = new ComputeState();
-                    state.powerState = ComputeService.PowerState.UNKNOWN;
-
-                    patchComputeState(computeState.documentSelfLink, state)
-                            .thenCompose((ignore) -> {
-                                // changing the power state of containers to UNKNOWN
-                                return queryExistingContainerStates(computeState.documentSelfLink);
-                            })
-                            .whenComplete((o, ex) -> {
-                                OperationContext.restoreOperationContext(childContext);
-                            });
-                } catch (Exception e) {
-                    logger.warning(String.format("Exception in subscription to [%s]. Error: [%s]",
-                            hostName, e.getMessage()));
-                } finally {
-                    runningThreads.remove(hostName);
-                    closeConnection(con);
-                }
-            } catch (Throwable t) {
-                logger.warning(Utils.toString(t));
-            } finally {
-                if (shouldRestoreContext) {
-                    OperationContext.restoreOperationContext(childContext);
-                }
-            }
-        }
-    }
-
     private void makeSubscription(CommandInput input, Operation op, ComputeState computeState, URI uri,
             Boolean simulateIOExceptionPropertyValue) {
-        boolean maxAllowedNumberOfThreadsExceeded = maxAllowedNumberOfThreadsExceeded();
-
-        if (maxAllowedNumberOfThreadsExceeded) {
-            return;
-        }
-
         if (simulateIOExceptionPropertyValue == null) {
             ConfigurationUtil.getConfigProperty(host, ConfigurationUtil.THROW_IO_EXCEPTION,
                     (prop) -> {
@@ -1141,14 +1044,78 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
             return;
         }
 
-        EventsMonitor eventsMonitor = new EventsMonitor(
-                op,
-                uri,
-                input,
-                computeState,
-                simulateIOExceptionPropertyValue);
+        logger.info(String.format("Simulation of IOException enabled: [%s]",
+                simulateIOExceptionPropertyValue));
+        if (simulateIOExceptionPropertyValue) {
+            handleEventsStreamFailure(op, computeState, uri,
+                    new IOException("Simulated IOException from an IT test."));
+            return;
+        }
+
+        SSLContext sslContext = null;
+        if (isSecure(uri)) {
+            try {
+                sslContext = createEventsSslContext(input);
+            } catch (Exception e) {
+                logger.warning(String.format("Exception in subscription to [%s]. Error: [%s]",
+                        uri.getAuthority(), e.getMessage()));
+                return;
+            }
+        }
+
+        boolean subscribed = eventsClient.subscribe(uri, sslContext,
+                new DockerEventsStreamClient.EventsHandler() {
+                    @Override
+                    public void subscribed() {
+                        withOperationContext(op, () -> updateEventsStreamState(
+                                computeState.documentSelfLink, true));
+                    }
+
+                    @Override
+                    public DeferredResult<?> handle(List<Events> events) {
+                        return handleEvents(op, computeState, events);
+                    }
+
+                    @Override
+                    public void failed(Throwable e) {
+                        handleEventsStreamFailure(op, computeState, uri, e);
+                    }
+                });
 
-        executor.submit(eventsMonitor);
+        if (!subscribed) {
+            logger.info("Connection is already opened: " + uri.getAuthority());
+        }
+    }
+
+    /**
+     * Sets the power state of the host and all of its containers to UNKNOWN when the events
+     * stream is lost.
+     */
+    private void handleEventsStreamFailure(Operation op, ComputeState computeState, URI uri,
+            Throwable e) {
+        logger.info(String.format("IOException when listening [%s]. Error: [%s]",
+                uri.getAuthority(), e.getMessage()));
+
+        ComputeState state = new ComputeState();
+        state.powerState = ComputeService.PowerState.UNKNOWN;
+
+        withOperationContext(op, () -> updateEventsStreamState(computeState.documentSelfLink, false)
+                .thenCompose((ignore) -> patchComputeState(computeState.documentSelfLink, state))
+                .thenCompose((ignore) -> {
+                    // changing the power state of containers to UNKNOWN
+                    return queryExistingContainerStates(computeState.documentSelfLink);
+                }));
+    }
+
+    private static <T> T withOperationContext(Operation op, Supplier<T> action) {
+        OperationContext parentContext = OperationContext.getOperationContext();
+        try {
+            // set system user context
+            OperationContext.setFrom(op);
+            return action.get();
+        } finally {
+            OperationContext.restoreOperationContext(parentContext);
+        }
     }
 
     private DeferredResult<ComputeState> requestComputeState(String selfLink) {
@@ -1185,68 +1152,72 @@ public class RemoteApiDockerAdapterCommandExecutorImpl implements
         return host.sendWithDeferredResult(op);
     }
 
-    private void readData(BufferedReader in, boolean simulatedIOException) throws IOException, InterruptedException {
-
-        while (true) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new InterruptedException();
+    /**
+     * Sends the container events of a batch received from the events stream of a host to the
+     * container list data collection with a single request.
+     */
+    private DeferredResult<Operation> handleEvents(Operation op, ComputeState computeState,
+            List<Events> events) {
+        List<ContainerEvent> containerEvents = new ArrayList<>();
+        for (Events event : events) {
+            if (!EVENT_TYPE_CONTAINER.equals(event.getType())
+                    || !CONTAINER_EVENT_ACTIONS.contains(event.getAction())) {
+                continue;
             }
 
-            if (simulatedIOException) {
-                throw new IOException("Simulated IOException from an IT test.");
+            ContainerEvent containerEvent = new ContainerEvent();
+            containerEvent.id = event.getId();
+            containerEvent.action = event.getAction();
+            containerEvent.timeNano = event.getTimeNano();
+            if (event.getActor() != null && event.getActor().getAttributes() != null) {
+                containerEvent.name = event.getActor().getAttributes().getName();
+                containerEvent.image = event.getActor().getAttributes().getImage();
             }
 
-            try {
-                String inputLine  = in.readLine();
-
-                ObjectMapper mapper = new ObjectMapper();
-                Events event = mapper.readValue(inputLine, Events.class);
-
-                if (EVENT_TYPE_CONTAINER.equals(event.getType())) {
-                    ContainerState cs = new ContainerState();
-                    if (EVENT_TYPE_CONTAINER_DIE.equals(event.getAction())) {
-                        logger.fine(inputLine);
-
-                        cs.powerState = ContainerState.PowerState.STOPPED;
-                    } else if (EVENT_TYPE_CONTAINER_START.equals(event.getAction())) {
-                        logger.fine(inputLine);
+            logger.fine(String.format("Received [%s] event for container [%s]",
+                    event.getAction(), containerEvent.id));
+            containerEvents.add(containerEvent);
+        }
 
-                        cs.powerState = ContainerState.PowerState.RUNNING;
-                        cs.started = TimeUnit.NANOSECONDS.toMillis(event.getTimeNano());
-                    } else {
-                        continue;
-                    }
+        if (containerEvents.isEmpty()) {
+            return DeferredResult.completed(null);
+        }
 
-                    String containerId = event.getId();
+        ContainerListCallback body = new ContainerListCallback();
+        body.containerHostLink = computeState.documentSelfLink;
+        body.containerEvents = containerEvents;
 
-                    QueryTask queryTask = QueryUtil
-                            .buildPropertyQuery(ContainerState.class, ContainerState.FIELD_NAME_ID, containerId);
+        return withOperationContext(op, () -> patchContainerListDataCollection(body));
+    }
 
-                    new ServiceDocumentQuery<ContainerState>(host, ContainerState.class).query(queryTask, (r) -> {
-                        if (r.hasException()) {
-                            logger.warning(String.format("Failed to query resource container state with id [%s]",
-                                    containerId));
-                        } else if (r.hasResult()) {
-                            cs.documentSelfLink = r.getDocumentSelfLink();
-                            patchContainerState(cs);
-                        }
-                    });
-                }
-            } catch (SocketTimeoutException e) {
-                logger.fine("No events have been received. Unblocking the reader.");
-            }
-        }
+    /**
+     * Notifies the container list data collection that the events of the host are streamed, so
+     * that it can switch between incremental and full synchronization of the containers.
+     */
+    private DeferredResult<Operation> updateEventsStreamState(String containerHostLink,
+            boolean active) {
+        ContainerListCallback body = new ContainerListCallback();
+        body.containerHostLink = containerHostLink;
+        body.eventsStreamActive = active;
+        body.eventsStreamNodeId = host.getId();
+
+        return patchContainerListDataCollection(body);
     }
 
-    private boolean maxAllowedNumberOfThreadsExceeded() {
-        ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
-        if (tpe.getActiveCount() >= tpe.getMaximumPoolSize()) {
-            logger.warning(String.format("Maximum allowed number of threads exceeded! Use [\"%s\"] property to increase it.",
-                    THREAD_POOL_QUEUE_SIZE_PROP_NAME));
-            return true;
-        }
+    private DeferredResult<Operation> patchContainerListDataCollection(ContainerListCallback body) {
+        Operation operation = Operation.createPatch(host,
+                HostContainerListDataCollection.DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBodyNoCloning(body)
+                .setReferer(host.getUri())
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logger.warning(String.format("Error patching container list data"
+                                + " collection for host [%s]. Error: [%s]",
+                                body.containerHostLink, ex.getMessage()));
+                    }
+                });
 
-        return false;
+        return host.sendWithDeferredResult(operation);
     }
 
     private DeferredResult<Void> queryExistingContainerStates(String containerHostLink) {
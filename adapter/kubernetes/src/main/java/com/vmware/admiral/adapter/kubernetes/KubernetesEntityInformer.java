@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.kubernetes;
+
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.DEPLOYMENT_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.POD_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.REPLICATION_CONTROLLER_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.REPLICA_SET_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.SERVICE_TYPE;
+import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.createEntityData;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonStreamParser;
+
+import com.vmware.admiral.adapter.kubernetes.service.AbstractKubernetesAdapterService.KubernetesContext;
+import com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.EntityListCallback;
+import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesList;
+import com.vmware.admiral.compute.kubernetes.entities.common.BaseKubernetesObject;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Keeps the resource versions of the entities listed from the Kubernetes hosts, so the following
+ * listings of a host only watch for the changes since the previous listing instead of listing
+ * all entities again. The watch events are returned as an incremental
+ * {@link EntityListCallback}.
+ * <p>
+ * A host has to be listed in full again when it is listed for the first time, when its resource
+ * versions are too old to watch from (410 Gone) or when the watch events cannot be processed.
+ * The hosts are also listed in full periodically, the same way informers resync, so changes
+ * lost by a failed data collection are eventually applied.
+ */
+public class KubernetesEntityInformer {
+
+    /**
+     * The entity types listed and watched for a host.
+     */
+    public static final List<String> ENTITY_TYPES = Collections.unmodifiableList(Arrays.asList(
+            POD_TYPE, SERVICE_TYPE, DEPLOYMENT_TYPE, REPLICATION_CONTROLLER_TYPE,
+            REPLICA_SET_TYPE));
+
+    private static final boolean WATCH_DISABLED = Boolean.getBoolean(
+            "com.vmware.admiral.adapter.kubernetes.watch.disabled");
+
+    private static final long RESYNC_INTERVAL_MICROS = TimeUnit.MINUTES.toMicros(Long.getLong(
+            "com.vmware.admiral.adapter.kubernetes.watch.resync.minutes", 10));
+
+    private static final String EVENT_ADDED = "ADDED";
+    private static final String EVENT_MODIFIED = "MODIFIED";
+    private static final String EVENT_DELETED = "DELETED";
+    private static final String EVENT_BOOKMARK = "BOOKMARK";
+    private static final String EVENT_ERROR = "ERROR";
+
+    private static final int STATUS_CODE_GONE = 410;
+
+    private static final Logger logger = Logger
+            .getLogger(KubernetesEntityInformer.class.getName());
+
+    private static class HostVersions {
+        private final Map<String, String> resourceVersions;
+        private final long synchronizedTimeMicros;
+
+        private HostVersions(Map<String, String> resourceVersions, long synchronizedTimeMicros) {
+            this.resourceVersions = resourceVersions;
+            this.synchronizedTimeMicros = synchronizedTimeMicros;
+        }
+    }
+
+    private static class WatchEvent {
+        public String type;
+        public JsonObject object;
+    }
+
+    /**
+     * Thrown when the changes of a host cannot be watched and it has to be listed in full.
+     */
+    private static class ResyncRequiredException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ResyncRequiredException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final Map<String, HostVersions> versionsByHost = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the host was listed in full recently and its changes can be watched since then.
+     */
+    public boolean isSynchronized(String hostLink) {
+        if (WATCH_DISABLED) {
+            return false;
+        }
+        HostVersions versions = versionsByHost.get(hostLink);
+        return versions != null && versions.synchronizedTimeMicros + RESYNC_INTERVAL_MICROS
+                > Utils.getSystemNowMicrosUtc();
+    }
+
+    /**
+     * Stores the resource versions of the lists returned by a full listing of the host. The
+     * host is listed in full again, unless a version is known for each of the entity types.
+     */
+    public void synchronize(String hostLink, Map<String, String> resourceVersions) {
+        if (resourceVersions.keySet().containsAll(ENTITY_TYPES)) {
+            versionsByHost.put(hostLink, new HostVersions(new HashMap<>(resourceVersions),
+                    Utils.getSystemNowMicrosUtc()));
+        } else {
+            reset(hostLink);
+        }
+    }
+
+    public void reset(String hostLink) {
+        versionsByHost.remove(hostLink);
+    }
+
+    /**
+     * Records the resource version of the given list of entities of the given type in the given
+     * map, to be stored with {@link #synchronize(String, Map)} once all types are listed.
+     */
+    public static void recordResourceVersion(Map<String, String> resourceVersions,
+            String entityType, BaseKubernetesList list) {
+        if (list.metadata != null && list.metadata.resourceVersion != null) {
+            resourceVersions.put(entityType, list.metadata.resourceVersion);
+        }
+    }
+
+    /**
+     * Watches the entities of all types of the host for the changes since the last listing and
+     * adds them to the given response. Calls the resync callback instead of the completion if the
+     * host has to be listed in full.
+     */
+    public void watchChanges(KubernetesRemoteApiClient client, KubernetesContext context,
+            EntityListCallback response, Runnable resync, Consumer<Throwable> completion) {
+        String hostLink = context.host.documentSelfLink;
+        HostVersions versions = versionsByHost.get(hostLink);
+        if (versions == null) {
+            resync.run();
+            return;
+        }
+
+        response.incremental = true;
+        Map<String, String> watchedVersions = new ConcurrentHashMap<>(versions.resourceVersions);
+        AtomicInteger remaining = new AtomicInteger(ENTITY_TYPES.size());
+        AtomicBoolean resyncRequired = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        for (String entityType : ENTITY_TYPES) {
+            client.watchEntities(context, entityType, versions.resourceVersions.get(entityType),
+                    (o, ex) -> {
+                        try {
+                            if (ex != null) {
+                                if (o != null && o.getStatusCode() == STATUS_CODE_GONE) {
+                                    throw new ResyncRequiredException(ex.getMessage());
+                                }
+                                failure.compareAndSet(null, ex);
+                            } else {
+                                String version = applyEvents(entityType,
+                                        o.hasBody() ? o.getBody(String.class) : null, response);
+                                if (version != null) {
+                                    watchedVersions.put(entityType, version);
+                                }
+                            }
+                        } catch (ResyncRequiredException | JsonParseException e) {
+                            logger.log(Level.INFO, String.format(
+                                    "Cannot watch %s entities of host %s, listing all: %s",
+                                    entityType, hostLink, e.getMessage()));
+                            resyncRequired.set(true);
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        }
+
+                        if (remaining.decrementAndGet() != 0) {
+                            return;
+                        }
+                        if (failure.get() != null) {
+                            // keep the previous versions, the changes will be watched again
+                            completion.accept(failure.get());
+                        } else if (resyncRequired.get()) {
+                            reset(hostLink);
+                            resync.run();
+                        } else {
+                            versionsByHost.put(hostLink, new HostVersions(watchedVersions,
+                                    versions.synchronizedTimeMicros));
+                            completion.accept(null);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Applies the watch events in the given body to the response and returns the resource
+     * version of the last one.
+     */
+    private static String applyEvents(String entityType, String body,
+            EntityListCallback response) {
+        if (body == null || body.trim().isEmpty()) {
+            return null;
+        }
+
+        String resourceVersion = null;
+        JsonStreamParser parser = new JsonStreamParser(body);
+        while (parser.hasNext()) {
+            WatchEvent event = Utils.fromJson(parser.next(), WatchEvent.class);
+            if (event.type == null || event.object == null) {
+                throw new ResyncRequiredException("Unexpected watch response");
+            }
+
+            if (EVENT_ERROR.equals(event.type)) {
+                JsonElement code = event.object.get("code");
+                if (code != null && code.getAsInt() == STATUS_CODE_GONE) {
+                    throw new ResyncRequiredException("Resource version is too old");
+                }
+                JsonElement message = event.object.get("message");
+                throw new IllegalStateException(message != null ? message.getAsString()
+                        : "Watch failed");
+            }
+
+            BaseKubernetesObject object = Utils.fromJson(event.object,
+                    BaseKubernetesObject.class);
+            if (object.metadata == null) {
+                continue;
+            }
+            if (object.metadata.uid != null && object.metadata.name != null
+                    && object.metadata.selfLink != null) {
+                switch (event.type) {
+                case EVENT_ADDED:
+                case EVENT_MODIFIED:
+                    response.removedIds.remove(object.metadata.uid);
+                    response.idToEntityData.put(object.metadata.uid,
+                            createEntityData(object, entityType));
+                    break;
+                case EVENT_DELETED:
+                    response.idToEntityData.remove(object.metadata.uid);
+                    response.removedIds.add(object.metadata.uid);
+                    break;
+                case EVENT_BOOKMARK:
+                    break;
+                default:
+                    throw new ResyncRequiredException("Unknown watch event " + event.type);
+                }
+            }
+
+            JsonObject metadata = event.object.getAsJsonObject("metadata");
+            JsonElement version = metadata == null ? null : metadata.get("resourceVersion");
+            if (version != null && !version.isJsonNull()) {
+                resourceVersion = version.getAsString();
+            }
+        }
+        return resourceVersion;
+    }
+}
@@ -73,12 +73,22 @@ public class KubernetesRemoteApiClient {
      */
 
     public static final String LABEL_SELECTOR_QUERY = "labelSelector";
+    public static final String WATCH_QUERY = "watch";
+    public static final String RESOURCE_VERSION_QUERY = "resourceVersion";
+    public static final String TIMEOUT_SECONDS_QUERY = "timeoutSeconds";
 
     private static final Logger logger = Logger
             .getLogger(KubernetesRemoteApiClient.class.getName());
 
     private static final int REQUEST_TIMEOUT_SECONDS = 10;
 
+    /**
+     * How long the API server keeps a watch open, the changes made in that time are returned
+     * together with the changes since the requested resource version.
+     */
+    private static final int WATCH_TIMEOUT_SECONDS = Integer.getInteger(
+            "com.vmware.admiral.adapter.kubernetes.watch.timeout.seconds", 1);
+
     private final ServiceClient serviceClient;
     private final DelegatingX509KeyManager keyManager = new DelegatingX509KeyManager();
     private ServerX509TrustManager trustManager;
@@ -347,6 +357,32 @@ public class KubernetesRemoteApiClient {
         sendRequest(Action.GET, uri, null, context, completionHandler);
     }
 
+    /**
+     * Watches the entities of the given type, which are listed by the get methods, for changes
+     * since the given resource version. The API server returns the watch events, one JSON object
+     * per event, when the watch times out.
+     */
+    public void watchEntities(KubernetesContext context, String entityType,
+            String resourceVersion, CompletionHandler completionHandler) {
+        String apiVersionPrefix = DEPLOYMENT_TYPE.equals(entityType)
+                || REPLICA_SET_TYPE.equals(entityType) ? API_PREFIX_EXTENSIONS_V1BETA
+                        : API_PREFIX_V1;
+        URI uri = UriUtils.buildUri(ApiUtil.namespacePrefix(context, apiVersionPrefix)
+                + getKubernetesPath(entityType));
+        uri = UriUtils.extendUriWithQuery(uri,
+                WATCH_QUERY, Boolean.TRUE.toString(),
+                RESOURCE_VERSION_QUERY, resourceVersion,
+                TIMEOUT_SECONDS_QUERY, String.valueOf(WATCH_TIMEOUT_SECONDS));
+
+        Operation op = Operation.createGet(uri)
+                .setCompletion(completionHandler);
+        op.setExpiration(ServiceUtils.getExpirationTimeFromNowInMicros(TimeUnit.SECONDS
+                .toMicros(REQUEST_TIMEOUT_SECONDS + WATCH_TIMEOUT_SECONDS)));
+
+        prepareRequest(op, context);
+        serviceClient.send(op);
+    }
+
     public void createEntity(KubernetesDescription description, KubernetesContext context,
             CompletionHandler completionHandler) throws IOException {
         URI uri = ApiUtil.buildKubernetesFactoryUri(description, context);
@@ -11,6 +11,7 @@
 
 package com.vmware.admiral.adapter.kubernetes.service;
 
+import static com.vmware.admiral.adapter.kubernetes.KubernetesEntityInformer.recordResourceVersion;
 import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.DEPLOYMENT_TYPE;
 import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.POD_TYPE;
 import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.REPLICATION_CONTROLLER_TYPE;
@@ -22,6 +23,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -31,6 +33,7 @@ import java.util.stream.Collectors;
 
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerHostOperationType;
+import com.vmware.admiral.adapter.kubernetes.KubernetesEntityInformer;
 import com.vmware.admiral.adapter.kubernetes.KubernetesRemoteApiClient;
 import com.vmware.admiral.common.KubernetesHostConstants;
 import com.vmware.admiral.common.ManagementUriParts;
@@ -69,6 +72,8 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
     public static final String DASHBOARD_LINK_PROP_NAME = "__dashboardLink";
     public static final String DASHBOARD_INSTALLED_PROP_NAME = "__dashboardInstalled";
 
+    private final KubernetesEntityInformer informer = new KubernetesEntityInformer();
+
     @Override
     public void handlePatch(Operation op) {
         AdapterRequest request = op.getBody(AdapterRequest.class);
@@ -281,7 +286,45 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
             CallbackHandler callbackHandler) {
         updateContext(request, context);
 
+        if (!informer.isSynchronized(context.host.documentSelfLink)) {
+            listAllEntities(request, context, op, callbackHandler);
+            return;
+        }
+
+        EntityListCallback callbackResponse = new EntityListCallback();
+        callbackResponse.computeHostLink = context.host.documentSelfLink;
+        KubernetesRemoteApiClient client = getApiClient();
+        informer.watchChanges(client, context, callbackResponse,
+                () -> listAllEntities(request, context, op, callbackHandler),
+                (ex) -> {
+                    if (ex != null) {
+                        logWarning("Watching entities of host [%s] failed: %s",
+                                context.host.documentSelfLink, ex.toString());
+                        callbackHandler.fail(request, op, ex);
+                        return;
+                    }
+                    if (Logger.getLogger(this.getClass().getName()).isLoggable(Level.FINE)) {
+                        logFine("Watch returned changed entity IDs: %s, removed: %s %s",
+                                callbackResponse.idToEntityData.keySet(),
+                                callbackResponse.removedIds, request.getRequestTrackingLog());
+                    }
+                    callbackHandler.complete(request, op, callbackResponse);
+                });
+
+        client.getSystemServices(context, null, (o, ex) -> {
+            if (ex != null) {
+                logWarning("Listing system services of host [%s] failed: %s",
+                        context.host.documentSelfLink, ex.toString());
+                return;
+            }
+            updateDashboardLink(context.host, o.getBody(ServiceList.class));
+        });
+    }
+
+    private void listAllEntities(AdapterRequest request, KubernetesContext context, Operation op,
+            CallbackHandler callbackHandler) {
         EntityListCallback callbackResponse = new EntityListCallback();
+        Map<String, String> resourceVersions = new ConcurrentHashMap<>();
         AtomicBoolean hasError = new AtomicBoolean(false);
         AtomicBoolean allStarted = new AtomicBoolean(false);
         AtomicInteger resultCount = new AtomicInteger(0);
@@ -292,6 +335,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
                     logWarning("Listing operation [%s] failed: %s",
                             o == null ? "null" : o.getUri().toString(), ex.toString());
                     if (hasError.compareAndSet(false, true)) {
+                        informer.reset(context.host.documentSelfLink);
                         callbackHandler.fail(request, op, ex);
                     }
                 } else {
@@ -304,6 +348,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
                                     request.getRequestTrackingLog());
                         }
 
+                        informer.synchronize(context.host.documentSelfLink, resourceVersions);
                         callbackHandler.complete(request, op, callbackResponse);
                     }
                 }
@@ -315,6 +360,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
 
         client.getPods(context, null, resultHandler.appendResult((o) -> {
             PodList podList = o.getBody(PodList.class);
+            recordResourceVersion(resourceVersions, POD_TYPE, podList);
             if (podList.items != null) {
                 for (Pod pod : podList.items) {
                     if (validateKubernetesObject(pod)) {
@@ -326,6 +372,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         }));
         client.getServices(context, null, resultHandler.appendResult(o -> {
             ServiceList serviceList = o.getBody(ServiceList.class);
+            recordResourceVersion(resourceVersions, SERVICE_TYPE, serviceList);
             if (serviceList.items != null) {
                 for (Service service : serviceList.items) {
                     if (validateKubernetesObject(service)) {
@@ -337,19 +384,11 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
             }
         }));
         client.getSystemServices(context, null, resultHandler.appendResult(o -> {
-            ServiceList serviceList = o.getBody(ServiceList.class);
-            if (serviceList.items != null) {
-                List<Service> dashboardServices = serviceList.items.stream()
-                        .filter(s -> DASHBOARD_SERVICE_NAME.equals(s.metadata.name))
-                        .collect(Collectors.toList());
-
-                updateDashboardLink(context.host,
-                        dashboardServices.isEmpty() ? null : dashboardServices.get(0));
-
-            }
+            updateDashboardLink(context.host, o.getBody(ServiceList.class));
         }));
         client.getDeployments(context, null, resultHandler.appendResult(o -> {
             DeploymentList deploymentList = o.getBody(DeploymentList.class);
+            recordResourceVersion(resourceVersions, DEPLOYMENT_TYPE, deploymentList);
             if (deploymentList.items != null) {
                 for (Deployment deployment : deploymentList.items) {
                     if (validateKubernetesObject(deployment)) {
@@ -362,6 +401,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         }));
         client.getReplicationControllers(context, null, resultHandler.appendResult(o -> {
             ReplicationControllerList rcList = o.getBody(ReplicationControllerList.class);
+            recordResourceVersion(resourceVersions, REPLICATION_CONTROLLER_TYPE, rcList);
             if (rcList.items != null) {
                 for (ReplicationController rc : rcList.items) {
                     if (validateKubernetesObject(rc)) {
@@ -374,6 +414,7 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         }));
         client.getReplicaSets(context, null, resultHandler.appendResult(o -> {
             ReplicaSetList rsList = o.getBody(ReplicaSetList.class);
+            recordResourceVersion(resourceVersions, REPLICA_SET_TYPE, rsList);
             if (rsList.items != null) {
                 for (ReplicaSet rs : rsList.items) {
                     if (validateKubernetesObject(rs)) {
@@ -386,6 +427,17 @@ public class KubernetesHostAdapterService extends AbstractKubernetesAdapterServi
         allStarted.set(true);
     }
 
+    private void updateDashboardLink(ComputeState clusterHost, ServiceList systemServices) {
+        if (systemServices.items != null) {
+            List<Service> dashboardServices = systemServices.items.stream()
+                    .filter(s -> DASHBOARD_SERVICE_NAME.equals(s.metadata.name))
+                    .collect(Collectors.toList());
+
+            updateDashboardLink(clusterHost,
+                    dashboardServices.isEmpty() ? null : dashboardServices.get(0));
+        }
+    }
+
     private void updateDashboardLink(ComputeState clusterHost, Service dashboardService) {
         ComputeState patchState = new ComputeState();
         patchState.customProperties = new HashMap<>();
@@ -16,14 +16,27 @@ import static com.vmware.admiral.adapter.kubernetes.mock.KubernetesPathConstants
 import java.net.URI;
 import java.util.ArrayList;
 
+import com.vmware.admiral.adapter.kubernetes.KubernetesRemoteApiClient;
+import com.vmware.admiral.compute.kubernetes.entities.common.ListMeta;
 import com.vmware.admiral.compute.kubernetes.entities.replicaset.ReplicaSetList;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.StatefulService;
+import com.vmware.xenon.common.UriUtils;
 
 public class MockKubernetesHostService extends StatefulService {
     public static final String SELF_LINK = BASE_PATH;
 
+    /**
+     * The watch events returned when the pods are watched, the other entity types have no events.
+     */
+    public static volatile String podWatchEvents = "";
+
+    /**
+     * When set, watches fail as the watched resource versions are too old.
+     */
+    public static volatile boolean resourceVersionGone;
+
     public MockKubernetesHostService() {
         super(ServiceDocument.class);
     }
@@ -31,7 +44,10 @@ public class MockKubernetesHostService extends StatefulService {
     @Override
     public void handleGet(Operation get) {
         URI uri = get.getUri();
-        if (uri.getPath().endsWith(KubernetesPathConstants.PING)) {
+        if (Boolean.parseBoolean(UriUtils.parseUriQueryParams(uri)
+                .get(KubernetesRemoteApiClient.WATCH_QUERY))) {
+            handleWatch(get);
+        } else if (uri.getPath().endsWith(KubernetesPathConstants.PING)) {
             get.setBody("ok");
             get.complete();
         } else if (uri.getPath().endsWith(KubernetesPathConstants.NAMESPACES)) {
@@ -59,6 +75,8 @@ public class MockKubernetesHostService extends StatefulService {
             ReplicaSetList emptyList = new ReplicaSetList();
             emptyList.items = new ArrayList<>();
             emptyList.kind = "ReplicaSetList";
+            emptyList.metadata = new ListMeta();
+            emptyList.metadata.resourceVersion = "2278770";
             get.setBody(emptyList);
             get.complete();
         } else {
@@ -66,6 +84,16 @@ public class MockKubernetesHostService extends StatefulService {
         }
     }
 
+    private void handleWatch(Operation get) {
+        if (resourceVersionGone) {
+            get.fail(410);
+        } else if (get.getUri().getPath().endsWith(KubernetesPathConstants.PODS)) {
+            get.setBody(podWatchEvents).complete();
+        } else {
+            get.setBody("").complete();
+        }
+    }
+
     private String namespaceStub() {
         return "{\n"
                 + "  \"kind\": \"NamespaceList\",\n"
@@ -13,6 +13,7 @@ package com.vmware.admiral.adapter.kubernetes.service;
 
 import java.net.URI;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -83,6 +84,8 @@ public class KubernetesMockTestHostAdapterServiceTest extends BaseKubernetesMock
 
     @After
     public void tearDown() throws Throwable {
+        MockKubernetesHostService.podWatchEvents = "";
+        MockKubernetesHostService.resourceVersionGone = false;
         deleteKubernetesHostComputeState();
     }
 
@@ -241,6 +244,49 @@ public class KubernetesMockTestHostAdapterServiceTest extends BaseKubernetesMock
         Assert.assertEquals(TaskStage.FINISHED, stage);
     }
 
+    @Test
+    public void testListEntitiesWatchesChanges() throws Throwable {
+        String listedPodId = "f0e16f00-d800-11e6-9ae1-0050569de380";
+        String addedPodId = "a1b2c3d4-d800-11e6-9ae1-0050569de380";
+
+        // The first listing lists all entities
+        EntityListCallback result = listEntitiesDirect();
+        Assert.assertFalse(result.incremental);
+        Assert.assertTrue(result.idToEntityData.containsKey(listedPodId));
+
+        // The next one returns only the watched changes
+        MockKubernetesHostService.podWatchEvents = podWatchEvent("DELETED", listedPodId,
+                "nginx-mysql", "1733300") + "\n"
+                + podWatchEvent("ADDED", addedPodId, "nginx", "1733301") + "\n";
+        result = listEntitiesDirect();
+        Assert.assertTrue(result.incremental);
+        Assert.assertEquals(1, result.idToEntityData.size());
+        Assert.assertEquals("nginx", result.idToEntityData.get(addedPodId).name);
+        Assert.assertEquals(Collections.singleton(listedPodId), result.removedIds);
+
+        // All entities are listed again when the resource versions are too old
+        MockKubernetesHostService.resourceVersionGone = true;
+        result = listEntitiesDirect();
+        Assert.assertFalse(result.incremental);
+        Assert.assertTrue(result.idToEntityData.containsKey(listedPodId));
+    }
+
+    private EntityListCallback listEntitiesDirect() throws Throwable {
+        AdapterRequest request = prepareAdapterRequest(ContainerHostOperationType.LIST_ENTITIES);
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        OperationResult r = sendAdapterRequest(request, getKubernetesHostStateUri());
+        Assert.assertNull(r.ex);
+        return r.op.getBody(EntityListCallback.class);
+    }
+
+    private static String podWatchEvent(String type, String uid, String name,
+            String resourceVersion) {
+        return String.format("{\"type\":\"%s\",\"object\":{\"kind\":\"Pod\","
+                + "\"metadata\":{\"name\":\"%s\",\"namespace\":\"default\","
+                + "\"selfLink\":\"/api/v1/namespaces/default/pods/%s\",\"uid\":\"%s\","
+                + "\"resourceVersion\":\"%s\"}}}", type, name, name, uid, resourceVersion);
+    }
+
     @Test
     public void testOperationsWithFailingHost() throws Throwable {
         OperationResult r;
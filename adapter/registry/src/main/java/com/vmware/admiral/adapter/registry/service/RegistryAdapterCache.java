@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.adapter.registry.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import com.vmware.admiral.service.common.RegistryService.RegistryAuthState;
+import com.vmware.admiral.service.common.RegistryService.RegistryState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.AuthorizationContext;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceSubscriptionState.ServiceSubscriber;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+
+/**
+ * Node local cache of the {@link RegistryAdapterService}: the registry states with their
+ * credentials, the bearer tokens issued by the token services of the registries and, for a short
+ * time, the image tag lists and search results.
+ * <p>
+ * The tokens are kept until they expire, keyed by registry, scope and credentials. The scope of a
+ * request is learnt from the first authentication challenge of the registry for it, so the
+ * following requests send the cached token instead of repeating the challenge.
+ * <p>
+ * The registry states are cached per caller, so a cached state with its credentials is only
+ * returned to the callers which were allowed to read it.
+ * <p>
+ * The entries of a registry are invalidated on any change of its state or credentials, which are
+ * observed with a continuous query. The cache is used only once the continuous query is started
+ * on the node.
+ */
+public class RegistryAdapterCache {
+
+    private static final long RESPONSE_EXPIRATION_SECONDS = Long.getLong(
+            "com.vmware.admiral.adapter.registry.cache.response.expiration.seconds", 30);
+
+    private static final long REGISTRY_EXPIRATION_SECONDS = Long.getLong(
+            "com.vmware.admiral.adapter.registry.cache.registry.expiration.seconds",
+            TimeUnit.MINUTES.toSeconds(5));
+
+    private static final long MAX_SIZE = Long.getLong(
+            "com.vmware.admiral.adapter.registry.cache.max.size", 1000);
+
+    /**
+     * Tokens are not used in the last seconds before they expire, so they do not expire on the
+     * way to the registry.
+     */
+    private static final long TOKEN_EXPIRATION_MARGIN_SECONDS = 10;
+
+    /**
+     * The default expiration of tokens without expires_in, per the Docker token specification.
+     */
+    private static final long DEFAULT_TOKEN_EXPIRATION_SECONDS = 60;
+
+    private static final Map<ServiceHost, RegistryAdapterCache> INSTANCES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    public static class RegistryAdapterCacheStats {
+        public long registryHitCount;
+        public long registryMissCount;
+        public long tokenHitCount;
+        public long tokenMissCount;
+        public long responseHitCount;
+        public long responseMissCount;
+        public long invalidationCount;
+        public long registryCount;
+        public long tokenCount;
+        public long responseCount;
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final Set<String> links;
+        private final long expirationTimeMicros;
+
+        private Entry(T value, long expirationTimeMicros, String... links) {
+            this.value = value;
+            this.expirationTimeMicros = expirationTimeMicros;
+            this.links = new HashSet<>(Arrays.asList(links));
+            this.links.remove(null);
+        }
+
+        private boolean isExpired() {
+            return expirationTimeMicros < Utils.getSystemNowMicrosUtc();
+        }
+    }
+
+    private final Cache<String, Entry<RegistryAuthState>> registries = CacheBuilder.newBuilder()
+            .expireAfterWrite(REGISTRY_EXPIRATION_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    private final Cache<String, Entry<String>> tokens = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    private final Cache<String, Entry<Object>> responses = CacheBuilder.newBuilder()
+            .expireAfterWrite(RESPONSE_EXPIRATION_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    /**
+     * The scopes of the challenges of the registries, per registry address and request path.
+     */
+    private final Cache<String, String> scopes = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    /**
+     * Incremented on every invalidation, values loaded during an invalidation are not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong registryHitCount = new AtomicLong();
+    private final AtomicLong registryMissCount = new AtomicLong();
+    private final AtomicLong tokenHitCount = new AtomicLong();
+    private final AtomicLong tokenMissCount = new AtomicLong();
+    private final AtomicLong responseHitCount = new AtomicLong();
+    private final AtomicLong responseMissCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private final AtomicBoolean subscribing = new AtomicBoolean();
+    private volatile boolean subscribed;
+
+    RegistryAdapterCache() {
+    }
+
+    public static RegistryAdapterCache getInstance(ServiceHost host) {
+        return INSTANCES.computeIfAbsent(host, (h) -> new RegistryAdapterCache());
+    }
+
+    /**
+     * Starts the continuous query invalidating the cache of the host of the given service, if not
+     * started yet.
+     */
+    public static void startInvalidation(Service service) {
+        getInstance(service.getHost()).subscribe(service);
+    }
+
+    public boolean isEnabled() {
+        return subscribed;
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns a copy of the state of the registry with the given link cached for the given
+     * caller, or {@code null}.
+     */
+    public RegistryAuthState getRegistry(String registryLink, String principal) {
+        if (!subscribed) {
+            return null;
+        }
+        Entry<RegistryAuthState> entry = registries.getIfPresent(
+                getRegistryKey(registryLink, principal));
+        if (entry == null) {
+            registryMissCount.incrementAndGet();
+            return null;
+        }
+        registryHitCount.incrementAndGet();
+        return Utils.clone(entry.value);
+    }
+
+    /**
+     * Caches the state of a registry loaded by the given caller since the given generation.
+     */
+    public void putRegistry(String registryLink, String principal,
+            RegistryAuthState registryState, long loadGeneration) {
+        if (!subscribed || loadGeneration != generation.get()) {
+            return;
+        }
+        registries.put(getRegistryKey(registryLink, principal), new Entry<>(Utils.clone(registryState), Long.MAX_VALUE,
+                registryLink, registryState.authCredentialsLink));
+    }
+
+    /**
+     * Returns the cached bearer token authorization header for the given request path of the
+     * registry, if the scope of the path is known and a token for it is not expired.
+     */
+    public String getToken(String registryAddress, String path, String credentials) {
+        if (!subscribed) {
+            return null;
+        }
+        String scope = scopes.getIfPresent(getScopeKey(registryAddress, path));
+        Entry<String> entry = scope == null ? null
+                : tokens.getIfPresent(getTokenKey(registryAddress, scope, credentials));
+        if (entry == null || entry.isExpired()) {
+            tokenMissCount.incrementAndGet();
+            return null;
+        }
+        tokenHitCount.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Caches a bearer token authorization header issued for the given scope. The scope is also
+     * recorded for the request path which was challenged for it.
+     */
+    public void putToken(String registryAddress, String path, String scope, String credentials,
+            String authorization, String expiresIn, long loadGeneration, String... links) {
+        if (!subscribed || loadGeneration != generation.get() || scope == null) {
+            return;
+        }
+        long expirationSeconds = DEFAULT_TOKEN_EXPIRATION_SECONDS;
+        if (expiresIn != null) {
+            try {
+                expirationSeconds = Long.parseLong(expiresIn.trim());
+            } catch (NumberFormatException e) {
+                // use the default expiration
+            }
+        }
+        expirationSeconds -= TOKEN_EXPIRATION_MARGIN_SECONDS;
+        if (expirationSeconds <= 0) {
+            return;
+        }
+
+        scopes.put(getScopeKey(registryAddress, path), scope);
+        tokens.put(getTokenKey(registryAddress, scope, credentials), new Entry<>(authorization,
+                Utils.getSystemNowMicrosUtc() + TimeUnit.SECONDS.toMicros(expirationSeconds),
+                links));
+    }
+
+    /**
+     * Removes the cached token for the given request path, e.g. when the registry rejects it.
+     */
+    public void invalidateToken(String registryAddress, String path, String credentials) {
+        String scope = scopes.getIfPresent(getScopeKey(registryAddress, path));
+        if (scope != null) {
+            tokens.invalidate(getTokenKey(registryAddress, scope, credentials));
+        }
+    }
+
+    /**
+     * Returns a copy of the cached response with the given key, or {@code null}.
+     */
+    public Object getResponse(String key) {
+        if (!subscribed) {
+            return null;
+        }
+        Entry<Object> entry = responses.getIfPresent(key);
+        if (entry == null) {
+            responseMissCount.incrementAndGet();
+            return null;
+        }
+        responseHitCount.incrementAndGet();
+        return copyResponse(entry.value);
+    }
+
+    /**
+     * Caches a response loaded since the given generation.
+     */
+    public void putResponse(String key, Object response, long loadGeneration, String... links) {
+        if (!subscribed || response == null || loadGeneration != generation.get()) {
+            return;
+        }
+        responses.put(key, new Entry<>(copyResponse(response), Long.MAX_VALUE, links));
+    }
+
+    /**
+     * Returns the key of a response of the given type, for the given query and credentials.
+     */
+    public static String getResponseKey(String registryLink, String type, String query,
+            String credentials) {
+        return String.join("|", registryLink, type, String.valueOf(query),
+                hashCredentials(credentials));
+    }
+
+    /**
+     * Invalidates the entries of the registries or credentials with the given links.
+     */
+    public void invalidate(Collection<String> links) {
+        generation.incrementAndGet();
+        invalidationCount.incrementAndGet();
+        registries.asMap().values().removeIf(entry -> !Collections.disjoint(entry.links, links));
+        tokens.asMap().values().removeIf(entry -> !Collections.disjoint(entry.links, links));
+        responses.asMap().values().removeIf(entry -> !Collections.disjoint(entry.links, links));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidationCount.incrementAndGet();
+        registries.invalidateAll();
+        tokens.invalidateAll();
+        responses.invalidateAll();
+        scopes.invalidateAll();
+    }
+
+    public RegistryAdapterCacheStats getStats() {
+        RegistryAdapterCacheStats stats = new RegistryAdapterCacheStats();
+        stats.registryHitCount = registryHitCount.get();
+        stats.registryMissCount = registryMissCount.get();
+        stats.tokenHitCount = tokenHitCount.get();
+        stats.tokenMissCount = tokenMissCount.get();
+        stats.responseHitCount = responseHitCount.get();
+        stats.responseMissCount = responseMissCount.get();
+        stats.invalidationCount = invalidationCount.get();
+        stats.registryCount = registries.size();
+        stats.tokenCount = tokens.size();
+        stats.responseCount = responses.size();
+        return stats;
+    }
+
+    private static String getRegistryKey(String registryLink, String principal) {
+        return registryLink + "|" + (principal == null ? "" : principal);
+    }
+
+    private static String getScopeKey(String registryAddress, String path) {
+        return registryAddress + "|" + path;
+    }
+
+    private static String getTokenKey(String registryAddress, String scope, String credentials) {
+        return String.join("|", registryAddress, scope, hashCredentials(credentials));
+    }
+
+    private static String hashCredentials(String credentials) {
+        if (credentials == null) {
+            return "";
+        }
+        return Hashing.sha256().hashString(credentials, Utils.CHARSET_OBJECT).toString();
+    }
+
+    private static Object copyResponse(Object response) {
+        if (response instanceof String[]) {
+            return ((String[]) response).clone();
+        } else if (response instanceof List) {
+            return new ArrayList<>((List<?>) response);
+        } else if (response instanceof RegistrySearchResponse) {
+            return Utils.clone((RegistrySearchResponse) response);
+        }
+        return response;
+    }
+
+    private void subscribe(Service service) {
+        if (!subscribing.compareAndSet(false, true)) {
+            return;
+        }
+
+        ServiceHost host = service.getHost();
+        AuthorizationContext systemContext;
+        try {
+            systemContext = service.getSystemAuthorizationContext();
+        } catch (RuntimeException e) {
+            // only privileged services may use the system context
+            host.log(Level.WARNING, "Registry adapter cache is disabled, %s is not privileged",
+                    service.getClass().getSimpleName());
+            return;
+        }
+
+        Query query = Query.Builder.create()
+                .addKindFieldClause(RegistryState.class, Occurance.SHOULD_OCCUR)
+                .addKindFieldClause(AuthCredentialsServiceState.class, Occurance.SHOULD_OCCUR)
+                .build();
+        QueryTask task = QueryTask.Builder.create()
+                .addOption(QueryOption.CONTINUOUS)
+                .setQuery(query)
+                .build();
+        task.documentSelfLink = "registry-adapter-cache-" + UUID.randomUUID().toString();
+        task.documentExpirationTimeMicros = Long.MAX_VALUE;
+
+        Operation post = Operation.createPost(host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS)
+                .setBody(task)
+                .setReferer(service.getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        host.log(Level.WARNING, "Registry adapter cache is disabled, failed to"
+                                + " start continuous query: %s", Utils.toString(e));
+                        return;
+                    }
+
+                    String taskUriPath = UriUtils.buildUriPath(
+                            ServiceUriPaths.CORE_LOCAL_QUERY_TASKS, task.documentSelfLink);
+                    Operation subscribePost = Operation.createPost(host, taskUriPath)
+                            .setReferer(service.getUri())
+                            .setCompletion((op, ex) -> {
+                                if (ex != null) {
+                                    host.log(Level.WARNING, "Registry adapter cache is"
+                                            + " disabled, failed to subscribe to continuous"
+                                            + " query: %s", Utils.toString(ex));
+                                    return;
+                                }
+                                invalidateAll();
+                                subscribed = true;
+                            });
+                    service.setAuthorizationContext(subscribePost, systemContext);
+                    host.startSubscriptionService(subscribePost, this::onChange,
+                            ServiceSubscriber.create(false));
+                });
+        service.setAuthorizationContext(post, systemContext);
+        host.sendRequest(post);
+    }
+
+    private void onChange(Operation notification) {
+        notification.complete();
+
+        QueryTask task = notification.hasBody() ? notification.getBody(QueryTask.class) : null;
+        if (task == null || task.results == null || task.results.documentLinks == null
+                || task.results.documentLinks.isEmpty()) {
+            invalidateAll();
+            return;
+        }
+        List<String> links = new ArrayList<>(task.results.documentLinks);
+        links.removeIf(Objects::isNull);
+        invalidate(links);
+    }
+}
@@ -28,6 +28,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.vmware.admiral.adapter.registry.service.RegistryAdapterCache.RegistryAdapterCacheStats;
 import com.vmware.admiral.adapter.registry.service.RegistrySearchResponse.Result;
 import com.vmware.admiral.common.DeploymentProfileConfig;
 import com.vmware.admiral.common.ManagementUriParts;
@@ -44,6 +45,7 @@ import com.vmware.admiral.service.common.RegistryService.RegistryState;
 import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.AuthorizationContext;
 import com.vmware.xenon.common.ServiceClient;
 import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
@@ -53,6 +55,10 @@ import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsSe
 
 /**
  * Service for fulfilling image tasks backed by a registry server
+ * <p>
+ * The registry states, the bearer tokens of the registries and the results of searches and tag
+ * listings are cached in the {@link RegistryAdapterCache} of the node. A GET on the service returns
+ * the {@link RegistryAdapterCacheStats} of the cache.
  */
 public class RegistryAdapterService extends StatelessService {
     public static final String SELF_LINK = ManagementUriParts.ADAPTER_REGISTRY;
@@ -91,6 +97,8 @@ public class RegistryAdapterService extends StatelessService {
 
     private ServerX509TrustManager trustManager;
 
+    private RegistryAdapterCache cache;
+
     public class RegistryPingResponse {
         public ApiVersion apiVersion;
     }
@@ -100,7 +108,6 @@ public class RegistryAdapterService extends StatelessService {
     }
 
     private static class TokenServiceResponse {
-        @SuppressWarnings("unused")
         String expires_in;
         @SuppressWarnings("unused")
         String issued_at;
@@ -116,6 +123,8 @@ public class RegistryAdapterService extends StatelessService {
     @Override
     public void handleStart(Operation post) {
         trustManager = ServerX509TrustManager.create(getHost());
+        cache = RegistryAdapterCache.getInstance(getHost());
+        RegistryAdapterCache.startInvalidation(this);
         serviceClientNoProxyList = new HashSet<>();
 
         DeferredResult.allOf(Arrays.asList(getProperty(REGISTRY_PROXY_PARAM_NAME),
@@ -199,10 +208,21 @@ public class RegistryAdapterService extends StatelessService {
         public ImageRequest request;
         public RegistryAuthState registryState;
         public boolean tokenAlreadyRequested;
+        /** The authorization header of the registry credentials, used to request tokens. */
+        public String credentials;
+        /** Whether the authorization header is a token taken from the cache. */
+        public boolean cachedToken;
+        public String responseKey;
+        public long cacheGeneration;
     }
 
     @Override
     public void handleRequest(Operation op) {
+        if (op.getAction() == Action.GET) {
+            handleGet(op);
+            return;
+        }
+
         if (op.getAction() != Action.PATCH) {
             Operation.failActionNotSupported(op);
             return;
@@ -211,6 +231,11 @@ public class RegistryAdapterService extends StatelessService {
         handlePatch(op);
     }
 
+    @Override
+    public void handleGet(Operation get) {
+        get.setBody(cache.getStats()).complete();
+    }
+
     @Override
     public void handlePatch(Operation op) {
         if (!op.hasBody()) {
@@ -220,6 +245,7 @@ public class RegistryAdapterService extends StatelessService {
 
         RequestContext context = new RequestContext();
         context.operation = op;
+        context.cacheGeneration = cache.getGeneration();
 
         context.request = op.getBody(ImageRequest.class);
         context.request.validate();// validate the request
@@ -232,7 +258,8 @@ public class RegistryAdapterService extends StatelessService {
 
         switch (context.request.getOperationType()) {
         case SEARCH:
-            fetchRegistry(context, () -> processSearchRequest(context));
+            fetchRegistry(context, () -> processCachedRequest(context,
+                    () -> processSearchRequest(context)));
             break;
 
         case PING:
@@ -240,7 +267,8 @@ public class RegistryAdapterService extends StatelessService {
             break;
 
         case LIST_TAGS:
-            fetchRegistry(context, () -> processListImageTagsRequest(context));
+            fetchRegistry(context, () -> processCachedRequest(context,
+                    () -> processListImageTagsRequest(context)));
             break;
 
         default:
@@ -252,6 +280,18 @@ public class RegistryAdapterService extends StatelessService {
     }
 
     private void fetchRegistry(RequestContext context, Runnable callback) {
+        String registryLink = context.request.resourceReference.getPath();
+        // the registry is read with the authorization of the caller, so the cached state is
+        // returned only to the same caller
+        String principal = getPrincipal(context.operation);
+        RegistryAuthState cachedRegistryState = cache.getRegistry(registryLink, principal);
+        if (cachedRegistryState != null) {
+            context.registryState = cachedRegistryState;
+            processAuthentication(context, context.registryState.authCredentials);
+            callback.run();
+            return;
+        }
+
         URI registryStateUri = UriUtils.extendUriWithQuery(context.request.resourceReference,
                 UriUtils.URI_PARAM_ODATA_EXPAND, Boolean.TRUE.toString());
 
@@ -269,6 +309,8 @@ public class RegistryAdapterService extends StatelessService {
                         context.registryState.address =
                                 UriUtilsExtended.buildDockerRegistryUri(context.registryState.address).toString();
                     }
+                    cache.putRegistry(registryLink, principal, context.registryState,
+                            context.cacheGeneration);
 
                     processAuthentication(context, context.registryState.authCredentials);
 
@@ -278,6 +320,11 @@ public class RegistryAdapterService extends StatelessService {
         sendRequest(getRegistry);
     }
 
+    private static String getPrincipal(Operation op) {
+        AuthorizationContext ctx = op.getAuthorizationContext();
+        return ctx == null || ctx.getClaims() == null ? null : ctx.getClaims().getSubject();
+    }
+
     private void fetchAuthCredentials(RequestContext context, Runnable callback) {
         String authCredentialsLink = context.request.customProperties.get(
                 RegistryState.FIELD_NAME_AUTH_CREDENTIALS_LINK);
@@ -311,6 +358,73 @@ public class RegistryAdapterService extends StatelessService {
                         authorizationHeaderValue);
             }
         }
+        context.credentials = context.request.customProperties.get(AUTHORIZATION_HEADER);
+    }
+
+    /**
+     * Completes the request with the cached response for it if there is one, otherwise runs the
+     * given callback which completes the request with {@link #completeRequest}.
+     */
+    private void processCachedRequest(RequestContext context, Runnable callback) {
+        context.responseKey = RegistryAdapterCache.getResponseKey(
+                context.request.resourceReference.getPath(),
+                context.request.getOperationType().name(),
+                context.request.customProperties.get(SEARCH_QUERY_PROP_NAME),
+                context.credentials);
+
+        Object response = cache.getResponse(context.responseKey);
+        if (response != null) {
+            context.operation.setBody(response);
+            context.operation.complete();
+            return;
+        }
+
+        callback.run();
+    }
+
+    private void completeRequest(RequestContext context, Object response) {
+        if (context.responseKey != null) {
+            cache.putResponse(context.responseKey, response, context.cacheGeneration,
+                    context.request.resourceReference.getPath(),
+                    context.registryState.authCredentialsLink);
+        }
+        context.operation.setBody(response);
+        context.operation.complete();
+    }
+
+    /**
+     * Sets the authorization header of the request to the cached token for the given registry
+     * path, if the token was not requested already.
+     */
+    private void applyCachedToken(RequestContext context, URI uri) {
+        if (context.tokenAlreadyRequested || context.cachedToken) {
+            return;
+        }
+        String token = cache.getToken(context.registryState.address, uri.getPath(),
+                context.credentials);
+        if (token != null) {
+            context.request.customProperties.put(AUTHORIZATION_HEADER, token);
+            context.cachedToken = true;
+        }
+    }
+
+    /**
+     * Evicts the cached token rejected by the registry and restores the authorization header of
+     * the credentials, so a new token is requested. Returns whether a cached token was used.
+     */
+    private boolean evictCachedToken(RequestContext context, URI uri) {
+        if (!context.cachedToken) {
+            return false;
+        }
+        cache.invalidateToken(context.registryState.address, uri.getPath(),
+                context.credentials);
+        context.cachedToken = false;
+        if (context.credentials != null) {
+            context.request.customProperties.put(AUTHORIZATION_HEADER, context.credentials);
+        } else {
+            context.request.customProperties.remove(AUTHORIZATION_HEADER);
+        }
+        return true;
     }
 
     private void processSearchRequest(RequestContext context) {
@@ -351,8 +465,7 @@ public class RegistryAdapterService extends StatelessService {
                                 }
                             }
 
-                            context.operation.setBody(body);
-                            context.operation.complete();
+                            completeRequest(context, body);
                         }
                     });
 
@@ -405,11 +518,17 @@ public class RegistryAdapterService extends StatelessService {
 
     private void sendV2SearchRequest(URI searchUri, String searchTerm,
             RegistrySearchResponse response, RequestContext context) {
+        applyCachedToken(context, searchUri);
         Operation search = Operation.createGet(searchUri)
                 .setReferer(getHost().getPublicUri())
                 .setCompletion((o, ex) -> {
                     if (ex != null) {
                         if (o.getStatusCode() == 401) {
+                            if (evictCachedToken(context, searchUri)) {
+                                sendV2SearchRequest(searchUri, searchTerm, response, context);
+                                return;
+                            }
+
                             if (context.tokenAlreadyRequested) {
                                 context.operation.fail(ex);
                                 return;
@@ -419,7 +538,7 @@ public class RegistryAdapterService extends StatelessService {
                                     o.getResponseHeaders());
 
                             if (isBearerTokenChallenge(wwwAuthHeader)) {
-                                requestAuthorizationToken(wwwAuthHeader, context,
+                                requestAuthorizationToken(wwwAuthHeader, searchUri, context,
                                         () -> sendV2SearchRequest(searchUri, searchTerm, response,
                                                 context),
                                         (t) -> context.operation.fail(t));
@@ -457,8 +576,7 @@ public class RegistryAdapterService extends StatelessService {
                             sendV2SearchRequest(nextPageUri, searchTerm, response, context);
                         } else {
                             response.numResults = response.results.size();
-                            context.operation.setBody(response);
-                            context.operation.complete();
+                            completeRequest(context, response);
                         }
                     }
                 });
@@ -527,7 +645,7 @@ public class RegistryAdapterService extends StatelessService {
                                     o.getResponseHeaders());
 
                             if (isBearerTokenChallenge(wwwAuthHeader)) {
-                                requestAuthorizationToken(wwwAuthHeader, context,
+                                requestAuthorizationToken(wwwAuthHeader, null, context,
                                         () -> doPing(apiVersion, pingEndpoint, context,
                                                 failureCallback),
                                         failureCallback);
@@ -607,8 +725,7 @@ public class RegistryAdapterService extends StatelessService {
                         Map<String, String> response = o.getBody(Map.class);
                         List<String> tags = new ArrayList<>(response.keySet());
 
-                        context.operation.setBody(tags);
-                        context.operation.complete();
+                        completeRequest(context, tags);
                     });
 
             String authorization = context.request.customProperties.get(AUTHORIZATION_HEADER);
@@ -633,6 +750,8 @@ public class RegistryAdapterService extends StatelessService {
             URI searchUri = URI.create(context.registryState.address);
             String path = UriUtils.buildUriPath("/v2", imageName, "/tags/list");
             searchUri = UriUtils.extendUri(searchUri, path);
+            URI tagsUri = searchUri;
+            applyCachedToken(context, tagsUri);
 
             logInfo("Performing container image list tags: %s", searchUri);
             Operation search = Operation.createGet(searchUri)
@@ -640,6 +759,11 @@ public class RegistryAdapterService extends StatelessService {
                     .setCompletion((o, ex) -> {
                         if (ex != null) {
                             if (o.getStatusCode() == 401) {
+                                if (evictCachedToken(context, tagsUri)) {
+                                    processV2ListImageTagsRequest(context);
+                                    return;
+                                }
+
                                 if (context.tokenAlreadyRequested) {
                                     context.operation.fail(ex);
                                     return;
@@ -649,7 +773,7 @@ public class RegistryAdapterService extends StatelessService {
                                         o.getResponseHeaders());
 
                                 if (isBearerTokenChallenge(wwwAuthHeader)) {
-                                    requestAuthorizationToken(wwwAuthHeader, context,
+                                    requestAuthorizationToken(wwwAuthHeader, tagsUri, context,
                                             () -> processV2ListImageTagsRequest(context),
                                             (t) -> context.operation.fail(t));
                                     return;
@@ -662,8 +786,7 @@ public class RegistryAdapterService extends StatelessService {
 
                         V2ImageTagsResponse response = o.getBody(V2ImageTagsResponse.class);
 
-                        context.operation.setBody(response.tags);
-                        context.operation.complete();
+                        completeRequest(context, response.tags);
                     });
 
             String authorization = context.request.customProperties.get(AUTHORIZATION_HEADER);
@@ -704,8 +827,13 @@ public class RegistryAdapterService extends StatelessService {
                 .collect(Collectors.toMap(e -> e[0], e -> e[1].substring(1, e[1].length() - 1)));
     }
 
-    private void requestAuthorizationToken(String wwwAuthHeader, RequestContext context,
-            Runnable successCallback, Consumer<Throwable> failureCallback) {
+    /**
+     * Requests a token for the scope of the challenge of the registry. The token is cached for the
+     * path of the challenged request, if any.
+     */
+    private void requestAuthorizationToken(String wwwAuthHeader, URI requestUri,
+            RequestContext context, Runnable successCallback,
+            Consumer<Throwable> failureCallback) {
         try {
             Map<String, String> kvs = parseWwwAuthHeader(wwwAuthHeader);
 
@@ -733,6 +861,15 @@ public class RegistryAdapterService extends StatelessService {
                                 authorizationHeaderValue);
                         context.tokenAlreadyRequested = true;
 
+                        if (requestUri != null) {
+                            cache.putToken(context.registryState.address,
+                                    requestUri.getPath(), scope, context.credentials,
+                                    authorizationHeaderValue, tokenServiceResponse.expires_in,
+                                    context.cacheGeneration,
+                                    context.request.resourceReference.getPath(),
+                                    context.registryState.authCredentialsLink);
+                        }
+
                         successCallback.run();
                     });
 
@@ -14,12 +14,14 @@ package com.vmware.admiral.adapter.registry.service;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.function.Consumer;
@@ -31,6 +33,7 @@ import com.vmware.admiral.adapter.common.ImageOperationType;
 import com.vmware.admiral.adapter.common.service.mock.MockTaskFactoryService;
 import com.vmware.admiral.adapter.common.service.mock.MockTaskService.MockTaskState;
 import com.vmware.admiral.adapter.registry.mock.BaseMockRegistryTestCase;
+import com.vmware.admiral.adapter.registry.service.RegistryAdapterCache.RegistryAdapterCacheStats;
 import com.vmware.admiral.adapter.registry.service.RegistryAdapterService.RegistryPingResponse;
 import com.vmware.admiral.adapter.registry.service.RegistrySearchResponse.Result;
 import com.vmware.admiral.common.test.CommonTestStateFactory;
@@ -39,6 +42,7 @@ import com.vmware.admiral.host.HostInitCommonServiceConfig;
 import com.vmware.admiral.service.common.RegistryFactoryService;
 import com.vmware.admiral.service.common.RegistryService;
 import com.vmware.admiral.service.common.RegistryService.ApiVersion;
+import com.vmware.admiral.service.common.RegistryService.RegistryAuthState;
 import com.vmware.admiral.service.common.RegistryService.RegistryState;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
 import com.vmware.admiral.service.common.SslTrustCertificateService;
@@ -67,6 +71,7 @@ public class RegistryAdapterServiceTest extends BaseMockRegistryTestCase {
                 new MockTaskFactoryService());
 
         registryAdapterServiceUri = UriUtils.buildUri(host, RegistryAdapterService.class);
+        host.addPrivilegedService(RegistryAdapterService.class);
         host.startService(
                 Operation.createPost(registryAdapterServiceUri),
                 new RegistryAdapterService());
@@ -457,6 +462,58 @@ public class RegistryAdapterServiceTest extends BaseMockRegistryTestCase {
         });
     }
 
+    @Test
+    public void testListImageTagsIsCached() throws Throwable {
+        RegistryAdapterCache cache = RegistryAdapterCache.getInstance(host);
+        waitFor(cache::isEnabled);
+
+        URI v2RegistryStateUri = UriUtils.buildUri(host, v2RegistryStateLink);
+        Consumer<Operation> verifyTags = (Operation op) -> {
+            String[] tags = op.getBody(String[].class);
+            assertArrayEquals(new String[] { "7.1", "7.2", "7.3", "7.4" }, tags);
+        };
+
+        sendRegistryListTagsRequest(v2RegistryStateUri, "v2registry.test/vmware/admiral",
+                verifyTags);
+        sendRegistryListTagsRequest(v2RegistryStateUri, "v2registry.test/vmware/admiral",
+                verifyTags);
+
+        RegistryAdapterCacheStats stats = getDocument(RegistryAdapterCacheStats.class,
+                registryAdapterServiceUri);
+        assertEquals(1, stats.responseHitCount);
+        assertEquals(1, stats.registryHitCount);
+
+        // a change of the registry invalidates its cached entries
+        RegistryState registryState = new RegistryState();
+        registryState.name = "updated";
+        doPatch(registryState, v2RegistryStateLink);
+        waitFor(() -> cache.getStats().responseCount == 0);
+
+        sendRegistryListTagsRequest(v2RegistryStateUri, "v2registry.test/vmware/admiral",
+                verifyTags);
+        stats = getDocument(RegistryAdapterCacheStats.class, registryAdapterServiceUri);
+        assertEquals(1, stats.responseHitCount);
+    }
+
+    @Test
+    public void testCachedRegistryIsReturnedOnlyToItsCaller() throws Throwable {
+        RegistryAdapterCache cache = RegistryAdapterCache.getInstance(host);
+        waitFor(cache::isEnabled);
+
+        RegistryAuthState registryState = new RegistryAuthState();
+        registryState.address = "http://cached-registry.test";
+        String registryLink = UriUtils.buildUriPath(RegistryFactoryService.SELF_LINK,
+                "cached-registry");
+        cache.putRegistry(registryLink, "user-a", registryState, cache.getGeneration());
+
+        assertNotNull(cache.getRegistry(registryLink, "user-a"));
+        assertNull(cache.getRegistry(registryLink, "user-b"));
+        assertNull(cache.getRegistry(registryLink, null));
+
+        cache.invalidate(Collections.singletonList(registryLink));
+        assertNull(cache.getRegistry(registryLink, "user-a"));
+    }
+
     private void sendRegistrySearchRequest(URI registryStateLink, String searchTerm,
             Consumer<Operation> consumeResult) throws Throwable {
 
@@ -33,6 +33,7 @@ import com.vmware.admiral.auth.idm.PrincipalRolesHandler.PrincipalRoleAssignment
 import com.vmware.admiral.auth.idm.SecurityContext.SecurityContextPostDto;
 import com.vmware.admiral.auth.util.AuthUtil;
 import com.vmware.admiral.auth.util.PrincipalUtil;
+import com.vmware.admiral.auth.util.SecurityContextCache;
 import com.vmware.admiral.auth.util.SecurityContextUtil;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.UriUtilsExtended;
@@ -94,6 +95,9 @@ public class PrincipalService extends StatelessService {
     public void handleStart(Operation startPost) {
         provider = AuthUtil.getPreferredPrincipalProvider();
         provider.init(this);
+        if (AuthUtil.isAuthxEnabled(getHost())) {
+            SecurityContextCache.startInvalidation(this);
+        }
         startPost.complete();
     }
 
@@ -340,6 +344,7 @@ public class PrincipalService extends StatelessService {
             return;
         }
 
+        SecurityContextCache.invalidateOnCompletion(getHost(), patch);
         String principalId = extractPropertyFromPath(PATTERN_PRINCIPAL_ROLES,
                 PRINCIPAL_ID_PATH_SEGMENT, patch.getUri().getPath());
 
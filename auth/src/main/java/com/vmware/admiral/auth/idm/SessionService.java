@@ -14,6 +14,7 @@ package com.vmware.admiral.auth.idm;
 import java.util.Collections;
 
 import com.vmware.admiral.auth.util.AuthUtil;
+import com.vmware.admiral.auth.util.SecurityContextCache;
 import com.vmware.admiral.auth.util.SecurityContextUtil;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.AuthUtils;
@@ -42,6 +43,9 @@ public class SessionService extends StatelessService {
     public void handleStart(Operation startPost) {
         provider = AuthUtil.getPreferredLogoutProvider();
         provider.init(this);
+        if (AuthUtil.isAuthxEnabled(getHost())) {
+            SecurityContextCache.startInvalidation(this);
+        }
         startPost.complete();
     }
 
@@ -32,6 +32,7 @@ import java.util.stream.Collectors;
 
 import com.vmware.admiral.auth.idm.AuthConfigProvider.CredentialsScope;
 import com.vmware.admiral.auth.util.AuthUtil;
+import com.vmware.admiral.auth.util.SecurityContextCache;
 import com.vmware.admiral.auth.util.UserGroupsUpdater;
 import com.vmware.admiral.common.util.PropertyUtils;
 import com.vmware.photon.controller.model.security.util.EncryptionUtils;
@@ -119,6 +120,7 @@ public class LocalPrincipalService extends StatefulService {
         LocalPrincipalState state = post.getBody(LocalPrincipalState.class);
         try {
             validatePrincipal(state);
+            SecurityContextCache.invalidateOnCompletion(getHost(), post);
 
             if (state.type == null || LocalPrincipalType.USER == state.type) {
                 createUserState(state, post);
@@ -148,6 +150,7 @@ public class LocalPrincipalService extends StatefulService {
 
     @Override
     public void handleDelete(Operation delete) {
+        SecurityContextCache.invalidateOnCompletion(getHost(), delete);
         LocalPrincipalState state = getState(delete);
         String stateId = Service.getId(state.documentSelfLink);
         if (state.type == null || LocalPrincipalType.USER == state.type) {
@@ -33,6 +33,7 @@ import com.vmware.admiral.auth.idm.Principal;
 import com.vmware.admiral.auth.project.ProjectRolesHandler.ProjectRoles;
 import com.vmware.admiral.auth.util.AuthUtil;
 import com.vmware.admiral.auth.util.ProjectUtil;
+import com.vmware.admiral.auth.util.SecurityContextCache;
 import com.vmware.admiral.auth.util.SecurityContextUtil;
 import com.vmware.admiral.auth.util.UserGroupsUpdater;
 import com.vmware.admiral.common.serialization.ReleaseConstants;
@@ -272,6 +273,7 @@ public class ProjectService extends StatefulService {
         if (!checkForBody(post)) {
             return;
         }
+        SecurityContextCache.invalidateOnCompletion(getHost(), post);
 
         ProjectState createBody = post.getBody(ProjectState.class);
         validateState(createBody);
@@ -344,6 +346,7 @@ public class ProjectService extends StatefulService {
         if (!checkForBody(put)) {
             return;
         }
+        SecurityContextCache.invalidateOnCompletion(getHost(), put);
 
         if (put.hasPragmaDirective(Operation.PRAGMA_DIRECTIVE_POST_TO_PUT)) {
             logInfo("Task has already started. Ignoring converted PUT.");
@@ -421,6 +424,7 @@ public class ProjectService extends StatefulService {
             return;
         }
 
+        SecurityContextCache.invalidateOnCompletion(getHost(), patch);
         ProjectState projectPatch = patch.getBody(ProjectState.class);
         ProjectState currentState = getState(patch);
 
@@ -521,6 +525,7 @@ public class ProjectService extends StatefulService {
 
     @Override
     public void handleDelete(Operation delete) {
+        SecurityContextCache.invalidateOnCompletion(getHost(), delete);
         ProjectState state = getState(delete);
         if (state == null || state.documentSelfLink == null) {
             delete.complete();
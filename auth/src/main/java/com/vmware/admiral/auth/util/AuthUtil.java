@@ -41,6 +41,7 @@ import com.vmware.admiral.compute.RegistryHostConfigService;
 import com.vmware.admiral.compute.cluster.ClusterService;
 import com.vmware.admiral.compute.container.CompositeDescriptionCloneService;
 import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
+import com.vmware.admiral.compute.container.ContainerHostStatsService;
 import com.vmware.admiral.compute.container.ContainerLogService;
 import com.vmware.admiral.compute.container.ContainerStatsService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService;
@@ -618,6 +619,10 @@ public class AuthUtil {
                         buildUriWithWildcard(ContainerStatsService.SELF_LINK),
                         MatchType.WILDCARD, Occurance.SHOULD_OCCUR)
 
+                .addFieldClause(ServiceDocument.FIELD_NAME_SELF_LINK,
+                        buildUriWithWildcard(ContainerHostStatsService.FACTORY_LINK),
+                        MatchType.WILDCARD, Occurance.SHOULD_OCCUR)
+
                 // Give access to credentials, but restrict the system ones.
                 .addFieldClause(ServiceDocument.FIELD_NAME_SELF_LINK,
                         buildUriWithWildcard(AuthCredentialsService.FACTORY_LINK),
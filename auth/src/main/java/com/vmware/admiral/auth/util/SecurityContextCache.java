@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.auth.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import com.vmware.admiral.auth.idm.SecurityContext;
+import com.vmware.admiral.auth.project.ProjectService.ProjectState;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceSubscriptionState.ServiceSubscriber;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+import com.vmware.xenon.services.common.ResourceGroupService.ResourceGroupState;
+import com.vmware.xenon.services.common.RoleService.RoleState;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+import com.vmware.xenon.services.common.UserGroupService.UserGroupState;
+import com.vmware.xenon.services.common.UserService.UserState;
+
+/**
+ * Node local cache of the {@link SecurityContext}s of the principals. The whole cache is
+ * invalidated on any change of the user, user group, role, resource group and project states,
+ * which are observed with a continuous query, and by the Admiral services changing them before
+ * they complete the change. The entries also expire after a while, as changes of the principals
+ * in external identity providers are not observed.
+ * <p>
+ * The cache is used only once the continuous query is started on the node.
+ */
+public class SecurityContextCache {
+
+    private static final long EXPIRATION_SECONDS = Long.getLong(
+            "com.vmware.admiral.auth.security.context.cache.expiration.seconds",
+            TimeUnit.MINUTES.toSeconds(5));
+
+    private static final long MAX_SIZE = Long.getLong(
+            "com.vmware.admiral.auth.security.context.cache.max.size", 1000);
+
+    private static final Map<ServiceHost, SecurityContextCache> INSTANCES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Cache<String, SecurityContext> contexts = CacheBuilder.newBuilder()
+            .expireAfterWrite(EXPIRATION_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    /**
+     * Incremented on every invalidation, contexts loaded during an invalidation are not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicBoolean subscribing = new AtomicBoolean();
+    private volatile boolean subscribed;
+
+    private SecurityContextCache() {
+    }
+
+    public static SecurityContextCache getInstance(ServiceHost host) {
+        return INSTANCES.computeIfAbsent(host, (h) -> new SecurityContextCache());
+    }
+
+    /**
+     * Starts the continuous query invalidating the cache of the host of the given service, if not
+     * started yet.
+     */
+    public static void startInvalidation(Service service) {
+        getInstance(service.getHost()).subscribe(service);
+    }
+
+    /**
+     * Invalidates the cache now and when the given operation, changing some of the states the
+     * security contexts are built from, completes.
+     */
+    public static void invalidateOnCompletion(ServiceHost host, Operation op) {
+        SecurityContextCache cache = getInstance(host);
+        cache.invalidate();
+        op.nestCompletion((o, e) -> {
+            cache.invalidate();
+            if (e != null) {
+                o.fail(e, o.hasBody() ? o.getBodyRaw() : null);
+                return;
+            }
+            o.complete();
+        });
+    }
+
+    /**
+     * Returns a copy of the cached context of the given principal or loads it with the given
+     * loader.
+     */
+    public DeferredResult<SecurityContext> get(String principalId,
+            Supplier<DeferredResult<SecurityContext>> loader) {
+        if (!subscribed || principalId == null) {
+            return loader.get();
+        }
+
+        SecurityContext context = contexts.getIfPresent(principalId);
+        if (context != null) {
+            return DeferredResult.completed(Utils.clone(context));
+        }
+
+        long loadGeneration = generation.get();
+        return loader.get().thenApply((loaded) -> {
+            if (loaded != null && loadGeneration == generation.get()) {
+                contexts.put(principalId, Utils.clone(loaded));
+            }
+            return loaded;
+        });
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        contexts.invalidateAll();
+    }
+
+    private void subscribe(Service service) {
+        if (!subscribing.compareAndSet(false, true)) {
+            return;
+        }
+
+        ServiceHost host = service.getHost();
+        Query query = Query.Builder.create()
+                .addKindFieldClause(UserState.class, Occurance.SHOULD_OCCUR)
+                .addKindFieldClause(UserGroupState.class, Occurance.SHOULD_OCCUR)
+                .addKindFieldClause(RoleState.class, Occurance.SHOULD_OCCUR)
+                .addKindFieldClause(ResourceGroupState.class, Occurance.SHOULD_OCCUR)
+                .addKindFieldClause(ProjectState.class, Occurance.SHOULD_OCCUR)
+                .build();
+        QueryTask task = QueryTask.Builder.create()
+                .addOption(QueryOption.CONTINUOUS)
+                .setQuery(query)
+                .build();
+        task.documentSelfLink = "security-context-cache-" + UUID.randomUUID().toString();
+        task.documentExpirationTimeMicros = Long.MAX_VALUE;
+
+        Operation post = Operation.createPost(host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS)
+                .setBody(task)
+                .setReferer(service.getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        host.log(Level.WARNING, "Security context cache is disabled, failed to"
+                                + " start continuous query: %s", Utils.toString(e));
+                        return;
+                    }
+
+                    String taskUriPath = UriUtils.buildUriPath(
+                            ServiceUriPaths.CORE_LOCAL_QUERY_TASKS, task.documentSelfLink);
+                    Operation subscribePost = Operation.createPost(host, taskUriPath)
+                            .setReferer(service.getUri())
+                            .setCompletion((op, ex) -> {
+                                if (ex != null) {
+                                    host.log(Level.WARNING, "Security context cache is"
+                                            + " disabled, failed to subscribe to continuous"
+                                            + " query: %s", Utils.toString(ex));
+                                    return;
+                                }
+                                invalidate();
+                                subscribed = true;
+                            });
+                    service.setAuthorizationContext(subscribePost,
+                            service.getSystemAuthorizationContext());
+                    host.startSubscriptionService(subscribePost, this::onChange,
+                            ServiceSubscriber.create(false));
+                });
+        service.setAuthorizationContext(post, service.getSystemAuthorizationContext());
+        host.sendRequest(post);
+    }
+
+    private void onChange(Operation notification) {
+        notification.complete();
+        invalidate();
+    }
+}
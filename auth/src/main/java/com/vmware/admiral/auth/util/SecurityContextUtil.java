@@ -48,19 +48,21 @@ public class SecurityContextUtil {
     public static DeferredResult<SecurityContext> getSecurityContext(Service requestorService,
             Operation requestorOperation, String userId) {
 
-
-        return PrincipalUtil.getPrincipal(requestorService, requestorOperation, encode(userId))
-                .thenCompose(principal -> PrincipalRolesUtil.getAllRolesForPrincipal(
-                        requestorService, requestorOperation, principal))
-                .thenApply(SecurityContextUtil::fromPrincipalRolesToSecurityContext);
+        return SecurityContextCache.getInstance(requestorService.getHost()).get(userId,
+                () -> PrincipalUtil
+                        .getPrincipal(requestorService, requestorOperation, encode(userId))
+                        .thenCompose(principal -> PrincipalRolesUtil.getAllRolesForPrincipal(
+                                requestorService, requestorOperation, principal))
+                        .thenApply(SecurityContextUtil::fromPrincipalRolesToSecurityContext));
     }
 
     public static DeferredResult<SecurityContext> getSecurityContext(Service requestorService,
             Operation requestorOperation, Principal principal) {
 
-        return PrincipalRolesUtil
-                .getAllRolesForPrincipal(requestorService, requestorOperation, principal)
-                .thenApply(SecurityContextUtil::fromPrincipalRolesToSecurityContext);
+        return SecurityContextCache.getInstance(requestorService.getHost()).get(principal.id,
+                () -> PrincipalRolesUtil
+                        .getAllRolesForPrincipal(requestorService, requestorOperation, principal)
+                        .thenApply(SecurityContextUtil::fromPrincipalRolesToSecurityContext));
     }
 
     public static List<SecurityContext.ProjectEntry> buildProjectEntries(
@@ -12,6 +12,7 @@
 package com.vmware.admiral.auth.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -341,4 +342,49 @@ public class SecurityContextUtilTest extends AuthBaseTest {
         assertEquals(2, secondProjectEntry.roles.size());
         assertTrue(secondProjectEntry.roles.contains(AuthRole.PROJECT_MEMBER));
     }
+
+    @Test
+    public void testCachedSecurityContextRefreshedAfterProjectRolesChange() throws Throwable {
+        Operation testOperationByAdmin = createAuthorizedOperation(
+                host.assumeIdentity(buildUserServicePath(USER_EMAIL_ADMIN)));
+
+        ProjectState project = createProject("cached-project");
+        SecurityContext context = getSecurityContext(testOperationByAdmin);
+        assertFalse(context.projects.stream()
+                .anyMatch((p) -> project.documentSelfLink.equals(p.documentSelfLink)));
+
+        // the cached context is a copy, changing it does not change the cache
+        context.roles.clear();
+        assertTrue(getSecurityContext(testOperationByAdmin).roles
+                .contains(AuthRole.CLOUD_ADMIN));
+
+        ProjectRoles projectRoles = new ProjectRoles();
+        PrincipalRoleAssignment members = new PrincipalRoleAssignment();
+        members.add = Collections.singletonList(USER_EMAIL_ADMIN);
+        projectRoles.members = members;
+        doPatch(projectRoles, project.documentSelfLink);
+
+        context = getSecurityContext(testOperationByAdmin);
+        ProjectEntry entry = context.projects.stream()
+                .filter((p) -> project.documentSelfLink.equals(p.documentSelfLink))
+                .findFirst().orElse(null);
+        assertNotNull(entry);
+        assertTrue(entry.roles.contains(AuthRole.PROJECT_MEMBER));
+    }
+
+    private SecurityContext getSecurityContext(Operation op) {
+        final SecurityContext[] context = new SecurityContext[1];
+        TestContext ctx = testCreate(1);
+        SecurityContextUtil.getSecurityContext(privilegedTestService, op)
+                .whenComplete((securityContext, ex) -> {
+                    if (ex != null) {
+                        ctx.failIteration(ex);
+                        return;
+                    }
+                    context[0] = securityContext;
+                    ctx.completeIteration();
+                });
+        ctx.await();
+        return context[0];
+    }
 }
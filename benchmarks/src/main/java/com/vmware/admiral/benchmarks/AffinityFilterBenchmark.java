@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService.ElasticPlacementZoneConfigurationState;
+import com.vmware.admiral.compute.ElasticPlacementZoneService.ElasticPlacementZoneState;
+import com.vmware.admiral.compute.ElasticPlacementZoneService.PlacementPolicy;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.PortBinding;
+import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.allocation.filter.BinpackAffinityHostFilter;
+import com.vmware.admiral.request.allocation.filter.ExposedPortsHostFilter;
+import com.vmware.admiral.request.allocation.filter.HostSelectionFilter;
+import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
+import com.vmware.admiral.request.allocation.filter.PlacementSnapshot;
+import com.vmware.admiral.request.allocation.filter.SpreadAffinityHostFilter;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.ServiceHost;
+
+/**
+ * The host selection filters which go through all containers of the candidate hosts. The
+ * containers and the placement zone configuration are served from memory, so only the filtering
+ * itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AffinityFilterBenchmark {
+
+    private static final int CONTAINERS_PER_HOST = 20;
+    private static final String RESOURCE_POOL_LINK = "/resources/pools/benchmark";
+    private static final String EXPOSED_PORT = "8080";
+
+    @Param({ "10", "100", "1000" })
+    public int hostCount;
+
+    private final ServiceHost host = new ServiceHost() {
+    };
+
+    private Map<String, HostSelection> hostSelections;
+    private PlacementHostSelectionTaskState state;
+    private ContainerDescription description;
+    private PlacementSnapshot spreadSnapshot;
+    private PlacementSnapshot binpackSnapshot;
+
+    private static class InMemoryPlacementSnapshot extends PlacementSnapshot {
+        private final List<ContainerState> containers;
+        private final ElasticPlacementZoneConfigurationState epz;
+
+        InMemoryPlacementSnapshot(ServiceHost host, Map<String, HostSelection> hostSelections,
+                List<ContainerState> containers, PlacementPolicy policy) {
+            super(host, hostSelections.keySet());
+            this.containers = containers;
+            this.epz = new ElasticPlacementZoneConfigurationState();
+            this.epz.epzState = new ElasticPlacementZoneState();
+            this.epz.epzState.placementPolicy = policy;
+        }
+
+        @Override
+        public synchronized DeferredResult<List<ContainerState>> getHostContainers() {
+            return DeferredResult.completed(containers);
+        }
+
+        @Override
+        public synchronized DeferredResult<ElasticPlacementZoneConfigurationState> getPlacementZoneConfiguration(
+                String resourcePoolLink) {
+            return DeferredResult.completed(epz);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        hostSelections = new HashMap<>();
+        List<ContainerState> containers = new ArrayList<>();
+        for (int i = 0; i < hostCount; i++) {
+            HostSelection hostSelection = new HostSelection();
+            hostSelection.hostLink = "/resources/compute/docker-host-" + i;
+            hostSelection.resourcePoolLinks = Collections.singletonList(RESOURCE_POOL_LINK);
+            hostSelection.availableMemory = (4L + random.nextInt(60)) * 1024L * 1024L * 1024L;
+            hostSelections.put(hostSelection.hostLink, hostSelection);
+
+            for (int j = 0; j < CONTAINERS_PER_HOST; j++) {
+                ContainerState container = new ContainerState();
+                container.documentSelfLink = "/resources/containers/container-" + i + "-" + j;
+                container.parentLink = hostSelection.hostLink;
+                container.powerState = random.nextInt(10) == 0 ? PowerState.STOPPED
+                        : PowerState.RUNNING;
+                PortBinding portBinding = new PortBinding();
+                // a few of the hosts already expose the port of the description
+                portBinding.hostPort = random.nextInt(hostCount * CONTAINERS_PER_HOST / 4) == 0
+                        ? EXPOSED_PORT : String.valueOf(30000 + random.nextInt(10000));
+                portBinding.containerPort = "80";
+                container.ports = Collections.singletonList(portBinding);
+                containers.add(container);
+            }
+        }
+
+        state = new PlacementHostSelectionTaskState();
+        state.resourcePoolLinks = Collections.singletonList(RESOURCE_POOL_LINK);
+
+        description = new ContainerDescription();
+        description.name = "api";
+        PortBinding portBinding = new PortBinding();
+        portBinding.hostPort = EXPOSED_PORT;
+        portBinding.containerPort = EXPOSED_PORT;
+        description.portBindings = new PortBinding[] { portBinding };
+
+        spreadSnapshot = new InMemoryPlacementSnapshot(host, hostSelections, containers,
+                PlacementPolicy.SPREAD);
+        binpackSnapshot = new InMemoryPlacementSnapshot(host, hostSelections, containers,
+                PlacementPolicy.BINPACK);
+    }
+
+    @Benchmark
+    public void spreadFilter(Blackhole blackhole) {
+        filter(new SpreadAffinityHostFilter(host, description), spreadSnapshot, blackhole);
+    }
+
+    @Benchmark
+    public void binpackFilter(Blackhole blackhole) {
+        filter(new BinpackAffinityHostFilter(host, description), binpackSnapshot, blackhole);
+    }
+
+    @Benchmark
+    public void exposedPortsFilter(Blackhole blackhole) {
+        filter(new ExposedPortsHostFilter(host, description), spreadSnapshot, blackhole);
+    }
+
+    /**
+     * The filters update the resource count of the selections or remove hosts from the map, so
+     * each run gets its own copy of the selections.
+     */
+    private void filter(HostSelectionFilter<PlacementHostSelectionTaskState> filter,
+            PlacementSnapshot snapshot, Blackhole blackhole) {
+        Map<String, HostSelection> selections = new HashMap<>(hostSelections.size());
+        for (HostSelection hostSelection : hostSelections.values()) {
+            HostSelection copy = new HostSelection();
+            copy.hostLink = hostSelection.hostLink;
+            copy.resourcePoolLinks = hostSelection.resourcePoolLinks;
+            copy.availableMemory = hostSelection.availableMemory;
+            selections.put(copy.hostLink, copy);
+        }
+
+        filter.setPlacementSnapshot(snapshot);
+        filter.filter(state, selections, (filtered, e) -> {
+            blackhole.consume(filtered);
+            blackhole.consume(e);
+        });
+    }
+}
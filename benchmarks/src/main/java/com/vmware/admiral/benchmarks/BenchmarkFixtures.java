@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Scanner;
+
+/**
+ * Loads the recorded payloads and templates the benchmarks run against, from the fixtures
+ * folder of the benchmarks jar.
+ */
+public class BenchmarkFixtures {
+
+    private static final String FIXTURES_PATH = "/fixtures/";
+
+    private BenchmarkFixtures() {
+    }
+
+    public static String read(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream(FIXTURES_PATH + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Fixture not found: " + name);
+            }
+            try (Scanner scanner = new Scanner(in, "UTF-8")) {
+                return scanner.useDelimiter("\\A").next();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read fixture: " + name, e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compares the JSON results of two benchmark runs and fails if any of the benchmarks regressed
+ * by more than the given percentage.
+ *
+ * <pre>
+ * BenchmarkResultComparator &lt;baseline.json&gt; &lt;result.json&gt; [threshold percent]
+ * </pre>
+ *
+ * Benchmarks are matched by name and parameters. Benchmarks missing from either run are
+ * reported but do not fail the comparison.
+ */
+public class BenchmarkResultComparator {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private static class Score {
+        private final String mode;
+        private final double value;
+        private final String unit;
+
+        private Score(String mode, double value, String unit) {
+            this.mode = mode;
+            this.value = value;
+            this.unit = unit;
+        }
+
+        /**
+         * The change compared to the baseline in percent, positive if the benchmark got slower.
+         */
+        private double regressionPercent(Score baseline) {
+            double change = (value - baseline.value) / baseline.value * 100;
+            // higher is better for the throughput mode, lower for the time based modes
+            return "thrpt".equals(mode) ? -change : change;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkResultComparator <baseline.json> <result.json>"
+                    + " [threshold percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2])
+                : DEFAULT_THRESHOLD_PERCENT;
+
+        Map<String, Score> baseline = readScores(args[0]);
+        Map<String, Score> result = readScores(args[1]);
+
+        int regressions = 0;
+        for (Entry<String, Score> e : result.entrySet()) {
+            Score score = e.getValue();
+            Score baselineScore = baseline.get(e.getKey());
+            if (baselineScore == null || baselineScore.value == 0) {
+                System.out.println(String.format("%-100s %12.3f %-8s (new)", e.getKey(),
+                        score.value, score.unit));
+                continue;
+            }
+
+            double regression = score.regressionPercent(baselineScore);
+            boolean regressed = regression > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.println(String.format("%-100s %12.3f -> %12.3f %-8s %+7.1f%%%s",
+                    e.getKey(), baselineScore.value, score.value, score.unit, regression,
+                    regressed ? " REGRESSION" : ""));
+        }
+
+        for (String name : baseline.keySet()) {
+            if (!result.containsKey(name)) {
+                System.out.println(String.format("%-100s (missing)", name));
+            }
+        }
+
+        if (regressions > 0) {
+            System.err.println(String.format("%d benchmark(s) regressed by more than %.1f%%",
+                    regressions, threshold));
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> readScores(String path) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            for (JsonElement element : new JsonParser().parse(reader).getAsJsonArray()) {
+                JsonObject benchmark = element.getAsJsonObject();
+                JsonObject metric = benchmark.getAsJsonObject("primaryMetric");
+                Score score = new Score(benchmark.get("mode").getAsString(),
+                        metric.get("score").getAsDouble(),
+                        metric.get("scoreUnit").getAsString());
+                scores.put(getName(benchmark), score);
+            }
+        }
+        return scores;
+    }
+
+    private static String getName(JsonObject benchmark) {
+        StringBuilder name = new StringBuilder(benchmark.get("benchmark").getAsString());
+        JsonObject params = benchmark.getAsJsonObject("params");
+        if (params != null) {
+            Map<String, String> sorted = new TreeMap<>();
+            params.entrySet().forEach(p -> sorted.put(p.getKey(), p.getValue().getAsString()));
+            name.append(sorted);
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.BindingEvaluator;
+import com.vmware.admiral.compute.content.CompositeTemplate;
+import com.vmware.admiral.compute.content.CompositeTemplateUtil;
+import com.vmware.admiral.host.HostInitComputeServicesConfig;
+
+/**
+ * Evaluation of the design time bindings of a template, done when a template is imported or
+ * requested.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingEvaluatorBenchmark {
+
+    @Param({ "composite-bindings.yaml", "composite-bindings-chain.yaml" })
+    public String templateFixture;
+
+    private String templateYaml;
+    private CompositeTemplate template;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        HostInitComputeServicesConfig.initCompositeComponentRegistry();
+        templateYaml = BenchmarkFixtures.read(templateFixture);
+    }
+
+    /**
+     * The evaluation sets the bound values on the components, so the chained bindings would be
+     * resolved from the already evaluated values on the next run. Every invocation gets a fresh
+     * template instead, the evaluation takes long enough for the setup not to skew the result.
+     */
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws IOException {
+        template = CompositeTemplateUtil.deserializeCompositeTemplate(templateYaml);
+    }
+
+    @Benchmark
+    public CompositeTemplate evaluateBindings() {
+        BindingEvaluator.evaluateBindings(template);
+        return template;
+    }
+}
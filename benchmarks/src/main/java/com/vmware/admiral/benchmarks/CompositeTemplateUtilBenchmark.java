@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.content.CompositeTemplate;
+import com.vmware.admiral.compute.content.CompositeTemplateUtil;
+import com.vmware.admiral.compute.content.compose.DockerCompose;
+import com.vmware.admiral.host.HostInitComputeServicesConfig;
+
+/**
+ * YAML (de)serialization of templates and compose files, done on every template import and
+ * export.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeTemplateUtilBenchmark {
+
+    @Param({ "composite-voting-app.yaml", "composite-bindings.yaml",
+            "composite-bindings-chain.yaml" })
+    public String templateFixture;
+
+    private String templateYaml;
+    private CompositeTemplate template;
+    private String composeYaml;
+    private DockerCompose compose;
+
+    @Setup
+    public void setUp() throws IOException {
+        HostInitComputeServicesConfig.initCompositeComponentRegistry();
+
+        templateYaml = BenchmarkFixtures.read(templateFixture);
+        template = CompositeTemplateUtil.deserializeCompositeTemplate(templateYaml);
+
+        composeYaml = BenchmarkFixtures.read("docker-compose-complex.yaml");
+        compose = CompositeTemplateUtil.deserializeDockerCompose(composeYaml);
+    }
+
+    @Benchmark
+    public CompositeTemplate deserializeCompositeTemplate() throws IOException {
+        return CompositeTemplateUtil.deserializeCompositeTemplate(templateYaml);
+    }
+
+    @Benchmark
+    public String serializeCompositeTemplate() throws IOException {
+        return CompositeTemplateUtil.serializeCompositeTemplate(template);
+    }
+
+    @Benchmark
+    public DockerCompose deserializeDockerCompose() throws IOException {
+        return CompositeTemplateUtil.deserializeDockerCompose(composeYaml);
+    }
+
+    @Benchmark
+    public String serializeDockerCompose() throws IOException {
+        return CompositeTemplateUtil.serializeDockerCompose(compose);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.admiral.compute.container.maintenance.ContainerStatsEvaluator;
+
+/**
+ * Parsing of the stats reported by the docker adapter, done for every container on every stats
+ * collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerStatsEvaluatorBenchmark {
+
+    private String statsJson;
+
+    @Setup
+    public void setUp() {
+        statsJson = BenchmarkFixtures.read("container-stats.json");
+    }
+
+    @Benchmark
+    public ContainerStats calculateStatsValues() {
+        return ContainerStatsEvaluator.calculateStatsValues(statsJson);
+    }
+}
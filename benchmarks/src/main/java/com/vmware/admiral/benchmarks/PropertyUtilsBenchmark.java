@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.common.util.PropertyUtils;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.PortBinding;
+
+/**
+ * Reflective merge of documents, done on the PATCH of most of the admiral states.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyUtilsBenchmark {
+
+    private ContainerDescription patch;
+
+    @Setup
+    public void setUp() {
+        patch = new ContainerDescription();
+        patch.name = "api";
+        patch.image = "registry.example.com/app/api:1.4.2";
+        patch.memoryLimit = 1024L * 1024L * 1024L;
+        patch.restartPolicy = "always";
+        patch.env = new String[] { "DB_HOST=db:3306", "CACHE_HOST=cache:6379" };
+        patch.command = new String[] { "/bin/sh", "-c", "/opt/app/run.sh" };
+
+        PortBinding portBinding = new PortBinding();
+        portBinding.hostPort = "8080";
+        portBinding.containerPort = "8080";
+        portBinding.protocol = "tcp";
+        patch.portBindings = new PortBinding[] { portBinding };
+
+        patch.customProperties = new HashMap<>();
+        patch.customProperties.put("__composition_context_id", "9c3a1e2f");
+        patch.customProperties.put("__deployment_policy", "default");
+    }
+
+    @Benchmark
+    public ContainerDescription mergeObjects() {
+        ContainerDescription state = new ContainerDescription();
+        state.name = "api";
+        state.image = "registry.example.com/app/api:1.4.1";
+        PropertyUtils.mergeObjects(state, patch, PropertyUtils.SHALLOW_MERGE_STRATEGY);
+        return state;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.xenon.services.rdbms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.container.ContainerFactoryService;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.ServiceDocumentDescription;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryFilter;
+import com.vmware.xenon.services.common.QueryFilter.QueryFilterException;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryRuntimeContext;
+
+/**
+ * Matching of an updated document against the active continuous queries, with the candidates
+ * of the query index compared to evaluating the filter of every active query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostgresContinuousQueryIndexBenchmark {
+
+    /**
+     * Every tenth subscription watches all containers of a kind, the rest watch the containers
+     * of a single host.
+     */
+    @Param({ "10", "100", "1000" })
+    public int subscriptions;
+
+    private final PostgresContinuousQueryIndex index = new PostgresContinuousQueryIndex();
+    private final List<QueryTask> activeQueries = new ArrayList<>();
+
+    private ServiceDocumentDescription description;
+    private ContainerState document;
+
+    @Setup
+    public void setUp() throws QueryFilterException {
+        for (int i = 0; i < subscriptions; i++) {
+            Query.Builder builder = Query.Builder.create()
+                    .addKindFieldClause(i % 10 == 0 ? ComputeState.class : ContainerState.class);
+            if (i % 10 != 0) {
+                builder.addFieldClause(ContainerState.FIELD_NAME_PARENT_LINK,
+                        ComputeService.FACTORY_LINK + "/docker-host-" + i);
+            }
+            Query query = builder.build();
+
+            QueryTask task = QueryTask.Builder.create()
+                    .addOption(QueryTask.QuerySpecification.QueryOption.CONTINUOUS)
+                    .setQuery(query)
+                    .build();
+            task.documentSelfLink = "/core/query-tasks/continuous-" + i;
+            task.querySpec.context = new QueryRuntimeContext();
+            task.querySpec.context.filter = QueryFilter.create(query);
+
+            index.add(task);
+            activeQueries.add(task);
+        }
+
+        description = ServiceDocumentDescription.Builder.create()
+                .buildDescription(ContainerState.class);
+
+        document = new ContainerState();
+        document.documentSelfLink = ContainerFactoryService.SELF_LINK + "/api-mcm-582";
+        document.documentKind = Utils.buildKind(ContainerState.class);
+        document.parentLink = ComputeService.FACTORY_LINK + "/docker-host-" + (subscriptions - 1);
+        document.powerState = PowerState.RUNNING;
+    }
+
+    @Benchmark
+    public int indexedMatch() {
+        int matches = 0;
+        for (QueryTask task : index.getCandidates(document)) {
+            if (task.querySpec.context.filter.evaluate(document, description)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int linearMatch() {
+        int matches = 0;
+        for (QueryTask task : activeQueries) {
+            if (task.querySpec.context.filter.evaluate(document, description)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.xenon.services.rdbms;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of fetching one page of a large seeded table at increasing page depths, with the OFFSET
+ * paging used before and the keyset condition of {@link PostgresQueryConverter}.
+ *
+ * Needs a running Postgres and is excluded from the default benchmark run, see the
+ * <code>postgres-benchmarks</code> profile. The connection is configured with the
+ * <code>benchmarks.postgres.url</code>, <code>benchmarks.postgres.user</code> and
+ * <code>benchmarks.postgres.password</code> system properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostgresKeysetPaginationBenchmark {
+
+    private static final String TABLE_NAME = "benchmark_keyset_pagination";
+    private static final int PAGE_SIZE = 100;
+
+    private static final List<String> SORT_FIELDS = Arrays.asList(
+            "documentupdatetimemicros DESC", "documentselflink DESC");
+    private static final String ORDER_BY =
+            " ORDER BY documentupdatetimemicros DESC, documentselflink DESC";
+
+    @Param({ "1000000" })
+    public int rows;
+
+    /** Number of the fetched page, counted from 0. */
+    @Param({ "1", "100", "5000" })
+    public int pageDepth;
+
+    private Connection connection;
+    private PreparedStatement offsetPage;
+    private PreparedStatement keysetPage;
+    private List<Object> keysetParams;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmarks.postgres.url",
+                        "jdbc:postgresql://localhost:5432/postgres"),
+                System.getProperty("benchmarks.postgres.user", "postgres"),
+                System.getProperty("benchmarks.postgres.password", "postgres"));
+        seed();
+
+        offsetPage = connection.prepareStatement("SELECT documentselflink, data FROM "
+                + TABLE_NAME + ORDER_BY + " LIMIT " + PAGE_SIZE + " OFFSET ?");
+        offsetPage.setInt(1, pageDepth * PAGE_SIZE);
+
+        // the cursor of the requested page is the sort key of the last row of the page before
+        Object[] after = new Object[2];
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT documentupdatetimemicros, documentselflink FROM " + TABLE_NAME
+                        + ORDER_BY + " LIMIT 1 OFFSET ?")) {
+            stmt.setInt(1, pageDepth * PAGE_SIZE - 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("Page " + pageDepth + " is past the end of "
+                            + rows + " rows");
+                }
+                after[0] = rs.getLong(1);
+                after[1] = rs.getString(2);
+            }
+        }
+        keysetParams = new ArrayList<>();
+        keysetPage = connection.prepareStatement("SELECT documentselflink, data FROM "
+                + TABLE_NAME + " WHERE "
+                + PostgresQueryConverter.buildKeysetClause(SORT_FIELDS, after, keysetParams)
+                + ORDER_BY + " LIMIT " + PAGE_SIZE);
+        for (int i = 0; i < keysetParams.size(); i++) {
+            keysetPage.setObject(i + 1, keysetParams.get(i));
+        }
+    }
+
+    /**
+     * Creates the table with the index used by the sort, unless it was seeded with the same
+     * number of rows by an earlier run.
+     */
+    private void seed() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+                    + " (documentselflink text PRIMARY KEY,"
+                    + " documentupdatetimemicros bigint NOT NULL, data jsonb)");
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM " + TABLE_NAME)) {
+                rs.next();
+                if (rs.getLong(1) == rows) {
+                    return;
+                }
+            }
+            stmt.execute("TRUNCATE " + TABLE_NAME);
+            // a few rows share an update time, so the keyset needs the second sort field
+            stmt.execute("INSERT INTO " + TABLE_NAME
+                    + " SELECT '/resources/containers/container-' || lpad(i::text, 10, '0'),"
+                    + " 1500000000000000 + (i / 4),"
+                    + " jsonb_build_object('name', 'container-' || i, 'powerState', 'RUNNING')"
+                    + " FROM generate_series(1, " + rows + ") AS i");
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_sort_idx ON "
+                    + TABLE_NAME + " (documentupdatetimemicros DESC, documentselflink DESC)");
+            stmt.execute("ANALYZE " + TABLE_NAME);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public int offsetPage() throws SQLException {
+        return readPage(offsetPage);
+    }
+
+    @Benchmark
+    public int keysetPage() throws SQLException {
+        return readPage(keysetPage);
+    }
+
+    private static int readPage(PreparedStatement stmt) throws SQLException {
+        int count = 0;
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                rs.getString(1);
+                rs.getString(2);
+                count++;
+            }
+        }
+        if (count != PAGE_SIZE) {
+            throw new IllegalStateException("Expected a full page, got " + count + " rows");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.xenon.services.rdbms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vmware.admiral.compute.container.ContainerFactoryService;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentDescription;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryRuntimeContext;
+import com.vmware.xenon.services.rdbms.PostgresSchemaManager.TableDescription;
+
+/**
+ * Conversion of the queries issued by placement, data collection and the tenant scoped UI
+ * listings to SQL, and generation of the keyset condition of the next page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostgresQueryConverterBenchmark {
+
+    private static final int HOST_COUNT = 50;
+
+    private TableDescription containerTable;
+    private TableDescription computeTable;
+
+    private Query placementQuery;
+    private Query customPropertiesQuery;
+    private Query tenantQuery;
+
+    private List<String> keysetSortFields;
+    private Object[] keysetValues;
+
+    @Setup
+    public void setUp() {
+        PostgresSchemaManager schemaManager = new PostgresSchemaManager(new ServiceHost() {
+        });
+        schemaManager.addFactory(ContainerFactoryService.SELF_LINK, ContainerState.class,
+                ServiceDocumentDescription.Builder.create()
+                        .buildDescription(ContainerState.class));
+        schemaManager.addFactory(ComputeService.FACTORY_LINK, ComputeState.class,
+                ServiceDocumentDescription.Builder.create()
+                        .buildDescription(ComputeState.class));
+        containerTable = schemaManager
+                .getTableDescriptionForFactoryLink(ContainerFactoryService.SELF_LINK);
+        computeTable = schemaManager.getTableDescriptionForFactoryLink(ComputeService.FACTORY_LINK);
+
+        // containers of the candidate hosts, as queried by the host selection filters
+        List<String> hostLinks = new ArrayList<>();
+        for (int i = 0; i < HOST_COUNT; i++) {
+            hostLinks.add(ComputeService.FACTORY_LINK + "/docker-host-" + i);
+        }
+        placementQuery = Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .addInClause(ContainerState.FIELD_NAME_PARENT_LINK, hostLinks)
+                .addFieldClause(ContainerState.FIELD_NAME_POWER_STATE, PowerState.RUNNING)
+                .build();
+
+        // docker hosts of a placement zone, as queried by the data collection
+        customPropertiesQuery = Query.Builder.create()
+                .addKindFieldClause(ComputeState.class)
+                .addFieldClause(ComputeState.FIELD_NAME_RESOURCE_POOL_LINK,
+                        "/resources/pools/default-placement-zone")
+                .addCompositeFieldClause(ComputeState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        "__containerHostType", "DOCKER")
+                .addCompositeFieldClause(ComputeState.FIELD_NAME_CUSTOM_PROPERTIES,
+                        "__computeContainerHost", "true", Occurance.SHOULD_OCCUR)
+                .build();
+
+        // containers of a project, as listed by the UI
+        tenantQuery = Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .addInCollectionItemClause(ServiceDocument.FIELD_NAME_OWNER,
+                        Arrays.asList("/users/admin@example.com"), Occurance.SHOULD_OCCUR)
+                .addInCollectionItemClause(ContainerState.FIELD_NAME_TENANT_LINKS,
+                        Arrays.asList("/tenants/default", "/projects/default-project"))
+                .addFieldClause(ContainerState.FIELD_NAME_NAMES, "api*",
+                        MatchType.WILDCARD)
+                .build();
+
+        keysetSortFields = Arrays.asList("documentupdatetimemicros DESC",
+                "documentselflink DESC");
+        keysetValues = new Object[] { Utils.getSystemNowMicrosUtc(),
+                ContainerFactoryService.SELF_LINK + "/api-mcm-582" };
+    }
+
+    // the conversion reduces the query in place, so every run converts a copy as the document
+    // index service does
+
+    @Benchmark
+    public String convertPlacementQuery() {
+        return PostgresQueryConverter.convert(Utils.clone(placementQuery),
+                new QueryRuntimeContext(), containerTable, new ArrayList<>());
+    }
+
+    @Benchmark
+    public String convertCustomPropertiesQuery() {
+        return PostgresQueryConverter.convert(Utils.clone(customPropertiesQuery),
+                new QueryRuntimeContext(), computeTable, new ArrayList<>());
+    }
+
+    @Benchmark
+    public String convertTenantQuery() {
+        return PostgresQueryConverter.convert(Utils.clone(tenantQuery),
+                new QueryRuntimeContext(), containerTable, new ArrayList<>());
+    }
+
+    @Benchmark
+    public String buildKeysetClause() {
+        return PostgresQueryConverter.buildKeysetClause(keysetSortFields, keysetValues,
+                new ArrayList<>());
+    }
+}
@@ -720,7 +720,7 @@ public class AdmiralAdapterService extends
             AdmiralAdapterTaskState state) {
         // Create allocation closure
         ContainerAllocationTaskState allocationTask = prepareContainerAllocationTask(containerDesc,
-                1, state.groupResourcePlacementLink);
+                1, state.groupResourcePlacementLink, state.serviceTaskCallback);
 
         HostSelectionFilter.HostSelection hostSelection = new HostSelectionFilter.HostSelection();
         hostSelection.resourceCount = 1;
@@ -778,8 +778,10 @@ public class AdmiralAdapterService extends
 
     private ContainerAllocationTaskState prepareContainerAllocationTask(
             ContainerDescription containerDesc,
-            long resourceCount, String placemenStateLink) {
-        String taskLink = buildTaskLink(containerDesc);
+            long resourceCount, String placemenStateLink, ServiceTaskCallback callback) {
+        // the allocated container is reported to the caller of the adapter, the closure by default
+        String taskLink = callback == null || callback.isEmpty() ? buildTaskLink(containerDesc)
+                : callback.serviceSelfLink;
 
         ContainerAllocationTaskState allocationTask = new ContainerAllocationTaskState();
         allocationTask.resourceDescriptionLink = containerDesc.documentSelfLink;
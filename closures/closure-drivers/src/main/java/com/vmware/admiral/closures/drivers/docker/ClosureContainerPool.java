@@ -0,0 +1,519 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.drivers.docker;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmware.admiral.closures.drivers.ContainerConfiguration;
+import com.vmware.admiral.closures.drivers.ImageConfiguration;
+import com.vmware.admiral.closures.services.closure.Closure;
+import com.vmware.admiral.closures.util.ClosureProps;
+import com.vmware.admiral.closures.util.ClosureUtils;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Pool of started runner containers of a closure runtime, waiting to execute closures. Instead
+ * of the task URI and the token of a closure, a runner container of the pool is started with the
+ * URI of its slot in the {@link ClosureRunnerPoolService}, which it polls for the task URI and
+ * the token of the next closure to execute. The closure is then executed the same way as by a
+ * container started for it.
+ * <p>
+ * The slots are kept in memory of the node which started the containers. Their URIs contain the
+ * id of the node, so the {@link ClosureRunnerPoolService} of the other nodes can forward the polls
+ * and the provisioning callbacks to it. The polls are authenticated with a random secret of the
+ * slot, given to the container in its environment.
+ * <p>
+ * The pool keeps up to {@link ClosureProps#RUNNER_POOL_SIZE} idle containers per container
+ * configuration the closures were executed with. The containers are removed once they executed
+ * {@link ClosureProps#RUNNER_POOL_MAX_EXECUTIONS} closures, once a closure fails and once they
+ * are older than {@link ClosureProps#RUNNER_POOL_TTL_SECONDS}. Closures with dependencies or
+ * source URLs are executed in containers of images built for them and are never pooled.
+ */
+public class ClosureContainerPool {
+
+    private static final long TTL_MICROS = TimeUnit.SECONDS
+            .toMicros(ClosureProps.RUNNER_POOL_TTL_SECONDS);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final Map<String, ClosureContainerPool> POOLS_BY_SLOT =
+            new ConcurrentHashMap<>();
+
+    private static final Map<ServiceHost, List<ClosureContainerPool>> POOLS_BY_HOST =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Usage statistics of the pool of a runtime image.
+     */
+    public static class RunnerPoolStats {
+        public String image;
+        public long hitCount;
+        public long missCount;
+        public double hitRate;
+        public long coldStartCount;
+        public long averageColdStartMillis;
+        public long lastColdStartMillis;
+        public int startingCount;
+        public int idleCount;
+        public int busyCount;
+    }
+
+    /**
+     * A slot reserved for a new runner container.
+     */
+    public static class SlotReservation {
+        /** Id of the slot, the container has to be named with {@link #getRunnerName(String)}. */
+        public String slotId;
+        /** Link of the slot in the {@link ClosureRunnerPoolService}, polled by the container. */
+        public String slotLink;
+        /** Secret sent by the container with its polls. */
+        public String secret;
+    }
+
+    private enum SlotState {
+        STARTING, IDLE, BUSY
+    }
+
+    private static class RunnerSlot {
+        private final String id;
+        private final String poolKey;
+        private final String secret;
+        private final long createdTimeMicros = Utils.getSystemNowMicrosUtc();
+        private SlotState state = SlotState.STARTING;
+        private boolean polled;
+        private String containerLink;
+        private int executions;
+        private String assignment;
+        private Operation poll;
+
+        private RunnerSlot(String id, String poolKey, String secret) {
+            this.id = id;
+            this.poolKey = poolKey;
+            this.secret = secret;
+        }
+
+        private boolean isExpired() {
+            return createdTimeMicros + TTL_MICROS < Utils.getSystemNowMicrosUtc();
+        }
+    }
+
+    private final ServiceHost host;
+    private final String image;
+    private final int size;
+    private final int maxExecutions;
+
+    // guarded by this
+    private final Map<String, RunnerSlot> slots = new HashMap<>();
+    private final Map<String, Deque<RunnerSlot>> idleSlots = new HashMap<>();
+
+    private final Queue<String> retiredContainerLinks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coldStartCount = new AtomicLong();
+    private final AtomicLong coldStartMicros = new AtomicLong();
+    private final AtomicLong lastColdStartMicros = new AtomicLong();
+
+    public ClosureContainerPool(ServiceHost host, String image) {
+        this(host, image, ClosureProps.RUNNER_POOL_SIZE, ClosureProps.RUNNER_POOL_MAX_EXECUTIONS);
+    }
+
+    public ClosureContainerPool(ServiceHost host, String image, int size, int maxExecutions) {
+        this.host = host;
+        this.image = image;
+        this.size = size;
+        this.maxExecutions = maxExecutions;
+        synchronized (POOLS_BY_HOST) {
+            POOLS_BY_HOST.computeIfAbsent(host, (h) -> new ArrayList<>()).add(this);
+        }
+    }
+
+    /**
+     * Whether closures executed with the given configuration can use containers of the pool.
+     */
+    public static boolean isPoolable(ContainerConfiguration configuration) {
+        return ClosureProps.RUNNER_POOL_SIZE > 0
+                && ClosureUtils.isEmpty(configuration.dependencies)
+                && ClosureUtils.isEmpty(configuration.sourceURL);
+    }
+
+    /**
+     * Returns the key of the containers which can execute the given closure. The containers are
+     * shared only by closures with the same image, resources, placement and tenants.
+     */
+    public static String getPoolKey(Closure closure, ImageConfiguration imageConfig,
+            ContainerConfiguration configuration) {
+        String placement = closure.customProperties == null ? null
+                : closure.customProperties.get(ClosureProps.CUSTOM_PROPERTY_PLACEMENT);
+        String tenants = closure.tenantLinks == null ? ""
+                : String.join(",", new TreeSet<>(closure.tenantLinks));
+        return ClosureUtils.calculateHash(new String[] {
+                imageConfig.imageName, imageConfig.imageNameVersion,
+                String.valueOf(configuration.memoryMB), String.valueOf(configuration.cpuShares),
+                String.valueOf(configuration.logConfiguration), String.valueOf(placement),
+                tenants });
+    }
+
+    public static List<RunnerPoolStats> getStats(ServiceHost host) {
+        List<ClosureContainerPool> pools = POOLS_BY_HOST.get(host);
+        List<RunnerPoolStats> stats = new ArrayList<>();
+        if (pools != null) {
+            synchronized (POOLS_BY_HOST) {
+                pools.forEach((pool) -> stats.add(pool.getStats()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Handles a poll of the runner container of the given slot of this node for a closure to
+     * execute. The poll is rejected if the secret does not match the one of the slot.
+     */
+    public static void poll(String slotId, String secret, Operation poll) {
+        ClosureContainerPool pool = POOLS_BY_SLOT.get(slotId);
+        if (pool == null) {
+            retire(poll);
+            return;
+        }
+        pool.handlePoll(slotId, secret, poll);
+    }
+
+    /**
+     * Handles the result of the provisioning of the runner container of the given slot of this
+     * node. Links the slot to the provisioned container or drops it if the provisioning failed.
+     */
+    public static void provisioned(String slotId, TaskStage stage, Set<String> resourceLinks) {
+        ClosureContainerPool pool = POOLS_BY_SLOT.get(slotId);
+        if (pool == null) {
+            return;
+        }
+        pool.handleProvisioned(slotId, stage, resourceLinks);
+    }
+
+    /**
+     * Assigns the closure with the given task URI and token to an idle container with the given
+     * key. Returns the link of the container or <code>null</code> if there is no idle container.
+     */
+    public String assign(String poolKey, URI taskUri, String token) {
+        // the runner reads the task URI and the token from the first two lines
+        String assignment = taskUri + "\n" + (token == null ? "" : token) + "\n";
+        RunnerSlot slot;
+        Operation poll;
+        synchronized (this) {
+            slot = takeIdleSlot(poolKey);
+            if (slot == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            hitCount.incrementAndGet();
+            slot.state = SlotState.BUSY;
+            slot.executions++;
+            poll = slot.poll;
+            slot.poll = null;
+            if (poll == null) {
+                slot.assignment = assignment;
+            }
+        }
+        if (poll != null) {
+            respond(poll, assignment);
+        }
+        return slot.containerLink;
+    }
+
+    /**
+     * Reserves a slot for a new container with the given key, if the pool is not full. The
+     * container has to be started with the name returned by {@link #getRunnerName(String)}, the
+     * URI and the secret of the slot in its environment and the link of the slot as callback of
+     * its provisioning.
+     */
+    public synchronized SlotReservation reserveSlot(String poolKey) {
+        int available = 0;
+        for (RunnerSlot slot : new ArrayList<>(slots.values())) {
+            if (!poolKey.equals(slot.poolKey) || slot.state == SlotState.BUSY) {
+                continue;
+            }
+            if (slot.state == SlotState.STARTING && slot.isExpired()) {
+                // the container was never started
+                removeSlot(slot);
+                continue;
+            }
+            available++;
+        }
+        if (available >= size) {
+            return null;
+        }
+
+        RunnerSlot slot = new RunnerSlot(UUID.randomUUID().toString(), poolKey,
+                new BigInteger(160, RANDOM).toString(32));
+        slots.put(slot.id, slot);
+        POOLS_BY_SLOT.put(slot.id, this);
+
+        SlotReservation reservation = new SlotReservation();
+        reservation.slotId = slot.id;
+        reservation.slotLink = getSlotLink(host.getId(), slot.id);
+        reservation.secret = slot.secret;
+        return reservation;
+    }
+
+    public static String getSlotLink(String nodeId, String slotId) {
+        return UriUtils.buildUriPath(ClosureRunnerPoolService.SELF_LINK, nodeId, slotId);
+    }
+
+    public static String getRunnerName(String slotId) {
+        return slotId + "_runner";
+    }
+
+    /**
+     * Releases the given container after the given closure was executed. Returns whether the
+     * container is kept in the pool to execute the next closure or has to be removed.
+     */
+    public boolean release(String containerLink, Closure closure) {
+        Operation poll = null;
+        synchronized (this) {
+            RunnerSlot slot = null;
+            for (RunnerSlot s : slots.values()) {
+                if (containerLink.equals(s.containerLink)) {
+                    slot = s;
+                    break;
+                }
+            }
+            if (slot == null) {
+                return false;
+            }
+
+            if (slot.state != SlotState.BUSY || closure.state != TaskStage.FINISHED
+                    || slot.executions >= maxExecutions
+                    || slot.isExpired()) {
+                poll = removeSlot(slot);
+            } else {
+                slot.state = SlotState.IDLE;
+                slot.assignment = null;
+                idleSlots.computeIfAbsent(slot.poolKey, (k) -> new ArrayDeque<>()).addLast(slot);
+                return true;
+            }
+        }
+        if (poll != null) {
+            retire(poll);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the links of the containers removed from the pool since the last call, to be
+     * removed by the driver.
+     */
+    public List<String> drainRetiredContainers() {
+        List<String> links = new ArrayList<>();
+        String link;
+        while ((link = retiredContainerLinks.poll()) != null) {
+            links.add(link);
+        }
+        return links;
+    }
+
+    public RunnerPoolStats getStats() {
+        RunnerPoolStats stats = new RunnerPoolStats();
+        stats.image = image;
+        stats.hitCount = hitCount.get();
+        stats.missCount = missCount.get();
+        long total = stats.hitCount + stats.missCount;
+        stats.hitRate = total == 0 ? 0 : (double) stats.hitCount / total;
+        stats.coldStartCount = coldStartCount.get();
+        stats.averageColdStartMillis = stats.coldStartCount == 0 ? 0
+                : TimeUnit.MICROSECONDS.toMillis(coldStartMicros.get() / stats.coldStartCount);
+        stats.lastColdStartMillis = TimeUnit.MICROSECONDS.toMillis(lastColdStartMicros.get());
+        synchronized (this) {
+            for (RunnerSlot slot : slots.values()) {
+                if (slot.state == SlotState.STARTING) {
+                    stats.startingCount++;
+                } else if (slot.state == SlotState.IDLE) {
+                    stats.idleCount++;
+                } else {
+                    stats.busyCount++;
+                }
+            }
+        }
+        return stats;
+    }
+
+    private void handlePoll(String slotId, String secret, Operation poll) {
+        String assignment = null;
+        Operation previousPoll = null;
+        synchronized (this) {
+            RunnerSlot slot = slots.get(slotId);
+            if (slot == null) {
+                retire(poll);
+                return;
+            }
+            if (!isSecretValid(slot, secret)) {
+                poll.fail(Operation.STATUS_CODE_FORBIDDEN);
+                return;
+            }
+
+            if (!slot.polled) {
+                long startMicros = Utils.getSystemNowMicrosUtc() - slot.createdTimeMicros;
+                coldStartCount.incrementAndGet();
+                coldStartMicros.addAndGet(startMicros);
+                lastColdStartMicros.set(startMicros);
+                slot.polled = true;
+                makeAvailable(slot);
+            } else if (slot.state == SlotState.IDLE && slot.isExpired()) {
+                removeSlot(slot);
+                retire(poll);
+                return;
+            }
+
+            if (slot.assignment != null) {
+                assignment = slot.assignment;
+                slot.assignment = null;
+            } else {
+                previousPoll = slot.poll;
+                slot.poll = poll;
+            }
+        }
+
+        if (previousPoll != null) {
+            previousPoll.setStatusCode(Operation.STATUS_CODE_ACCEPTED).complete();
+        }
+        if (assignment != null) {
+            respond(poll, assignment);
+            return;
+        }
+
+        host.schedule(() -> expirePoll(slotId, poll),
+                ClosureProps.RUNNER_POOL_POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void handleProvisioned(String slotId, TaskStage stage, Set<String> resourceLinks) {
+        Operation poll = null;
+        synchronized (this) {
+            RunnerSlot slot = slots.get(slotId);
+            if (stage != TaskStage.FINISHED) {
+                if (slot == null || slot.containerLink != null) {
+                    return;
+                }
+                // the container was not provisioned, the reservation of the slot is released
+                poll = removeSlot(slot);
+            } else if (resourceLinks == null || resourceLinks.isEmpty()) {
+                // the callback of the adapter, the container is not provisioned yet
+                return;
+            } else if (slot == null) {
+                retiredContainerLinks.addAll(resourceLinks);
+                return;
+            } else {
+                slot.containerLink = resourceLinks.iterator().next();
+                makeAvailable(slot);
+            }
+        }
+        if (poll != null) {
+            retire(poll);
+        }
+    }
+
+    /**
+     * Makes the slot available to the closures once its container is provisioned and running.
+     */
+    // guarded by this
+    private void makeAvailable(RunnerSlot slot) {
+        if (slot.state != SlotState.STARTING || !slot.polled || slot.containerLink == null) {
+            return;
+        }
+        slot.state = SlotState.IDLE;
+        idleSlots.computeIfAbsent(slot.poolKey, (k) -> new ArrayDeque<>()).addLast(slot);
+    }
+
+    private static boolean isSecretValid(RunnerSlot slot, String secret) {
+        return secret != null && MessageDigest.isEqual(
+                slot.secret.getBytes(StandardCharsets.UTF_8),
+                secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void expirePoll(String slotId, Operation poll) {
+        synchronized (this) {
+            RunnerSlot slot = slots.get(slotId);
+            if (slot == null || slot.poll != poll) {
+                return;
+            }
+            slot.poll = null;
+        }
+        poll.setStatusCode(Operation.STATUS_CODE_ACCEPTED).complete();
+    }
+
+    // guarded by this
+    private RunnerSlot takeIdleSlot(String poolKey) {
+        Deque<RunnerSlot> idle = idleSlots.get(poolKey);
+        RunnerSlot slot;
+        while (idle != null && (slot = idle.pollFirst()) != null) {
+            if (!slot.isExpired()) {
+                return slot;
+            }
+            Operation poll = removeSlot(slot);
+            if (poll != null) {
+                retire(poll);
+            }
+        }
+        return null;
+    }
+
+    // guarded by this
+    private Operation removeSlot(RunnerSlot slot) {
+        slots.remove(slot.id);
+        POOLS_BY_SLOT.remove(slot.id);
+        Deque<RunnerSlot> idle = idleSlots.get(slot.poolKey);
+        if (idle != null) {
+            idle.remove(slot);
+        }
+        if (slot.containerLink != null) {
+            retiredContainerLinks.add(slot.containerLink);
+        }
+        Operation poll = slot.poll;
+        slot.poll = null;
+        return poll;
+    }
+
+    private static void respond(Operation poll, String assignment) {
+        poll.setContentType(Operation.MEDIA_TYPE_TEXT_PLAIN)
+                .setBody(assignment)
+                .complete();
+    }
+
+    /**
+     * Tells the runner container to exit.
+     */
+    private static void retire(Operation poll) {
+        poll.setStatusCode(Operation.STATUS_CODE_NOT_FOUND).complete();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.drivers.docker;
+
+import java.net.URI;
+import java.util.Set;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.NodeGroupService.NodeGroupState;
+import com.vmware.xenon.services.common.NodeState;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+
+/**
+ * Polled by the runner containers of the {@link ClosureContainerPool}s for the closures to
+ * execute, on the link of their slot: <code>/resources/closure-runner-pool/{nodeId}/{slotId}
+ * </code>. Returns the task URI and the token of the closure in two lines, 202 if there is no
+ * closure to execute yet and 404 if the container has to exit. The runner containers have no
+ * token, the polls are authenticated with the secret of the slot in the
+ * {@link #RUNNER_SECRET_HEADER} header instead.
+ * <p>
+ * A PATCH on the link of a slot is the callback of the provisioning of its container.
+ * <p>
+ * The slots are kept in memory of the node which reserved them. The requests for slots of
+ * another node are forwarded to it.
+ * <p>
+ * A GET on the service itself returns the statistics of the pools of the node.
+ */
+public class ClosureRunnerPoolService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.CLOSURES_RUNNER_POOL;
+
+    public static final String RUNNER_SECRET_HEADER = "x-closure-runner-secret";
+
+    /**
+     * Callback of the provisioning of a runner container. The resource links are set by the
+     * container allocation task.
+     */
+    public static class RunnerProvisioningResponse extends ServiceTaskCallbackResponse {
+        public Set<String> resourceLinks;
+    }
+
+    public ClosureRunnerPoolService() {
+        super.toggleOption(ServiceOption.URI_NAMESPACE_OWNER, true);
+    }
+
+    @Override
+    public void authorizeRequest(Operation op) {
+        if (op.getAction() == Action.GET && getSlotPath(op) != null) {
+            // the runner containers have no token, the polls are checked against the secret of
+            // the slot
+            op.complete();
+            return;
+        }
+        super.authorizeRequest(op);
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        String[] slotPath = getSlotPath(get);
+        if (slotPath == null) {
+            get.setBody(ClosureContainerPool.getStats(getHost())).complete();
+            return;
+        }
+        if (forwardToNode(slotPath[0], get)) {
+            return;
+        }
+        ClosureContainerPool.poll(slotPath[1], get.getRequestHeader(RUNNER_SECRET_HEADER), get);
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        String[] slotPath = getSlotPath(patch);
+        if (slotPath == null || !patch.hasBody()) {
+            patch.fail(new IllegalArgumentException("slot link and body are required"));
+            return;
+        }
+        if (forwardToNode(slotPath[0], patch)) {
+            return;
+        }
+        RunnerProvisioningResponse body = patch.getBody(RunnerProvisioningResponse.class);
+        ClosureContainerPool.provisioned(slotPath[1],
+                body.taskInfo == null ? null : body.taskInfo.stage, body.resourceLinks);
+        patch.complete();
+    }
+
+    /**
+     * Forwards the request for a slot of another node to that node. Returns whether the request
+     * was forwarded.
+     */
+    private boolean forwardToNode(String nodeId, Operation op) {
+        if (getHost().getId().equals(nodeId)) {
+            return false;
+        }
+        if (op.isForwarded()) {
+            // the node does not know the slot either
+            op.fail(Operation.STATUS_CODE_NOT_FOUND);
+            return true;
+        }
+
+        sendRequest(Operation.createGet(this, ServiceUriPaths.DEFAULT_NODE_GROUP)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        op.fail(e);
+                        return;
+                    }
+                    NodeState node = o.getBody(NodeGroupState.class).nodes.get(nodeId);
+                    if (node == null || NodeState.isUnAvailable(node)) {
+                        logWarning("Node %s of runner pool slot %s is not available", nodeId,
+                                op.getUri().getPath());
+                        op.fail(Operation.STATUS_CODE_NOT_FOUND);
+                        return;
+                    }
+                    forward(node.groupReference, op);
+                }));
+        return true;
+    }
+
+    private void forward(URI nodeUri, Operation op) {
+        URI uri = UriUtils.buildUri(nodeUri.getScheme(), nodeUri.getHost(), nodeUri.getPort(),
+                op.getUri().getPath(), op.getUri().getQuery());
+        Operation forwarded = Operation.createGet(uri)
+                .setAction(op.getAction())
+                .setExpiration(op.getExpirationMicrosUtc())
+                .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_FORWARDED)
+                .setCompletion((o, e) -> {
+                    if (o.hasBody()) {
+                        op.setContentType(o.getContentType()).setBodyNoCloning(o.getBodyRaw());
+                    }
+                    op.setStatusCode(o.getStatusCode());
+                    if (e != null) {
+                        logFine("Forwarded %s to %s failed: %s", op.getUri().getPath(), uri,
+                                Utils.toString(e));
+                        op.fail(e);
+                        return;
+                    }
+                    op.complete();
+                });
+        if (op.hasBody()) {
+            forwarded.setBody(op.getBodyRaw());
+        }
+        String secret = op.getRequestHeader(RUNNER_SECRET_HEADER);
+        if (secret != null) {
+            forwarded.addRequestHeader(RUNNER_SECRET_HEADER, secret);
+        } else {
+            forwarded.setAuthorizationContext(getSystemAuthorizationContext());
+        }
+        sendRequest(forwarded);
+    }
+
+    /**
+     * Returns the node id and the slot id of a request for a slot or <code>null</code> for a
+     * request to the service itself.
+     */
+    private static String[] getSlotPath(Operation op) {
+        String path = op.getUri().getPath();
+        if (path == null || !path.startsWith(SELF_LINK + UriUtils.URI_PATH_CHAR)) {
+            return null;
+        }
+        String[] slotPath = path.substring(SELF_LINK.length() + 1)
+                .split(UriUtils.URI_PATH_CHAR);
+        if (slotPath.length != 2 || slotPath[0].isEmpty() || slotPath[1].isEmpty()) {
+            return null;
+        }
+        return slotPath;
+    }
+}
@@ -15,6 +15,7 @@ import static com.vmware.admiral.service.common.SslTrustCertificateService.SSL_T
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -29,6 +30,7 @@ import com.vmware.admiral.closures.drivers.ContainerConfiguration;
 import com.vmware.admiral.closures.drivers.DriverRegistry;
 import com.vmware.admiral.closures.drivers.ExecutionDriver;
 import com.vmware.admiral.closures.drivers.ImageConfiguration;
+import com.vmware.admiral.closures.drivers.docker.ClosureContainerPool.SlotReservation;
 import com.vmware.admiral.closures.services.closure.Closure;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescription;
 import com.vmware.admiral.closures.util.ClosureProps;
@@ -39,6 +41,7 @@ import com.vmware.admiral.common.util.ServiceDocumentQuery.ServiceDocumentQueryE
 import com.vmware.admiral.common.util.SubscriptionManager;
 import com.vmware.admiral.service.common.ConfigurationService;
 import com.vmware.admiral.service.common.SslTrustCertificateService.SslTrustCertificateState;
+import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.UriUtils;
@@ -68,6 +71,8 @@ public abstract class DockerDriverBase implements ExecutionDriver {
 
     private AtomicReference<String> trustCertificates;
 
+    private final ClosureContainerPool runnerPool;
+
     public abstract String getDockerImage();
 
     public DockerDriverBase(ServiceHost serviceHost, DriverRegistry driverRegistry,
@@ -77,6 +82,7 @@ public abstract class DockerDriverBase implements ExecutionDriver {
         this.dockerClientFactory = dockerClientFactory;
 
         this.trustCertificates = new AtomicReference<>();
+        this.runnerPool = new ClosureContainerPool(serviceHost, getDockerImage());
 
         this.subscriptionManager = new SubscriptionManager<>(serviceHost,
                 serviceHost.getId() + getDockerImage(), SSL_TRUST_CONFIG_SUBSCRIBE_FOR_LINK,
@@ -148,10 +154,6 @@ public abstract class DockerDriverBase implements ExecutionDriver {
         configuration.sourceURL = closureDesc.sourceURL;
         configuration.dependencies = closureDesc.dependencies;
 
-        List<String> vars = populateEnvs(closure, token);
-        configuration.envVars = vars.toArray(new String[vars.size()]);
-        logInfo("Creating closure with envs: %s", vars.get(0));
-
         String containerImage = getDockerImage();
 
         ImageConfiguration imageConfig = new ImageConfiguration();
@@ -164,11 +166,102 @@ public abstract class DockerDriverBase implements ExecutionDriver {
         imageConfig.registry = getConfigProperty(
                 ClosureProps.CLOSURE_RUNTIME_IMAGE_REGISTRY + closureDesc.runtime);
 
+        removeRetiredRunners(dockerClient);
+        if (ClosureContainerPool.isPoolable(configuration)) {
+            String poolKey = ClosureContainerPool.getPoolKey(closure, imageConfig, configuration);
+            String containerLink = runnerPool.assign(poolKey,
+                    prepareCallbackUri(closure.documentSelfLink), token);
+            startRunners(dockerClient, closure, poolKey, imageConfig, configuration);
+            if (containerLink != null) {
+                logInfo("Closure %s assigned to pooled container: %s",
+                        closure.documentSelfLink, containerLink);
+                setExecutionContainer(closure, containerLink, errorHandler);
+                return;
+            }
+        }
+
+        List<String> vars = populateEnvs(closure, token);
+        configuration.envVars = vars.toArray(new String[vars.size()]);
+        logInfo("Creating closure with envs: %s", vars.get(0));
+
         logInfo("Creating container with name: %s image: %s", containerName, containerImage);
         dockerClient.createAndStartContainer(closure, imageConfig, configuration, errorHandler);
         logInfo("Code execution request sent.");
     }
 
+    /**
+     * Starts runner containers for the pool with the given key, until it is full.
+     */
+    private void startRunners(ClosureDockerClient dockerClient, Closure closure, String poolKey,
+            ImageConfiguration imageConfig, ContainerConfiguration configuration) {
+        SlotReservation slot;
+        while ((slot = runnerPool.reserveSlot(poolKey)) != null) {
+            ContainerConfiguration runnerConfiguration = new ContainerConfiguration(
+                    ClosureContainerPool.getRunnerName(slot.slotId));
+            runnerConfiguration.memoryMB = configuration.memoryMB;
+            runnerConfiguration.cpuShares = configuration.cpuShares;
+            runnerConfiguration.logConfiguration = configuration.logConfiguration;
+
+            List<String> vars = populateRunnerEnvs(slot);
+            runnerConfiguration.envVars = vars.toArray(new String[vars.size()]);
+
+            // the provisioning of the container calls back the slot with the container link
+            Closure runnerClosure = new Closure();
+            runnerClosure.documentSelfLink = slot.slotLink;
+            runnerClosure.tenantLinks = closure.tenantLinks;
+            if (closure.customProperties != null && closure.customProperties
+                    .containsKey(ClosureProps.CUSTOM_PROPERTY_PLACEMENT)) {
+                runnerClosure.customProperties = new HashMap<>();
+                runnerClosure.customProperties.put(ClosureProps.CUSTOM_PROPERTY_PLACEMENT,
+                        closure.customProperties.get(ClosureProps.CUSTOM_PROPERTY_PLACEMENT));
+            }
+
+            logInfo("Starting pooled container with name: %s image: %s",
+                    runnerConfiguration.name, imageConfig.imageName);
+            String runnerSlotId = slot.slotId;
+            dockerClient.createAndStartContainer(runnerClosure, imageConfig, runnerConfiguration,
+                    (error) -> {
+                        if (error != null) {
+                            logWarning("Unable to start pooled container %s: %s", runnerSlotId,
+                                    Utils.toString(error));
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Sets the pooled container executing the closure, the same way the provisioning of a
+     * container for the closure does.
+     */
+    private void setExecutionContainer(Closure closure, String containerLink,
+            Consumer<Throwable> errorHandler) {
+        Closure patch = new Closure();
+        patch.resourceLinks = new HashSet<>();
+        patch.resourceLinks.add(containerLink);
+        serviceHost.sendRequest(Operation.createPatch(serviceHost, closure.documentSelfLink)
+                .setBody(patch)
+                .setReferer(serviceHost.getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logWarning("Unable to set the container of closure %s: %s",
+                                closure.documentSelfLink, Utils.toString(e));
+                    }
+                }));
+        errorHandler.accept(null);
+    }
+
+    private void removeRetiredRunners(ClosureDockerClient dockerClient) {
+        for (String containerLink : runnerPool.drainRetiredContainers()) {
+            logInfo("Removing pooled container: %s", containerLink);
+            dockerClient.removeContainer(containerLink, (error) -> {
+                if (error != null) {
+                    logWarning("Unable to remove pooled container %s: %s", containerLink,
+                            Utils.toString(error));
+                }
+            });
+        }
+    }
+
     private static String getConfigProperty(String propertyName) {
         return ConfigurationUtil.getProperty(propertyName);
     }
@@ -188,8 +281,13 @@ public abstract class DockerDriverBase implements ExecutionDriver {
             return;
         }
 
+        removeRetiredRunners(dockerClient);
         logInfo("Killing container with for closure: %s", closure.documentSelfLink);
         for (String containerLink : closure.resourceLinks) {
+            if (runnerPool.release(containerLink, closure)) {
+                logInfo("Container %s returned to the pool", containerLink);
+                continue;
+            }
             try {
                 logInfo("Removing container with Id: %s", containerLink);
                 dockerClient.removeContainer(containerLink, errorHandler);
@@ -257,7 +355,7 @@ public abstract class DockerDriverBase implements ExecutionDriver {
     private List<String> populateEnvs(Closure closure, String token) {
         List<String> vars = new ArrayList<>();
 
-        URI callbackUri = prepareCallbackUri(closure);
+        URI callbackUri = prepareCallbackUri(closure.documentSelfLink);
         vars.add(ClosureProps.ENV_PROP_TASK_URI + "=" + callbackUri);
         logInfo("Setting TASK_URI %s for closure: %s", callbackUri, closure.descriptionLink);
         if (!ClosureUtils.isEmpty(token)) {
@@ -271,19 +369,33 @@ public abstract class DockerDriverBase implements ExecutionDriver {
         return vars;
     }
 
-    private URI prepareCallbackUri(Closure closure) {
+    private List<String> populateRunnerEnvs(SlotReservation slot) {
+        List<String> vars = new ArrayList<>();
+
+        URI poolUri = prepareCallbackUri(slot.slotLink);
+        vars.add(ClosureProps.ENV_PROP_POOL_URI + "=" + poolUri);
+        vars.add(ClosureProps.ENV_PROP_POOL_SECRET + "=" + slot.secret);
+        vars.add(ClosureProps.ENV_PROP_POOL_MAX_EXECUTIONS + "="
+                + ClosureProps.RUNNER_POOL_MAX_EXECUTIONS);
+        String certs = trustCertificates.get();
+
+        certs = certs == null ? "" : certs;
+        vars.add(ClosureProps.ENV_TRUST_CERTS + "=" + certs);
+
+        return vars;
+    }
+
+    private URI prepareCallbackUri(String link) {
         URI callbackUri = null;
         if (CLOSURE_SERVICE_CALLBACK_URI != null) {
-            callbackUri = buildConfiguredCallbackUri(CLOSURE_SERVICE_CALLBACK_URI,
-                    closure.documentSelfLink);
+            callbackUri = buildConfiguredCallbackUri(CLOSURE_SERVICE_CALLBACK_URI, link);
         }
 
         if (callbackUri == null) {
             // fallback to publicUri as defined in xenon
-            callbackUri = UriUtils.buildPublicUri(getServiceHost(), closure.documentSelfLink);
+            callbackUri = UriUtils.buildPublicUri(getServiceHost(), link);
         }
-        logFine("Computed closure callback URI: %s, closure: %s", callbackUri, closure
-                .documentSelfLink);
+        logFine("Computed callback URI: %s, link: %s", callbackUri, link);
         return callbackUri;
     }
 
@@ -307,6 +419,10 @@ public abstract class DockerDriverBase implements ExecutionDriver {
         Utils.log(getClass(), getClass().getSimpleName(), Level.INFO, message, values);
     }
 
+    private void logWarning(String message, Object... values) {
+        Utils.log(getClass(), getClass().getSimpleName(), Level.WARNING, message, values);
+    }
+
     private void logFine(String message, Object... values) {
         Utils.log(getClass(), getClass().getSimpleName(), Level.FINE, message, values);
     }
@@ -16,13 +16,22 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -35,25 +44,89 @@ import com.vmware.admiral.closures.drivers.DriverConstants;
 import com.vmware.admiral.closures.services.closure.Closure;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescription;
 import com.vmware.admiral.closures.services.closuredescription.ResourceConstraints;
+import com.vmware.admiral.closures.util.ClosureUtils;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.Utils;
 
 /**
  * Execution driver which uses 'Nashorn' implementation
+ * <p>
+ * The engines are pooled and each closure is executed with its own bindings, so the closures do
+ * not see each other's variables. Each engine caches the scripts it compiled by closure
+ * description and source.
  */
 public class EmbeddedNashornJSDriver extends LocalDriverBase {
 
+    private static final int ENGINE_POOL_SIZE = Integer.getInteger(
+            "com.vmware.admiral.closures.nashorn.engine.pool.size", 10);
+
+    private static final long SCRIPT_CACHE_SIZE = Long.getLong(
+            "com.vmware.admiral.closures.nashorn.script.cache.size", 100);
+
     private final ServiceHost serviceHost;
 
+    private final ScriptEngineManager engineManager = new ScriptEngineManager();
+    private final BlockingQueue<PooledEngine> engines = new LinkedBlockingQueue<>(
+            ENGINE_POOL_SIZE);
+
+    private final AtomicLong engineCreatedCount = new AtomicLong();
+    private final AtomicLong scriptCacheHitCount = new AtomicLong();
+    private final AtomicLong scriptCacheMissCount = new AtomicLong();
+
+    /**
+     * Statistics of the closures executed by the driver, its engines and their compiled scripts.
+     */
+    public static class NashornExecutionStats extends LocalExecutionStats {
+        public long engineCreatedCount;
+        public int idleEngineCount;
+        public long scriptCacheHitCount;
+        public long scriptCacheMissCount;
+        public double scriptCacheHitRate;
+        /** Number of compiled scripts cached by the idle engines. */
+        public long cachedScriptCount;
+    }
+
+    /**
+     * Compiled scripts can be evaluated only by the engine they were compiled with, and the
+     * Nashorn engines are not thread safe, so each engine is used by one closure at a time.
+     */
+    private static class PooledEngine {
+        private final ScriptEngine engine;
+        private final Cache<String, CompiledScript> scripts = CacheBuilder.newBuilder()
+                .maximumSize(SCRIPT_CACHE_SIZE)
+                .build();
+
+        private PooledEngine(ScriptEngine engine) {
+            this.engine = engine;
+        }
+    }
+
     public interface JsDateWrap {
         long getTime();
     }
 
     public EmbeddedNashornJSDriver(ServiceHost serviceHost) {
+        super(serviceHost);
         this.serviceHost = serviceHost;
     }
 
+    @Override
+    public NashornExecutionStats getExecutionStats() {
+        NashornExecutionStats stats = new NashornExecutionStats();
+        fillExecutionStats(stats);
+        stats.engineCreatedCount = engineCreatedCount.get();
+        stats.scriptCacheHitCount = scriptCacheHitCount.get();
+        stats.scriptCacheMissCount = scriptCacheMissCount.get();
+        long lookups = stats.scriptCacheHitCount + stats.scriptCacheMissCount;
+        stats.scriptCacheHitRate = lookups == 0 ? 0 : (double) stats.scriptCacheHitCount / lookups;
+        for (PooledEngine pooledEngine : engines) {
+            stats.idleEngineCount++;
+            stats.cachedScriptCount += pooledEngine.scripts.size();
+        }
+        return stats;
+    }
+
     @Override
     public ServiceHost getServiceHost() {
         return serviceHost;
@@ -78,34 +151,50 @@ public class EmbeddedNashornJSDriver extends LocalDriverBase {
         Closure closureResult = new Closure();
 
         Map<String, JsonElement> outputs = new HashMap<>();
-        ScriptEngineManager manager = new ScriptEngineManager();
-        ScriptEngine engine = manager.getEngineByName(DriverConstants.RUNTIME_NASHORN);
-        if (engine == null) {
-            throw new IllegalStateException("Unable to execute script with runtime: "
-                    + taskDef.runtime);
-        }
-
+        PooledEngine pooledEngine = borrowEngine(taskDef);
+        ScriptEngine engine = pooledEngine.engine;
         try {
-            setBindings(closure, engine);
-            executeScript(closure, taskDef, engine);
-            closureResult.state = TaskStage.FINISHED;
-
-        } catch (ScriptException e) {
-            Utils.logWarning("Exception thrown while executing script: %s", e.getMessage());
-            closureResult.state = TaskStage.FAILED;
-            closureResult.errorMsg = e.getMessage();
-        }
+            ScriptContext context = new SimpleScriptContext();
+            try {
+                setBindings(closure, engine, context);
+                executeScript(closure, taskDef, pooledEngine, context);
+                closureResult.state = TaskStage.FINISHED;
+
+            } catch (ScriptException e) {
+                Utils.logWarning("Exception thrown while executing script: %s", e.getMessage());
+                closureResult.state = TaskStage.FAILED;
+                closureResult.errorMsg = e.getMessage();
+            }
 
-        // populate outputs
-        populateOutputs(engine, taskDef.outputNames, outputs);
+            // populate outputs
+            populateOutputs(engine, context, taskDef.outputNames, outputs);
+        } finally {
+            engines.offer(pooledEngine);
+        }
         closureResult.outputs = outputs;
         return closureResult;
 
     }
 
-    private void populateOutputs(ScriptEngine engine, List<String> outputNames, Map<String, JsonElement> outputs) {
+    private PooledEngine borrowEngine(ClosureDescription taskDef) {
+        PooledEngine pooledEngine = engines.poll();
+        if (pooledEngine != null) {
+            return pooledEngine;
+        }
+
+        ScriptEngine engine = engineManager.getEngineByName(DriverConstants.RUNTIME_NASHORN);
+        if (engine == null) {
+            throw new IllegalStateException("Unable to execute script with runtime: "
+                    + taskDef.runtime);
+        }
+        engineCreatedCount.incrementAndGet();
+        return new PooledEngine(engine);
+    }
+
+    private void populateOutputs(ScriptEngine engine, ScriptContext context,
+            List<String> outputNames, Map<String, JsonElement> outputs) {
         if (outputNames != null) {
-            final Bindings outBindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+            final Bindings outBindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
             for (String name : outputNames) {
                 Object val = outBindings.get(name);
                 logInfo("Output parameter: name: %s value: %s", name, val);
@@ -115,33 +204,51 @@ public class EmbeddedNashornJSDriver extends LocalDriverBase {
         }
     }
 
-    private void executeScript(Closure closureRequest, ClosureDescription taskDef, ScriptEngine engine)
-            throws ScriptException {
+    private void executeScript(Closure closureRequest, ClosureDescription taskDef,
+            PooledEngine pooledEngine, ScriptContext context) throws ScriptException {
         String scriptSource = taskDef.source;
         ResourceConstraints resConstraints = taskDef.resources;
         logInfo("Using resource constraints: cpuShares = %s, ram = %s, timeout = %s",
                 resConstraints.cpuShares, resConstraints.ramMB, resConstraints.timeoutSeconds);
         logInfo("Executing script of %s:\n%s", closureRequest.documentSelfLink, scriptSource);
 
-        engine.eval(scriptSource);
+        getCompiledScript(taskDef, pooledEngine).eval(context);
     }
 
-    private void setBindings(Closure closureRequest, ScriptEngine engine) throws ScriptException {
+    private CompiledScript getCompiledScript(ClosureDescription taskDef,
+            PooledEngine pooledEngine) throws ScriptException {
+        String scriptSource = taskDef.source == null ? "" : taskDef.source;
+        String key = taskDef.documentSelfLink + ":"
+                + ClosureUtils.calculateHash(new String[] { scriptSource });
+        CompiledScript script = pooledEngine.scripts.getIfPresent(key);
+        if (script == null) {
+            scriptCacheMissCount.incrementAndGet();
+            script = ((Compilable) pooledEngine.engine).compile(scriptSource);
+            pooledEngine.scripts.put(key, script);
+        } else {
+            scriptCacheHitCount.incrementAndGet();
+        }
+        return script;
+    }
+
+    private void setBindings(Closure closureRequest, ScriptEngine engine, ScriptContext context)
+            throws ScriptException {
+        // new bindings get their own global object, isolated from the other closures
         final Bindings inBindings = engine.createBindings();
+        context.setBindings(inBindings, ScriptContext.ENGINE_SCOPE);
 
         inBindings.put("result", null);
         Map<String, JsonElement> inputs = closureRequest.inputs;
         JsonObject element = new JsonObject();
         if (inputs != null) {
             inputs.forEach(element::add);
-            inBindings.put("inputs", convertValue(engine, element));
+            inBindings.put("inputs", convertValue(engine, element, context));
         }
-
-        engine.setBindings(inBindings, ScriptContext.ENGINE_SCOPE);
     }
 
-    private Object convertValue(ScriptEngine engine, JsonElement var) throws ScriptException {
-        return engine.eval("JSON.parse('" + var.toString() + "')", engine.getContext());
+    private Object convertValue(ScriptEngine engine, JsonElement var, ScriptContext context)
+            throws ScriptException {
+        return engine.eval("JSON.parse('" + var.toString() + "')", context);
     }
 
     @SuppressWarnings({ "restriction", "unchecked" })
@@ -13,11 +13,17 @@ package com.vmware.admiral.closures.drivers.nashorn;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
@@ -26,6 +32,7 @@ import com.vmware.admiral.closures.services.closure.Closure;
 import com.vmware.admiral.closures.services.closure.ClosureFactoryService;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescription;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
@@ -35,7 +42,50 @@ public abstract class LocalDriverBase implements ExecutionDriver {
     private static final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(10,
             new ThreadPoolExecutor.AbortPolicy());
 
-    private final Map<String, Future<?>> submittedTasks = new HashMap<>();
+    private static final Map<ServiceHost, List<LocalDriverBase>> DRIVERS_BY_HOST =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, Future<?>> submittedTasks = new ConcurrentHashMap<>();
+
+    private final AtomicLong executionCount = new AtomicLong();
+    private final AtomicLong executionNanos = new AtomicLong();
+    private final AtomicLong maxExecutionNanos = new AtomicLong();
+    private final AtomicLong queuedNanos = new AtomicLong();
+
+    /**
+     * Statistics of the closures executed by a local driver. The queue depth and the active
+     * count are shared by all local drivers.
+     */
+    public static class LocalExecutionStats {
+        public String driver;
+        public int queueDepth;
+        public int activeCount;
+        public long executionCount;
+        public long averageExecutionMillis;
+        public long maxExecutionMillis;
+        public long averageQueuedMillis;
+    }
+
+    /**
+     * Registers the driver, so its statistics are returned by the
+     * {@link LocalDriverStatsService} of the given host.
+     */
+    protected LocalDriverBase(ServiceHost serviceHost) {
+        synchronized (DRIVERS_BY_HOST) {
+            DRIVERS_BY_HOST.computeIfAbsent(serviceHost, (h) -> new ArrayList<>()).add(this);
+        }
+    }
+
+    public static List<LocalExecutionStats> getStats(ServiceHost host) {
+        List<LocalExecutionStats> stats = new ArrayList<>();
+        synchronized (DRIVERS_BY_HOST) {
+            List<LocalDriverBase> drivers = DRIVERS_BY_HOST.get(host);
+            if (drivers != null) {
+                drivers.forEach((driver) -> stats.add(driver.getExecutionStats()));
+            }
+        }
+        return stats;
+    }
 
     @Override
     public void executeClosure(Closure closureRequest, ClosureDescription taskDef, String token, Consumer<Throwable>
@@ -102,17 +152,57 @@ public abstract class LocalDriverBase implements ExecutionDriver {
                 }));
     }
 
+    public LocalExecutionStats getExecutionStats() {
+        LocalExecutionStats stats = new LocalExecutionStats();
+        fillExecutionStats(stats);
+        return stats;
+    }
+
+    protected void fillExecutionStats(LocalExecutionStats stats) {
+        stats.driver = getClass().getSimpleName();
+        stats.queueDepth = executor.getQueue().size();
+        stats.activeCount = executor.getActiveCount();
+        stats.executionCount = executionCount.get();
+        if (stats.executionCount > 0) {
+            stats.averageExecutionMillis = TimeUnit.NANOSECONDS
+                    .toMillis(executionNanos.get() / stats.executionCount);
+            stats.averageQueuedMillis = TimeUnit.NANOSECONDS
+                    .toMillis(queuedNanos.get() / stats.executionCount);
+        }
+        stats.maxExecutionMillis = TimeUnit.NANOSECONDS.toMillis(maxExecutionNanos.get());
+    }
+
     private void executeLocal(Closure closureRequest, ClosureDescription taskDef) {
         String taskSelfLink = buildSelfLink(closureRequest);
+        long submittedNanos = System.nanoTime();
         Future<?> futureTask = executor.submit(() -> {
-            Closure result = doExecute(closureRequest, taskDef);
-            result.inputs = closureRequest.inputs;
-            result.closureSemaphore = closureRequest.closureSemaphore;
-            result.documentSelfLink = taskSelfLink;
-            sendSelfPatch(result);
+            long startNanos = System.nanoTime();
+            try {
+                Closure result = doExecute(closureRequest, taskDef);
+                result.inputs = closureRequest.inputs;
+                result.closureSemaphore = closureRequest.closureSemaphore;
+                result.documentSelfLink = taskSelfLink;
+                sendSelfPatch(result);
+            } finally {
+                recordExecution(startNanos - submittedNanos, System.nanoTime() - startNanos);
+                submittedTasks.remove(taskSelfLink);
+            }
         });
 
         submittedTasks.put(taskSelfLink, futureTask);
+        if (futureTask.isDone()) {
+            submittedTasks.remove(taskSelfLink);
+        }
+    }
+
+    private void recordExecution(long queued, long execution) {
+        executionCount.incrementAndGet();
+        queuedNanos.addAndGet(queued);
+        executionNanos.addAndGet(execution);
+        maxExecutionNanos.accumulateAndGet(execution, Math::max);
+        logFine("Closure executed in %d ms after %d ms in queue, %d closures queued",
+                TimeUnit.NANOSECONDS.toMillis(execution), TimeUnit.NANOSECONDS.toMillis(queued),
+                executor.getQueue().size());
     }
 
     private String buildSelfLink(Closure closureRequest) {
@@ -145,6 +235,10 @@ public abstract class LocalDriverBase implements ExecutionDriver {
         Utils.log(getClass(), getClass().getSimpleName(), Level.INFO, message, values);
     }
 
+    protected void logFine(String message, Object... values) {
+        Utils.log(getClass(), getClass().getSimpleName(), Level.FINE, message, values);
+    }
+
     protected void logError(String message, Object... values) {
         Utils.log(getClass(), getClass().getSimpleName(), Level.SEVERE, message, values);
     }
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.drivers.nashorn;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+
+/**
+ * Returns the statistics of the local execution drivers of the node: the executed closures, the
+ * executor queue and, for the Nashorn driver, the engine pool and the compiled script cache.
+ */
+public class LocalDriverStatsService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.CLOSURES_LOCAL_DRIVERS;
+
+    @Override
+    public void handleGet(Operation get) {
+        get.setBody(LocalDriverBase.getStats(getHost())).complete();
+    }
+}
@@ -3,12 +3,49 @@
 [[ ! -z "${TRUST_CERTS}" ]] && echo "${TRUST_CERTS}" | base64 --decode > trusted.gz
 [[ ! -z "${TRUST_CERTS}" ]] && gzip -dc < trusted.gz > trust.pem
 
-node ./appmain.js
+run_closure() {
+    node ./appmain.js
 
-#PATCH the closure with the response saved by node in file response.json
-curl -sL --request PATCH -H "Content-Type: application/json" \
-                -H "x-xenon-auth-token: ${TOKEN}" -d @response.json ${TASK_URI} > /dev/null || \
-curl -sL --cacert trust.pem \
-         --request PATCH -H "Content-Type: application/json" \
-                         -H "x-xenon-auth-token: ${TOKEN}" -d @response.json ${TASK_URI} > /dev/null
+    #PATCH the closure with the response saved by node in file response.json
+    curl -sL --request PATCH -H "Content-Type: application/json" \
+                    -H "x-xenon-auth-token: ${TOKEN}" -d @response.json ${TASK_URI} > /dev/null || \
+    curl -sL --cacert trust.pem \
+             --request PATCH -H "Content-Type: application/json" \
+                             -H "x-xenon-auth-token: ${TOKEN}" -d @response.json ${TASK_URI} > /dev/null
+}
 
+# Pooled runner: poll the pool for the task URI and the token of the closures to execute,
+# 202 - no closure to execute yet, anything else - exit
+poll_pool() {
+    local status
+    status=$(curl -s -H "x-closure-runner-secret: ${POOL_SECRET}" -o assignment.txt \
+        -w "%{http_code}" "${POOL_URI}")
+    if [[ "${status}" == "000" && -f trust.pem ]]; then
+        status=$(curl -s --cacert trust.pem -H "x-closure-runner-secret: ${POOL_SECRET}" \
+            -o assignment.txt -w "%{http_code}" "${POOL_URI}")
+    fi
+    echo "${status}"
+}
+
+if [[ -z "${POOL_URI}" ]]; then
+    run_closure
+    exit
+fi
+
+executions=0
+while [[ ${executions} -lt ${POOL_MAX_EXECUTIONS:-1} ]]; do
+    status=$(poll_pool)
+    if [[ "${status}" == "202" ]]; then
+        continue
+    fi
+    if [[ "${status}" != "200" ]]; then
+        echo "Runner released by the pool: ${status}"
+        break
+    fi
+    { read -r TASK_URI; read -r TOKEN; } < assignment.txt
+    rm -f assignment.txt
+    export TASK_URI TOKEN
+    executions=$((executions + 1))
+    rm -f response.json
+    run_closure
+done
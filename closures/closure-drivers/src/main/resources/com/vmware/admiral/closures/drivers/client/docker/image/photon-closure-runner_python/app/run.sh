@@ -5,6 +5,42 @@ mkdir ./user_scripts || echo "File exits"
 [[ ! -z "${TRUST_CERTS}" ]] && echo "${TRUST_CERTS}" | base64 --decode > trusted.gz
 [[ ! -z "${TRUST_CERTS}" ]] && gzip -dc < trusted.gz > trust.pem
 
-cd user_scripts
-python3 -u ../appmain.py
+run_closure() {
+    (cd user_scripts && python3 -u ../appmain.py)
+}
 
+# Pooled runner: poll the pool for the task URI and the token of the closures to execute,
+# 202 - no closure to execute yet, anything else - exit
+poll_pool() {
+    local status
+    status=$(curl -s -H "x-closure-runner-secret: ${POOL_SECRET}" -o assignment.txt \
+        -w "%{http_code}" "${POOL_URI}")
+    if [[ "${status}" == "000" && -f trust.pem ]]; then
+        status=$(curl -s --cacert trust.pem -H "x-closure-runner-secret: ${POOL_SECRET}" \
+            -o assignment.txt -w "%{http_code}" "${POOL_URI}")
+    fi
+    echo "${status}"
+}
+
+if [[ -z "${POOL_URI}" ]]; then
+    run_closure
+    exit
+fi
+
+executions=0
+while [[ ${executions} -lt ${POOL_MAX_EXECUTIONS:-1} ]]; do
+    status=$(poll_pool)
+    if [[ "${status}" == "202" ]]; then
+        continue
+    fi
+    if [[ "${status}" != "200" ]]; then
+        echo "Runner released by the pool: ${status}"
+        break
+    fi
+    { read -r TASK_URI; read -r TOKEN; } < assignment.txt
+    rm -f assignment.txt
+    export TASK_URI TOKEN
+    executions=$((executions + 1))
+    rm -rf ./user_scripts && mkdir ./user_scripts
+    run_closure
+done
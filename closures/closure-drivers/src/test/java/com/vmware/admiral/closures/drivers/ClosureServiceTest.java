@@ -36,6 +36,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.vmware.admiral.closures.drivers.nashorn.EmbeddedNashornJSDriver;
+import com.vmware.admiral.closures.drivers.nashorn.EmbeddedNashornJSDriver.NashornExecutionStats;
+import com.vmware.admiral.closures.drivers.nashorn.LocalDriverStatsService;
 import com.vmware.admiral.closures.services.closure.Closure;
 import com.vmware.admiral.closures.services.closure.ClosureFactoryService;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescription;
@@ -65,6 +67,9 @@ public class ClosureServiceTest extends BasicReusableHostTestCase {
             driverRegistry.register(DriverConstants.RUNTIME_NASHORN,
                     new EmbeddedNashornJSDriver(this.host));
 
+            this.host.startServiceAndWait(LocalDriverStatsService.class,
+                    LocalDriverStatsService.SELF_LINK);
+
             // Start a closure factory services
             this.host.startServiceAndWait(ClosureDescriptionFactoryService.class,
                     ClosureDescriptionFactoryService.FACTORY_LINK);
@@ -1949,6 +1954,18 @@ public class ClosureServiceTest extends BasicReusableHostTestCase {
         this.host.testWait();
     }
 
+    @Test
+    public void localDriverStatsTest() throws Throwable {
+        Operation get = this.sender.sendAndWait(Operation.createGet(this.host,
+                LocalDriverStatsService.SELF_LINK));
+        NashornExecutionStats[] stats = get.getBody(NashornExecutionStats[].class);
+
+        assertEquals(1, stats.length);
+        assertEquals(EmbeddedNashornJSDriver.class.getSimpleName(), stats[0].driver);
+        assertTrue(stats[0].engineCreatedCount >= stats[0].idleEngineCount);
+        assertTrue(stats[0].scriptCacheHitRate >= 0 && stats[0].scriptCacheHitRate <= 1);
+    }
+
     // HELPER METHODS
 
     private void verifyJsonArrayStrings(Object[] javaArray, JsonArray jsArray) {
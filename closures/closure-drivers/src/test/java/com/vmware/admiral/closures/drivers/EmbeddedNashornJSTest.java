@@ -11,12 +11,25 @@
 
 package com.vmware.admiral.closures.drivers;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.JsonPrimitive;
 import org.junit.Test;
 
 import com.vmware.admiral.closures.drivers.nashorn.EmbeddedNashornJSDriver;
+import com.vmware.admiral.closures.drivers.nashorn.EmbeddedNashornJSDriver.NashornExecutionStats;
+import com.vmware.admiral.closures.drivers.nashorn.LocalDriverBase;
+import com.vmware.admiral.closures.drivers.nashorn.LocalDriverBase.LocalExecutionStats;
+import com.vmware.admiral.closures.services.closure.Closure;
+import com.vmware.admiral.closures.services.closuredescription.ClosureDescription;
+import com.vmware.admiral.closures.services.closuredescription.ResourceConstraints;
 import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.TaskState.TaskStage;
 
 /**
  */
@@ -29,4 +42,64 @@ public class EmbeddedNashornJSTest {
         ExecutionDriver execDriver = new EmbeddedNashornJSDriver(host);
 
     }
+
+    @Test
+    public void testCachedScriptExecutedWithIsolatedBindings() {
+        ServiceHost host = mock(ServiceHost.class);
+        EmbeddedNashornJSDriver execDriver = new EmbeddedNashornJSDriver(host);
+
+        ClosureDescription closureDesc = new ClosureDescription();
+        closureDesc.documentSelfLink = "/resources/closure-descriptions/test";
+        closureDesc.runtime = DriverConstants.RUNTIME_NASHORN;
+        closureDesc.resources = new ResourceConstraints();
+        closureDesc.outputNames = Arrays.asList("result", "count");
+        closureDesc.source = "var count = (typeof count === 'undefined') ? 1 : count + 1;"
+                + " result = inputs.a * 2;";
+
+        for (int i = 1; i <= 3; i++) {
+            Closure closure = new Closure();
+            closure.documentSelfLink = "/resources/closures/test-" + i;
+            closure.inputs = Collections.singletonMap("a", new JsonPrimitive(i));
+
+            Closure result = execDriver.doExecute(closure, closureDesc);
+            assertEquals(TaskStage.FINISHED, result.state);
+            assertEquals(i * 2, result.outputs.get("result").getAsInt());
+            // variables of the previous executions are not visible
+            assertEquals(1, result.outputs.get("count").getAsInt());
+        }
+    }
+
+    @Test
+    public void testEnginePoolAndScriptCacheStats() {
+        ServiceHost host = mock(ServiceHost.class);
+        EmbeddedNashornJSDriver execDriver = new EmbeddedNashornJSDriver(host);
+
+        ClosureDescription closureDesc = new ClosureDescription();
+        closureDesc.documentSelfLink = "/resources/closure-descriptions/test";
+        closureDesc.runtime = DriverConstants.RUNTIME_NASHORN;
+        closureDesc.resources = new ResourceConstraints();
+        closureDesc.source = "var a = 1;";
+
+        Closure closure = new Closure();
+        closure.documentSelfLink = "/resources/closures/test";
+        for (int i = 0; i < 3; i++) {
+            execDriver.doExecute(closure, closureDesc);
+        }
+        closureDesc.source = "var a = 2;";
+        execDriver.doExecute(closure, closureDesc);
+
+        NashornExecutionStats stats = execDriver.getExecutionStats();
+        assertEquals(EmbeddedNashornJSDriver.class.getSimpleName(), stats.driver);
+        // the closures were executed one after another by the same engine
+        assertEquals(1, stats.engineCreatedCount);
+        assertEquals(1, stats.idleEngineCount);
+        assertEquals(2, stats.scriptCacheHitCount);
+        assertEquals(2, stats.scriptCacheMissCount);
+        assertEquals(0.5, stats.scriptCacheHitRate, 0.001);
+        assertEquals(2, stats.cachedScriptCount);
+
+        List<LocalExecutionStats> hostStats = LocalDriverBase.getStats(host);
+        assertEquals(1, hostStats.size());
+        assertEquals(2, ((NashornExecutionStats) hostStats.get(0)).scriptCacheHitCount);
+    }
 }
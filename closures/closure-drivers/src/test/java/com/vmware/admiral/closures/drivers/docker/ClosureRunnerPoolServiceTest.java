@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.closures.drivers.docker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.closures.drivers.docker.ClosureContainerPool.RunnerPoolStats;
+import com.vmware.admiral.closures.drivers.docker.ClosureContainerPool.SlotReservation;
+import com.vmware.admiral.closures.drivers.docker.ClosureRunnerPoolService.RunnerProvisioningResponse;
+import com.vmware.admiral.closures.services.closure.Closure;
+import com.vmware.xenon.common.BasicReusableHostTestCase;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.VerificationHost;
+
+public class ClosureRunnerPoolServiceTest extends BasicReusableHostTestCase {
+
+    private static final String POOL_KEY = "test_pool_key";
+    private static final String CONTAINER_LINK = "/resources/containers/test_runner";
+    private static final URI TASK_URI = URI.create("http://localhost/resources/closures/test");
+
+    private ClosureContainerPool pool;
+
+    @Before
+    public void setUp() throws Throwable {
+        if (this.host.getServiceStage(ClosureRunnerPoolService.SELF_LINK) == null) {
+            this.host.startServiceAndWait(ClosureRunnerPoolService.class,
+                    ClosureRunnerPoolService.SELF_LINK);
+        }
+        pool = new ClosureContainerPool(this.host, "test_image_" + UUID.randomUUID(), 1, 2);
+    }
+
+    @AfterClass
+    public static void clean() {
+        BasicReusableHostTestCase.tearDownOnce();
+    }
+
+    @Test
+    public void testPoolLifecycle() throws Throwable {
+        SlotReservation slot = pool.reserveSlot(POOL_KEY);
+        assertNotNull(slot);
+        assertEquals(ClosureContainerPool.getSlotLink(this.host.getId(), slot.slotId),
+                slot.slotLink);
+        assertNotEquals(ClosureContainerPool.getRunnerName(slot.slotId), slot.secret);
+        // the pool is full while the container is starting
+        assertNull(pool.reserveSlot(POOL_KEY));
+
+        // not available before the container is provisioned and polls
+        assertNull(pool.assign(POOL_KEY, TASK_URI, "token"));
+        assertEquals(1, pool.getStats().startingCount);
+
+        patchProvisioned(slot, TaskStage.FINISHED, CONTAINER_LINK);
+        CompletableFuture<Operation> poll = poll(slot.slotLink, slot.secret);
+        this.host.waitFor("runner not idle", () -> pool.getStats().idleCount == 1);
+
+        // hand-off to the waiting poll
+        assertEquals(CONTAINER_LINK, pool.assign(POOL_KEY, TASK_URI, "token"));
+        Operation assigned = poll.get(this.host.getTimeoutSeconds(), TimeUnit.SECONDS);
+        assertEquals(Operation.STATUS_CODE_OK, assigned.getStatusCode());
+        assertEquals(TASK_URI + "\ntoken\n", assigned.getBody(String.class));
+        assertEquals(1, pool.getStats().busyCount);
+
+        // back to the pool after a successful execution
+        assertTrue(pool.release(CONTAINER_LINK, closure(TaskStage.FINISHED)));
+        assertEquals(1, pool.getStats().idleCount);
+
+        // the assignment waits for the next poll
+        assertEquals(CONTAINER_LINK, pool.assign(POOL_KEY, TASK_URI, "token2"));
+        assigned = poll(slot.slotLink, slot.secret)
+                .get(this.host.getTimeoutSeconds(), TimeUnit.SECONDS);
+        assertEquals(TASK_URI + "\ntoken2\n", assigned.getBody(String.class));
+
+        // removed after the maximum number of executions
+        assertFalse(pool.release(CONTAINER_LINK, closure(TaskStage.FINISHED)));
+        assertEquals(Collections.singletonList(CONTAINER_LINK), pool.drainRetiredContainers());
+        assertEquals(Operation.STATUS_CODE_NOT_FOUND,
+                poll(slot.slotLink, slot.secret).get().getStatusCode());
+
+        RunnerPoolStats stats = pool.getStats();
+        assertEquals(2, stats.hitCount);
+        assertEquals(1, stats.missCount);
+        assertEquals(1, stats.coldStartCount);
+        assertEquals(0, stats.startingCount + stats.idleCount + stats.busyCount);
+        assertNotNull(pool.reserveSlot(POOL_KEY));
+    }
+
+    @Test
+    public void testFailedExecutionRemovesContainer() throws Throwable {
+        SlotReservation slot = pool.reserveSlot(POOL_KEY);
+        patchProvisioned(slot, TaskStage.FINISHED, CONTAINER_LINK);
+        CompletableFuture<Operation> poll = poll(slot.slotLink, slot.secret);
+        this.host.waitFor("runner not idle", () -> pool.getStats().idleCount == 1);
+        assertEquals(CONTAINER_LINK, pool.assign(POOL_KEY, TASK_URI, "token"));
+        poll.get(this.host.getTimeoutSeconds(), TimeUnit.SECONDS);
+
+        assertFalse(pool.release(CONTAINER_LINK, closure(TaskStage.FAILED)));
+        assertEquals(Collections.singletonList(CONTAINER_LINK), pool.drainRetiredContainers());
+    }
+
+    @Test
+    public void testFailedProvisioningReleasesSlot() throws Throwable {
+        SlotReservation slot = pool.reserveSlot(POOL_KEY);
+        patchProvisioned(slot, TaskStage.FAILED, null);
+
+        assertEquals(0, pool.getStats().startingCount);
+        assertEquals(Operation.STATUS_CODE_NOT_FOUND,
+                poll(slot.slotLink, slot.secret).get().getStatusCode());
+        assertNotNull(pool.reserveSlot(POOL_KEY));
+    }
+
+    @Test
+    public void testPollWithoutSecretIsRejected() throws Throwable {
+        SlotReservation slot = pool.reserveSlot(POOL_KEY);
+
+        assertEquals(Operation.STATUS_CODE_FORBIDDEN,
+                poll(slot.slotLink, null).get().getStatusCode());
+        assertEquals(Operation.STATUS_CODE_FORBIDDEN,
+                poll(slot.slotLink, ClosureContainerPool.getRunnerName(slot.slotId)).get()
+                        .getStatusCode());
+        assertEquals(0, pool.getStats().coldStartCount);
+    }
+
+    @Test
+    public void testPollForUnknownNode() throws Throwable {
+        SlotReservation slot = pool.reserveSlot(POOL_KEY);
+        String slotLink = ClosureContainerPool.getSlotLink(UUID.randomUUID().toString(),
+                slot.slotId);
+
+        assertEquals(Operation.STATUS_CODE_NOT_FOUND,
+                poll(slotLink, slot.secret).get().getStatusCode());
+        assertEquals(0, pool.getStats().coldStartCount);
+    }
+
+    @Test
+    public void testSlotRequestsForwardedToOwnerNode() throws Throwable {
+        this.host.setUpPeerHosts(2);
+        this.host.joinNodesAndVerifyConvergence(2);
+        try {
+            Iterator<VerificationHost> peers = this.host.getInProcessHostMap().values()
+                    .iterator();
+            VerificationHost owner = peers.next();
+            VerificationHost other = peers.next();
+            for (VerificationHost peer : Arrays.asList(owner, other)) {
+                peer.startServiceAndWait(ClosureRunnerPoolService.class,
+                        ClosureRunnerPoolService.SELF_LINK);
+            }
+            ClosureContainerPool ownerPool = new ClosureContainerPool(owner, "test_image", 1, 1);
+            SlotReservation slot = ownerPool.reserveSlot(POOL_KEY);
+
+            // the runner container and the provisioning callback reach another node
+            RunnerProvisioningResponse body = new RunnerProvisioningResponse();
+            body.taskInfo = new TaskState();
+            body.taskInfo.stage = TaskStage.FINISHED;
+            body.resourceLinks = Collections.singleton(CONTAINER_LINK);
+            this.sender.sendAndWait(Operation.createPatch(UriUtils.buildUri(other, slot.slotLink))
+                    .setBody(body));
+            CompletableFuture<Operation> poll = poll(UriUtils.buildUri(other, slot.slotLink),
+                    slot.secret);
+            this.host.waitFor("runner not idle", () -> ownerPool.getStats().idleCount == 1);
+
+            assertEquals(CONTAINER_LINK, ownerPool.assign(POOL_KEY, TASK_URI, "token"));
+            Operation assigned = poll.get(this.host.getTimeoutSeconds(), TimeUnit.SECONDS);
+            assertEquals(Operation.STATUS_CODE_OK, assigned.getStatusCode());
+            assertEquals(TASK_URI + "\ntoken\n", assigned.getBody(String.class));
+        } finally {
+            this.host.tearDownInProcessPeers();
+        }
+    }
+
+    private void patchProvisioned(SlotReservation slot, TaskStage stage, String containerLink) {
+        RunnerProvisioningResponse body = new RunnerProvisioningResponse();
+        body.taskInfo = new TaskState();
+        body.taskInfo.stage = stage;
+        if (containerLink != null) {
+            body.resourceLinks = Collections.singleton(containerLink);
+        }
+        this.sender.sendAndWait(Operation.createPatch(this.host, slot.slotLink).setBody(body));
+    }
+
+    private CompletableFuture<Operation> poll(String slotLink, String secret) {
+        return poll(UriUtils.buildUri(this.host, slotLink), secret);
+    }
+
+    private CompletableFuture<Operation> poll(URI slotUri, String secret) {
+        CompletableFuture<Operation> result = new CompletableFuture<>();
+        Operation poll = Operation.createGet(slotUri)
+                .setReferer(this.host.getUri())
+                .setCompletion((o, e) -> result.complete(o));
+        if (secret != null) {
+            poll.addRequestHeader(ClosureRunnerPoolService.RUNNER_SECRET_HEADER, secret);
+        }
+        this.host.send(poll);
+        return result;
+    }
+
+    private static Closure closure(TaskStage state) {
+        Closure closure = new Closure();
+        closure.state = state;
+        return closure;
+    }
+}
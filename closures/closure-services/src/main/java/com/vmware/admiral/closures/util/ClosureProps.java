@@ -62,6 +62,23 @@ public class ClosureProps {
             .getInteger("com.vmware.admiral.closures.container.description.expiration.seconds",
                     120);
 
+    // number of idle runner containers kept started per runtime and container configuration,
+    // the runner pool is disabled if 0
+    public static final int RUNNER_POOL_SIZE = Integer
+            .getInteger("com.vmware.admiral.closures.runner.pool.size", 0);
+
+    // time after which an idle runner container is removed from the pool
+    public static final long RUNNER_POOL_TTL_SECONDS = Long
+            .getLong("com.vmware.admiral.closures.runner.pool.ttl.seconds", 10 * 60L);
+
+    // number of closures executed by a runner container before it is removed from the pool
+    public static final int RUNNER_POOL_MAX_EXECUTIONS = Integer
+            .getInteger("com.vmware.admiral.closures.runner.pool.max.executions", 1);
+
+    // how long a poll of an idle runner container waits for a closure
+    public static final long RUNNER_POOL_POLL_TIMEOUT_SECONDS = Long
+            .getLong("com.vmware.admiral.closures.runner.pool.poll.timeout.seconds", 20L);
+
     /**
      * Publicly/Externally accessible URI of Admiral services. In case it exits the propery will be
      * used by closure runtime execution to callback Admiral services instead of xenon publicUri
@@ -78,6 +95,9 @@ public class ClosureProps {
     public static final String ENV_PROP_TASK_URI = "TASK_URI";
     public static final String ENV_PROP_TOKEN = "TOKEN";
     public static final String ENV_TRUST_CERTS = "TRUST_CERTS";
+    public static final String ENV_PROP_POOL_URI = "POOL_URI";
+    public static final String ENV_PROP_POOL_MAX_EXECUTIONS = "POOL_MAX_EXECUTIONS";
+    public static final String ENV_PROP_POOL_SECRET = "POOL_SECRET";
 
     // Custom properties
     public static final String CUSTOM_PROPERTY_PLACEMENT = "__closures_placement";
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.test.BaseTestCase;
+import com.vmware.admiral.host.HostInitCommonServiceConfig;
+import com.vmware.admiral.service.common.CounterSubTaskService.CounterSubTaskState;
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestContext;
+
+public class LocalCounterSubTaskServiceTest extends BaseTestCase {
+    private static final String CALLBACK_LINK = "/test-counter-callback";
+
+    /**
+     * Records the responses of the completed counters by the task id in the callback link.
+     */
+    public static class CounterCallbackService extends StatelessService {
+        private static final Map<String, ServiceTaskCallbackResponse> RESPONSES =
+                new ConcurrentHashMap<>();
+        private static final Map<String, TestContext> CONTEXTS = new ConcurrentHashMap<>();
+
+        public CounterCallbackService() {
+            super.toggleOption(ServiceOption.URI_NAMESPACE_OWNER, true);
+        }
+
+        @Override
+        public void handlePatch(Operation patch) {
+            String taskId = UriUtils.getLastPathSegment(patch.getUri());
+            ServiceTaskCallbackResponse previous = RESPONSES.putIfAbsent(taskId,
+                    patch.getBody(ServiceTaskCallbackResponse.class));
+            patch.complete();
+
+            TestContext ctx = CONTEXTS.get(taskId);
+            if (ctx == null) {
+                return;
+            }
+            if (previous == null) {
+                ctx.completeIteration();
+            } else {
+                ctx.failIteration(new IllegalStateException("Notified more than once"));
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Throwable {
+        HostInitCommonServiceConfig.startServices(host);
+        host.startServiceAndWait(CounterCallbackService.class, CALLBACK_LINK);
+        waitForServiceAvailability(LocalCounterSubTaskService.SELF_LINK,
+                CounterSubTaskService.FACTORY_LINK);
+    }
+
+    @Test
+    public void testCompleteWhenAllFinished() throws Throwable {
+        String taskId = "all-finished";
+        String counterLink = createCounter(LocalCounterSubTaskService.SELF_LINK, taskId, 3, 0);
+        assertTrue(counterLink.startsWith(LocalCounterSubTaskService.SELF_LINK + "/"));
+
+        TestContext ctx = expectCallback(taskId);
+        completeTasks(counterLink, 3, TaskStage.FINISHED);
+        ctx.await();
+
+        ServiceTaskCallbackResponse response = CounterCallbackService.RESPONSES.get(taskId);
+        assertEquals(TaskStage.FINISHED, response.taskInfo.stage);
+        assertEquals(DefaultSubStage.COMPLETED.name(), response.taskSubStage);
+
+        // updates of a completed counter are ignored
+        completeTasks(counterLink, 1, TaskStage.FAILED);
+        assertEquals(TaskStage.FINISHED,
+                CounterCallbackService.RESPONSES.get(taskId).taskInfo.stage);
+    }
+
+    @Test
+    public void testFailWhenErrorThresholdExceeded() throws Throwable {
+        String taskId = "threshold-exceeded";
+        String counterLink = createCounter(LocalCounterSubTaskService.SELF_LINK, taskId, 4, 0.5);
+
+        completeTasks(counterLink, 1, TaskStage.FINISHED);
+        // 2 of 4 failed, the threshold is not exceeded yet
+        completeTasks(counterLink, 2, TaskStage.FAILED);
+        assertFalse(CounterCallbackService.RESPONSES.containsKey(taskId));
+
+        TestContext ctx = expectCallback(taskId);
+        completeTasks(counterLink, 1, TaskStage.FAILED);
+        ctx.await();
+
+        ServiceTaskCallbackResponse response = CounterCallbackService.RESPONSES.get(taskId);
+        assertEquals(TaskStage.FAILED, response.taskInfo.stage);
+        assertEquals(DefaultSubStage.ERROR.name(), response.taskSubStage);
+    }
+
+    @Test
+    public void testFailOnFirstFailureWithoutErrorThreshold() throws Throwable {
+        String taskId = "first-failure";
+        String counterLink = createCounter(LocalCounterSubTaskService.SELF_LINK, taskId, 5, 0);
+
+        TestContext ctx = expectCallback(taskId);
+        completeTasks(counterLink, 1, TaskStage.FAILED);
+        ctx.await();
+
+        assertEquals(DefaultSubStage.ERROR.name(),
+                CounterCallbackService.RESPONSES.get(taskId).taskSubStage);
+    }
+
+    /**
+     * Concurrent completions of many counters notify each parent exactly once, with the same
+     * response from the in-memory and the persistent counters.
+     */
+    @Test
+    public void testConcurrentCompletionsNotifyParentOnce() throws Throwable {
+        int counters = 20;
+        int completions = 50;
+
+        runFanOuts(CounterSubTaskService.FACTORY_LINK, "persistent", counters, completions);
+        runFanOuts(LocalCounterSubTaskService.SELF_LINK, "local", counters, completions);
+
+        for (int i = 0; i < counters; i++) {
+            ServiceTaskCallbackResponse persistent = CounterCallbackService.RESPONSES
+                    .get("persistent-" + i);
+            ServiceTaskCallbackResponse local = CounterCallbackService.RESPONSES
+                    .get("local-" + i);
+            assertEquals(TaskStage.FINISHED, persistent.taskInfo.stage);
+            assertEquals(persistent.taskInfo.stage, local.taskInfo.stage);
+            assertEquals(persistent.taskSubStage, local.taskSubStage);
+        }
+    }
+
+    private void runFanOuts(String factoryLink, String prefix, int counters, int completions)
+            throws Throwable {
+        TestContext ctx = testCreate(counters);
+        for (int i = 0; i < counters; i++) {
+            String taskId = prefix + "-" + i;
+            CounterCallbackService.CONTEXTS.put(taskId, ctx);
+            String counterLink = createCounter(factoryLink, taskId, completions, 0);
+            for (int j = 0; j < completions; j++) {
+                host.send(createCompletion(counterLink, TaskStage.FINISHED)
+                        .setCompletion((o, e) -> {
+                            if (e != null) {
+                                ctx.failIteration(e);
+                            }
+                        }));
+            }
+        }
+        ctx.await();
+    }
+
+    private String createCounter(String factoryLink, String taskId, long completions,
+            double errorThreshold) {
+        CounterSubTaskState state = new CounterSubTaskState();
+        state.completionsRemaining = completions;
+        state.errorThreshold = errorThreshold;
+        state.serviceTaskCallback = ServiceTaskCallback.create(
+                UriUtils.buildUriPath(CALLBACK_LINK, taskId));
+
+        CounterSubTaskState counter = doPost(state, factoryLink, CounterSubTaskState.class);
+        assertNotNull(counter.documentSelfLink);
+        return counter.documentSelfLink;
+    }
+
+    private TestContext expectCallback(String taskId) {
+        TestContext ctx = testCreate(1);
+        CounterCallbackService.CONTEXTS.put(taskId, ctx);
+        return ctx;
+    }
+
+    private void completeTasks(String counterLink, int count, TaskStage stage) {
+        TestContext ctx = testCreate(count);
+        for (int i = 0; i < count; i++) {
+            host.send(createCompletion(counterLink, stage)
+                    .setCompletion(ctx.getCompletion()));
+        }
+        ctx.await();
+    }
+
+    private Operation createCompletion(String counterLink, TaskStage stage) {
+        CounterSubTaskState body = new CounterSubTaskState();
+        body.taskInfo = new TaskState();
+        body.taskInfo.stage = stage;
+        return Operation.createPatch(host, counterLink)
+                .setBody(body)
+                .setReferer(host.getUri());
+    }
+}
@@ -65,6 +65,7 @@ public interface ManagementUriParts {
 
     String RESOURCES = URI_PREFIX + "/resources";
     String RESOURCE_GROUP_PLACEMENTS = RESOURCES + "/group-placements";
+    String RESOURCE_GROUP_PLACEMENT_ESCROW = RESOURCES + "/group-placement-escrow";
     String RESOURCE_NAME_PREFIXES = RESOURCES + "/name-prefixes";
     String DEPLOYMENT_POLICIES = RESOURCES + "/deployment-policies";
     String HOST_PORT_PROFILES = RESOURCES + "/host-port-profiles";
@@ -96,6 +97,7 @@ public interface ManagementUriParts {
 
     String CONTAINERS = RESOURCES + "/containers";
     String CONTAINER_STATS = RESOURCES + "/container-stats";
+    String CONTAINER_HOST_STATS = RESOURCES + "/container-host-stats";
     String CONTAINER_LOGS = RESOURCES + "/container-logs";
     String CONTAINER_SHELL = RESOURCES + "/container-shell";
     String CONTAINER_DESC = RESOURCES + "/container" + DESCRIPTION_SUFFIX;
@@ -110,6 +112,8 @@ public interface ManagementUriParts {
     String CLOSURES = RESOURCES + "/closures";
     String CLOSURES_DESC = RESOURCES + "/closure" + DESCRIPTION_SUFFIX;
     String CLOSURES_IMAGES = RESOURCES + "/closure-images";
+    String CLOSURES_RUNNER_POOL = RESOURCES + "/closure-runner-pool";
+    String CLOSURES_LOCAL_DRIVERS = RESOURCES + "/closure-local-drivers";
     String CLOSURES_CONTAINER_DESC = CONTAINER_DESC + "/closure-container-desc";
 
     String CONTAINER_HOSTS = RESOURCES + "/hosts";
@@ -203,6 +207,7 @@ public interface ManagementUriParts {
     String DELETE_SERVICE_DOCUMENTS = URI_PREFIX + "/delete-tasks";
 
     String COUNTER_SUB_TASKS = URI_PREFIX + "/counter-subtasks";
+    String COUNTER_SUB_TASKS_LOCAL = URI_PREFIX + "/counter-subtasks-local";
     // Continuous delivery:
     String CONTINUOUS_DELIVERY = URI_PREFIX + "/continous-delivery";
 
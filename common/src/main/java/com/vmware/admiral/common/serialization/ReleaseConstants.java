@@ -85,6 +85,13 @@ public final class ReleaseConstants {
     public static final String API_VERSION_1_4_3 = "1.4.3";
     public static final String VERSION_HEADER_1_4_3 = VERSION_PREFIX + API_VERSION_1_4_3;
 
+    /**
+     * The 1.5.1 release and REST API version.
+     */
+    public static final int RELEASE_VERSION_1_5_1 = 151;
+    public static final String API_VERSION_1_5_1 = "1.5.1";
+    public static final String VERSION_HEADER_1_5_1 = VERSION_PREFIX + API_VERSION_1_5_1;
+
     // Other examples:
     // public static final int RELEASE_VERSION_0_9_6 = 96;
     // public static final int RELEASE_VERSION_1_0_0 = 100;
@@ -95,7 +102,7 @@ public final class ReleaseConstants {
     /**
      * The current REST API version.
      */
-    public static final String CURRENT_API_VERSION = API_VERSION_1_4_3;
+    public static final String CURRENT_API_VERSION = API_VERSION_1_5_1;
     public static final String CURRENT_VERSION_HEADER = VERSION_PREFIX + CURRENT_API_VERSION;
 
 }
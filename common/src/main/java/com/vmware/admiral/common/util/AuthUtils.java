@@ -12,8 +12,6 @@
 package com.vmware.admiral.common.util;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Base64;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -26,7 +24,6 @@ import com.vmware.photon.controller.model.security.util.EncryptionUtils;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Operation.AuthorizationContext;
 import com.vmware.xenon.common.ReflectionUtils;
-import com.vmware.xenon.common.Service;
 import com.vmware.xenon.common.ServiceHost;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.AuthCredentialsService.AuthCredentialsServiceState;
@@ -94,25 +91,13 @@ public class AuthUtils {
         }
 
         if (authCtx == null) {
-            try {
-                Method getAuthorizationContext = ServiceHost.class
-                        .getDeclaredMethod("getAuthorizationContext", Service.class,
-                                String.class);
-                getAuthorizationContext.setAccessible(true);
-                String token = BasicAuthenticationUtils.getAuthToken(op);
-                if (token != null) {
-                    AuthorizationContext context = (AuthorizationContext) getAuthorizationContext
-                            .invoke(host, null, token);
-
-                    if (!(context == null || context.isSystemUser())) {
-                        op.setAuthorizationContext(context);
-                        validateSessionData(host, op, guestCtx, context);
-                    }
+            String token = BasicAuthenticationUtils.getAuthToken(op);
+            if (token != null) {
+                AuthorizationContext context = host.getAuthorizationContext(null, token);
+                if (!(context == null || context.isSystemUser())) {
+                    op.setAuthorizationContext(context);
+                    validateSessionData(host, op, guestCtx, context);
                 }
-
-            } catch (NoSuchMethodException | IllegalAccessException
-                    | InvocationTargetException e ) {
-                op.fail(e);
             }
         } else {
             if (authCtx.isSystemUser()) {
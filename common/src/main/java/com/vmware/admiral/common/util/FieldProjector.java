@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.common.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Copies the fields of a source object to a new instance of a target class, the fields of the
+ * target class which are not declared by the source class are left with their default values.
+ * This is the same as serializing the source to JSON and deserializing it to the target class,
+ * without the JSON. The field mappings are resolved once per pair of classes and cached.
+ * <p>
+ * Immutable values are shared with the source, the rest of the values are cloned so the target
+ * does not change together with the source. <code>null</code> source values are not copied, the
+ * same way they are omitted from the JSON.
+ */
+public final class FieldProjector<S, T> {
+
+    private static final Logger logger = Logger.getLogger(FieldProjector.class.getName());
+
+    private static final Map<Class<?>, Map<Class<?>, FieldProjector<?, ?>>> PROJECTORS =
+            new ConcurrentHashMap<>();
+
+    private static class FieldMapping {
+        private final Field sourceField;
+        private final Field targetField;
+        private final Function<Object, Object> converter;
+
+        private FieldMapping(Field sourceField, Field targetField,
+                Function<Object, Object> converter) {
+            this.sourceField = sourceField;
+            this.targetField = targetField;
+            this.converter = converter;
+        }
+    }
+
+    private final Class<T> targetType;
+    private final Constructor<T> targetConstructor;
+    private final List<FieldMapping> mappings;
+
+    private FieldProjector(Class<S> sourceType, Class<T> targetType) {
+        this.targetType = targetType;
+        this.targetConstructor = getConstructor(targetType);
+        this.mappings = new ArrayList<>();
+        for (Field targetField : getFields(targetType)) {
+            Field sourceField = findField(sourceType, targetField.getName());
+            if (sourceField != null) {
+                mappings.add(new FieldMapping(sourceField, targetField,
+                        getConverter(sourceField, targetField)));
+            }
+        }
+    }
+
+    /**
+     * Returns the cached projector for the given pair of classes.
+     */
+    @SuppressWarnings("unchecked")
+    public static <S, T> FieldProjector<S, T> of(Class<S> sourceType, Class<T> targetType) {
+        return (FieldProjector<S, T>) PROJECTORS
+                .computeIfAbsent(sourceType, (c) -> new ConcurrentHashMap<>())
+                .computeIfAbsent(targetType, (c) -> new FieldProjector<>(sourceType, targetType));
+    }
+
+    /**
+     * Projects the given source to a new instance of the target class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T project(Object source, Class<T> targetType) {
+        return of((Class<Object>) source.getClass(), targetType).project(source);
+    }
+
+    public T project(S source) {
+        if (targetConstructor == null) {
+            // no default constructor to create the target with, fall back to JSON
+            return Utils.fromJson(Utils.toJson(source), targetType);
+        }
+
+        try {
+            T target = targetConstructor.newInstance();
+            for (FieldMapping mapping : mappings) {
+                Object value = mapping.sourceField.get(source);
+                if (value != null) {
+                    mapping.targetField.set(target, mapping.converter.apply(value));
+                }
+            }
+            return target;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("Cannot project %s to %s",
+                    source.getClass().getName(), targetType.getName()), e);
+        }
+    }
+
+    private static <T> Constructor<T> getConstructor(Class<T> type) {
+        if (Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * All fields of the given class and its super classes, which are serialized to JSON.
+     */
+    private static List<Field> getFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        for (Field field : getFields(type)) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Function<Object, Object> getConverter(Field sourceField, Field targetField) {
+        Class<?> sourceType = wrap(sourceField.getType());
+        Class<?> targetType = wrap(targetField.getType());
+
+        if (targetType.isAssignableFrom(sourceType)) {
+            return FieldProjector::copyValue;
+        }
+        if (targetType.isEnum() && (sourceType.isEnum() || sourceType == String.class)) {
+            return (value) -> {
+                try {
+                    return Enum.valueOf((Class<Enum>) targetType, value instanceof Enum
+                            ? ((Enum<?>) value).name() : (String) value);
+                } catch (IllegalArgumentException e) {
+                    // unknown constants are deserialized as null
+                    return null;
+                }
+            };
+        }
+        if (targetType == String.class && sourceType.isEnum()) {
+            return (value) -> ((Enum<?>) value).name();
+        }
+
+        // e.g. a set to a list, convert the value through JSON
+        return (value) -> Utils.fromJson(Utils.toJson(value), targetField.getGenericType());
+    }
+
+    private static Object copyValue(Object value) {
+        if (isImmutable(value.getClass())) {
+            return value;
+        }
+        try {
+            return Utils.clone(value);
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Cannot clone value of type {0}, copying it through JSON",
+                    value.getClass().getName());
+            return Utils.fromJson(Utils.toJson(value), value.getClass());
+        }
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+        return type == String.class || type.isPrimitive() || type.isEnum()
+                || (type.getSuperclass() != null && type.getSuperclass().isEnum())
+                || Number.class.isAssignableFrom(type) && type.getName().startsWith("java.lang.")
+                || type == Boolean.class || type == Character.class
+                || type == URI.class || type == UUID.class;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        }
+        return Character.class;
+    }
+}
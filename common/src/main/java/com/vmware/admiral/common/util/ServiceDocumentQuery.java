@@ -320,7 +320,8 @@ public class ServiceDocumentQuery<T extends ServiceDocument> {
 
     private boolean isExpandQuery(QueryTask q) {
         return q.querySpec.options != null
-                && q.querySpec.options.contains(QueryOption.EXPAND_CONTENT);
+                && (q.querySpec.options.contains(QueryOption.EXPAND_CONTENT)
+                        || q.querySpec.options.contains(QueryOption.EXPAND_SELECTED_FIELDS));
     }
 
     private boolean isCountQuery(QueryTask q) {
@@ -30,6 +30,7 @@ import com.vmware.admiral.service.common.CredentialsProxyService;
 import com.vmware.admiral.service.common.EventTopicService;
 import com.vmware.admiral.service.common.ExtensibilitySubscriptionCallbackService;
 import com.vmware.admiral.service.common.ExtensibilitySubscriptionFactoryService;
+import com.vmware.admiral.service.common.LocalCounterSubTaskService;
 import com.vmware.admiral.service.common.LogService;
 import com.vmware.admiral.service.common.LongURIGetService;
 import com.vmware.admiral.service.common.NodeHealthCheckService;
@@ -64,6 +65,7 @@ public class HostInitCommonServiceConfig extends HostInitServiceHelper {
                     service(ReverseProxyService.class),
                     service(ExtensibilitySubscriptionFactoryService.class),
                     service(LongURIGetService.class),
+                    service(LocalCounterSubTaskService.class),
                     service(RegistryFactoryService.class),
                     service(EventLogFactoryService.class),
                     factoryService(ResourceNamePrefixService.class),
@@ -84,6 +86,7 @@ public class HostInitCommonServiceConfig extends HostInitServiceHelper {
             ReverseProxyService.class,
             ExtensibilitySubscriptionFactoryService.class,
             LongURIGetService.class,
+            LocalCounterSubTaskService.class,
             RegistryFactoryService.class,
             EventLogFactoryService.class
     };
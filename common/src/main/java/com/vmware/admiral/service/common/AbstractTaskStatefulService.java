@@ -29,6 +29,9 @@ import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
+import com.esotericsoftware.kryo.serializers.VersionFieldSerializer.Since;
+
+import com.vmware.admiral.common.serialization.ReleaseConstants;
 import com.vmware.admiral.common.util.OperationUtil;
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceUtils;
@@ -129,6 +132,13 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
          * Set of resource links provisioned or performed operation on them.
          */
         public Set<String> resourceLinks;
+
+        /**
+         * Status updates of several tasks sent with a single PATCH, to be applied in order. Set
+         * only on coalesced updates, in which case the rest of the fields are not used.
+         */
+        @Since(ReleaseConstants.RELEASE_VERSION_1_5_1)
+        public List<TaskStatusState> coalescedUpdates;
     }
 
     public AbstractTaskStatefulService(Class<? extends TaskServiceDocument<E>> stateType,
@@ -461,37 +471,81 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
 
     protected void updateRequestTracker(T state, int retryCount) {
         if (state != null && state.requestTrackerLink != null) {
-            sendRequest(Operation
-                    .createPatch(this, state.requestTrackerLink)
-                    .setBody(fromTask(state))
-                    .setCompletion((o, ex) -> {
-                        if (ex != null) {
-                            // log but don't fail the task
-                            if (ex instanceof CancellationException) {
-                                logFine("CancellationException: Failed to update request tracker:"
-                                        + " %s", state.requestTrackerLink);
-                                // retry only the finished and failed updates. The others are not so
-                                // important
-                            } else if (TaskStage.FINISHED.name()
-                                    .equals(state.taskInfo.stage.name())
-                                    || TaskStage.FAILED.name().equals(state.taskInfo.stage.name())
-                                    && retryCount > 0) {
-                                getHost().schedule(
-                                        () -> updateRequestTracker(state, retryCount - 1),
-                                        QueryUtil.QUERY_RETRY_INTERVAL_MILLIS,
-                                        TimeUnit.MILLISECONDS);
-                            } else {
-                                logWarning("Failed to update request tracker: %s. Error: %s",
-                                        state.requestTrackerLink, Utils.toString(ex));
-                            }
-                        }
-                    }));
+            if (!RequestTrackerUpdateAggregator.isEnabled()) {
+                sendRequestTrackerUpdate(state, fromTask(state), retryCount);
+                return;
+            }
+
+            RequestTrackerUpdateAggregator aggregator = RequestTrackerUpdateAggregator
+                    .getInstance(getHost());
+            if (!isTerminal(state.taskInfo)) {
+                aggregator.enqueue(this, state.requestTrackerLink, fromTask(state));
+                return;
+            }
+
+            // terminal updates are not delayed, the pending updates for the same tracker are sent
+            // along so they are not applied after the terminal one
+            List<TaskStatusState> updates = new ArrayList<>(
+                    aggregator.drain(state.requestTrackerLink));
+            updates.add(fromTask(state));
+            sendRequestTrackerUpdate(state, RequestTrackerUpdateAggregator.merge(updates),
+                    retryCount);
 
         } else if (state != null && state.documentSelfLink != null) {
             logFine("Task doesn't have a requestTrackerLink set: %s ", state.documentSelfLink);
         }
     }
 
+    private static boolean isTerminal(TaskState taskInfo) {
+        return taskInfo == null || TaskState.isFinished(taskInfo) || TaskState.isFailed(taskInfo)
+                || TaskState.isCancelled(taskInfo);
+    }
+
+    private void sendRequestTrackerUpdate(T state, TaskStatusState update, int retryCount) {
+        sendRequest(Operation
+                .createPatch(this, state.requestTrackerLink)
+                .setBody(update)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        // log but don't fail the task
+                        if (ex instanceof CancellationException) {
+                            logFine("CancellationException: Failed to update request tracker:"
+                                    + " %s", state.requestTrackerLink);
+                            // retry only the finished and failed updates. The others are not so
+                            // important
+                        } else if ((TaskStage.FINISHED.name()
+                                .equals(state.taskInfo.stage.name())
+                                || TaskStage.FAILED.name().equals(state.taskInfo.stage.name()))
+                                && retryCount > 0) {
+                            getHost().schedule(
+                                    () -> sendRequestTrackerUpdate(state, update,
+                                            retryCount - 1),
+                                    QueryUtil.QUERY_RETRY_INTERVAL_MILLIS,
+                                    TimeUnit.MILLISECONDS);
+                        } else {
+                            logWarning("Failed to update request tracker: %s. Error: %s",
+                                    state.requestTrackerLink, Utils.toString(ex));
+                        }
+                    }
+                }));
+    }
+
+    /**
+     * Sends coalesced intermediate updates to the request tracker. Failures are only logged, as
+     * for any other intermediate update.
+     */
+    void sendRequestTrackerUpdate(String requestTrackerLink, TaskStatusState update) {
+        sendRequest(Operation
+                .createPatch(this, requestTrackerLink)
+                .setBody(update)
+                .setCompletion((o, ex) -> {
+                    if (ex != null && !(ex instanceof CancellationException)) {
+                        logWarning("Failed to update request tracker: %s. Error: %s",
+                                requestTrackerLink, Utils.toString(ex));
+                    }
+                }));
+    }
+
     protected void handleStagePatch(T state) {
         if (getInstance().shouldFail(state.taskSubStage)) {
             failTask("Fail task in stage [" + state.taskSubStage
@@ -648,6 +702,27 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
 
     protected void createCounterSubTask(T state, long count, Enum<?> substageComplete,
             Consumer<String> callbackFunction) {
+        createCounterSubTask(state, count, substageComplete, false, callbackFunction);
+    }
+
+    /**
+     * Creates a node local, in-memory counter for parallel sub tasks. It may only be used when
+     * every completion of the counter is sent by this task instance, from the completion of its
+     * own operations. Completions from other tasks, which may run on other nodes, require the
+     * persistent counter of {@link #createCounterSubTask(TaskServiceDocument, long, Consumer)}.
+     */
+    protected void createLocalCounterSubTask(T state, long count,
+            Consumer<String> callbackFunction) {
+        createLocalCounterSubTask(state, count, DefaultSubStage.COMPLETED, callbackFunction);
+    }
+
+    protected void createLocalCounterSubTask(T state, long count, Enum<?> substageComplete,
+            Consumer<String> callbackFunction) {
+        createCounterSubTask(state, count, substageComplete, true, callbackFunction);
+    }
+
+    private void createCounterSubTask(T state, long count, Enum<?> substageComplete,
+            boolean nodeLocal, Consumer<String> callbackFunction) {
         CounterSubTaskState subTaskInitState = new CounterSubTaskState();
         subTaskInitState.completionsRemaining = count;
         subTaskInitState.documentExpirationTimeMicros = ServiceUtils
@@ -656,7 +731,8 @@ public abstract class AbstractTaskStatefulService<T extends TaskServiceDocument<
                 getSelfLink(), TaskStage.STARTED, substageComplete,
                 TaskStage.STARTED, DefaultSubStage.ERROR);
 
-        CounterSubTaskService.createSubTask(this, subTaskInitState, callbackFunction);
+        CounterSubTaskService.createSubTask(this, subTaskInitState, nodeLocal,
+                callbackFunction);
     }
 
     protected void createCounterSubTaskCallback(T state, long count, boolean external,
@@ -37,6 +37,15 @@ import com.vmware.xenon.common.Utils;
 public class CounterSubTaskService extends StatefulService {
     public static final String FACTORY_LINK = ManagementUriParts.COUNTER_SUB_TASKS;
 
+    /**
+     * Forces persistent and replicated counters also where node local counters are requested.
+     */
+    public static final String PERSISTENT_COUNTERS_PROPERTY =
+            "com.vmware.admiral.service.counter.subtask.persistent";
+
+    private static final boolean PERSISTENT_COUNTERS = Boolean.getBoolean(
+            PERSISTENT_COUNTERS_PROPERTY);
+
     public static class CounterSubTaskState extends ServiceDocument {
         public TaskState taskInfo = new TaskState();
         public long completionsRemaining = 1;
@@ -76,14 +85,30 @@ public class CounterSubTaskService extends StatefulService {
     public static void createSubTask(
             AbstractTaskStatefulService<?, ?> service, CounterSubTaskState subTaskInitState,
             Consumer<String> callbackFunc) {
+        createSubTask(service, subTaskInitState, false, callbackFunc);
+    }
+
+    /**
+     * Creates a counter which is notified by the counted tasks through the link passed to the
+     * callback function. The counter is persisted and replicated, unless a node local counter of
+     * the {@link LocalCounterSubTaskService} is requested. A node local counter may only be used
+     * when all completions are sent by the creating task instance itself, and is replaced by a
+     * persistent one when {@link #PERSISTENT_COUNTERS_PROPERTY} is set.
+     */
+    public static void createSubTask(
+            AbstractTaskStatefulService<?, ?> service, CounterSubTaskState subTaskInitState,
+            boolean nodeLocal, Consumer<String> callbackFunc) {
+        boolean persistent = !nodeLocal || PERSISTENT_COUNTERS;
         try {
-            final String link = UriUtils.buildUriPath(CounterSubTaskService.FACTORY_LINK,
-                    UUID.randomUUID().toString());
-            subTaskInitState.documentSelfLink = link;
+            final String factoryLink = persistent ? CounterSubTaskService.FACTORY_LINK
+                    : LocalCounterSubTaskService.SELF_LINK;
+            final String link = persistent ? UriUtils.buildUriPath(factoryLink,
+                    UUID.randomUUID().toString()) : factoryLink;
+            subTaskInitState.documentSelfLink = persistent ? link : null;
             subTaskInitState.documentExpirationTimeMicros = ServiceUtils
                     .getDefaultTaskExpirationTimeInMicros();
 
-            Operation postOp = Operation.createPost(service, CounterSubTaskService.FACTORY_LINK)
+            Operation postOp = Operation.createPost(service, factoryLink)
                     .setBody(subTaskInitState)
                     .setCompletion((o, e) -> {
                         if (e != null) {
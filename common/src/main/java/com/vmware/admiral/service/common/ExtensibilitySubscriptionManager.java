@@ -25,6 +25,7 @@ import com.google.gson.JsonObject;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.CommonContinuousQueries;
 import com.vmware.admiral.common.util.CommonContinuousQueries.ContinuousQueryId;
+import com.vmware.admiral.common.util.FieldProjector;
 import com.vmware.admiral.common.util.PropertyUtils;
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
@@ -301,7 +302,7 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
                             .getBody(ExtensibilitySubscriptionCallback.class);
 
                     sendExternalNotification(extensibility,
-                            buildDataToSend(notificationPayload, replyPayload, result),
+                            buildDataToSend(notificationPayload, replyPayload, state, result),
                             state, NOTIFICATION_RETRY_COUNT);
                 }));
     }
@@ -330,14 +331,12 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
     @SuppressWarnings("unchecked")
     private <T> T prepareTaskNotificationPayload(ServiceTaskCallbackResponse notificationPayload,
             T state) {
-        String stateAsJson = Utils.toJson(state);
-        ServiceTaskCallbackResponse notificationPayloadData = Utils.fromJson(
-                stateAsJson, notificationPayload.getClass());
+        ServiceTaskCallbackResponse notificationPayloadData = FieldProjector.project(state,
+                notificationPayload.getClass());
         notificationPayloadData.taskInfo.stage = TaskStage.STARTED;
         notificationPayloadData.taskSubStage = DefaultSubStage.CREATED;
-        String payLoadAsJson = Utils.toJson(notificationPayloadData);
         // Filter task fields in order to leave only notification payload fields.
-        T filteredTask = (T) Utils.fromJson(payLoadAsJson, state.getClass());
+        T filteredTask = (T) FieldProjector.project(notificationPayloadData, state.getClass());
         return filteredTask;
     }
 
@@ -390,12 +389,13 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
     @SuppressWarnings("rawtypes")
     private <T extends TaskServiceDocument> ServiceDocument buildDataToSend(
             ServiceTaskCallbackResponse notificationPayload,
-            ServiceTaskCallbackResponse replyPayload,
+            ServiceTaskCallbackResponse replyPayload, T state,
             ExtensibilitySubscriptionCallback result) {
 
-        // Notification payload will give information about the task to subscriber.
-        ServiceTaskCallbackResponse notificationPayloadData = Utils.fromJson(
-                result.taskStateJson, notificationPayload.getClass());
+        // Notification payload will give information about the task to subscriber. The task
+        // state is the one stored as JSON in the callback, projected without parsing it again.
+        ServiceTaskCallbackResponse notificationPayloadData = FieldProjector.project(state,
+                notificationPayload.getClass());
 
         //Copy enhanced payload (if some enhancements to payload have been made)
         PropertyUtils.mergeObjects(notificationPayload, notificationPayloadData,
@@ -406,8 +406,8 @@ public class ExtensibilitySubscriptionManager extends StatelessService {
 
         // Get service reply payload in order to notify subscriber which fields are acceptable for
         // response.
-        ServiceTaskCallbackResponse replyPayloadData = Utils.fromJson(
-                result.taskStateJson, replyPayload.getClass());
+        ServiceTaskCallbackResponse replyPayloadData = FieldProjector.project(state,
+                replyPayload.getClass());
 
         ExtensibilitySubscriptionCallback data = new ExtensibilitySubscriptionCallback();
         data.serviceCallback = UriUtils.buildUri(getHost(), result.documentSelfLink);
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import static com.vmware.admiral.common.util.PropertyUtils.mergeCustomProperties;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.ServiceUtils;
+import com.vmware.admiral.service.common.CounterSubTaskService.CounterSubTaskState;
+import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local, in-memory variant of the {@link CounterSubTaskService}. The counters are neither
+ * persisted nor replicated, so it can only be used when all tasks reporting to a counter run on the
+ * same node as the task waiting for them. The counters are created with a POST to the service and
+ * are completed with PATCH requests to the returned link, with the same body and the same
+ * semantics as the {@link CounterSubTaskService} ones.
+ */
+public class LocalCounterSubTaskService extends StatelessService {
+    public static final String SELF_LINK = ManagementUriParts.COUNTER_SUB_TASKS_LOCAL;
+
+    private static final long MAINTENANCE_INTERVAL_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private static class Counter {
+        private final CounterSubTaskState initState;
+        private final long count;
+        private final AtomicLong completionsRemaining;
+        private final AtomicLong finishedCount = new AtomicLong();
+        private final AtomicLong failCount = new AtomicLong();
+
+        private Counter(CounterSubTaskState initState) {
+            this.initState = initState;
+            this.count = initState.completionsRemaining;
+            this.completionsRemaining = new AtomicLong(initState.completionsRemaining);
+        }
+
+        /**
+         * Decrements the remaining completions and returns them, or returns -1 if the counter is
+         * already completed.
+         */
+        private long decrement() {
+            long remaining;
+            do {
+                remaining = completionsRemaining.get();
+                if (remaining <= 0) {
+                    return -1;
+                }
+            } while (!completionsRemaining.compareAndSet(remaining, remaining - 1));
+            return remaining - 1;
+        }
+
+        private synchronized void merge(CounterSubTaskState patchBody) {
+            if (patchBody.customProperties != null) {
+                initState.merge(patchBody);
+            }
+        }
+    }
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public LocalCounterSubTaskService() {
+        super.toggleOption(ServiceOption.URI_NAMESPACE_OWNER, true);
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(MAINTENANCE_INTERVAL_MICROS);
+    }
+
+    @Override
+    public void handlePost(Operation post) {
+        if (!post.hasBody()) {
+            post.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+
+        CounterSubTaskState body = post.getBody(CounterSubTaskState.class);
+        if (body.serviceTaskCallback == null || body.completionsRemaining <= 0) {
+            post.fail(new IllegalArgumentException(
+                    "serviceTaskCallback and positive completionsRemaining are required"));
+            return;
+        }
+
+        body.documentSelfLink = UriUtils.buildUriPath(SELF_LINK, UUID.randomUUID().toString());
+        if (body.documentExpirationTimeMicros == 0) {
+            body.documentExpirationTimeMicros = ServiceUtils
+                    .getDefaultTaskExpirationTimeInMicros();
+        }
+        counters.put(body.documentSelfLink, new Counter(body));
+
+        post.setBody(body).complete();
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        CounterSubTaskState patchBody = patch.getBody(CounterSubTaskState.class);
+        if (patchBody.taskInfo == null || patchBody.taskInfo.stage == null) {
+            String error = "taskInfo, taskInfo.stage are required";
+            logWarning(error);
+            patch.fail(new IllegalArgumentException(error));
+            return;
+        }
+
+        String link = patch.getUri().getPath();
+        Counter counter = counters.get(link);
+        if (counter == null || counter.completionsRemaining.get() <= 0) {
+            logWarning("Already completed. Ignoring patch from %s", patch.getReferer());
+            patch.complete();
+            return;
+        }
+
+        boolean isFinished;
+        long remaining;
+        switch (patchBody.taskInfo.stage) {
+        case STARTED:
+            // don't decrement completions remaining.
+            patch.complete();
+            return;
+        case FINISHED:
+            remaining = counter.decrement();
+            if (remaining < 0) {
+                patch.complete();
+                return;
+            }
+            counter.finishedCount.incrementAndGet();
+            counter.merge(patchBody);
+            isFinished = remaining == 0;
+            break;
+        case FAILED:
+        case CANCELLED:
+            remaining = counter.decrement();
+            if (remaining < 0) {
+                patch.complete();
+                return;
+            }
+            long failCount = counter.failCount.incrementAndGet();
+            // finished, failed and remaining completions always add up to the initial count
+            double failedRatio = (double) failCount / (double) counter.count;
+            double errorThreshold = counter.initState.errorThreshold;
+
+            if (errorThreshold == 0 || failedRatio > errorThreshold) {
+                logWarning("Notifying parent of task failure from stage %s. Error: %s",
+                        patchBody.taskInfo.stage, patchBody.taskInfo.failure == null ? "n.a."
+                                : patchBody.taskInfo.failure.message);
+                counter.completionsRemaining.set(0);
+                isFinished = true;
+            } else {
+                isFinished = remaining == 0;
+            }
+            break;
+        default:
+            logInfo("ignoring patch from %s", patch.getReferer());
+            patch.complete();
+            return;
+        }
+
+        patch.complete();
+
+        // only the update removing the counter notifies the parent
+        if (!isFinished || counters.remove(link) == null) {
+            return;
+        }
+
+        notifyParent(counter, patchBody);
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        long now = Utils.getSystemNowMicrosUtc();
+        counters.values().removeIf((c) -> {
+            if (c.initState.documentExpirationTimeMicros < now) {
+                logWarning("Counter sub task %s expired with %d completions remaining",
+                        c.initState.documentSelfLink, c.completionsRemaining.get());
+                return true;
+            }
+            return false;
+        });
+        post.complete();
+    }
+
+    private void notifyParent(Counter counter, CounterSubTaskState patchBody) {
+        CounterSubTaskState state = counter.initState;
+        ServiceTaskCallbackResponse responseBody;
+        if (TaskStage.FINISHED == patchBody.taskInfo.stage) {
+            responseBody = state.getFinishedResponse();
+        } else {
+            responseBody = state.getFailedResponse(patchBody.taskInfo.failure);
+        }
+
+        synchronized (counter) {
+            responseBody.customProperties = mergeCustomProperties(
+                    responseBody.customProperties, state.customProperties);
+        }
+
+        try {
+            sendRequest(Operation.createPatch(this, state.serviceTaskCallback.serviceSelfLink)
+                    .setBody(responseBody)
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            logSevere("Failure notifying parent task. Error: %s",
+                                    Utils.toString(e));
+                        } else {
+                            logFine("Task completed with count [%d]",
+                                    counter.finishedCount.get());
+                        }
+                    }));
+        } catch (Throwable e) {
+            logSevere("Can't notify parent task. Error: %s", Utils.toString(e));
+        }
+    }
+}
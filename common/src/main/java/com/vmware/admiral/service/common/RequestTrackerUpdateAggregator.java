@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
+import com.vmware.xenon.common.OperationContext;
+import com.vmware.xenon.common.ServiceHost;
+
+/**
+ * Coalesces the intermediate status updates sent by tasks to their request tracker. The updates
+ * for a tracker are collected for a short window and only the latest update of every task is
+ * sent, all in a single PATCH, instead of a PATCH per task stage. Terminal updates are not
+ * delayed, they are sent together with the pending updates for the same tracker so the order of
+ * the updates is preserved.
+ */
+class RequestTrackerUpdateAggregator {
+
+    /**
+     * Time in milliseconds for which intermediate updates to a request tracker are collected
+     * before being sent. Zero or a negative value disables the coalescing.
+     */
+    static final long COALESCE_WINDOW_MILLIS = Long.getLong(
+            "com.vmware.admiral.service.tasks.request.tracker.coalesce.window.millis", 250);
+
+    private static final Map<ServiceHost, RequestTrackerUpdateAggregator> AGGREGATORS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static class PendingUpdates {
+        private final Map<String, TaskStatusState> updatesByTask = new LinkedHashMap<>();
+        private AbstractTaskStatefulService<?, ?> sender;
+        private OperationContext operationContext;
+    }
+
+    private final ServiceHost host;
+    private final Map<String, PendingUpdates> pendingByTracker = new HashMap<>();
+
+    private RequestTrackerUpdateAggregator(ServiceHost host) {
+        this.host = host;
+    }
+
+    static RequestTrackerUpdateAggregator getInstance(ServiceHost host) {
+        return AGGREGATORS.computeIfAbsent(host, RequestTrackerUpdateAggregator::new);
+    }
+
+    static boolean isEnabled() {
+        return COALESCE_WINDOW_MILLIS > 0;
+    }
+
+    /**
+     * Adds an intermediate update of a task. An earlier update of the same task which is still
+     * pending is replaced. The updates are flushed with the given sender once the window expires.
+     */
+    void enqueue(AbstractTaskStatefulService<?, ?> sender, String requestTrackerLink,
+            TaskStatusState update) {
+        boolean scheduleFlush;
+        synchronized (this) {
+            PendingUpdates pending = pendingByTracker.get(requestTrackerLink);
+            scheduleFlush = pending == null;
+            if (scheduleFlush) {
+                pending = new PendingUpdates();
+                pendingByTracker.put(requestTrackerLink, pending);
+            }
+            // re-insert so the entry is ordered by the latest update of the task
+            pending.updatesByTask.remove(update.documentSelfLink);
+            pending.updatesByTask.put(update.documentSelfLink, update);
+            pending.sender = sender;
+            pending.operationContext = OperationContext.getOperationContext();
+        }
+
+        if (scheduleFlush) {
+            host.schedule(() -> flush(requestTrackerLink),
+                    COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Removes and returns the pending updates of the given tracker in the order they should be
+     * applied.
+     */
+    synchronized List<TaskStatusState> drain(String requestTrackerLink) {
+        PendingUpdates pending = pendingByTracker.remove(requestTrackerLink);
+        if (pending == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(pending.updatesByTask.values());
+    }
+
+    /**
+     * Merges the given updates into a single update body. A single update is sent as is.
+     */
+    static TaskStatusState merge(List<TaskStatusState> updates) {
+        if (updates.size() == 1) {
+            return updates.get(0);
+        }
+        TaskStatusState merged = new TaskStatusState();
+        merged.coalescedUpdates = updates;
+        return merged;
+    }
+
+    private void flush(String requestTrackerLink) {
+        PendingUpdates pending;
+        synchronized (this) {
+            pending = pendingByTracker.remove(requestTrackerLink);
+        }
+        if (pending == null || pending.updatesByTask.isEmpty()) {
+            // already sent along with a terminal update
+            return;
+        }
+
+        OperationContext parentContext = OperationContext.getOperationContext();
+        try {
+            OperationContext.restoreOperationContext(pending.operationContext);
+            pending.sender.sendRequestTrackerUpdate(requestTrackerLink,
+                    merge(new ArrayList<>(pending.updatesByTask.values())));
+        } finally {
+            OperationContext.restoreOperationContext(parentContext);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixRange;
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixRequest;
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixResponse;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Hands out name prefixes from ranges of numbers reserved by the node, instead of sending a
+ * replicated PATCH to the {@link ResourceNamePrefixService} for every request. Prefixes are taken
+ * from the current range of a prefix document without locking, a new range is requested only
+ * once it is used up, with a single request in flight per prefix document.
+ * <p>
+ * The counter of the prefix document is advanced past a range before it is handed out, so
+ * numbers of a range are never given out twice. The unused numbers of a range are skipped if the
+ * node stops or the range is replaced. A range is a small fraction of the sequence, so the ranges
+ * of the nodes do not overlap when the counter rolls back. The prefixes of a sequence too short to
+ * be split into ranges are requested from the prefix document one request at a time.
+ * <p>
+ * A range, and the finding that a sequence is too short for ranges, expire after
+ * {@link #RANGE_EXPIRATION_MICROS}, so that the changes of the prefix document are picked up by
+ * all nodes. The node which updates or deletes the prefix document drops them right away.
+ */
+public class ResourceNamePrefixRanges {
+
+    /**
+     * The number of numbers reserved at a time. A value of 1 or less disables the ranges and every
+     * request is sent to the prefix document.
+     */
+    public static final long RANGE_SIZE = Long.getLong(
+            "com.vmware.admiral.service.name.prefix.range.size", 1000);
+
+    /**
+     * The time after which a range is replaced, even if not used up.
+     */
+    public static final long RANGE_EXPIRATION_MICROS = Long.getLong(
+            "com.vmware.admiral.service.name.prefix.range.expiration.micros",
+            TimeUnit.MINUTES.toMicros(1));
+
+    private static final Map<ServiceHost, ResourceNamePrefixRanges> INSTANCES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static class Range {
+        private final NamePrefixRange range;
+        private final AtomicLong nextNumber;
+        private final long expirationTimeMicros;
+
+        private Range(NamePrefixRange range) {
+            this.range = range;
+            this.nextNumber = new AtomicLong(range.firstNumber);
+            this.expirationTimeMicros = Utils.fromNowMicrosUtc(RANGE_EXPIRATION_MICROS);
+        }
+
+        /**
+         * Takes as many of the remaining numbers of the request as the range has left. Returns
+         * whether the request is satisfied.
+         */
+        private boolean take(PendingRequest request) {
+            if (expirationTimeMicros <= Utils.getSystemNowMicrosUtc()) {
+                return false;
+            }
+            long first = nextNumber.getAndAdd(request.remaining);
+            if (first > range.lastNumber) {
+                return false;
+            }
+            long last = Math.min(first + request.remaining - 1, range.lastNumber);
+            for (long number = first; number <= last; number++) {
+                request.prefixes.add(ResourceNamePrefixService.buildNamePrefix(range.prefix,
+                        number, range.addRandomToken));
+            }
+            request.remaining -= last - first + 1;
+            return request.remaining == 0;
+        }
+    }
+
+    private static class PrefixRanges {
+        private volatile Range current;
+        /** Set once the prefix document returned prefixes instead of a range, until expired. */
+        private volatile long noRangesExpirationTimeMicros;
+        private boolean requestingRange;
+        private final List<PendingRequest> waiting = new ArrayList<>();
+    }
+
+    private static class PendingRequest {
+        private final Service sender;
+        private final List<String> prefixes;
+        private final DeferredResult<List<String>> result = new DeferredResult<>();
+        private long remaining;
+
+        private PendingRequest(Service sender, long resourceCount) {
+            this.sender = sender;
+            this.prefixes = new ArrayList<>((int) resourceCount);
+            this.remaining = resourceCount;
+        }
+    }
+
+    private final ServiceHost host;
+    private final Map<String, PrefixRanges> rangesByPrefixLink = new ConcurrentHashMap<>();
+
+    private ResourceNamePrefixRanges(ServiceHost host) {
+        this.host = host;
+    }
+
+    public static ResourceNamePrefixRanges getInstance(ServiceHost host) {
+        return INSTANCES.computeIfAbsent(host, ResourceNamePrefixRanges::new);
+    }
+
+    public static boolean isEnabled() {
+        return RANGE_SIZE > 1;
+    }
+
+    /**
+     * Returns the given number of name prefixes of the given prefix document. The prefixes are
+     * ordered, a new range is requested on behalf of the sender if needed.
+     */
+    public DeferredResult<List<String>> getNamePrefixes(Service sender,
+            String resourceNamePrefixLink, long resourceCount) {
+        PendingRequest request = new PendingRequest(sender, resourceCount);
+        allocate(resourceNamePrefixLink, request);
+        return request.result;
+    }
+
+    /**
+     * Drops the ranges of the given prefix document, the next prefixes are taken from a new range.
+     * The unused numbers of the ranges are skipped.
+     */
+    public void invalidate(String resourceNamePrefixLink) {
+        rangesByPrefixLink.remove(resourceNamePrefixLink);
+    }
+
+    private void allocate(String resourceNamePrefixLink, PendingRequest request) {
+        while (true) {
+            PrefixRanges ranges = rangesByPrefixLink.computeIfAbsent(resourceNamePrefixLink,
+                    link -> new PrefixRanges());
+            if (ranges.noRangesExpirationTimeMicros > Utils.getSystemNowMicrosUtc()) {
+                requestPrefixes(resourceNamePrefixLink, request);
+                return;
+            }
+
+            Range range = ranges.current;
+            if (range != null && range.take(request)) {
+                request.result.complete(request.prefixes);
+                return;
+            }
+
+            synchronized (ranges) {
+                if (ranges.current != range
+                        || rangesByPrefixLink.get(resourceNamePrefixLink) != ranges) {
+                    // the range was replaced or dropped meanwhile, take from the new one
+                    continue;
+                }
+                ranges.waiting.add(request);
+                if (ranges.requestingRange) {
+                    return;
+                }
+                ranges.requestingRange = true;
+            }
+
+            requestRange(resourceNamePrefixLink, ranges, request);
+            return;
+        }
+    }
+
+    private void requestRange(String resourceNamePrefixLink, PrefixRanges ranges,
+            PendingRequest request) {
+        NamePrefixRequest body = new NamePrefixRequest();
+        body.resourceCount = request.remaining;
+        body.rangeSize = Math.max(RANGE_SIZE, request.remaining);
+
+        host.sendWithDeferredResult(Operation
+                .createPatch(request.sender, resourceNamePrefixLink)
+                .setBody(body), NamePrefixResponse.class)
+                .whenComplete((response, e) -> {
+                    boolean prefixes = e == null && response.range == null;
+                    List<PendingRequest> waiting;
+                    synchronized (ranges) {
+                        if (prefixes) {
+                            // the sequence is too short for ranges
+                            ranges.noRangesExpirationTimeMicros = Utils.fromNowMicrosUtc(
+                                    RANGE_EXPIRATION_MICROS);
+                        } else if (e == null) {
+                            ranges.current = new Range(response.range);
+                        }
+                        ranges.requestingRange = false;
+                        waiting = new ArrayList<>(ranges.waiting);
+                        ranges.waiting.clear();
+                    }
+                    if (e != null) {
+                        // e.g. the prefix document is deleted, start over with the next request
+                        rangesByPrefixLink.remove(resourceNamePrefixLink, ranges);
+                    }
+
+                    for (PendingRequest pending : waiting) {
+                        if (e != null) {
+                            pending.result.fail(e);
+                        } else if (pending == request && prefixes) {
+                            request.prefixes.addAll(response.resourceNamePrefixes);
+                            request.result.complete(request.prefixes);
+                        } else {
+                            allocate(resourceNamePrefixLink, pending);
+                        }
+                    }
+                });
+    }
+
+    private void requestPrefixes(String resourceNamePrefixLink, PendingRequest request) {
+        NamePrefixRequest body = new NamePrefixRequest();
+        body.resourceCount = request.remaining;
+
+        host.sendWithDeferredResult(Operation
+                .createPatch(request.sender, resourceNamePrefixLink)
+                .setBody(body), NamePrefixResponse.class)
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        request.result.fail(e);
+                        return;
+                    }
+                    request.prefixes.addAll(response.resourceNamePrefixes);
+                    request.result.complete(request.prefixes);
+                });
+    }
+}
@@ -48,6 +48,11 @@ public class ResourceNamePrefixService extends StatefulService {
             FACTORY_LINK, DEFAULT_RESOURCE_NAME_PREFIX_ID);
     private static final String DEFAULT_NAME_PREFIX = "mcm";
     private static final Boolean DEFAULT_ADD_RANDOM_TOKEN = Boolean.TRUE;
+    /**
+     * A range is at most this fraction of the sequence, so that the ranges of the nodes do not
+     * overlap when the counter rolls back. Shorter sequences are not split into ranges.
+     */
+    private static final long RANGE_SEQUENCE_FRACTION = 100;
     private static final long SINCE_TIME = new GregorianCalendar(2016, Calendar.JANUARY, 1)
             .getTime().getTime();
 
@@ -117,11 +122,34 @@ public class ResourceNamePrefixService extends StatefulService {
     /** An DTO used during PATCH request in order to get the next prefix in the sequence. */
     public static class NamePrefixRequest {
         public long resourceCount;
+
+        /**
+         * If set, a range of up to that many numbers is reserved for the requester instead of
+         * returning prefixes. The range ends before the counter rolls back and is at most a small
+         * fraction of the sequence, so it may be smaller. The prefixes are returned as without a
+         * range if the sequence is too short, see
+         * {@link ResourceNamePrefixService#getMaxRangeSize(ResourceNamePrefixState)}.
+         */
+        public long rangeSize;
     }
 
     /** An DTO used during PATCH response in order to return the requested prefixes. */
     public static class NamePrefixResponse {
         public List<String> resourceNamePrefixes;
+
+        /** The reserved range, set only if a range is requested and the sequence is long enough. */
+        public NamePrefixRange range;
+    }
+
+    /**
+     * A contiguous range of numbers reserved from a prefix, along with what is needed to build
+     * the prefixes from it locally.
+     */
+    public static class NamePrefixRange {
+        public String prefix;
+        public boolean addRandomToken;
+        public long firstNumber;
+        public long lastNumber;
     }
 
     public ResourceNamePrefixService() {
@@ -182,6 +210,22 @@ public class ResourceNamePrefixService extends StatefulService {
 
     }
 
+    /**
+     * The ranges of the node are dropped, so that the update is used right away. The other nodes
+     * pick it up once their ranges expire, see {@link ResourceNamePrefixRanges}.
+     */
+    @Override
+    public void handlePut(Operation put) {
+        ResourceNamePrefixRanges.getInstance(getHost()).invalidate(getSelfLink());
+        super.handlePut(put);
+    }
+
+    @Override
+    public void handleDelete(Operation delete) {
+        ResourceNamePrefixRanges.getInstance(getHost()).invalidate(getSelfLink());
+        super.handleDelete(delete);
+    }
+
     @Override
     public void handlePatch(Operation patch) {
         if (!checkForBody(patch)) {
@@ -202,31 +246,74 @@ public class ResourceNamePrefixService extends StatefulService {
         }
 
         NamePrefixResponse response = new NamePrefixResponse();
+        long maxRangeSize = getMaxRangeSize(state);
+        if (request.rangeSize > 0 && maxRangeSize > 1) {
+            response.range = reserveRange(state, Math.min(request.rangeSize, maxRangeSize));
+            patch.setBodyNoCloning(response);
+            patch.complete();
+            return;
+        }
+
         response.resourceNamePrefixes = new ArrayList<String>((int) request.resourceCount);
 
         for (int i = 0; i < request.resourceCount; i++) {
-            final StringBuilder namePrefix = new StringBuilder();
-            namePrefix.append(state.prefix);
-            namePrefix.append(state.currentCount++);
-            if (state.addRandomToken) {
-                namePrefix.append(RANDOM_GENERATED_TOKEN_DELIMITER);
-                //adding time since 2016 as shortest and smallest possible guaranteed random token
-                long timestamp = System.currentTimeMillis() - SINCE_TIME;
-                namePrefix.append(timestamp);
-            }
-            response.resourceNamePrefixes.add(namePrefix.toString());
-            if (state.currentCount > state.getMaxNumber()) {
-                // reset back to the beginning.
-                logWarning("Reseting name prefix counter [%s] to initial value [%s]...",
-                        state.currentCount, state.nextNumber);
-                state.currentCount = state.nextNumber;
-            }
+            response.resourceNamePrefixes.add(buildNamePrefix(state.prefix,
+                    state.currentCount++, state.addRandomToken));
+            resetCounterIfExceeded(state);
         }
 
         patch.setBodyNoCloning(response);
         patch.complete();
     }
 
+    /**
+     * Advances the counter past a range of numbers. The range is not handed out again until the
+     * counter rolls back, so numbers not used by a requester are only skipped.
+     */
+    private NamePrefixRange reserveRange(ResourceNamePrefixState state, long rangeSize) {
+        NamePrefixRange range = new NamePrefixRange();
+        range.prefix = state.prefix;
+        range.addRandomToken = Boolean.TRUE.equals(state.addRandomToken);
+        range.firstNumber = state.currentCount;
+        range.lastNumber = Math.min(state.currentCount + rangeSize - 1, state.getMaxNumber());
+
+        state.currentCount = range.lastNumber + 1;
+        resetCounterIfExceeded(state);
+        return range;
+    }
+
+    /**
+     * The maximum size of a range of the sequence, ranges are not reserved if it is 1 or less.
+     */
+    public static long getMaxRangeSize(ResourceNamePrefixState state) {
+        return (state.getMaxNumber() - state.nextNumber + 1) / RANGE_SEQUENCE_FRACTION;
+    }
+
+    private void resetCounterIfExceeded(ResourceNamePrefixState state) {
+        if (state.currentCount > state.getMaxNumber()) {
+            // reset back to the beginning.
+            logWarning("Reseting name prefix counter [%s] to initial value [%s]...",
+                    state.currentCount, state.nextNumber);
+            state.currentCount = state.nextNumber;
+        }
+    }
+
+    /**
+     * Builds the name prefix for the given number of a sequence.
+     */
+    public static String buildNamePrefix(String prefix, long number, boolean addRandomToken) {
+        final StringBuilder namePrefix = new StringBuilder();
+        namePrefix.append(prefix);
+        namePrefix.append(number);
+        if (addRandomToken) {
+            namePrefix.append(RANDOM_GENERATED_TOKEN_DELIMITER);
+            //adding time since 2016 as shortest and smallest possible guaranteed random token
+            long timestamp = System.currentTimeMillis() - SINCE_TIME;
+            namePrefix.append(timestamp);
+        }
+        return namePrefix.toString();
+    }
+
     @Override
     public ServiceDocument getDocumentTemplate() {
         ServiceDocument template = super.getDocumentTemplate();
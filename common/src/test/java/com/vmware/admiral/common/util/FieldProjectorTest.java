@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.vmware.admiral.service.common.DefaultSubStage;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.Utils;
+
+public class FieldProjectorTest {
+
+    public static class SourceState extends ServiceDocument {
+        public String name;
+        public int count;
+        public DefaultSubStage subStage;
+        public TaskState taskInfo;
+        public Map<String, String> customProperties;
+        public Set<String> resourceLinks;
+        public String notInTarget;
+    }
+
+    public static class TargetState {
+        public String documentSelfLink;
+        public String name = "default-name";
+        public long count;
+        public String subStage;
+        public TaskState taskInfo;
+        public Map<String, String> customProperties;
+        public List<String> resourceLinks;
+        public String notInSource = "default";
+
+        protected TargetState() {
+        }
+    }
+
+    @Test
+    public void testProjectMatchesJsonConversion() {
+        SourceState source = createSource();
+
+        TargetState projected = FieldProjector.project(source, TargetState.class);
+        TargetState converted = Utils.fromJson(Utils.toJson(source), TargetState.class);
+
+        assertEquals(Utils.toJson(converted), Utils.toJson(projected));
+        assertEquals(source.documentSelfLink, projected.documentSelfLink);
+        assertEquals(source.count, projected.count);
+        assertEquals(DefaultSubStage.PROCESSING.name(), projected.subStage);
+        assertEquals(Arrays.asList("link1", "link2"), projected.resourceLinks);
+        assertEquals("default", projected.notInSource);
+    }
+
+    @Test
+    public void testProjectCopiesMutableValues() {
+        SourceState source = createSource();
+
+        TargetState projected = FieldProjector.project(source, TargetState.class);
+        assertNotSame(source.customProperties, projected.customProperties);
+        assertNotSame(source.taskInfo, projected.taskInfo);
+        assertEquals(source.customProperties, projected.customProperties);
+        assertEquals(TaskStage.STARTED, projected.taskInfo.stage);
+
+        source.customProperties.put("key2", "value2");
+        source.taskInfo.stage = TaskStage.FINISHED;
+        assertNull(projected.customProperties.get("key2"));
+        assertEquals(TaskStage.STARTED, projected.taskInfo.stage);
+    }
+
+    @Test
+    public void testProjectSkipsNullValues() {
+        SourceState source = createSource();
+        source.name = null;
+
+        TargetState projected = FieldProjector.project(source, TargetState.class);
+        assertEquals("default-name", projected.name);
+    }
+
+    @Test
+    public void testProjectBackToSourceClass() {
+        SourceState source = createSource();
+        TargetState projected = FieldProjector.project(source, TargetState.class);
+
+        SourceState filtered = FieldProjector.project(projected, SourceState.class);
+        assertEquals(DefaultSubStage.PROCESSING, filtered.subStage);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("link1", "link2")),
+                filtered.resourceLinks);
+        assertNull(filtered.notInTarget);
+    }
+
+    @Test
+    public void testProjectorIsCached() {
+        assertSame(FieldProjector.of(SourceState.class, TargetState.class),
+                FieldProjector.of(SourceState.class, TargetState.class));
+    }
+
+    private static SourceState createSource() {
+        SourceState source = new SourceState();
+        source.documentSelfLink = "/source/1";
+        source.name = "source";
+        source.count = 5;
+        source.subStage = DefaultSubStage.PROCESSING;
+        source.taskInfo = TaskState.createAsStarted();
+        source.customProperties = new HashMap<>();
+        source.customProperties.put("key", "value");
+        source.resourceLinks = new LinkedHashSet<>(Arrays.asList("link1", "link2"));
+        source.notInTarget = "not-in-target";
+        return source;
+    }
+}
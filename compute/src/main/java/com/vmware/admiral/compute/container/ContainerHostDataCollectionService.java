@@ -71,6 +71,7 @@ import com.vmware.photon.controller.model.resources.ComputeService.LifecycleStat
 import com.vmware.photon.controller.model.resources.ComputeService.PowerState;
 import com.vmware.photon.controller.model.resources.ResourcePoolService;
 import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolMembershipIndex;
 import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper;
 import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult.ResourcePoolData;
 import com.vmware.xenon.common.Operation;
@@ -101,6 +102,14 @@ public class ContainerHostDataCollectionService extends StatefulService {
     private static final int DC_BATCH_SIZE = Integer.parseInt(System.getProperty(
             "com.vmware.admiral.compute.container.host.dc.batch.size", "10"));
 
+    /**
+     * Whether the periodic data collection also collects the stats of all running containers of
+     * each host. Disabled by default, the stats of a container are then only collected when they
+     * are requested.
+     */
+    private static final boolean CONTAINERS_STATS_COLLECTION_ENABLED = Boolean.getBoolean(
+            "com.vmware.admiral.compute.container.host.containers.stats.collection");
+
     private static final String LOAD_SKIP_DC_PARAMETER =
             "com.vmware.admiral.compute.container.load.average.dc.skip";
 
@@ -180,6 +189,10 @@ public class ContainerHostDataCollectionService extends StatefulService {
     public void handleStart(Operation post) {
         super.handleStart(post);
 
+        // keep the resource pool membership of the computes in memory for the data collection
+        // and the placement, if enabled
+        ResourcePoolMembershipIndex.start(this);
+
         // perform maintenance on startup to refresh the container attributes
         getHost().registerForServiceAvailability((o, ex) -> {
             if (ex != null) {
@@ -268,7 +281,7 @@ public class ContainerHostDataCollectionService extends StatefulService {
                                 } else {
                                     // These can be changed back to accepting only the self link
                                     // because the adapter can only be docker.
-                                    updateContainerHostContainers(computeState);
+                                    updateContainerHostContainers(computeState, false);
                                     updateContainerHostNetworks(computeState);
                                     updateContainerHostVolumes(computeState.documentSelfLink);
                                 }
@@ -683,6 +696,24 @@ public class ContainerHostDataCollectionService extends StatefulService {
                 }));
     }
 
+    private void updateContainerHostContainersStats(ComputeState computeHost) {
+        AdapterRequest request = new AdapterRequest();
+        request.operationTypeId = ContainerHostOperationType.CONTAINERS_STATS.id;
+        request.serviceTaskCallback = ServiceTaskCallback.createEmpty();
+        request.resourceReference = UriUtils.buildUri(getHost(), computeHost.documentSelfLink);
+        URI adapterManagementReference = computeHost.endpointLink == null
+                ? computeHost.adapterManagementReference : getDefaultHostAdapter(getHost());
+        sendRequest(Operation.createPatch(adapterManagementReference)
+                .setAuthorizationContext(getSystemAuthorizationContext())
+                .setBodyNoCloning(request)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logWarning("Failed request host containers stats: %s",
+                                Utils.toString(ex));
+                    }
+                }));
+    }
+
     @Override
     public void handlePeriodicMaintenance(Operation post) {
         if (getProcessingStage() != ProcessingStage.AVAILABLE) {
@@ -811,7 +842,10 @@ public class ContainerHostDataCollectionService extends StatefulService {
                 if (ContainerHostUtil.isKubernetesHost(compute)) {
                     updateKubernetesEntities(compute.documentSelfLink);
                 } else {
-                    updateContainerHostContainers(compute);
+                    updateContainerHostContainers(compute, true);
+                    if (CONTAINERS_STATS_COLLECTION_ENABLED) {
+                        updateContainerHostContainersStats(compute);
+                    }
                     updateContainerHostNetworks(compute);
                     updateContainerHostVolumes(compute.documentSelfLink);
                 }
@@ -951,9 +985,10 @@ public class ContainerHostDataCollectionService extends StatefulService {
                 }));
     }
 
-    private void updateContainerHostContainers(ComputeState cs) {
+    private void updateContainerHostContainers(ComputeState cs, boolean periodic) {
         ContainerListCallback body = new ContainerListCallback();
         body.containerHostLink = cs.documentSelfLink;
+        body.periodic = periodic;
         body.hostAdapterReference = cs.endpointLink == null ? cs.adapterManagementReference
                 : getDefaultHostAdapter(getHost());
         sendRequest(Operation
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.container.ContainerStatsService.ContainerStatsBatch;
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentDescription.PropertyIndexingOption;
+import com.vmware.xenon.common.StatefulService;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Stats of the running containers of a host, collected in bulk by the host adapter. Every
+ * collection is stored with a single update of the document of the host. The stats of a container
+ * are applied to it from this document only when they are requested, on any node.
+ */
+public class ContainerHostStatsService extends StatefulService {
+    public static final String FACTORY_LINK = ManagementUriParts.CONTAINER_HOST_STATS;
+
+    /**
+     * The stats of a host which are not collected for this long are removed.
+     */
+    private static final long EXPIRATION_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.stats.bulk.expiration.micros",
+            TimeUnit.HOURS.toMicros(1));
+
+    public static class ContainerHostStatsState extends ServiceDocument {
+        @Documentation(description = "The stats of the running containers of the host by"
+                + " container link.")
+        @PropertyOptions(indexing = {
+                PropertyIndexingOption.STORE_ONLY,
+                PropertyIndexingOption.EXCLUDE_FROM_SIGNATURE })
+        public Map<String, ContainerStats> statsByContainerLink;
+
+        @Documentation(description = "Time of the last collection, in microseconds since UNIX"
+                + " epoch.")
+        @PropertyOptions(indexing = PropertyIndexingOption.STORE_ONLY)
+        public Long collectedMicros;
+    }
+
+    public static String getStatsLink(String hostLink) {
+        return UriUtils.buildUriPath(FACTORY_LINK, UriUtils.getLastPathSegment(hostLink));
+    }
+
+    public ContainerHostStatsService() {
+        super(ContainerHostStatsState.class);
+        super.toggleOption(ServiceOption.PERSISTENCE, true);
+        super.toggleOption(ServiceOption.REPLICATION, true);
+        super.toggleOption(ServiceOption.OWNER_SELECTION, true);
+        super.toggleOption(ServiceOption.IDEMPOTENT_POST, true);
+    }
+
+    @Override
+    public void handleStart(Operation start) {
+        if (!start.hasBody()) {
+            start.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        initialize(start.getBody(ContainerHostStatsState.class));
+        start.complete();
+    }
+
+    @Override
+    public void handlePut(Operation put) {
+        if (!put.hasBody()) {
+            put.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        ContainerHostStatsState state = put.getBody(ContainerHostStatsState.class);
+        initialize(state);
+        setState(put, state);
+        put.complete();
+    }
+
+    /**
+     * Replaces the stats of the host with the ones of a new collection. The containers listed as
+     * unchanged keep their previous stats, the ones missing from the collection are dropped.
+     */
+    @Override
+    public void handlePatch(Operation patch) {
+        if (!patch.hasBody()) {
+            patch.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        ContainerStatsBatch batch = patch.getBody(ContainerStatsBatch.class);
+        ContainerHostStatsState state = getState(patch);
+
+        Map<String, ContainerStats> stats = new HashMap<>();
+        if (batch.unchangedContainerLinks != null) {
+            for (String containerLink : batch.unchangedContainerLinks) {
+                ContainerStats previous = state.statsByContainerLink.get(containerLink);
+                if (previous != null) {
+                    stats.put(containerLink, previous);
+                }
+            }
+        }
+        if (batch.statsByContainerLink != null) {
+            stats.putAll(batch.statsByContainerLink);
+        }
+        state.statsByContainerLink = stats;
+        state.collectedMicros = Utils.getNowMicrosUtc();
+        state.documentExpirationTimeMicros = Utils.fromNowMicrosUtc(EXPIRATION_MICROS);
+        patch.complete();
+    }
+
+    private static void initialize(ContainerHostStatsState state) {
+        if (state.statsByContainerLink == null) {
+            state.statsByContainerLink = new HashMap<>();
+        }
+        if (state.collectedMicros == null) {
+            state.collectedMicros = Utils.getNowMicrosUtc();
+        }
+        state.documentExpirationTimeMicros = Utils.fromNowMicrosUtc(EXPIRATION_MICROS);
+    }
+}
@@ -14,13 +14,16 @@ package com.vmware.admiral.compute.container;
 import static com.vmware.admiral.common.util.ServiceUtils.addServiceRequestRoute;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.common.util.ServiceUtils;
+import com.vmware.admiral.compute.container.ContainerHostStatsService.ContainerHostStatsState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.maintenance.ContainerStats;
 import com.vmware.admiral.service.common.ServiceTaskCallback;
@@ -48,6 +51,27 @@ public class ContainerStatsService extends StatelessService {
         }
     };
 
+    /**
+     * Stats collected in bulk for a container are served without a new adapter request while
+     * they are not older than this.
+     */
+    private static final long BULK_STATS_MAX_AGE_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.container.stats.bulk.max.age.micros",
+            TimeUnit.SECONDS.toMicros(60));
+
+    /**
+     * Stats of the running containers of a host, collected in bulk by the host adapter. Only the
+     * containers which stats have changed since the previous collection are sent with their
+     * values, the rest are just listed as unchanged.
+     */
+    public static class ContainerStatsBatch {
+        public String hostLink;
+
+        public Map<String, ContainerStats> statsByContainerLink;
+
+        public List<String> unchangedContainerLinks;
+    }
+
     @Override
     public void handleGet(Operation get) {
         Map<String, String> params = UriUtils.parseUriQueryParams(get.getUri());
@@ -77,8 +101,14 @@ public class ContainerStatsService extends StatelessService {
                     }
                     ServiceUtils.handleExceptions(op, () -> {
                         ContainerState containerState = o.getBody(ContainerState.class);
-                        processInspect(containerState, () ->
-                                processStatsRequest(op, containerState));
+                        processInspect(containerState, () -> getFreshBulkStats(containerState,
+                                (bulkStats) -> {
+                                    if (bulkStats != null) {
+                                        processBulkStats(op, containerState, bulkStats);
+                                    } else {
+                                        processStatsRequest(op, containerState);
+                                    }
+                                }));
                     });
                 }));
     }
@@ -104,6 +134,24 @@ public class ContainerStatsService extends StatelessService {
                 }));
     }
 
+    /**
+     * Applies the stats collected in bulk to the container and then return /stats as body
+     * response
+     */
+    private void processBulkStats(Operation op, ContainerState containerState,
+            ContainerStats bulkStats) {
+        sendRequest(Operation
+                .createPatch(this, containerState.documentSelfLink)
+                .setBodyNoCloning(bulkStats)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        logWarning("Exception in stats update for container: %s. Error: %s",
+                                containerState.documentSelfLink, Utils.toString(ex));
+                    }
+                    forwardStatsResponse(op, containerState);
+                }));
+    }
+
     /**
      * Executes /stats request to the container state and copy its response to the GET operation.
      */
@@ -123,6 +171,84 @@ public class ContainerStatsService extends StatelessService {
                 }));
     }
 
+    /**
+     * Stores the stats of a host collected in bulk with a single update of the
+     * {@link ContainerHostStatsService} document of the host, instead of updating every container
+     * of the host.
+     */
+    @Override
+    public void handlePost(Operation post) {
+        if (!post.hasBody()) {
+            post.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+        ContainerStatsBatch batch = post.getBody(ContainerStatsBatch.class);
+        if (batch.hostLink == null) {
+            post.fail(new IllegalArgumentException("hostLink is required"));
+            return;
+        }
+
+        String statsLink = ContainerHostStatsService.getStatsLink(batch.hostLink);
+        sendRequest(Operation.createPatch(this, statsLink)
+                .setBodyNoCloning(batch)
+                .setCompletion((o, ex) -> {
+                    if (o.getStatusCode() == Operation.STATUS_CODE_NOT_FOUND) {
+                        createHostStats(post, statsLink, batch);
+                    } else if (ex != null) {
+                        post.fail(ex);
+                    } else {
+                        post.complete();
+                    }
+                }));
+    }
+
+    private void createHostStats(Operation post, String statsLink, ContainerStatsBatch batch) {
+        ContainerHostStatsState state = new ContainerHostStatsState();
+        state.documentSelfLink = statsLink;
+        state.statsByContainerLink = batch.statsByContainerLink;
+        sendRequest(Operation.createPost(this, ContainerHostStatsService.FACTORY_LINK)
+                .setBodyNoCloning(state)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        post.fail(ex);
+                    } else {
+                        post.complete();
+                    }
+                }));
+    }
+
+    /**
+     * Passes the stats of the container collected in bulk with the stats of its host to the
+     * callback, or {@code null} if there are no such stats or they are not fresh.
+     */
+    private void getFreshBulkStats(ContainerState containerState,
+            Consumer<ContainerStats> callback) {
+        if (containerState.parentLink == null) {
+            callback.accept(null);
+            return;
+        }
+
+        sendRequest(Operation.createGet(this,
+                ContainerHostStatsService.getStatsLink(containerState.parentLink))
+                .disableFailureLogging(true)
+                .setCompletion((o, ex) -> {
+                    if (ex != null) {
+                        // not collected in bulk
+                        callback.accept(null);
+                        return;
+                    }
+                    ContainerHostStatsState state = o.getBody(ContainerHostStatsState.class);
+                    if (state.statsByContainerLink == null || state.collectedMicros == null
+                            || state.collectedMicros < Utils.fromNowMicrosUtc(
+                                    -BULK_STATS_MAX_AGE_MICROS)) {
+                        callback.accept(null);
+                        return;
+                    }
+                    callback.accept(state.statsByContainerLink.get(
+                            containerState.documentSelfLink));
+                }));
+    }
+
     private void processInspect(ContainerState container, Runnable callback) {
         if (!isInspectionNeeded(container)) {
             callback.run();
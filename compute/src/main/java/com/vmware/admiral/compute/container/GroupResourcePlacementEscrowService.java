@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.EscrowLease;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.EscrowRequest;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.ResourcePlacementReservationRequest;
+import com.vmware.xenon.common.LocalizableValidationException;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Node local escrow of the capacity of the {@link GroupResourcePlacementState}s. Instead of
+ * reserving each request with a PATCH of the placement, which serializes the parallel requests on
+ * the owner of the placement, the escrow leases a block of instances and memory from the
+ * placement and grants the reservations of the node from it locally. A lease is capped at
+ * {@link #LEASE_PERCENT} of the capacity available to the node, so that the other nodes can lease
+ * the rest, but covers at least the reservation it is requested for. A reservation which the lease
+ * still comes back short of is sent to the placement directly.
+ * <p>
+ * The granted reservations are settled, and the lease renewed, with the placement on periodic
+ * maintenance. The lease is returned once there are no more reservations on the node, and when
+ * the node stops. The limits of the placement hold as the leased capacity is not available to the
+ * other nodes. The lease of a node which stops renewing it, e.g. after a crash, is returned by the
+ * placement once it expires, charging what its resources actually use.
+ * <p>
+ * Reservations are sent to the escrow with a PATCH of a
+ * {@link ResourcePlacementReservationRequest} with the placement link, when
+ * {@link #ENABLED}. Releases are still sent to the placement directly. A GET returns the
+ * {@link EscrowStats} of the node.
+ */
+public class GroupResourcePlacementEscrowService extends StatelessService {
+
+    public static final String SELF_LINK = ManagementUriParts.RESOURCE_GROUP_PLACEMENT_ESCROW;
+
+    public static final boolean ENABLED = Boolean.getBoolean(
+            "com.vmware.admiral.compute.placements.escrow");
+
+    /**
+     * The minimum number of instances leased at once.
+     */
+    public static final long BLOCK_INSTANCES = Long.getLong(
+            "com.vmware.admiral.compute.placements.escrow.block.instances", 10);
+
+    /**
+     * The maximum share of the available capacity of a placement, in percent, leased by a node.
+     */
+    public static final int LEASE_PERCENT = Math.max(1, Math.min(100, Integer.getInteger(
+            "com.vmware.admiral.compute.placements.escrow.lease.percent", 25)));
+
+    public static final long LEASE_EXPIRATION_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.placements.escrow.lease.expiration.micros",
+            TimeUnit.MINUTES.toMicros(1));
+
+    public static final long SETTLE_INTERVAL_MICROS = Long.getLong(
+            "com.vmware.admiral.compute.placements.escrow.settle.interval.micros",
+            TimeUnit.SECONDS.toMicros(5));
+
+    public static class EscrowStats {
+        public long grantCount;
+        public long rejectCount;
+        public long leaseRequestCount;
+        /** Reservations sent to the placement directly as the lease was short of them. */
+        public long directCount;
+        /** The unused leased capacity and the not settled reservations, per placement. */
+        public Map<String, PlacementLease> leases = new HashMap<>();
+    }
+
+    public static class PlacementLease {
+        public long instances;
+        public long memory;
+        public long grantedInstances;
+        public long grantedMemory;
+        public boolean unlimitedInstances;
+        public boolean unlimitedMemory;
+    }
+
+    private static class Lease {
+        private final PlacementLease capacity = new PlacementLease();
+        /** The state of the placement returned by the last lease request. */
+        private GroupResourcePlacementState placement;
+        private boolean leasing;
+        /** Set once the lease is removed from the escrow, it must not grant anymore. */
+        private boolean removed;
+        /** Whether reservations were requested since the last maintenance. */
+        private boolean used;
+        private final List<Runnable> waiting = new ArrayList<>();
+    }
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicLong grantCount = new AtomicLong();
+    private final AtomicLong rejectCount = new AtomicLong();
+    private final AtomicLong leaseRequestCount = new AtomicLong();
+    private final AtomicLong directCount = new AtomicLong();
+
+    public GroupResourcePlacementEscrowService() {
+        super.toggleOption(ServiceOption.PERIODIC_MAINTENANCE, true);
+        super.setMaintenanceIntervalMicros(SETTLE_INTERVAL_MICROS);
+    }
+
+    @Override
+    public void handleGet(Operation get) {
+        EscrowStats stats = new EscrowStats();
+        stats.grantCount = grantCount.get();
+        stats.rejectCount = rejectCount.get();
+        stats.leaseRequestCount = leaseRequestCount.get();
+        stats.directCount = directCount.get();
+        leases.forEach((link, lease) -> {
+            synchronized (lease) {
+                stats.leases.put(link, Utils.clone(lease.capacity));
+            }
+        });
+        get.setBody(stats).complete();
+    }
+
+    @Override
+    public void handlePatch(Operation patch) {
+        if (!patch.hasBody()) {
+            patch.fail(new IllegalArgumentException("body is required"));
+            return;
+        }
+
+        ResourcePlacementReservationRequest request = patch
+                .getBody(ResourcePlacementReservationRequest.class);
+        if (request.groupResourcePlacementLink == null
+                || request.groupResourcePlacementLink.isEmpty()) {
+            patch.fail(new LocalizableValidationException(
+                    "'groupResourcePlacementLink' is required.",
+                    "compute.placements.escrow.placement.required"));
+            return;
+        }
+        if (request.resourceCount <= 0) {
+            patch.fail(new LocalizableValidationException(
+                    "'resourceCount' must be positive, releases are sent to the placement.",
+                    "compute.placements.escrow.count.positive"));
+            return;
+        }
+        if (request.resourceDescriptionLink == null
+                || request.resourceDescriptionLink.isEmpty()) {
+            patch.fail(new LocalizableValidationException("'resourceDescriptionLink' is required.",
+                    "compute.placements.resource-desc.required"));
+            return;
+        }
+
+        getRequestedMemory(patch, request, (memory) -> reserve(patch, request, memory, false));
+    }
+
+    @Override
+    public void handlePeriodicMaintenance(Operation post) {
+        post.complete();
+
+        leases.forEach((link, lease) -> {
+            long leaseInstances;
+            long leaseMemory;
+            synchronized (lease) {
+                PlacementLease capacity = lease.capacity;
+                boolean holds = capacity.instances > 0 || capacity.memory > 0;
+                boolean granted = capacity.grantedInstances > 0 || capacity.grantedMemory > 0;
+                if (lease.leasing) {
+                    return;
+                }
+                if (!holds && !granted && !lease.used) {
+                    lease.removed = true;
+                    leases.remove(link, lease);
+                    return;
+                }
+                if (!holds && !granted) {
+                    lease.used = false;
+                    return;
+                }
+                // keep the lease while in use, return it otherwise
+                leaseInstances = lease.used ? capacity.instances : 0;
+                leaseMemory = lease.used ? capacity.memory : 0;
+                lease.used = false;
+                lease.leasing = true;
+            }
+            sendLeaseRequest(link, lease, leaseInstances, leaseMemory, 0, 0, () -> {
+            }, (e) -> logWarning("Failed to settle the escrow of placement %s: %s", link,
+                    Utils.toString(e)));
+        });
+    }
+
+    /**
+     * Settles the granted reservations and returns the leases, so that their capacity is
+     * available to the other nodes right away instead of once the leases expire.
+     */
+    @Override
+    public void handleStop(Operation delete) {
+        List<Runnable> returns = new ArrayList<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        Runnable completion = () -> {
+            if (pending.decrementAndGet() == 0) {
+                delete.complete();
+            }
+        };
+        leases.forEach((link, lease) -> {
+            Runnable returnLease = () -> sendLeaseRequest(link, lease, 0, 0, 0, 0, completion,
+                    (e) -> {
+                        logWarning("Failed to return the escrow of placement %s: %s", link,
+                                Utils.toString(e));
+                        completion.run();
+                    });
+            pending.incrementAndGet();
+            synchronized (lease) {
+                lease.removed = true;
+                leases.remove(link, lease);
+                if (lease.leasing) {
+                    lease.waiting.add(() -> {
+                        synchronized (lease) {
+                            lease.leasing = true;
+                        }
+                        returnLease.run();
+                    });
+                    return;
+                }
+                lease.leasing = true;
+            }
+            returns.add(returnLease);
+        });
+        returns.forEach(Runnable::run);
+        completion.run();
+    }
+
+    private void reserve(Operation patch, ResourcePlacementReservationRequest request,
+            long memory, boolean leased) {
+        String placementLink = request.groupResourcePlacementLink;
+        Lease lease = leases.computeIfAbsent(placementLink, (k) -> new Lease());
+
+        GroupResourcePlacementState placement;
+        synchronized (lease) {
+            if (lease.removed) {
+                reserve(patch, request, memory, leased);
+                return;
+            }
+            lease.used = true;
+            placement = grant(lease, request.resourceCount, memory);
+            if (placement == null && !leased) {
+                if (lease.leasing) {
+                    lease.waiting.add(() -> reserve(patch, request, memory, false));
+                    return;
+                }
+                lease.leasing = true;
+            }
+        }
+
+        if (placement != null) {
+            grantCount.incrementAndGet();
+            patch.setBody(placement).complete();
+            return;
+        }
+
+        if (leased) {
+            // the placement could not lease enough, it might have been released in the meantime
+            reserveDirectly(patch, request);
+            return;
+        }
+
+        long leaseInstances = Math.max(request.resourceCount, BLOCK_INSTANCES);
+        long leaseMemory = memory / request.resourceCount * leaseInstances;
+        sendLeaseRequest(placementLink, lease, leaseInstances, leaseMemory, request.resourceCount,
+                memory, () -> reserve(patch, request, memory, true), patch::fail);
+    }
+
+    /**
+     * Reserves from the placement with a PATCH, as without the escrow.
+     */
+    private void reserveDirectly(Operation patch, ResourcePlacementReservationRequest request) {
+        directCount.incrementAndGet();
+        Operation reservePatch = Operation.createPatch(this, request.groupResourcePlacementLink)
+                .setBody(request)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        rejectCount.incrementAndGet();
+                        patch.fail(e);
+                        return;
+                    }
+                    GroupResourcePlacementState placement = o
+                            .getBody(GroupResourcePlacementState.class);
+                    placement.escrowLeases = null;
+                    patch.setBody(placement).complete();
+                });
+        setAuthorizationContext(reservePatch, getSystemAuthorizationContext());
+        sendRequest(reservePatch);
+    }
+
+    /**
+     * Grants the reservation from the lease, returns the placement or {@code null} if the lease
+     * is not enough.
+     */
+    private GroupResourcePlacementState grant(Lease lease, long count, long memory) {
+        PlacementLease capacity = lease.capacity;
+        if (lease.placement == null
+                || (!capacity.unlimitedInstances && capacity.instances < count)
+                || (!capacity.unlimitedMemory && capacity.memory < memory)) {
+            return null;
+        }
+
+        if (!capacity.unlimitedInstances) {
+            capacity.instances -= count;
+        }
+        if (!capacity.unlimitedMemory) {
+            capacity.memory -= memory;
+            capacity.grantedMemory += memory;
+        }
+        capacity.grantedInstances += count;
+        return Utils.clone(lease.placement);
+    }
+
+    /**
+     * Settles the granted reservations with the placement and resizes the lease to the given
+     * capacity, at least to the given reservation. The lease must be marked as leasing.
+     */
+    private void sendLeaseRequest(String placementLink, Lease lease, long leaseInstances,
+            long leaseMemory, long reserveInstances, long reserveMemory,
+            Runnable successCallback, Consumer<Throwable> failureCallback) {
+        EscrowRequest escrow = new EscrowRequest();
+        escrow.nodeId = getHost().getId();
+        escrow.leaseInstances = leaseInstances;
+        escrow.leaseMemory = leaseMemory;
+        escrow.reserveInstances = reserveInstances;
+        escrow.reserveMemory = reserveMemory;
+        synchronized (lease) {
+            escrow.grantedInstances = lease.capacity.grantedInstances;
+            escrow.grantedMemory = lease.capacity.grantedMemory;
+            lease.capacity.grantedInstances = 0;
+            lease.capacity.grantedMemory = 0;
+        }
+
+        ResourcePlacementReservationRequest request = new ResourcePlacementReservationRequest();
+        request.referer = getSelfLink();
+        request.escrow = escrow;
+
+        leaseRequestCount.incrementAndGet();
+        Operation leasePatch = Operation.createPatch(this, placementLink)
+                .setBody(request)
+                .setCompletion((o, e) -> {
+                    List<Runnable> waiting;
+                    synchronized (lease) {
+                        lease.leasing = false;
+                        if (e != null) {
+                            // settle the reservations with the next request
+                            lease.capacity.grantedInstances += escrow.grantedInstances;
+                            lease.capacity.grantedMemory += escrow.grantedMemory;
+                        } else {
+                            updateLease(lease, o.getBody(GroupResourcePlacementState.class));
+                        }
+                        waiting = new ArrayList<>(lease.waiting);
+                        lease.waiting.clear();
+                    }
+
+                    if (e != null) {
+                        if (o.getStatusCode() == Operation.STATUS_CODE_NOT_FOUND) {
+                            synchronized (lease) {
+                                lease.removed = true;
+                            }
+                            leases.remove(placementLink, lease);
+                        }
+                        failureCallback.accept(e);
+                    } else {
+                        successCallback.run();
+                    }
+                    waiting.forEach(Runnable::run);
+                });
+        setAuthorizationContext(leasePatch, getSystemAuthorizationContext());
+        sendRequest(leasePatch);
+    }
+
+    private void updateLease(Lease lease, GroupResourcePlacementState placement) {
+        EscrowLease leased = placement.escrowLeases != null
+                ? placement.escrowLeases.get(getHost().getId()) : null;
+        PlacementLease capacity = lease.capacity;
+
+        // the reservations granted while the request was sent are not settled yet
+        capacity.instances = Math.max(0,
+                (leased != null ? leased.instances : 0) - capacity.grantedInstances);
+        capacity.memory = Math.max(0,
+                (leased != null ? leased.memory : 0) - capacity.grantedMemory);
+        capacity.unlimitedInstances = placement.maxNumberInstances
+                == GroupResourcePlacementService.UNLIMITED_NUMBER_INSTANCES;
+        capacity.unlimitedMemory = placement.memoryLimit == 0;
+
+        placement.escrowLeases = null;
+        lease.placement = placement;
+    }
+
+    private void getRequestedMemory(Operation patch, ResourcePlacementReservationRequest request,
+            Consumer<Long> callback) {
+        sendRequest(Operation.createGet(this, request.resourceDescriptionLink)
+                .setCompletion((o, e) -> {
+                    if (Operation.STATUS_CODE_NOT_FOUND == o.getStatusCode()
+                            || e instanceof CancellationException) {
+                        logWarning("Resource description %s not found. There might be some"
+                                + " inconsistencies with memory allocations",
+                                request.resourceDescriptionLink);
+                        callback.accept(0L);
+                        return;
+                    }
+                    if (e != null) {
+                        patch.fail(new LocalizableValidationException(
+                                "Unable to get the resource description with link: "
+                                        + request.resourceDescriptionLink,
+                                "compute.resource-placement.unavailable",
+                                request.resourceDescriptionLink));
+                        return;
+                    }
+
+                    Long memoryLimit = o.getBody(ContainerDescription.class).memoryLimit;
+                    callback.accept(memoryLimit != null
+                            ? memoryLimit * request.resourceCount : 0L);
+                }));
+    }
+}
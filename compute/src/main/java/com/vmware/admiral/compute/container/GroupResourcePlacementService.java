@@ -37,6 +37,7 @@ import com.vmware.xenon.common.ServiceDocumentDescription.PropertyIndexingOption
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyUsageOption;
 import com.vmware.xenon.common.StatefulService;
 import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
 
 /**
@@ -210,6 +211,25 @@ public class GroupResourcePlacementService extends StatefulService {
         @Deprecated
         public Map<String, Long> memoryQuotaPerResourceDesc;
 
+        /**
+         * Set by Task. The capacity leased by the nodes in escrow mode, per node id. It is not
+         * included in the available instances and memory, see
+         * {@link GroupResourcePlacementEscrowService}.
+         */
+        @Documentation(description = "The capacity leased by the nodes in escrow mode.")
+        @UsageOption(option = PropertyUsageOption.SERVICE_USE)
+        @PropertyOptions(indexing = { PropertyIndexingOption.STORE_ONLY })
+        public Map<String, EscrowLease> escrowLeases;
+
+    }
+
+    /**
+     * Capacity of a placement leased by a node, which grants reservations from it locally.
+     */
+    public static class EscrowLease {
+        public long instances;
+        public long memory;
+        public long expirationTimeMicros;
     }
 
     /**
@@ -219,6 +239,27 @@ public class GroupResourcePlacementService extends StatefulService {
         public long resourceCount;
         public String resourceDescriptionLink;
         public String referer;
+
+        /** The placement to reserve from, set for requests to the escrow of the node. */
+        public String groupResourcePlacementLink;
+
+        /** Set for the lease requests of the escrow of a node instead of the count. */
+        public EscrowRequest escrow;
+    }
+
+    /**
+     * Settles the reservations granted by a node from its lease since its previous request and
+     * resizes the lease to the requested capacity, as much as available.
+     */
+    public static class EscrowRequest {
+        public String nodeId;
+        public long grantedInstances;
+        public long grantedMemory;
+        public long leaseInstances;
+        public long leaseMemory;
+        /** The reservation the lease is requested for, leased even beyond the share of the node. */
+        public long reserveInstances;
+        public long reserveMemory;
     }
 
     /**
@@ -325,7 +366,9 @@ public class GroupResourcePlacementService extends StatefulService {
             currentState.priority = putBody.priority;
             currentState.customProperties = putBody.customProperties;
 
-            long reserved = currentState.allocatedInstancesCount;
+            // the capacity leased by the nodes is reserved too
+            long reserved = currentState.allocatedInstancesCount
+                    + getEscrowInstances(currentState);
             if (putBody.maxNumberInstances != UNLIMITED_NUMBER_INSTANCES
                     && putBody.maxNumberInstances < reserved) {
                 put.fail(new LocalizableValidationException("'maxNumberInstances' cannot be less "
@@ -394,6 +437,11 @@ public class GroupResourcePlacementService extends StatefulService {
         GroupResourcePlacementState state = getState(patch);
         adjustStat(ResourcePlacementReservationRequest.class.getSimpleName(), 1);
 
+        if (request.escrow != null) {
+            handleEscrowRequest(patch, state, request.escrow);
+            return;
+        }
+
         final long currentCount = state.maxNumberInstances != UNLIMITED_NUMBER_INSTANCES
                 ? state.availableInstancesCount - request.resourceCount
                 : UNLIMITED_NUMBER_INSTANCES;
@@ -461,6 +509,169 @@ public class GroupResourcePlacementService extends StatefulService {
                         }));
     }
 
+    private void handleEscrowRequest(Operation patch, GroupResourcePlacementState state,
+            EscrowRequest request) {
+        if (request.nodeId == null || request.nodeId.isEmpty()) {
+            patch.fail(new LocalizableValidationException("'nodeId' is required.",
+                    "compute.placements.escrow.node.required"));
+            return;
+        }
+
+        long now = Utils.getSystemNowMicrosUtc();
+        if (state.escrowLeases == null) {
+            state.escrowLeases = new HashMap<>();
+        }
+        reconcileExpiredEscrowLeases(state, now,
+                () -> handleEscrowRequest(patch, state, request, now));
+    }
+
+    private void handleEscrowRequest(Operation patch, GroupResourcePlacementState state,
+            EscrowRequest request, long now) {
+        boolean limitedInstances = state.maxNumberInstances != UNLIMITED_NUMBER_INSTANCES;
+        boolean limitedMemory = state.memoryLimit != 0;
+        EscrowLease lease = state.escrowLeases.computeIfAbsent(request.nodeId,
+                (k) -> new EscrowLease());
+
+        // settle the reservations granted from the lease
+        state.allocatedInstancesCount += request.grantedInstances;
+        lease.instances = Math.max(0, lease.instances - request.grantedInstances);
+        lease.memory = Math.max(0, lease.memory - request.grantedMemory);
+
+        // resize the lease, up to a share of the capacity available to the node, the unlimited
+        // capacity needs no lease
+        if (limitedInstances) {
+            long delta = getEscrowLease(request.leaseInstances, request.reserveInstances,
+                    lease.instances, state.availableInstancesCount) - lease.instances;
+            state.availableInstancesCount -= delta;
+            lease.instances += delta;
+        } else {
+            lease.instances = 0;
+        }
+        if (limitedMemory) {
+            long delta = getEscrowLease(request.leaseMemory, request.reserveMemory,
+                    lease.memory, state.availableMemory) - lease.memory;
+            state.availableMemory -= delta;
+            lease.memory += delta;
+        } else {
+            lease.memory = 0;
+        }
+
+        if (lease.instances == 0 && lease.memory == 0) {
+            state.escrowLeases.remove(request.nodeId);
+        } else {
+            lease.expirationTimeMicros = now
+                    + GroupResourcePlacementEscrowService.LEASE_EXPIRATION_MICROS;
+        }
+
+        logFine("%s: escrow of node %s settled %d instances, leased %d instances, %d memory",
+                state.name, request.nodeId, request.grantedInstances, lease.instances,
+                lease.memory);
+        patch.setBody(state).complete();
+    }
+
+    /**
+     * The size of a lease, as requested but at most
+     * {@link GroupResourcePlacementEscrowService#LEASE_PERCENT} of the capacity available to the
+     * node, i.e. its current lease and the capacity not leased, unless more is needed for the
+     * reservation the lease is requested for.
+     */
+    private static long getEscrowLease(long requested, long reserve, long leased,
+            long available) {
+        long availableToNode = leased + Math.max(0, available);
+        long cap = (availableToNode * GroupResourcePlacementEscrowService.LEASE_PERCENT + 99)
+                / 100;
+        return Math.max(0, Math.min(availableToNode,
+                Math.max(reserve, Math.min(requested, cap))));
+    }
+
+    /**
+     * The leases of the nodes which stopped renewing them, e.g. after a crash, are returned to the
+     * available capacity. Their nodes might have granted reservations from them which were not
+     * settled, so the allocated capacity is then raised to what the resources of the placement
+     * actually use.
+     */
+    private void reconcileExpiredEscrowLeases(GroupResourcePlacementState state, long now,
+            Runnable callback) {
+        List<String> expired = new ArrayList<>();
+        state.escrowLeases.forEach((nodeId, lease) -> {
+            if (lease.expirationTimeMicros <= now) {
+                expired.add(nodeId);
+            }
+        });
+        if (expired.isEmpty()) {
+            callback.run();
+            return;
+        }
+
+        for (String nodeId : expired) {
+            EscrowLease lease = state.escrowLeases.remove(nodeId);
+            logWarning("%s: escrow lease of node %s expired, returning %d instances and %d"
+                    + " memory", state.name, nodeId, lease.instances, lease.memory);
+            if (state.maxNumberInstances != UNLIMITED_NUMBER_INSTANCES) {
+                state.availableInstancesCount += lease.instances;
+            }
+            if (state.memoryLimit != 0) {
+                state.availableMemory += lease.memory;
+            }
+        }
+
+        if (!ResourceType.CONTAINER_TYPE.getName().equals(state.resourceType)) {
+            callback.run();
+            return;
+        }
+
+        QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
+                ContainerState.FIELD_NAME_GROUP_RESOURCE_PLACEMENT_LINK, state.documentSelfLink);
+        QueryUtil.addExpandOption(queryTask);
+        long[] used = new long[2];
+        new ServiceDocumentQuery<>(getHost(), ContainerState.class).query(queryTask, (r) -> {
+            if (r.hasException()) {
+                logWarning("%s: failed to count the resources of the expired escrow leases: %s",
+                        state.name, Utils.toString(r.getException()));
+                callback.run();
+            } else if (r.hasResult()) {
+                used[0]++;
+                if (r.getResult().memoryLimit != null) {
+                    used[1] += r.getResult().memoryLimit;
+                }
+            } else {
+                chargeUnsettledEscrowGrants(state, used[0], used[1]);
+                callback.run();
+            }
+        });
+    }
+
+    private void chargeUnsettledEscrowGrants(GroupResourcePlacementState state, long instances,
+            long memory) {
+        long unsettledInstances = instances - state.allocatedInstancesCount;
+        if (unsettledInstances > 0) {
+            logWarning("%s: charging %d instances not settled by the expired escrow leases",
+                    state.name, unsettledInstances);
+            state.allocatedInstancesCount += unsettledInstances;
+            if (state.maxNumberInstances != UNLIMITED_NUMBER_INSTANCES) {
+                state.availableInstancesCount -= unsettledInstances;
+            }
+        }
+
+        if (state.memoryLimit != 0) {
+            long reservedMemory = state.memoryLimit - state.availableMemory
+                    - state.escrowLeases.values().stream().mapToLong(lease -> lease.memory).sum();
+            long unsettledMemory = memory - reservedMemory;
+            if (unsettledMemory > 0) {
+                logWarning("%s: charging %d memory not settled by the expired escrow leases",
+                        state.name, unsettledMemory);
+                state.availableMemory -= unsettledMemory;
+            }
+        }
+    }
+
+    private static long getEscrowInstances(GroupResourcePlacementState state) {
+        if (state.escrowLeases == null) {
+            return 0;
+        }
+        return state.escrowLeases.values().stream().mapToLong(lease -> lease.instances).sum();
+    }
+
     private boolean reserveMemory(Operation patch,
             ResourcePlacementReservationRequest request,
             GroupResourcePlacementState state, Long memoryBytes) {
@@ -669,6 +880,7 @@ public class GroupResourcePlacementService extends StatefulService {
         template.documentDescription.serializedStateSizeLimit = 1024 * 1024; // 1MB
         template.resourceQuotaPerResourceDesc = new HashMap<>();
         template.memoryQuotaPerResourceDesc = new HashMap<>();
+        template.escrowLeases = new HashMap<>();
 
         return template;
     }
@@ -681,7 +893,9 @@ public class GroupResourcePlacementService extends StatefulService {
                 && (request.referer
                         .startsWith(ManagementUriParts.REQUEST_RESERVATION_TASKS)
                         || request.referer
-                                .startsWith(ManagementUriParts.REQUEST_RESERVATION_REMOVAL_TASKS));
+                                .startsWith(ManagementUriParts.REQUEST_RESERVATION_REMOVAL_TASKS)
+                        || (request.escrow != null && request.referer
+                                .equals(GroupResourcePlacementEscrowService.SELF_LINK)));
 
     }
 
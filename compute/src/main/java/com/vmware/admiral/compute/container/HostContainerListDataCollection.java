@@ -17,14 +17,17 @@ import java.net.URI;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -60,6 +63,7 @@ import com.vmware.admiral.service.common.SslTrustImportService;
 import com.vmware.admiral.service.common.SslTrustImportService.SslTrustImportRequest;
 import com.vmware.admiral.service.common.TaskServiceDocument;
 import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.DeferredResult;
 import com.vmware.xenon.common.LocalizableValidationException;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service;
@@ -72,6 +76,8 @@ import com.vmware.xenon.common.TaskState.TaskStage;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
 import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
 
 /**
@@ -94,6 +100,9 @@ public class HostContainerListDataCollection extends StatefulService {
             "com.vmware.admiral.system.container.ssl.retries", 3);
     private static final long SYSTEM_CONTAINER_SSL_RETRIES_WAIT = Long.getLong(
             "com.vmware.admiral.system.container.ssl.retries.wait.millis", 1000);
+    private static final long FULL_SYNC_INTERVAL_MILLIS = Long.getLong(
+            "com.vmware.admiral.data.collection.full.sync.interval.millis",
+            TimeUnit.HOURS.toMillis(1));
 
     public static class HostContainerListDataCollectionState extends
             TaskServiceDocument<DefaultSubStage> {
@@ -104,6 +113,22 @@ public class HostContainerListDataCollection extends StatefulService {
         public Map<String, Long> containerHostLinks;
     }
 
+    /**
+     * Container event received from the events stream of a host.
+     */
+    public static class ContainerEvent {
+        public static final String ACTION_CREATE = "create";
+        public static final String ACTION_START = "start";
+        public static final String ACTION_DIE = "die";
+        public static final String ACTION_DESTROY = "destroy";
+
+        public String id;
+        public String action;
+        public String name;
+        public String image;
+        public Long timeNano;
+    }
+
     public static class ContainerListCallback extends ServiceTaskCallbackResponse {
         private static final String NAME_SEPARATOR = ",";
         public String containerHostLink;
@@ -112,6 +137,15 @@ public class HostContainerListDataCollection extends StatefulService {
         public Map<String, String> containerIdsAndImage = new HashMap<>();
         public Map<String, PowerState> containerIdsAndState = new HashMap<>();
         public boolean unlockDataCollectionForHost;
+        // set by the periodic data collection, which can be skipped while the events stream of
+        // the host is active
+        public boolean periodic;
+        // container events to apply without listing the containers of the host
+        public List<ContainerEvent> containerEvents;
+        // set when the events stream of the host is opened or lost
+        public Boolean eventsStreamActive;
+        // id of the node holding the events stream subscription
+        public String eventsStreamNodeId;
 
         public void addIdAndNames(String id, String[] names) {
             AssertUtil.assertNotNull(id, "containerId");
@@ -237,6 +271,16 @@ public class HostContainerListDataCollection extends StatefulService {
         }
     }
 
+    // Container host links with an events stream subscribed from this node, mapped to the time
+    // of their last full container list synchronization. Kept in memory only, as the
+    // subscription does not survive a restart or an owner change of this service.
+    private final Map<String, Long> eventsStreamHostLinks = new ConcurrentHashMap<>();
+
+    // Container host links mapped to the completion of their last received container events, so
+    // that the events of a host are applied in the order they were received.
+    private final Map<String, DeferredResult<Void>> containerEventsHostLinks =
+            new ConcurrentHashMap<>();
+
     public HostContainerListDataCollection() {
         super(HostContainerListDataCollectionState.class);
         super.toggleOption(ServiceOption.PERSISTENCE, true);
@@ -327,8 +371,28 @@ public class HostContainerListDataCollection extends StatefulService {
             return;
         }
 
+        if (body.eventsStreamActive != null) {
+            updateEventsStreamState(body);
+            op.complete();
+            return;
+        }
+
+        if (body.containerEvents != null) {
+            op.complete();
+            enqueueContainerEvents(body);
+            return;
+        }
+
         AssertUtil.assertNotNull(body.containerIdsAndNames, "containerIdsAndNames");
 
+        if (body.periodic && !isFullSyncRequired(containerHostLink)) {
+            logFine("Host container list callback for host [%s] skipped, containers are"
+                    + " synchronized from the events stream", containerHostLink);
+            op.setStatusCode(Operation.STATUS_CODE_NOT_MODIFIED);
+            op.complete();
+            return;
+        }
+
         logFine("Host container list callback invoked for host [%s] with container IDs: %s",
                 containerHostLink, body.containerIdsAndNames.keySet());
 
@@ -346,6 +410,8 @@ public class HostContainerListDataCollection extends StatefulService {
         } else {
             state.containerHostLinks.put(containerHostLink,
                     Instant.now().toEpochMilli() + DATA_COLLECTION_LOCK_TIMEOUT_MILLISECONDS);
+            this.eventsStreamHostLinks.computeIfPresent(containerHostLink,
+                    (k, v) -> Instant.now().toEpochMilli());
             op.complete();
             // continue with the data collection.
         }
@@ -353,6 +419,227 @@ public class HostContainerListDataCollection extends StatefulService {
         queryExistingContainerStates(body);
     }
 
+    private void updateEventsStreamState(ContainerListCallback body) {
+        String containerHostLink = body.containerHostLink;
+        if (body.eventsStreamActive) {
+            if (!getHost().getId().equals(body.eventsStreamNodeId)) {
+                // the subscription is on another node, which does not see the periodic
+                // synchronization of this one
+                logFine("Events stream of host [%s] is on node [%s], keeping full container"
+                        + " synchronization", containerHostLink, body.eventsStreamNodeId);
+                return;
+            }
+            // events might have been missed before the stream was opened, keep the next periodic
+            // full synchronization
+            this.eventsStreamHostLinks.putIfAbsent(containerHostLink, 0L);
+            logInfo("Events stream of host [%s] is active, switching to incremental container"
+                    + " synchronization", containerHostLink);
+        } else if (this.eventsStreamHostLinks.remove(containerHostLink) != null) {
+            logInfo("Events stream of host [%s] is lost, switching to full container"
+                    + " synchronization", containerHostLink);
+        }
+    }
+
+    /**
+     * The container list of a host has to be fully synchronized on each periodic data collection
+     * unless the host has an active events stream. Then it is only synchronized as a safety net
+     * once per {@link #FULL_SYNC_INTERVAL_MILLIS}.
+     */
+    private boolean isFullSyncRequired(String containerHostLink) {
+        Long lastFullSync = this.eventsStreamHostLinks.get(containerHostLink);
+        return lastFullSync == null
+                || Instant.now().toEpochMilli() >= lastFullSync + FULL_SYNC_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Handles the container events of a host once the previously received events of the same
+     * host are applied.
+     */
+    private void enqueueContainerEvents(ContainerListCallback body) {
+        String containerHostLink = body.containerHostLink;
+        DeferredResult<Void> handled = new DeferredResult<>();
+        DeferredResult<Void> previous = this.containerEventsHostLinks.put(containerHostLink,
+                handled);
+        if (previous == null) {
+            previous = DeferredResult.completed(null);
+        }
+        previous.whenComplete((r, e) -> handleContainerEvents(body).whenComplete((r2, e2) -> {
+            this.containerEventsHostLinks.remove(containerHostLink, handled);
+            handled.complete(null);
+        }));
+    }
+
+    /**
+     * Applies a batch of container events of a host. The container states of all events are
+     * retrieved with a single query and the events of each container are applied in order.
+     */
+    private DeferredResult<Void> handleContainerEvents(ContainerListCallback body) {
+        Map<String, List<ContainerEvent>> eventsByContainerId = new LinkedHashMap<>();
+        Set<String> names = new HashSet<>();
+        for (ContainerEvent event : body.containerEvents) {
+            if (event.id == null || event.action == null) {
+                continue;
+            }
+
+            logFine("Container event [%s] for container [%s] on host [%s]", event.action,
+                    event.id, body.containerHostLink);
+
+            eventsByContainerId.computeIfAbsent(event.id, k -> new ArrayList<>()).add(event);
+            if (event.name != null) {
+                names.add(event.name);
+            }
+        }
+
+        if (eventsByContainerId.isEmpty()) {
+            return DeferredResult.completed(null);
+        }
+
+        QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
+                ContainerState.FIELD_NAME_PARENT_LINK, body.containerHostLink);
+        Query.Builder idOrName = Query.Builder.create()
+                .addInClause(ContainerState.FIELD_NAME_ID, eventsByContainerId.keySet(),
+                        Occurance.SHOULD_OCCUR);
+        if (!names.isEmpty()) {
+            // containers which are still provisioning might not have an id yet
+            idOrName.addInCollectionItemClause(ContainerState.FIELD_NAME_NAMES, names,
+                    Occurance.SHOULD_OCCUR);
+        }
+        queryTask.querySpec.query.addBooleanClause(idOrName.build());
+        QueryUtil.addExpandOption(queryTask);
+        QueryUtil.addBroadcastOption(queryTask);
+
+        DeferredResult<Void> result = new DeferredResult<>();
+        List<ContainerState> containerStates = new ArrayList<>();
+        new ServiceDocumentQuery<ContainerState>(getHost(), ContainerState.class)
+                .query(queryTask, (r) -> {
+                    if (r.hasException()) {
+                        logWarning("Failed to query container states for the events of host"
+                                + " [%s]: %s", body.containerHostLink,
+                                Utils.toString(r.getException()));
+                        result.complete(null);
+                    } else if (r.hasResult()) {
+                        containerStates.add(r.getResult());
+                    } else {
+                        AtomicBoolean removed = new AtomicBoolean();
+                        List<DeferredResult<Operation>> updates = new ArrayList<>();
+                        for (Entry<String, List<ContainerEvent>> entry : eventsByContainerId
+                                .entrySet()) {
+                            updates.add(handleContainerEvents(body, entry.getKey(),
+                                    entry.getValue(), containerStates, removed));
+                        }
+                        if (removed.get()) {
+                            updateNumberOfContainers(body.containerHostLink);
+                        }
+                        DeferredResult.allOf(updates).whenComplete((ops, e) -> {
+                            result.complete(null);
+                        });
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Applies the events of a single container in the order they were received. Only the
+     * resulting state is stored, so the updates for the events can not overtake each other.
+     */
+    private DeferredResult<Operation> handleContainerEvents(ContainerListCallback body,
+            String containerId, List<ContainerEvent> events, List<ContainerState> containerStates,
+            AtomicBoolean removed) {
+        ContainerEvent created = null;
+        PowerState powerState = null;
+        Long started = null;
+        boolean destroyed = false;
+        for (ContainerEvent event : events) {
+            switch (event.action) {
+            case ContainerEvent.ACTION_CREATE:
+                created = event;
+                break;
+            case ContainerEvent.ACTION_START:
+                powerState = PowerState.RUNNING;
+                started = event.timeNano != null
+                        ? TimeUnit.NANOSECONDS.toMillis(event.timeNano) : null;
+                break;
+            case ContainerEvent.ACTION_DIE:
+                powerState = PowerState.STOPPED;
+                break;
+            case ContainerEvent.ACTION_DESTROY:
+                destroyed = true;
+                break;
+            default:
+                break;
+            }
+        }
+
+        ContainerState containerState = containerStates.stream()
+                .filter(cs -> containerId.equals(cs.id))
+                .findFirst().orElse(null);
+        if (containerState == null) {
+            if (created != null && !destroyed
+                    && !hasContainerNamed(containerStates, created.name)) {
+                createDiscoveredContainerFromEvent(body, created);
+            }
+            return DeferredResult.completed(null);
+        }
+
+        if (destroyed) {
+            boolean active = containerState.powerState == PowerState.RUNNING
+                    || containerState.powerState == PowerState.STOPPED
+                    || containerState.powerState == PowerState.PAUSED;
+            if (active) {
+                handleMissingContainer(containerState);
+                removed.set(true);
+            }
+            return DeferredResult.completed(null);
+        }
+
+        if (powerState != null) {
+            return updateContainerPowerState(containerState, powerState, started);
+        }
+        return DeferredResult.completed(null);
+    }
+
+    private static boolean hasContainerNamed(List<ContainerState> containerStates,
+            String name) {
+        return name != null && containerStates.stream()
+                .anyMatch(cs -> cs.names != null && cs.names.contains(name));
+    }
+
+    private void createDiscoveredContainerFromEvent(ContainerListCallback body,
+            ContainerEvent event) {
+        if (event.name == null) {
+            return;
+        }
+
+        List<String> names = new ArrayList<>();
+        names.add(event.name.startsWith("/") ? event.name.substring(1) : event.name);
+        if (isSystemContainer(SystemContainerDescriptions.getSystemContainerNames(),
+                names) != null) {
+            // system containers are handled by the full synchronization
+            return;
+        }
+
+        OperationUtil.getDocumentState(this, body.containerHostLink, ComputeState.class,
+                (ComputeState host) -> {
+                    ContainerState containerState = new ContainerState();
+                    containerState.id = event.id;
+                    containerState.names = names;
+                    containerState.image = event.image;
+                    containerState.descriptionLink = String.format("%s-%s",
+                            SystemContainerDescriptions.DISCOVERED_DESCRIPTION_LINK,
+                            UUID.randomUUID().toString());
+                    containerState.tenantLinks = host.tenantLinks;
+                    containerState.parentLink = body.containerHostLink;
+                    containerState.adapterManagementReference = getContainerAdapterReference(
+                            body.hostAdapterReference);
+
+                    createDiscoveredContainers(Collections.singletonList(containerState), (e) -> {
+                        if (e == null) {
+                            updateNumberOfContainers(body.containerHostLink);
+                        }
+                    });
+                });
+    }
+
     private void queryExistingContainerStates(ContainerListCallback body) {
         String containerHostLink = body.containerHostLink;
         QueryTask queryTask = QueryUtil.buildPropertyQuery(ContainerState.class,
@@ -523,29 +810,33 @@ public class HostContainerListDataCollection extends StatefulService {
     }
 
     private void updateExistingContainer(ContainerState c, ContainerListCallback callback) {
-        boolean changed = false;
-        ContainerState patch = new ContainerState();
-
         // handle power state changes
         PowerState newPowerState = callback.containerIdsAndState.get(c.id);
-        if (newPowerState != null
-                && c.powerState != newPowerState
-                && !ContainerState.CONTAINER_UNHEALTHY_STATUS.equals(c.status)) {
-            // do not modify the power state set during the health config check!
-
-            logInfo("Changing power state of container %s (%s) from %s to %s",
-                    c.names, c.documentSelfLink, c.powerState, newPowerState);
-            changed = true;
-            patch.powerState = newPowerState;
+        if (newPowerState != null) {
+            updateContainerPowerState(c, newPowerState, null);
         }
+    }
 
-        if (changed) {
-            // power state is change - save the new state and inspect the container
-            sendRequest(Operation
-                    .createPatch(this, c.documentSelfLink)
-                    .setBodyNoCloning(patch));
-            inspectContainer(c, ServiceTaskCallback.createEmpty());
+    private DeferredResult<Operation> updateContainerPowerState(ContainerState c,
+            PowerState newPowerState, Long started) {
+        if (c.powerState == newPowerState
+                || ContainerState.CONTAINER_UNHEALTHY_STATUS.equals(c.status)) {
+            // do not modify the power state set during the health config check!
+            return DeferredResult.completed(null);
         }
+
+        logInfo("Changing power state of container %s (%s) from %s to %s",
+                c.names, c.documentSelfLink, c.powerState, newPowerState);
+        ContainerState patch = new ContainerState();
+        patch.powerState = newPowerState;
+        patch.started = started;
+
+        // power state is change - save the new state and inspect the container
+        DeferredResult<Operation> result = getHost().sendWithDeferredResult(Operation
+                .createPatch(this, c.documentSelfLink)
+                .setBodyNoCloning(patch));
+        inspectContainer(c, ServiceTaskCallback.createEmpty());
+        return result;
     }
 
     private void checkIfSystemContainer(String containerHostLink,
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2016 VMware, Inc. All Rights Reserved.
+ * Copyright (c) 2016-2018 VMware, Inc. All Rights Reserved.
  *
  * This product is licensed to you under the Apache License, Version 2.0 (the "License").
  * You may not use this product except in compliance with the License.
@@ -11,24 +11,27 @@
 
 package com.vmware.admiral.compute.container.maintenance;
 
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.io.IOException;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.reflect.TypeToken;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 import com.vmware.xenon.common.Utils;
 
 /**
  * Calculate the container stats based on the json data coming from the Docker hosts.
+ *
+ * The stats json is read with a streaming parser in a single pass. Only the handful of fields
+ * needed for {@link ContainerStats} are read, everything else (e.g. blkio_stats, pids_stats,
+ * the per CPU usage values) is skipped without being materialized.
  */
 public class ContainerStatsEvaluator {
 
     private static final String CONTAINER_STOPPED_TIME = "0001-01-01T00:00:00Z";
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     /**
      * Parse the json stats value and return ContainerStats state with the calculated values from
      * the json field.
@@ -41,215 +44,162 @@ public class ContainerStatsEvaluator {
             return state;
         }
 
-        Map<String, JsonElement> stats = parseStats(statsJson);
-
-        calculateCpuUsage(state, stats);
-
-        setMemoryUsage(state, stats);
-
-        setNetworkUsage(state, stats);
-
-        setContainerStopped(state, stats);
-
-        return state;
-    }
-
-    private static Map<String, JsonElement> parseStats(String statsJson) {
-        Map<String, JsonElement> stats = null;
-        try {
-            stats = Utils.fromJson(statsJson, new TypeToken<Map<String, JsonElement>>() {
-            }.getType());
+        CpuStats cpuStats = new CpuStats();
+        CpuStats preCpuStats = new CpuStats();
+
+        try (JsonParser parser = JSON_FACTORY.createParser(statsJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                Utils.logWarning("Error parsing container stats: [%s]. Object expected.",
+                        statsJson);
+                return state;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (fieldName) {
+                case "read":
+                    state.containerStopped = CONTAINER_STOPPED_TIME.equals(parser.getText());
+                    break;
+                case "cpu_stats":
+                    readCpuStats(parser, cpuStats);
+                    break;
+                case "precpu_stats":
+                    readCpuStats(parser, preCpuStats);
+                    break;
+                case "memory_stats":
+                    readMemoryStats(parser, state);
+                    break;
+                case "networks":
+                    readNetworks(parser, state);
+                    break;
+                default:
+                    parser.skipChildren();
+                }
+            }
         } catch (Exception e) {
             Utils.logWarning("Error parsing container stats: [%s]. Error: %s", statsJson,
                     Utils.toString(e));
         }
-        return stats;
-    }
-
-    private static void setNetworkUsage(ContainerStats state, Map<String, JsonElement> stats) {
-        try {
-            JsonElement jsonElement = stats.get("networks");
-            if (jsonElement == null) {
-                return;
-            }
-            JsonObject networks = jsonElement.getAsJsonObject();
-            if (networks == null) {
-                return;
-            }
-            Set<Entry<String, JsonElement>> entrySet = networks.entrySet();
-            if (entrySet == null) {
-                return;
-            }
-
-            NetworkTraffic summedTraffic = entrySet.stream()
-                    .map(entry -> {
-
-                        JsonObject network = entry.getValue().getAsJsonObject();
-                        NetworkTraffic result = new NetworkTraffic();
 
-                        if (network != null) {
-                            JsonElement netInValue = network.get("rx_bytes");
-                            if (netInValue != null) {
-                                result.networkIn = netInValue.getAsLong();
-                            }
+        calculateCpuUsage(state, cpuStats, preCpuStats);
 
-                            JsonElement netOutValue = network.get("tx_bytes");
-                            if (netOutValue != null) {
-                                result.networkOut += netOutValue.getAsLong();
-                            }
-                        }
-
-                        return result;
-
-                    }).reduce(new NetworkTraffic(), (t1, t2) -> {
-
-                        return new NetworkTraffic(t1.networkIn + t2.networkIn,
-                                t1.networkOut + t2.networkOut);
-                    });
-
-            state.networkIn = summedTraffic.networkIn;
-            state.networkOut = summedTraffic.networkOut;
-
-        } catch (Exception e) {
-            Utils.logWarning("Error during container stats network usage parsing: %s",
-                    Utils.toString(e));
-        }
+        return state;
     }
 
-    private static void setMemoryUsage(ContainerStats state, Map<String, JsonElement> stats) {
-        try {
-            JsonElement jsonElement = stats.get("memory_stats");
-            if (jsonElement == null) {
-                return;
-            }
-            JsonObject memory_stats = jsonElement.getAsJsonObject();
-            JsonElement limitValue = memory_stats.get("limit");
-            if (limitValue != null) {
-                state.memLimit = limitValue.getAsLong();
-            }
-            JsonElement usage = memory_stats.get("usage");
-            if (usage != null) {
-                state.memUsage = usage.getAsLong();
+    private static void readCpuStats(JsonParser parser, CpuStats cpuStats) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("system_cpu_usage".equals(fieldName) && token.isNumeric()) {
+                cpuStats.systemCpuUsage = parser.getLongValue();
+            } else if ("cpu_usage".equals(fieldName) && token == JsonToken.START_OBJECT) {
+                readCpuUsage(parser, cpuStats);
+            } else {
+                parser.skipChildren();
             }
-        } catch (Exception e) {
-            Utils.logWarning("Error during container stats memory usage parsing: %s",
-                    Utils.toString(e));
         }
     }
 
-    // Calculate Docker container CPU percentage usage as implemented by the command line tool -
-    // https://github.com/docker/docker/blob/master/api/client/stats.go#L195
-    private static void calculateCpuUsage(ContainerStats state, Map<String, JsonElement> stats) {
-        try {
-            JsonElement cpu_stats_json = stats.get("cpu_stats");
-            if (cpu_stats_json == null || cpu_stats_json.isJsonNull()) {
-                Utils.logWarning("cpu_stats is null.");
-                return;
+    private static void readCpuUsage(JsonParser parser, CpuStats cpuStats) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("total_usage".equals(fieldName) && token.isNumeric()) {
+                cpuStats.totalUsage = parser.getLongValue();
+            } else if ("percpu_usage".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                int count = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                    count++;
+                }
+                cpuStats.perCpuCount = count;
+            } else {
+                parser.skipChildren();
             }
-            JsonObject cpu_stats = cpu_stats_json.getAsJsonObject();
-
-            JsonElement systemCpuUsageValue = cpu_stats.get("system_cpu_usage");
-            if (systemCpuUsageValue == null || systemCpuUsageValue.isJsonNull()) {
-                Utils.logWarning("system_cpu_usage is null.");
-                return;
-            }
-            long system_cpu_usage = systemCpuUsageValue.getAsLong();
-
-            JsonElement cpu_usage_json = cpu_stats.get("cpu_usage");
-            if (cpu_usage_json == null || cpu_usage_json.isJsonNull()) {
-                Utils.logWarning("cpu_usage is null.");
-                return;
-            }
-            JsonObject cpu_usage = cpu_usage_json.getAsJsonObject();
-
-            JsonElement totalUsageValue = cpu_usage.get("total_usage");
-            if (totalUsageValue == null || totalUsageValue.isJsonNull()) {
-                Utils.logWarning("totalUsageValue is null.");
-                return;
-            }
-            long total_usage = totalUsageValue.getAsLong();
-
-            JsonElement percpu_usage_json = cpu_usage.get("percpu_usage");
-            if (percpu_usage_json == null || percpu_usage_json.isJsonNull()) {
-                Utils.logWarning("percpu_usage is null.");
-                return;
-            }
-            JsonArray percpu_usage = percpu_usage_json.getAsJsonArray();
-
-            JsonElement precpu_stats_json = stats.get("precpu_stats");
-            if (precpu_stats_json == null || precpu_stats_json.isJsonNull()) {
-                Utils.logWarning("precpu_stats is null.");
-                return;
-            }
-            JsonObject precpu_stats = precpu_stats_json.getAsJsonObject();
-
-            JsonElement system_cpu_usage_json = precpu_stats.get("system_cpu_usage");
-            if (system_cpu_usage_json == null || system_cpu_usage_json.isJsonNull()) {
-                Utils.logWarning("system_cpu_usage is null.");
-                return;
-            }
-            long presystem_cpu_usage = system_cpu_usage_json.getAsLong();
-
-            JsonElement precpu_usage_json = precpu_stats.get("cpu_usage");
-            if (precpu_usage_json == null || precpu_usage_json.isJsonNull()) {
-                Utils.logWarning("precpu_usage is null.");
-                return;
-            }
-            JsonObject precpu_usage = precpu_usage_json.getAsJsonObject();
-
-            JsonElement pretotal_usage_json = precpu_usage.get("total_usage");
-            if (pretotal_usage_json == null || pretotal_usage_json.isJsonNull()) {
-                Utils.logWarning("total_usage is null.");
-                return;
-            }
-
-            long pretotal_usage = pretotal_usage_json.getAsLong();
-
-            long cpuDelta = total_usage - pretotal_usage;
-            long systemDelta = system_cpu_usage - presystem_cpu_usage;
+        }
+    }
 
-            if (systemDelta > 0 && cpuDelta > 0) {
-                double cpuUsage = (((double) cpuDelta / systemDelta) * percpu_usage.size()) * 100.0;
-                state.cpuUsage = Math.round(cpuUsage * 100d) / 100d;
+    private static void readMemoryStats(JsonParser parser, ContainerStats state)
+            throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("limit".equals(fieldName) && token.isNumeric()) {
+                state.memLimit = parser.getLongValue();
+            } else if ("usage".equals(fieldName) && token.isNumeric()) {
+                state.memUsage = parser.getLongValue();
+            } else {
+                parser.skipChildren();
             }
-
-        } catch (Exception e) {
-            Utils.logWarning("Error during container stats CPU usage calculations: %s",
-                    Utils.toString(e));
         }
     }
 
-    private static void setContainerStopped(ContainerStats state, Map<String, JsonElement> stats) {
-        try {
-            JsonElement read_json = stats.get("read");
-            if (read_json == null || read_json.isJsonNull()) {
-                Utils.logWarning("read is null.");
-                return;
-            }
-            String read = read_json.getAsString();
-            state.containerStopped = Boolean.FALSE;
-            if (CONTAINER_STOPPED_TIME.equals(read)) {
-                state.containerStopped = Boolean.TRUE;
+    private static void readNetworks(JsonParser parser, ContainerStats state) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        long networkIn = 0;
+        long networkOut = 0;
+        // "networks": { "eth0": { "rx_bytes": .., "tx_bytes": .. }, ... }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("rx_bytes".equals(fieldName) && token.isNumeric()) {
+                    networkIn += parser.getLongValue();
+                } else if ("tx_bytes".equals(fieldName) && token.isNumeric()) {
+                    networkOut += parser.getLongValue();
+                } else {
+                    parser.skipChildren();
+                }
             }
-        } catch (Exception e) {
-            Utils.logWarning("Error during container stats status calculations: %s",
-                    Utils.toString(e));
         }
+        state.networkIn = networkIn;
+        state.networkOut = networkOut;
     }
 
-    private static class NetworkTraffic {
-
-        public long networkIn;
-        public long networkOut;
-
-        public NetworkTraffic() {
-            this(0, 0);
+    // Calculate Docker container CPU percentage usage as implemented by the command line tool -
+    // https://github.com/docker/docker/blob/master/api/client/stats.go#L195
+    private static void calculateCpuUsage(ContainerStats state, CpuStats cpuStats,
+            CpuStats preCpuStats) {
+        if (cpuStats.systemCpuUsage == null || cpuStats.totalUsage == null
+                || cpuStats.perCpuCount < 0) {
+            Utils.logWarning("cpu_stats are incomplete.");
+            return;
+        }
+        if (preCpuStats.systemCpuUsage == null || preCpuStats.totalUsage == null) {
+            Utils.logWarning("precpu_stats are incomplete.");
+            return;
         }
 
-        public NetworkTraffic(long networkIn, long networkOut) {
-            this.networkIn = networkIn;
-            this.networkOut = networkOut;
+        long cpuDelta = cpuStats.totalUsage - preCpuStats.totalUsage;
+        long systemDelta = cpuStats.systemCpuUsage - preCpuStats.systemCpuUsage;
+
+        if (systemDelta > 0 && cpuDelta > 0) {
+            double cpuUsage = (((double) cpuDelta / systemDelta) * cpuStats.perCpuCount) * 100.0;
+            state.cpuUsage = Math.round(cpuUsage * 100d) / 100d;
         }
+    }
 
+    private static class CpuStats {
+        Long systemCpuUsage;
+        Long totalUsage;
+        int perCpuCount = -1;
     }
 }
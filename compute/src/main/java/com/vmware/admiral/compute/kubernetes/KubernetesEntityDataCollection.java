@@ -120,6 +120,14 @@ public class KubernetesEntityDataCollection extends StatefulService {
         public String computeHostLink;
         public Map<String, KubernetesEntityData> idToEntityData = new ConcurrentHashMap<>();
         public boolean unlockDataCollectionForHost;
+
+        /**
+         * Set when the entities are listed incrementally. Then idToEntityData contains only the
+         * entities added or changed since the previous listing of the host and removedIds the
+         * ids of the removed ones, the rest of the entities are unchanged.
+         */
+        public boolean incremental;
+        public Set<String> removedIds = ConcurrentHashMap.newKeySet();
     }
 
     public KubernetesEntityDataCollection() {
@@ -278,6 +286,19 @@ public class KubernetesEntityDataCollection extends StatefulService {
             List<ResourceState> entityStates) {
 
         for (ResourceState entityState : entityStates) {
+            if (callback.incremental) {
+                // only the changed entities are listed, leave the rest as they are
+                if (entityState.id == null) {
+                    continue;
+                }
+                if (callback.removedIds.contains(entityState.id)) {
+                    handleMissingEntity(entityState);
+                } else if (callback.idToEntityData.remove(entityState.id) != null) {
+                    requestEntityInspection(entityState);
+                }
+                continue;
+            }
+
             boolean exists = false;
             if (entityState.id != null) {
                 exists = callback.idToEntityData.remove(entityState.id) != null;
@@ -26,4 +26,9 @@ public class BaseKubernetesList {
      */
     public String kind;
 
+    /**
+     * The metadata of the list.
+     */
+    public ListMeta metadata;
+
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.kubernetes.entities.common;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ListMeta {
+
+    /**
+     * SelfLink is a URL representing this list. Populated by the system. Read-only.
+     */
+    public String selfLink;
+
+    /**
+     * String that identifies the server's internal version of the list. Can be used to watch
+     * the changes of the listed objects since the list was returned. Populated by the system.
+     * Read-only.
+     */
+    public String resourceVersion;
+
+}
@@ -41,11 +41,13 @@ import com.vmware.admiral.compute.container.ContainerDescriptionService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerFactoryService;
 import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
+import com.vmware.admiral.compute.container.ContainerHostStatsService;
 import com.vmware.admiral.compute.container.ContainerLogService;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerShellService;
 import com.vmware.admiral.compute.container.ContainerStatsService;
 import com.vmware.admiral.compute.container.DeploymentPolicyService;
+import com.vmware.admiral.compute.container.GroupResourcePlacementEscrowService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService;
 import com.vmware.admiral.compute.container.HostContainerListDataCollection;
 import com.vmware.admiral.compute.container.HostNetworkListDataCollection;
@@ -139,6 +141,7 @@ public class HostInitComputeServicesConfig extends HostInitServiceHelper {
                     service(PKSCreateEndpointService.class),
                     service(FavoriteImagePopulateInEmbeddedService.class),
                     service(ContainerHostService.class),
+                    service(GroupResourcePlacementEscrowService.class),
 
                     factoryService(CaSigningCertService.class),
                     factoryService(GroupResourcePlacementService.class),
@@ -146,6 +149,7 @@ public class HostInitComputeServicesConfig extends HostInitServiceHelper {
                     factoryService(HostContainerListDataCollection.class),
                     factoryService(HostNetworkListDataCollection.class),
                     factoryService(HostVolumeListDataCollection.class),
+                    factoryService(ContainerHostStatsService.class),
                     factoryService(ContainerHostDataCollectionService.class),
                     factoryService(DeploymentPolicyService.class),
                     factoryService(HostPortProfileService.class),
@@ -193,7 +197,8 @@ public class HostInitComputeServicesConfig extends HostInitServiceHelper {
                 GenericKubernetesEntityFactoryService.class,
                 PKSEndpointFactoryService.class,
                 PKSCreateEndpointService.class,
-                FavoriteImagePopulateInEmbeddedService.class);
+                FavoriteImagePopulateInEmbeddedService.class,
+                GroupResourcePlacementEscrowService.class);
 
         startServiceFactories(host, CaSigningCertService.class,
                 GroupResourcePlacementService.class,
@@ -201,6 +206,7 @@ public class HostInitComputeServicesConfig extends HostInitServiceHelper {
                 HostContainerListDataCollection.class,
                 HostNetworkListDataCollection.class,
                 HostVolumeListDataCollection.class,
+                ContainerHostStatsService.class,
                 ContainerHostDataCollectionService.class,
                 DeploymentPolicyService.class,
                 HostPortProfileService.class,
@@ -15,7 +15,9 @@ import static com.vmware.admiral.compute.content.kubernetes.KubernetesUtil.creat
 
 import java.net.HttpURLConnection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerHostOperationType;
@@ -30,6 +32,12 @@ import com.vmware.xenon.common.Utils;
 public class MockKubernetesHostAdapterService extends BaseMockAdapterService {
     public static final String SELF_LINK = ManagementUriParts.ADAPTER_KUBERNETES_HOST;
 
+    /**
+     * When set, the entities are listed incrementally, the entities of the
+     * {@link MockKubernetesAdapterService} are the changed ones and these are the removed ones.
+     */
+    public static volatile Set<String> incrementallyRemovedIds;
+
     @Override
     public void handleRequest(Operation op) {
         if (op.getAction() == Action.DELETE) {
@@ -71,6 +79,11 @@ public class MockKubernetesHostAdapterService extends BaseMockAdapterService {
                         .put(entity.id, createEntityData(entity.getEntityAsBaseKubernetesObject(),
                                 entity.getType()));
             }
+            Set<String> removedIds = incrementallyRemovedIds;
+            if (removedIds != null) {
+                callbackResponse.incremental = true;
+                callbackResponse.removedIds = new HashSet<>(removedIds);
+            }
             patchTaskStage(request, null, callbackResponse);
             op.setBody(callbackResponse);
             op.complete();
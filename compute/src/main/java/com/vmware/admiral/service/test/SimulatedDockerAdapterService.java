@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.vmware.admiral.adapter.common.AdapterRequest;
+import com.vmware.admiral.adapter.common.ContainerOperationType;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.PortBinding;
+import com.vmware.admiral.compute.container.maintenance.ContainerStats;
+import com.vmware.admiral.service.test.SimulatedDockerFleet.SimulatedContainer;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.TaskState;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * Docker adapter keeping the provisioned containers in the {@link SimulatedDockerFleet} of the
+ * service host, with the latency and the failures of the fleet profile.
+ */
+public class SimulatedDockerAdapterService extends BaseMockAdapterService {
+    public static final String SELF_LINK = ManagementUriParts.ADAPTER_DOCKER;
+
+    public static final String SIMULATED_CONTAINER_ADDRESS = "127.0.0.1";
+
+    @Override
+    public void handleRequest(Operation op) {
+        if (op.getAction() == Action.DELETE) {
+            if (ServiceHost.isServiceStop(op)) {
+                handleDeleteCompletion(op);
+            } else {
+                op.complete();
+            }
+            return;
+        }
+
+        if (op.getAction() == Action.GET) {
+            op.setStatusCode(204);
+            op.complete();
+            return;
+        }
+
+        if (op.getAction() != Action.PATCH) {
+            op.fail(new IllegalArgumentException("action not supported"));
+            return;
+        }
+
+        op.setStatusCode(Operation.STATUS_CODE_ACCEPTED).complete();
+
+        AdapterRequest request = op.getBody(AdapterRequest.class);
+        try {
+            request.validate();
+        } catch (Exception e) {
+            patchTaskStage(request, e);
+            return;
+        }
+
+        TaskState taskInfo = new TaskState();
+        getDocument(ContainerState.class, request.resourceReference, taskInfo, container -> {
+            if (TaskStage.FAILED == taskInfo.stage) {
+                patchTaskStage(request, taskInfo.failure);
+                return;
+            }
+            SimulatedDockerFleet.getInstance(getHost()).execute(request.operationTypeId,
+                    () -> processContainerRequest(request, container),
+                    e -> patchTaskStage(request, e));
+        });
+    }
+
+    private void processContainerRequest(AdapterRequest request, ContainerState container) {
+        SimulatedDockerFleet fleet = SimulatedDockerFleet.getInstance(getHost());
+
+        if (ContainerOperationType.CREATE.id.equals(request.operationTypeId)) {
+            TaskState taskInfo = new TaskState();
+            getDocument(ContainerDescription.class,
+                    UriUtils.buildUri(getHost(), container.descriptionLink), taskInfo,
+                    desc -> {
+                        if (TaskStage.FAILED == taskInfo.stage) {
+                            patchTaskStage(request, taskInfo.failure);
+                            return;
+                        }
+                        createContainer(request, container, desc, fleet);
+                    });
+
+        } else if (ContainerOperationType.DELETE.id.equals(request.operationTypeId)) {
+            fleet.removeContainer(container.parentLink, container.id);
+            patchTaskStage(request, (Throwable) null);
+
+        } else if (ContainerOperationType.START.id.equals(request.operationTypeId)
+                || ContainerOperationType.STOP.id.equals(request.operationTypeId)) {
+            ContainerState patch = new ContainerState();
+            patch.powerState = ContainerOperationType.START.id.equals(request.operationTypeId)
+                    ? PowerState.RUNNING : PowerState.STOPPED;
+            fleet.setPowerState(container.parentLink, container.id, patch.powerState);
+            patchContainer(request, request.resourceReference.getPath(), patch);
+
+        } else if (ContainerOperationType.STATS.id.equals(request.operationTypeId)) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            ContainerStats stats = new ContainerStats();
+            stats.cpuUsage = random.nextDouble(100);
+            stats.memLimit = 512L * 1024 * 1024;
+            stats.memUsage = random.nextLong(stats.memLimit);
+            stats.healthCheckSuccess = true;
+            patchContainer(request, container.documentSelfLink, stats);
+
+        } else {
+            patchTaskStage(request, (Throwable) null);
+        }
+    }
+
+    private void createContainer(AdapterRequest request, ContainerState container,
+            ContainerDescription desc, SimulatedDockerFleet fleet) {
+        String name = container.names != null && !container.names.isEmpty()
+                ? container.names.get(0) : desc.name;
+        SimulatedContainer simulated = fleet.createContainer(container.parentLink, name,
+                desc.image);
+
+        ContainerState patch = new ContainerState();
+        patch.id = simulated.id;
+        patch.address = SIMULATED_CONTAINER_ADDRESS;
+        patch.powerState = simulated.powerState;
+        patch.created = System.currentTimeMillis();
+        patch.command = desc.command;
+        patch.image = desc.image;
+        patch.status = "Started";
+        patch.documentExpirationTimeMicros = -1;
+        if (desc.portBindings != null) {
+            List<PortBinding> ports = new ArrayList<>();
+            for (PortBinding portBinding : desc.portBindings) {
+                if (portBinding.hostPort == null) {
+                    // like docker, bind a random port if the description doesn't specify one
+                    portBinding.hostPort = String.valueOf(
+                            ThreadLocalRandom.current().nextInt(32768, 61000));
+                }
+                ports.add(portBinding);
+            }
+            patch.ports = ports;
+        }
+
+        patchContainer(request, request.resourceReference.getPath(), patch);
+    }
+
+    private void patchContainer(AdapterRequest request, String containerLink, Object body) {
+        sendRequest(Operation.createPatch(this, containerLink)
+                .setBodyNoCloning(body)
+                .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_QUEUE_FOR_SERVICE_AVAILABILITY)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        logWarning("Patching container %s failed: %s", containerLink,
+                                Utils.toString(e));
+                    }
+                    patchTaskStage(request, e);
+                }));
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.Utils;
+
+/**
+ * In-memory inventory of simulated docker hosts, shared by the simulated adapters of a service
+ * host. Every adapter operation goes through {@link #execute(String, Runnable, Consumer)}, which
+ * delays it by a latency drawn from a log-normal distribution and fails it with the configured
+ * probability. While events are running, the unmanaged containers of random hosts are stopped,
+ * started, created and removed out of band, as users of the docker hosts would do.
+ */
+public class SimulatedDockerFleet {
+
+    private static final Map<ServiceHost, SimulatedDockerFleet> FLEETS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final String[] IMAGES = { "library/nginx:latest", "library/redis:4",
+            "library/postgres:10", "vmware/admiral:latest", "library/busybox:latest" };
+
+    private static final long EVENTS_PERIOD_MILLIS = 100;
+
+    /** z-score of the 99th percentile of the standard normal distribution */
+    private static final double P99_Z_SCORE = 2.326;
+
+    /**
+     * Shape of the simulated fleet. Changes apply to the hosts added and the operations executed
+     * afterwards.
+     */
+    public static class Profile {
+        public int containersPerHost = 10;
+        public long latencyMedianMicros = TimeUnit.MILLISECONDS.toMicros(5);
+        public long latencyP99Micros = TimeUnit.MILLISECONDS.toMicros(50);
+        /** Probability between 0 and 1 that an adapter operation fails. */
+        public double failureRate;
+        /** Out of band container changes per second over the whole fleet. */
+        public double eventsPerSecond;
+        public long hostMemoryBytes = 64L * 1024 * 1024 * 1024;
+        public int hostCpuCount = 8;
+    }
+
+    public static class SimulatedContainer {
+        public String id;
+        public String name;
+        public String image;
+        public PowerState powerState;
+        /** Whether the container was provisioned through the adapter. */
+        public boolean managed;
+    }
+
+    private final ServiceHost host;
+    private volatile Profile profile = new Profile();
+
+    private final Map<String, Map<String, SimulatedContainer>> containersByHost =
+            new ConcurrentHashMap<>();
+    private final List<String> hostLinks = new ArrayList<>();
+
+    private final Map<String, SimulationStats> operationStats = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> eventCounts = new ConcurrentHashMap<>();
+
+    private final SimulationStats collectionStats = new SimulationStats("data-collection.host");
+    private final Set<String> listedInRound = ConcurrentHashMap.newKeySet();
+    private volatile long collectionRoundStartMicros;
+
+    private volatile boolean eventsRunning;
+    private double pendingEvents;
+
+    private SimulatedDockerFleet(ServiceHost host) {
+        this.host = host;
+    }
+
+    public static SimulatedDockerFleet getInstance(ServiceHost host) {
+        return FLEETS.computeIfAbsent(host, SimulatedDockerFleet::new);
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Adds a host with the configured number of unmanaged containers, most of them running.
+     */
+    public void addHost(String hostLink) {
+        Map<String, SimulatedContainer> containers = new ConcurrentHashMap<>();
+        for (int i = 0; i < profile.containersPerHost; i++) {
+            SimulatedContainer container = newContainer(
+                    "sim-" + Service.getId(hostLink) + "-" + i, randomImage(), false);
+            containers.put(container.id, container);
+        }
+        containersByHost.put(hostLink, containers);
+        synchronized (hostLinks) {
+            hostLinks.add(hostLink);
+        }
+    }
+
+    public int getHostCount() {
+        return containersByHost.size();
+    }
+
+    /**
+     * The containers of the given host, empty for hosts not added to the fleet.
+     */
+    public Collection<SimulatedContainer> getContainers(String hostLink) {
+        Map<String, SimulatedContainer> containers = containersByHost.get(hostLink);
+        return containers == null ? Collections.emptyList() : containers.values();
+    }
+
+    public int getContainerCount() {
+        return containersByHost.values().stream().mapToInt(Map::size).sum();
+    }
+
+    public SimulatedContainer createContainer(String hostLink, String name, String image) {
+        SimulatedContainer container = newContainer(name, image, true);
+        containersByHost.computeIfAbsent(hostLink, k -> new ConcurrentHashMap<>())
+                .put(container.id, container);
+        return container;
+    }
+
+    public void removeContainer(String hostLink, String containerId) {
+        Map<String, SimulatedContainer> containers = containersByHost.get(hostLink);
+        if (containers != null && containerId != null) {
+            containers.remove(containerId);
+        }
+    }
+
+    public void setPowerState(String hostLink, String containerId, PowerState powerState) {
+        Map<String, SimulatedContainer> containers = containersByHost.get(hostLink);
+        SimulatedContainer container = containers == null || containerId == null ? null
+                : containers.get(containerId);
+        if (container != null) {
+            container.powerState = powerState;
+        }
+    }
+
+    /**
+     * Runs the action of an adapter operation after the simulated latency, or fails it with the
+     * configured probability. The latency and the outcome are recorded per operation.
+     */
+    public void execute(String operation, Runnable action, Consumer<Throwable> failure) {
+        Profile p = profile;
+        long startMicros = Utils.getSystemNowMicrosUtc();
+        long latencyMicros = nextLatencyMicros(p);
+        boolean failed = p.failureRate > 0 && ThreadLocalRandom.current().nextDouble() < p.failureRate;
+
+        host.schedule(() -> {
+            getOperationStats(operation).record(startMicros, latencyMicros, failed);
+            if (failed) {
+                failure.accept(new IllegalStateException("Simulated failure of " + operation));
+            } else {
+                action.run();
+            }
+        }, latencyMicros, TimeUnit.MICROSECONDS);
+    }
+
+    public SimulationStats getOperationStats(String operation) {
+        return operationStats.computeIfAbsent(operation, SimulationStats::new);
+    }
+
+    /**
+     * The stats of all adapter operations executed so far, sorted by operation.
+     */
+    public Collection<SimulationStats> getOperationStats() {
+        return new TreeMap<>(operationStats).values();
+    }
+
+    public Map<String, Long> getEventCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        eventCounts.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Marks the start of a data collection round. The time until the containers of each host
+     * are listed for the first time in the round is recorded in {@link #getCollectionStats()}.
+     */
+    public void startCollectionRound() {
+        listedInRound.clear();
+        collectionRoundStartMicros = Utils.getSystemNowMicrosUtc();
+    }
+
+    public void onContainersListed(String hostLink) {
+        long roundStartMicros = collectionRoundStartMicros;
+        if (roundStartMicros > 0 && listedInRound.add(hostLink)) {
+            collectionStats.record(roundStartMicros,
+                    Utils.getSystemNowMicrosUtc() - roundStartMicros, false);
+        }
+    }
+
+    public SimulationStats getCollectionStats() {
+        return collectionStats;
+    }
+
+    public void startEvents() {
+        if (eventsRunning) {
+            return;
+        }
+        eventsRunning = true;
+        scheduleEvents();
+    }
+
+    public void stopEvents() {
+        eventsRunning = false;
+    }
+
+    private void scheduleEvents() {
+        host.schedule(() -> {
+            if (!eventsRunning || host.isStopping()) {
+                return;
+            }
+            generateEvents();
+            scheduleEvents();
+        }, EVENTS_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void generateEvents() {
+        int events;
+        synchronized (this) {
+            pendingEvents += profile.eventsPerSecond * EVENTS_PERIOD_MILLIS / 1000;
+            events = (int) pendingEvents;
+            pendingEvents -= events;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < events; i++) {
+            String hostLink;
+            synchronized (hostLinks) {
+                if (hostLinks.isEmpty()) {
+                    return;
+                }
+                hostLink = hostLinks.get(random.nextInt(hostLinks.size()));
+            }
+            Map<String, SimulatedContainer> containers = containersByHost.get(hostLink);
+            if (containers == null) {
+                continue;
+            }
+
+            // containers provisioned through the adapter are left alone, so the outcome of the
+            // requests does not depend on the events
+            List<SimulatedContainer> unmanaged = new ArrayList<>();
+            for (SimulatedContainer container : containers.values()) {
+                if (!container.managed) {
+                    unmanaged.add(container);
+                }
+            }
+
+            int type = random.nextInt(4);
+            if (unmanaged.isEmpty() || type == 0) {
+                SimulatedContainer container = newContainer("sim-" + Service.getId(hostLink)
+                        + "-" + UUID.randomUUID().toString().substring(0, 8), randomImage(),
+                        false);
+                containers.put(container.id, container);
+                countEvent("create");
+            } else if (type == 1) {
+                containers.remove(unmanaged.get(random.nextInt(unmanaged.size())).id);
+                countEvent("remove");
+            } else {
+                SimulatedContainer container = unmanaged.get(random.nextInt(unmanaged.size()));
+                boolean running = container.powerState == PowerState.RUNNING;
+                container.powerState = running ? PowerState.STOPPED : PowerState.RUNNING;
+                countEvent(running ? "stop" : "start");
+            }
+        }
+    }
+
+    private void countEvent(String type) {
+        eventCounts.computeIfAbsent(type, k -> new LongAdder()).increment();
+    }
+
+    private static long nextLatencyMicros(Profile p) {
+        if (p.latencyMedianMicros <= 0) {
+            return 0;
+        }
+        double sigma = p.latencyP99Micros > p.latencyMedianMicros
+                ? Math.log((double) p.latencyP99Micros / p.latencyMedianMicros) / P99_Z_SCORE
+                : 0;
+        return (long) (p.latencyMedianMicros
+                * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private static SimulatedContainer newContainer(String name, String image, boolean managed) {
+        SimulatedContainer container = new SimulatedContainer();
+        container.id = UUID.randomUUID().toString().replace("-", "");
+        container.name = name;
+        container.image = image;
+        container.managed = managed;
+        container.powerState = managed || ThreadLocalRandom.current().nextInt(10) != 0
+                ? PowerState.RUNNING : PowerState.STOPPED;
+        return container;
+    }
+
+    private static String randomImage() {
+        return IMAGES[ThreadLocalRandom.current().nextInt(IMAGES.length)];
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.test;
+
+import java.net.HttpURLConnection;
+import java.util.Collection;
+import java.util.HashMap;
+
+import com.vmware.admiral.adapter.common.AdapterRequest;
+import com.vmware.admiral.adapter.common.ContainerHostOperationType;
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.compute.ContainerHostService;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
+import com.vmware.admiral.compute.container.HostNetworkListDataCollection.NetworkListCallback;
+import com.vmware.admiral.compute.container.HostVolumeListDataCollection.VolumeListCallback;
+import com.vmware.admiral.service.test.SimulatedDockerFleet.Profile;
+import com.vmware.admiral.service.test.SimulatedDockerFleet.SimulatedContainer;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Operation;
+
+/**
+ * Docker host adapter answering from the {@link SimulatedDockerFleet} of the service host, with
+ * the latency and the failures of the fleet profile. Hosts not added to the fleet have no
+ * containers. Networks and volumes are always empty.
+ */
+public class SimulatedDockerHostAdapterService extends BaseMockAdapterService {
+    public static final String SELF_LINK = ManagementUriParts.ADAPTER_DOCKER_HOST;
+
+    @Override
+    public void handleRequest(Operation op) {
+        if (op.getAction() == Action.DELETE) {
+            if (op.hasBody()) {
+                op.complete();
+            } else {
+                handleDeleteCompletion(op);
+            }
+            return;
+        }
+
+        if (op.getAction() == Action.GET) {
+            op.setStatusCode(HttpURLConnection.HTTP_NO_CONTENT);
+            op.complete();
+            return;
+        }
+
+        if (op.getAction() != Action.PATCH) {
+            op.fail(new IllegalArgumentException("action not supported"));
+            return;
+        }
+
+        AdapterRequest request = op.getBody(AdapterRequest.class);
+        request.validate();
+
+        SimulatedDockerFleet fleet = SimulatedDockerFleet.getInstance(getHost());
+        String hostLink = request.resourceReference.getPath();
+
+        if (ContainerHostOperationType.PING.id.equals(request.operationTypeId)) {
+            fleet.execute(request.operationTypeId, op::complete, op::fail);
+
+        } else if (ContainerHostOperationType.INFO.id.equals(request.operationTypeId)) {
+            fleet.execute(request.operationTypeId, () -> patchHostInfo(request, op, fleet),
+                    e -> failRequest(request, op, e));
+
+        } else if (ContainerHostOperationType.LIST_CONTAINERS.id.equals(request.operationTypeId)) {
+            fleet.execute(request.operationTypeId, () -> {
+                ContainerListCallback callbackResponse = new ContainerListCallback();
+                callbackResponse.containerHostLink = hostLink;
+                for (SimulatedContainer container : fleet.getContainers(hostLink)) {
+                    callbackResponse.containerIdsAndNames.put(container.id, container.name);
+                    callbackResponse.containerIdsAndImage.put(container.id, container.image);
+                    callbackResponse.containerIdsAndState.put(container.id,
+                            container.powerState);
+                }
+                fleet.onContainersListed(hostLink);
+                patchTaskStage(request, null, callbackResponse);
+                op.setBody(callbackResponse);
+                op.complete();
+            }, e -> failRequest(request, op, e));
+
+        } else if (ContainerHostOperationType.LIST_NETWORKS.id.equals(request.operationTypeId)) {
+            fleet.execute(request.operationTypeId, () -> {
+                NetworkListCallback callbackResponse = new NetworkListCallback();
+                callbackResponse.containerHostLink = hostLink;
+                patchTaskStage(request, null, callbackResponse);
+                op.setBody(callbackResponse);
+                op.complete();
+            }, e -> failRequest(request, op, e));
+
+        } else if (ContainerHostOperationType.LIST_VOLUMES.id.equals(request.operationTypeId)) {
+            fleet.execute(request.operationTypeId, () -> {
+                VolumeListCallback callbackResponse = new VolumeListCallback();
+                callbackResponse.containerHostLink = hostLink;
+                patchTaskStage(request, null, callbackResponse);
+                op.setBody(callbackResponse);
+                op.complete();
+            }, e -> failRequest(request, op, e));
+
+        } else {
+            op.setStatusCode(Operation.STATUS_CODE_ACCEPTED).complete();
+        }
+    }
+
+    private void patchHostInfo(AdapterRequest request, Operation op, SimulatedDockerFleet fleet) {
+        Profile profile = fleet.getProfile();
+        Collection<SimulatedContainer> containers = fleet.getContainers(
+                request.resourceReference.getPath());
+
+        ComputeState patch = new ComputeState();
+        patch.customProperties = new HashMap<>();
+        patch.customProperties.put(ContainerHostService.NUMBER_OF_CONTAINERS_PER_HOST_PROP_NAME,
+                String.valueOf(containers.size()));
+        patch.customProperties.put(ContainerHostService.DOCKER_HOST_TOTAL_MEMORY_PROP_NAME,
+                String.valueOf(profile.hostMemoryBytes));
+        patch.customProperties.put(ContainerHostService.DOCKER_HOST_NUM_CORES_PROP_NAME,
+                String.valueOf(profile.hostCpuCount));
+
+        sendRequest(Operation
+                .createPatch(request.resourceReference)
+                .setBody(patch)
+                .setCompletion((o, e) -> {
+                    patchTaskStage(request, e);
+                    if (e != null) {
+                        op.fail(e);
+                        return;
+                    }
+                    op.setBody(o.getBody(ComputeState.class));
+                    op.complete();
+                }));
+    }
+
+    private void failRequest(AdapterRequest request, Operation op, Throwable e) {
+        patchTaskStage(request, e);
+        op.fail(e);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.service.test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency samples of one operation of a simulation run. Reports the count, failures, percentiles
+ * and the throughput over the time between the first and the last sample.
+ */
+public class SimulationStats {
+
+    private final String name;
+
+    private long[] latencies = new long[64];
+    private int count;
+    private int failures;
+    private long firstMicros = Long.MAX_VALUE;
+    private long lastMicros;
+
+    public SimulationStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records an operation which started at the given time and took the given latency.
+     */
+    public synchronized void record(long startMicros, long latencyMicros, boolean failed) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyMicros;
+        if (failed) {
+            failures++;
+        }
+        firstMicros = Math.min(firstMicros, startMicros);
+        lastMicros = Math.max(lastMicros, startMicros + latencyMicros);
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * The latency in microseconds at the given percentile (0 to 100), 0 if there are no samples.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Completed operations per second between the start of the first and the end of the last
+     * sample.
+     */
+    public synchronized double getThroughput() {
+        long durationMicros = lastMicros - firstMicros;
+        if (count == 0 || durationMicros <= 0) {
+            return 0;
+        }
+        return count / (durationMicros / (double) TimeUnit.SECONDS.toMicros(1));
+    }
+
+    public synchronized void reset() {
+        latencies = new long[64];
+        count = 0;
+        failures = 0;
+        firstMicros = Long.MAX_VALUE;
+        lastMicros = 0;
+    }
+
+    public static String formatHeader() {
+        return String.format("%-40s %8s %8s %10s %10s %10s %10s %10s", "operation", "count",
+                "failed", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%-40s %8d %8d %10.1f %10.1f %10.1f %10.1f %10.1f", name, count,
+                failures, getThroughput(), getPercentile(50) / 1000.0,
+                getPercentile(90) / 1000.0, getPercentile(99) / 1000.0,
+                getPercentile(100) / 1000.0);
+    }
+}
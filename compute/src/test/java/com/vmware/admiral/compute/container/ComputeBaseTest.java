@@ -62,7 +62,7 @@ public abstract class ComputeBaseTest extends BaseTestCase {
         CompositeComponentInterceptor.register(registry);
     }
 
-    private static void startServices(ServiceHost serviceHost) throws Throwable {
+    protected static void startServices(ServiceHost serviceHost) throws Throwable {
         HostInitPhotonModelServiceConfig.startServices(serviceHost);
         HostInitTestDcpServicesConfig.startServices(serviceHost);
         HostInitCommonServiceConfig.startServices(serviceHost);
@@ -17,6 +17,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListSet;
 
@@ -31,13 +32,16 @@ import com.vmware.admiral.adapter.common.AdapterRequest;
 import com.vmware.admiral.adapter.common.ContainerOperationType;
 import com.vmware.admiral.common.ManagementUriParts;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.ContainerHostStatsService.ContainerHostStatsState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.ContainerStatsService.ContainerStatsBatch;
 import com.vmware.admiral.compute.container.HealthChecker.HealthConfig;
 import com.vmware.admiral.compute.container.HealthChecker.HealthConfig.HttpVersion;
 import com.vmware.admiral.compute.container.HealthChecker.HealthConfig.RequestProtocol;
 import com.vmware.admiral.compute.container.maintenance.ContainerStats;
 import com.vmware.admiral.compute.container.maintenance.ContainerStatsEvaluator;
+import com.vmware.photon.controller.model.resources.ComputeService;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Service.Action;
 import com.vmware.xenon.common.ServiceHost;
@@ -251,6 +255,77 @@ public class ContainerStatsServiceTest extends ComputeBaseTest {
         }
     }
 
+    @Test
+    public void testContainerStatsBatch() throws Throwable {
+        MockAdapterService mockAdapterService = new MockAdapterService();
+        try {
+            stopService(mockAdapterService);
+
+            URI adapterServiceUri = UriUtils.buildUri(host, ManagementUriParts.ADAPTER_DOCKER);
+            host.startService(Operation.createPost(adapterServiceUri), mockAdapterService);
+            waitForServiceAvailability(ManagementUriParts.ADAPTER_DOCKER);
+
+            ContainerState container = createContainerState(null);
+            container.parentLink = UriUtils.buildUriPath(ComputeService.FACTORY_LINK,
+                    "stats-host");
+            containerState = doPost(container, ContainerFactoryService.SELF_LINK);
+            String containerLink = containerState.documentSelfLink;
+
+            ContainerStatsBatch batch = new ContainerStatsBatch();
+            batch.hostLink = containerState.parentLink;
+            batch.statsByContainerLink = Collections.singletonMap(containerLink,
+                    ContainerStatsEvaluator.calculateStatsValues(buildContainerStatsJson()));
+            TestRequestSender sender = host.getTestRequestSender();
+            sender.sendAndWait(Operation.createPost(host, ContainerStatsService.SELF_LINK)
+                    .setBody(batch));
+
+            // the batch is stored with a single update of the host
+            String statsLink = ContainerHostStatsService.getStatsLink(batch.hostLink);
+            ContainerHostStatsState hostStats = getDocument(ContainerHostStatsState.class,
+                    statsLink);
+            assertEquals(Collections.singleton(containerLink),
+                    hostStats.statsByContainerLink.keySet());
+
+            // the stats are applied to the container only when they are requested
+            ContainerStats containerStats = ContainerStats.transform(sender.sendAndWait(
+                    Operation.createGet(UriUtils.buildStatsUri(host, containerLink)),
+                    ServiceStats.class));
+            assertEquals(0, containerStats.cpuUsage, 0);
+            assertEquals(0, containerStats.memUsage);
+
+            String query = String.format("%s=%s", ContainerStatsService.CONTAINER_ID_QUERY_PARAM,
+                    UriUtils.getLastPathSegment(containerLink));
+            URI uri = UriUtils.buildUri(host, ContainerStatsService.SELF_LINK, query);
+            Operation response = sender.sendAndWait(Operation.createGet(uri));
+            assertEquals(Operation.STATUS_CODE_OK, response.getStatusCode());
+            ContainerStats stats = ContainerStats.transform(
+                    response.getBody(ServiceStats.class));
+            assertEquals(29.92d, stats.cpuUsage, 0);
+            assertEquals(3042080, stats.memUsage);
+
+            // the stats collected in bulk are fresh, no need to request them from the adapter
+            assertFalse(mockAdapterService.isStatsInvokedForResource(containerLink));
+
+            // unchanged stats are kept, the ones of containers missing from the batch dropped
+            batch.statsByContainerLink = Collections.singletonMap(containerLink + "-other",
+                    new ContainerStats());
+            batch.unchangedContainerLinks = Collections.singletonList(containerLink);
+            sender.sendAndWait(Operation.createPost(host, ContainerStatsService.SELF_LINK)
+                    .setBody(batch));
+            hostStats = getDocument(ContainerHostStatsState.class, statsLink);
+            assertEquals(29.92d, hostStats.statsByContainerLink.get(containerLink).cpuUsage, 0);
+
+            batch.statsByContainerLink = null;
+            batch.unchangedContainerLinks = null;
+            sender.sendAndWait(Operation.createPost(host, ContainerStatsService.SELF_LINK)
+                    .setBody(batch));
+            hostStats = getDocument(ContainerHostStatsState.class, statsLink);
+            assertTrue(hostStats.statsByContainerLink.isEmpty());
+        } finally {
+            stopService(mockAdapterService);
+        }
+    }
+
     private ContainerState createContainerState(String containerDescriptionLink) {
         ContainerState container = new ContainerState();
         container.descriptionLink = containerDescriptionLink;
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.compute.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.admiral.common.ManagementUriParts;
+import com.vmware.admiral.common.util.OperationUtil;
+import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
+import com.vmware.admiral.compute.container.GroupResourcePlacementEscrowService.EscrowStats;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.EscrowLease;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService.ResourcePlacementReservationRequest;
+import com.vmware.photon.controller.model.resources.ResourcePoolService;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceConfigUpdateRequest;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.common.test.VerificationHost;
+
+public class GroupResourcePlacementEscrowServiceTest extends ComputeBaseTest {
+
+    private static final long MAX_INSTANCES = GroupResourcePlacementEscrowService.BLOCK_INSTANCES;
+
+    private ContainerDescription containerDescription;
+    private GroupResourcePlacementState placementState;
+
+    @Before
+    public void setUp() throws Throwable {
+        host.addPrivilegedService(GroupResourcePlacementEscrowService.class);
+        waitForServiceAvailability(GroupResourcePlacementService.FACTORY_LINK,
+                GroupResourcePlacementEscrowService.SELF_LINK);
+
+        containerDescription = createContainerDescription(host);
+        placementState = createPlacement(host, containerDescription);
+    }
+
+    @Test
+    public void testReservationsAreGrantedFromTheLease() throws Throwable {
+        reserve(3);
+
+        EscrowStats stats = getDocument(EscrowStats.class,
+                GroupResourcePlacementEscrowService.SELF_LINK);
+        assertEquals(3, stats.grantCount);
+        assertEquals(0, stats.directCount);
+
+        // only a share of the placement is leased by the node, the rest is available
+        GroupResourcePlacementState placement = getDocument(GroupResourcePlacementState.class,
+                placementState.documentSelfLink);
+        EscrowLease lease = placement.escrowLeases.get(host.getId());
+        assertTrue(placement.availableInstancesCount >= MAX_INSTANCES / 2);
+        assertTrue(placement.availableMemory > 0);
+        assertEquals(MAX_INSTANCES, placement.availableInstancesCount + lease.instances
+                + placement.allocatedInstancesCount);
+    }
+
+    @Test
+    public void testReservationIsSentDirectlyWhenTheLeaseIsShort() throws Throwable {
+        // more than the share of the placement, still leased for the reservation
+        long count = MAX_INSTANCES - 1;
+        GroupResourcePlacementState placement = host.getTestRequestSender().sendAndWait(
+                createReservation(count), GroupResourcePlacementState.class);
+        assertEquals(placementState.documentSelfLink, placement.documentSelfLink);
+
+        EscrowStats stats = getDocument(EscrowStats.class,
+                GroupResourcePlacementEscrowService.SELF_LINK);
+        assertEquals(1, stats.grantCount);
+        assertEquals(0, stats.directCount);
+
+        // the placement can not lease enough, the limits of the placement hold
+        host.getTestRequestSender().sendAndWaitFailure(createReservation(2));
+        stats = getDocument(EscrowStats.class, GroupResourcePlacementEscrowService.SELF_LINK);
+        assertEquals(1, stats.directCount);
+        assertEquals(1, stats.rejectCount);
+    }
+
+    @Test
+    public void testLimitsOfThePlacementHold() throws Throwable {
+        AtomicInteger failures = new AtomicInteger();
+        int count = (int) MAX_INSTANCES + 2;
+
+        host.testStart(count);
+        for (int i = 0; i < count; i++) {
+            host.send(createReservation().setCompletion((o, e) -> {
+                if (e != null) {
+                    failures.incrementAndGet();
+                }
+                host.completeIteration();
+            }));
+        }
+        host.testWait();
+
+        assertEquals(2, failures.get());
+    }
+
+    @Test
+    public void testReservationsAreSettledAndTheLeaseReturned() throws Throwable {
+        reserve(3);
+
+        ServiceConfigUpdateRequest body = ServiceConfigUpdateRequest.create();
+        body.maintenanceIntervalMicros = TimeUnit.MILLISECONDS.toMicros(100);
+        host.sendAndWaitExpectSuccess(Operation
+                .createPatch(UriUtils.buildConfigUri(host,
+                        GroupResourcePlacementEscrowService.SELF_LINK))
+                .setBody(body));
+
+        waitFor(() -> {
+            GroupResourcePlacementState placement = getDocument(
+                    GroupResourcePlacementState.class, placementState.documentSelfLink);
+            return placement.allocatedInstancesCount == 3
+                    && placement.availableInstancesCount == MAX_INSTANCES - 3
+                    && (placement.escrowLeases == null || placement.escrowLeases.isEmpty());
+        });
+    }
+
+    @Test
+    public void testLeaseIsReturnedOnStop() throws Throwable {
+        reserve(3);
+
+        host.getTestRequestSender().sendAndWait(Operation.createDelete(
+                UriUtils.buildUri(host, GroupResourcePlacementEscrowService.SELF_LINK)));
+
+        GroupResourcePlacementState placement = getDocument(GroupResourcePlacementState.class,
+                placementState.documentSelfLink);
+        assertEquals(3, placement.allocatedInstancesCount);
+        assertEquals(MAX_INSTANCES - 3, placement.availableInstancesCount);
+        assertTrue(placement.escrowLeases == null || placement.escrowLeases.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentReservationsFromTwoNodes() throws Throwable {
+        host.setUpPeerHosts(2);
+        host.joinNodesAndVerifyConvergence(2);
+        try {
+            List<VerificationHost> peers = new ArrayList<>(host.getInProcessHostMap().values());
+            for (VerificationHost peer : peers) {
+                peer.addPrivilegedService(GroupResourcePlacementEscrowService.class);
+                startServices(peer);
+            }
+            for (String factoryLink : Arrays.asList(ResourcePoolService.FACTORY_LINK,
+                    ContainerDescriptionService.FACTORY_LINK,
+                    GroupResourcePlacementService.FACTORY_LINK)) {
+                host.waitForReplicatedFactoryServiceAvailable(
+                        UriUtils.buildUri(peers.get(0), factoryLink));
+            }
+            ContainerDescription desc = createContainerDescription(peers.get(0));
+            GroupResourcePlacementState placement = createPlacement(peers.get(0), desc);
+
+            // both nodes reserve from the placement at once
+            AtomicInteger failures = new AtomicInteger();
+            int count = (int) MAX_INSTANCES + 2;
+            TestContext ctx = testCreate(count);
+            for (int i = 0; i < count; i++) {
+                VerificationHost peer = peers.get(i % peers.size());
+                peer.send(createReservation(peer, desc, placement, 1).setCompletion((o, e) -> {
+                    if (e != null) {
+                        failures.incrementAndGet();
+                    }
+                    ctx.complete();
+                }));
+            }
+            ctx.await();
+
+            int reserved = count - failures.get();
+            assertTrue(reserved <= MAX_INSTANCES);
+            for (VerificationHost peer : peers) {
+                EscrowStats stats = peer.getTestRequestSender().sendAndWait(Operation
+                        .createGet(peer, GroupResourcePlacementEscrowService.SELF_LINK))
+                        .getBody(EscrowStats.class);
+                // a node does not lease the whole placement
+                assertTrue(stats.grantCount + stats.directCount - stats.rejectCount > 0);
+            }
+
+            // the leases of both nodes are settled with the placement
+            for (VerificationHost peer : peers) {
+                ServiceConfigUpdateRequest body = ServiceConfigUpdateRequest.create();
+                body.maintenanceIntervalMicros = TimeUnit.MILLISECONDS.toMicros(100);
+                peer.sendAndWaitExpectSuccess(Operation
+                        .createPatch(UriUtils.buildConfigUri(peer,
+                                GroupResourcePlacementEscrowService.SELF_LINK))
+                        .setBody(body));
+            }
+            URI placementUri = UriUtils.buildUri(peers.get(0), placement.documentSelfLink);
+            waitFor(() -> {
+                GroupResourcePlacementState state = getDocument(
+                        GroupResourcePlacementState.class, placementUri);
+                return state.allocatedInstancesCount == reserved
+                        && state.availableInstancesCount == MAX_INSTANCES - reserved
+                        && (state.escrowLeases == null || state.escrowLeases.isEmpty());
+            });
+        } finally {
+            host.tearDownInProcessPeers();
+        }
+    }
+
+    private void reserve(int count) throws Throwable {
+        host.testStart(count);
+        for (int i = 0; i < count; i++) {
+            host.send(createReservation().setCompletion(host.getCompletion()));
+        }
+        host.testWait();
+    }
+
+    private Operation createReservation() {
+        return createReservation(1);
+    }
+
+    private Operation createReservation(long count) {
+        return createReservation(host, containerDescription, placementState, count);
+    }
+
+    private static Operation createReservation(VerificationHost target, ContainerDescription desc,
+            GroupResourcePlacementState placement, long count) {
+        ResourcePlacementReservationRequest request = new ResourcePlacementReservationRequest();
+        request.resourceCount = count;
+        request.resourceDescriptionLink = desc.documentSelfLink;
+        request.groupResourcePlacementLink = placement.documentSelfLink;
+        request.referer = ManagementUriParts.REQUEST_RESERVATION_TASKS;
+
+        return Operation
+                .createPatch(UriUtils.buildUri(target,
+                        GroupResourcePlacementEscrowService.SELF_LINK))
+                .setBody(request)
+                .setReferer(target.getUri());
+    }
+
+    private static ContainerDescription createContainerDescription(VerificationHost target) {
+        ContainerDescription desc = new ContainerDescription();
+        desc.documentSelfLink = "escrow-test-" + UUID.randomUUID().toString();
+        desc.name = "name";
+        desc.image = "image";
+        desc.memoryLimit = ContainerDescriptionService.getContainerMinMemoryLimit();
+        return target.getTestRequestSender().sendAndWait(Operation
+                .createPost(target, ContainerDescriptionService.FACTORY_LINK)
+                .setBody(desc), ContainerDescription.class);
+    }
+
+    private static GroupResourcePlacementState createPlacement(VerificationHost target,
+            ContainerDescription desc) {
+        ResourcePoolState poolState = new ResourcePoolState();
+        poolState.id = "escrow-test-" + UUID.randomUUID().toString();
+        poolState.name = poolState.id;
+        poolState.documentSelfLink = poolState.id;
+        poolState.maxMemoryBytes = 1024L * 1024L * 1024L * 46L;
+        poolState.minMemoryBytes = poolState.maxMemoryBytes / 2;
+        poolState = target.getTestRequestSender().sendAndWait(Operation
+                .createPost(target, ResourcePoolService.FACTORY_LINK)
+                .setBody(poolState), ResourcePoolState.class);
+
+        GroupResourcePlacementState placement = new GroupResourcePlacementState();
+        placement.name = "escrow-test";
+        placement.documentSelfLink = "escrow-test-" + UUID.randomUUID().toString();
+        placement.tenantLinks = Collections.singletonList("/tenants/coke");
+        placement.resourcePoolLink = poolState.documentSelfLink;
+        placement.maxNumberInstances = MAX_INSTANCES;
+        placement.memoryLimit = MAX_INSTANCES * desc.memoryLimit;
+        placement.resourceType = "DOCKER_CONTAINER";
+
+        placement = target.getTestRequestSender().sendAndWait(OperationUtil
+                .createForcedPost(
+                        UriUtils.buildUri(target, GroupResourcePlacementService.FACTORY_LINK))
+                .setBody(placement), GroupResourcePlacementState.class);
+        assertNotNull(placement);
+        return placement;
+    }
+}
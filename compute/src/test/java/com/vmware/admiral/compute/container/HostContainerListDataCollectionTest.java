@@ -18,11 +18,13 @@ import static org.junit.Assert.assertTrue;
 import static com.vmware.admiral.compute.container.HostContainerListDataCollection.DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
@@ -34,6 +36,7 @@ import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
+import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerEvent;
 import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerListCallback;
 import com.vmware.admiral.compute.container.HostContainerListDataCollection.ContainerVersion;
 import com.vmware.admiral.compute.container.HostContainerListDataCollection.HostContainerListDataCollectionState;
@@ -334,6 +337,109 @@ public class HostContainerListDataCollectionTest extends ComputeBaseTest {
         assertEquals(PowerState.STOPPED, cs.powerState);
     }
 
+    @Test
+    public void testContainerEvents() throws Throwable {
+        ContainerState cs = new ContainerState();
+        cs.id = UUID.randomUUID().toString();
+        cs.names = new ArrayList<>(Collections.singletonList("name_" + cs.id));
+        cs.parentLink = COMPUTE_HOST_LINK;
+        cs.powerState = ContainerState.PowerState.RUNNING;
+        cs.adapterManagementReference = UriUtils.buildUri(ManagementUriParts.ADAPTER_DOCKER);
+
+        String containerLink = doPost(cs, ContainerFactoryService.SELF_LINK).documentSelfLink;
+
+        sendContainerEvent(cs.id, ContainerEvent.ACTION_DIE);
+        waitFor(() -> PowerState.STOPPED == getDocument(ContainerState.class,
+                containerLink).powerState);
+
+        long startedMillis = System.currentTimeMillis();
+        sendContainerEvent(cs.id, ContainerEvent.ACTION_START,
+                TimeUnit.MILLISECONDS.toNanos(startedMillis));
+        waitFor(() -> PowerState.RUNNING == getDocument(ContainerState.class,
+                containerLink).powerState);
+        assertEquals(Long.valueOf(startedMillis),
+                getDocument(ContainerState.class, containerLink).started);
+
+        sendContainerEvent(cs.id, ContainerEvent.ACTION_DESTROY);
+        waitFor(() -> PowerState.RETIRED == getDocument(ContainerState.class,
+                containerLink).powerState);
+    }
+
+    @Test
+    public void testContainerEventsOfOneBatchAppliedInOrder() throws Throwable {
+        ContainerState cs = new ContainerState();
+        cs.id = UUID.randomUUID().toString();
+        cs.names = new ArrayList<>(Collections.singletonList("name_" + cs.id));
+        cs.parentLink = COMPUTE_HOST_LINK;
+        cs.powerState = ContainerState.PowerState.RUNNING;
+        cs.adapterManagementReference = UriUtils.buildUri(ManagementUriParts.ADAPTER_DOCKER);
+
+        String containerLink = doPost(cs, ContainerFactoryService.SELF_LINK).documentSelfLink;
+
+        long startedMillis = System.currentTimeMillis();
+        sendContainerEvents(createContainerEvent(cs.id, ContainerEvent.ACTION_DIE, null),
+                createContainerEvent(cs.id, ContainerEvent.ACTION_START,
+                        TimeUnit.MILLISECONDS.toNanos(startedMillis)),
+                createContainerEvent(cs.id, ContainerEvent.ACTION_DIE, null));
+        waitFor(() -> PowerState.STOPPED == getDocument(ContainerState.class,
+                containerLink).powerState);
+        assertEquals(Long.valueOf(startedMillis),
+                getDocument(ContainerState.class, containerLink).started);
+
+        // the events of another container in the same batch do not change it
+        sendContainerEvents(createContainerEvent(cs.id, ContainerEvent.ACTION_START, null),
+                createContainerEvent(UUID.randomUUID().toString(), ContainerEvent.ACTION_DIE,
+                        null));
+        waitFor(() -> PowerState.RUNNING == getDocument(ContainerState.class,
+                containerLink).powerState);
+    }
+
+    @Test
+    public void testPeriodicSyncSkippedWhileEventsStreamActive() throws Throwable {
+        TestRequestSender sender = host.getTestRequestSender();
+
+        ContainerListCallback body = new ContainerListCallback();
+        body.containerHostLink = COMPUTE_HOST_LINK;
+        body.eventsStreamActive = true;
+
+        // a stream subscribed on another node does not change the synchronization of this one
+        body.eventsStreamNodeId = UUID.randomUUID().toString();
+        sender.sendAndWait(Operation
+                .createPatch(host, DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBody(body));
+        containerListBody.periodic = true;
+        startAndWaitHostContainerListDataCollection();
+        Operation response = sender.sendAndWait(Operation
+                .createPatch(host, DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBody(containerListBody));
+        assertEquals(Operation.STATUS_CODE_OK, response.getStatusCode());
+        waitForDataCollectionFinished();
+
+        body.eventsStreamNodeId = host.getId();
+        sender.sendAndWait(Operation
+                .createPatch(host, DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBody(body));
+
+        // the first periodic synchronization after the stream is opened is a full one
+        startAndWaitHostContainerListDataCollection();
+
+        response = sender.sendAndWait(Operation
+                .createPatch(host, DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBody(containerListBody));
+        assertEquals(Operation.STATUS_CODE_NOT_MODIFIED, response.getStatusCode());
+
+        body.eventsStreamActive = false;
+        sender.sendAndWait(Operation
+                .createPatch(host, DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBodyNoCloning(body));
+
+        response = sender.sendAndWait(Operation
+                .createPatch(host, DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBody(containerListBody));
+        assertEquals(Operation.STATUS_CODE_OK, response.getStatusCode());
+        waitForDataCollectionFinished();
+    }
+
     @Test
     public void testContainerVersion() throws Throwable {
         ContainerVersion cv22 = ContainerVersion.fromImageName("abc:2.2");
@@ -376,6 +482,33 @@ public class HostContainerListDataCollectionTest extends ComputeBaseTest {
                         + " state was provisioning.");
     }
 
+    private void sendContainerEvent(String containerId, String action) {
+        sendContainerEvent(containerId, action, null);
+    }
+
+    private void sendContainerEvent(String containerId, String action, Long timeNano) {
+        sendContainerEvents(createContainerEvent(containerId, action, timeNano));
+    }
+
+    private static ContainerEvent createContainerEvent(String containerId, String action,
+            Long timeNano) {
+        ContainerEvent event = new ContainerEvent();
+        event.id = containerId;
+        event.action = action;
+        event.timeNano = timeNano;
+        return event;
+    }
+
+    private void sendContainerEvents(ContainerEvent... events) {
+        ContainerListCallback body = new ContainerListCallback();
+        body.containerHostLink = COMPUTE_HOST_LINK;
+        body.containerEvents = Arrays.asList(events);
+
+        host.getTestRequestSender().sendAndWait(Operation
+                .createPatch(host, DEFAULT_HOST_CONTAINER_LIST_DATA_COLLECTION_LINK)
+                .setBodyNoCloning(body));
+    }
+
     private void startAndWaitHostContainerListDataCollection() throws Throwable {
         host.testStart(1);
         host.sendRequest(Operation
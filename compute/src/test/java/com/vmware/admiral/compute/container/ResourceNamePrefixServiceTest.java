@@ -16,20 +16,33 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.vmware.admiral.service.common.ResourceNamePrefixRanges;
 import com.vmware.admiral.service.common.ResourceNamePrefixService;
+import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixRange;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixRequest;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixResponse;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.ResourceNamePrefixState;
 import com.vmware.xenon.common.FactoryService;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.StatelessService;
 import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.common.test.VerificationHost;
 
 public class ResourceNamePrefixServiceTest extends ComputeBaseTest {
 
@@ -210,6 +223,193 @@ public class ResourceNamePrefixServiceTest extends ComputeBaseTest {
         }
     }
 
+    @Test
+    public void testReserveRange() throws Throwable {
+        ResourceNamePrefixState state = createValidResourceNamePrefixState();
+        state = doPost(state, ResourceNamePrefixService.FACTORY_LINK);
+        long maxRangeSize = ResourceNamePrefixService.getMaxRangeSize(state);
+
+        NamePrefixRequest request = new NamePrefixRequest();
+        request.resourceCount = 1;
+        request.rangeSize = 5;
+
+        NamePrefixRange range = patch(state, request).range;
+        assertEquals(state.prefix, range.prefix);
+        assertEquals(state.nextNumber, range.firstNumber);
+        assertEquals(state.nextNumber + 4, range.lastNumber);
+
+        // the range is a small fraction of the sequence
+        request.rangeSize = 50;
+        range = patch(state, request).range;
+        assertEquals(state.nextNumber + 5, range.firstNumber);
+        assertEquals(state.nextNumber + 4 + maxRangeSize, range.lastNumber);
+
+        // the range ends at the max number
+        NamePrefixRequest prefixesRequest = new NamePrefixRequest();
+        prefixesRequest.resourceCount = state.getMaxNumber() - range.lastNumber - 3;
+        patch(state, prefixesRequest);
+        request.rangeSize = 5;
+        range = patch(state, request).range;
+        assertEquals(state.getMaxNumber() - 2, range.firstNumber);
+        assertEquals(state.getMaxNumber(), range.lastNumber);
+
+        // back to nextNumber
+        range = patch(state, request).range;
+        assertEquals(state.nextNumber, range.firstNumber);
+
+        // prefixes continue after the range
+        prefixesRequest.resourceCount = 1;
+        NamePrefixResponse response = patch(state, prefixesRequest);
+        assertEquals(state.prefix + (range.lastNumber + 1),
+                response.resourceNamePrefixes.get(0));
+    }
+
+    @Test
+    public void testNoRangeOfShortSequence() throws Throwable {
+        ResourceNamePrefixState state = createValidResourceNamePrefixState();
+        state.nextNumber = 990;
+        state = doPost(state, ResourceNamePrefixService.FACTORY_LINK);
+
+        NamePrefixRequest request = new NamePrefixRequest();
+        request.resourceCount = 2;
+        request.rangeSize = 5;
+
+        NamePrefixResponse response = patch(state, request);
+        assertNull(response.range);
+        assertEquals(Arrays.asList(state.prefix + 990, state.prefix + 991),
+                response.resourceNamePrefixes);
+
+        // the allocator falls back to a request per name prefix
+        Service sender = new StatelessService();
+        host.startServiceAndWait(sender, "/test-name-prefix-sender", null);
+        List<String> prefixes = ResourceNamePrefixRanges.getInstance(host)
+                .getNamePrefixes(sender, state.documentSelfLink, 3)
+                .toCompletionStage().toCompletableFuture()
+                .get(host.getTimeoutSeconds(), TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(state.prefix + 992, state.prefix + 993, state.prefix + 994),
+                prefixes);
+        prefixes = ResourceNamePrefixRanges.getInstance(host)
+                .getNamePrefixes(sender, state.documentSelfLink, 1)
+                .toCompletionStage().toCompletableFuture()
+                .get(host.getTimeoutSeconds(), TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList(state.prefix + 995), prefixes);
+    }
+
+    @Test
+    public void testNamePrefixesFromRanges() throws Throwable {
+        ResourceNamePrefixState state = createValidResourceNamePrefixState();
+        state = doPost(state, ResourceNamePrefixService.FACTORY_LINK);
+        String prefixLink = state.documentSelfLink;
+
+        Service sender = new StatelessService();
+        host.startServiceAndWait(sender, "/test-name-prefix-sender", null);
+
+        int requestCount = 10;
+        int resourceCount = 20;
+        List<String> prefixes = Collections.synchronizedList(new ArrayList<>());
+        TestContext ctx = testCreate(requestCount);
+        requestNamePrefixes(ctx, ResourceNamePrefixRanges.getInstance(host), sender, prefixLink,
+                requestCount, resourceCount, prefixes);
+        ctx.await();
+
+        // the numbers of the sequence are used once, from nextNumber on
+        Set<String> uniquePrefixes = new HashSet<>(prefixes);
+        assertEquals(requestCount * resourceCount, uniquePrefixes.size());
+        for (long number = state.nextNumber; number < state.nextNumber + prefixes.size();
+                number++) {
+            assertTrue(uniquePrefixes.contains(state.prefix + number));
+        }
+
+        // the node reserved the sequence in small ranges, only the rest of the last one is unused
+        ResourceNamePrefixState updatedState = getDocument(ResourceNamePrefixState.class,
+                prefixLink);
+        long maxRangeSize = ResourceNamePrefixService.getMaxRangeSize(state);
+        assertTrue(updatedState.currentCount >= state.nextNumber + prefixes.size());
+        assertTrue(updatedState.currentCount < state.nextNumber + prefixes.size() + maxRangeSize);
+    }
+
+    @Test
+    public void testUpdatedPrefixIsUsedRightAway() throws Throwable {
+        ResourceNamePrefixState state = createValidResourceNamePrefixState();
+        state = doPost(state, ResourceNamePrefixService.FACTORY_LINK);
+
+        Service sender = new StatelessService();
+        host.startServiceAndWait(sender, "/test-name-prefix-sender", null);
+        List<String> prefixes = ResourceNamePrefixRanges.getInstance(host)
+                .getNamePrefixes(sender, state.documentSelfLink, 1)
+                .toCompletionStage().toCompletableFuture()
+                .get(host.getTimeoutSeconds(), TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList(state.prefix + state.nextNumber), prefixes);
+
+        // the rest of the range of the node is dropped
+        ResourceNamePrefixState updatedState = getDocument(ResourceNamePrefixState.class,
+                state.documentSelfLink);
+        updatedState.prefix = "XYZ";
+        doPut(updatedState);
+
+        prefixes = ResourceNamePrefixRanges.getInstance(host)
+                .getNamePrefixes(sender, state.documentSelfLink, 1)
+                .toCompletionStage().toCompletableFuture()
+                .get(host.getTimeoutSeconds(), TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("XYZ" + updatedState.currentCount), prefixes);
+    }
+
+    @Test
+    public void testNamePrefixesFromRangesOfTwoNodesAcrossRollBack() throws Throwable {
+        ResourceNamePrefixState state = createValidResourceNamePrefixState();
+        state = doPost(state, ResourceNamePrefixService.FACTORY_LINK);
+        String prefixLink = state.documentSelfLink;
+
+        // close to the max number, so that the counter rolls back while the nodes allocate
+        NamePrefixRequest request = new NamePrefixRequest();
+        request.resourceCount = state.getRange() - 20;
+        patch(state, request);
+
+        Service sender = new StatelessService();
+        host.startServiceAndWait(sender, "/test-name-prefix-sender", null);
+        VerificationHost otherHost = createHost();
+        try {
+            int requestCount = 10;
+            int resourceCount = 20;
+            List<String> prefixes = Collections.synchronizedList(new ArrayList<>());
+            TestContext ctx = testCreate(2 * requestCount);
+            for (ServiceHost allocatorHost : Arrays.asList(host, otherHost)) {
+                requestNamePrefixes(ctx, ResourceNamePrefixRanges.getInstance(allocatorHost),
+                        sender, prefixLink, requestCount, resourceCount, prefixes);
+            }
+            ctx.await();
+
+            // less than the whole sequence is used, no prefix is handed out twice
+            assertEquals(2 * requestCount * resourceCount, prefixes.size());
+            assertEquals(prefixes.size(), new HashSet<>(prefixes).size());
+            assertTrue(prefixes.contains(state.prefix + state.getMaxNumber()));
+            assertTrue(prefixes.contains(state.prefix + state.nextNumber));
+        } finally {
+            otherHost.tearDown();
+        }
+    }
+
+    private static void requestNamePrefixes(TestContext ctx, ResourceNamePrefixRanges allocator,
+            Service sender, String prefixLink, int requestCount, int resourceCount,
+            List<String> prefixes) {
+        for (int i = 0; i < requestCount; i++) {
+            allocator.getNamePrefixes(sender, prefixLink, resourceCount)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            ctx.fail(e);
+                            return;
+                        }
+                        if (result.size() != resourceCount) {
+                            ctx.fail(new IllegalStateException("Expected " + resourceCount
+                                    + " prefixes, got " + result.size()));
+                            return;
+                        }
+                        prefixes.addAll(result);
+                        ctx.complete();
+                    });
+        }
+    }
+
     private void validateIllegalArgument(ResourceNamePrefixState state, String expecation)
             throws Throwable {
         validateLocalizableException(() -> {
@@ -18,10 +18,15 @@ import static org.junit.Assert.assertTrue;
 import static com.vmware.admiral.compute.kubernetes.KubernetesEntityDataCollection.DEFAULT_KUBERNETES_ENTITY_DATA_COLLECTION_LINK;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -100,6 +105,7 @@ public class KubernetesEntityDataCollectionTest extends ComputeBaseTest {
     @After
     public void tearDown() {
         MockKubernetesAdapterService.clearKubernetesEntities();
+        MockKubernetesHostAdapterService.incrementallyRemovedIds = null;
         if (forDelete.size() != 0) {
             host.testStart(forDelete.size());
             forDelete.forEach(link -> host.sendRequest(
@@ -394,6 +400,47 @@ public class KubernetesEntityDataCollectionTest extends ComputeBaseTest {
         Assert.assertEquals(0, pods.size());
     }
 
+    @Test
+    public void testIncrementalDataCollectionAppliesOnlyChanges() throws Throwable {
+        createPod("unchanged-pod");
+        createPod("removed-pod");
+
+        MockKubernetesAdapterService.addEntity(makeEntity("added-pod", "added-pod",
+                KubernetesUtil.POD_TYPE, null));
+        MockKubernetesHostAdapterService.incrementallyRemovedIds = Collections
+                .singleton("removed-pod");
+
+        startDataCollectionAndWait();
+
+        Set<String> podIds = getEntities(PodState.class).stream()
+                .map((pod) -> pod.id)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("unchanged-pod", "added-pod")), podIds);
+    }
+
+    private void createPod(String id) {
+        PodState pod = new PodState();
+        pod.id = id;
+        pod.name = id;
+        pod.parentLink = COMPUTE_HOST_LINK;
+        pod.documentSelfLink = id;
+
+        host.testStart(1);
+        host.sendRequest(
+                Operation.createPost(UriUtils.buildUri(host, PodFactoryService.SELF_LINK))
+                        .setBody(pod)
+                        .setReferer(host.getUri())
+                        .setCompletion((o, ex) -> {
+                            if (ex != null) {
+                                host.failIteration(ex);
+                            } else {
+                                addForDelete(o.getBody(ResourceState.class).documentSelfLink);
+                                host.completeIteration();
+                            }
+                        }));
+        host.testWait();
+    }
+
     @Test
     public void testDataCollectionDiscoverAdmiralApplication() throws Throwable {
         String testCompositeId = "test-composite-id";
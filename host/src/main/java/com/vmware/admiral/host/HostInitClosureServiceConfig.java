@@ -12,6 +12,7 @@
 package com.vmware.admiral.host;
 
 import static com.vmware.photon.controller.model.util.StartServicesHelper.ServiceMetadata.factoryService;
+import static com.vmware.photon.controller.model.util.StartServicesHelper.ServiceMetadata.service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,7 +25,9 @@ import java.util.logging.Level;
 import com.vmware.admiral.closures.drivers.DriverRegistry;
 import com.vmware.admiral.closures.drivers.DriverRegistryImpl;
 import com.vmware.admiral.closures.drivers.docker.ClosureDockerClientFactoryImpl;
+import com.vmware.admiral.closures.drivers.docker.ClosureRunnerPoolService;
 import com.vmware.admiral.closures.drivers.docker.DockerDriverBase;
+import com.vmware.admiral.closures.drivers.nashorn.LocalDriverStatsService;
 import com.vmware.admiral.closures.services.adapter.AdmiralAdapterFactoryService;
 import com.vmware.admiral.closures.services.closure.ClosureFactoryService;
 import com.vmware.admiral.closures.services.closuredescription.ClosureDescriptionFactoryService;
@@ -45,7 +48,9 @@ public class HostInitClosureServiceConfig extends HostInitServiceHelper {
                     factoryService(AdmiralAdapterFactoryService.class),
                     factoryService(ClosureDescriptionFactoryService.class),
                     factoryService(DockerImageFactoryService.class),
-                    factoryService(ClosureFactoryService.class)));
+                    factoryService(ClosureFactoryService.class),
+                    service(ClosureRunnerPoolService.class),
+                    service(LocalDriverStatsService.class)));
 
     private static final DriverRegistry driverRegistry = new DriverRegistryImpl();
 
@@ -56,6 +61,7 @@ public class HostInitClosureServiceConfig extends HostInitServiceHelper {
         registerExecutionDrivers(host);
 
         HostInitClosureServiceConfig.startFactoryServices(host, factoryServices);
+        startServices(host, ClosureRunnerPoolService.class, LocalDriverStatsService.class);
     }
 
     private static List<FactoryService> initializeFactoryService(
@@ -18,6 +18,7 @@ import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
@@ -43,6 +44,7 @@ import com.vmware.admiral.common.util.ConfigurationUtil;
 import com.vmware.admiral.common.util.SecurityUtils;
 import com.vmware.admiral.common.util.ServerX509TrustManager;
 import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
+import com.vmware.admiral.compute.container.GroupResourcePlacementEscrowService;
 import com.vmware.admiral.host.interceptor.AuthCredentialsInterceptor;
 import com.vmware.admiral.host.interceptor.InUsePlacementZoneInterceptor;
 import com.vmware.admiral.host.interceptor.OperationInterceptorRegistry;
@@ -148,6 +150,8 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
 
     private OperationInterceptorRegistry interceptors = new OperationInterceptorRegistry();
 
+    private final StartupTimeline startupTimeline = new StartupTimeline();
+
     public static void main(String[] args) throws Throwable {
         Utils.setTimeDriftThreshold(TIME_DRIFT_THRESHOLD_MICROS);
 
@@ -188,20 +192,30 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
 
         log(Level.INFO, "**** Management host starting ... ****");
 
-        startFabricServices();
-        startManagementServices();
-        startClosureServices(this, startMockHostAdapterInstance);
-        startSwaggerService();
-        startCustomSwaggerService();
+        // the management services send requests to the fabric services while starting
+        new StartupScheduler("host", startupTimeline)
+                .addStep("fabric", this::startFabricServices)
+                .addStep("management", this::startManagementServices, "fabric")
+                .addStep("closures",
+                        () -> startClosureServices(this, startMockHostAdapterInstance))
+                .addStep("swagger", () -> {
+                    startSwaggerService();
+                    startCustomSwaggerService();
+                }, "fabric", "management", "closures")
+                .addStep("migration", () -> {
+                    log(Level.INFO, "**** Migration service starting... ****");
+                    super.startFactory(new LegacyMigrationTaskService());
+                    super.startFactory(new MigrationTaskService());
+                })
+                .run();
 
         log(Level.INFO, "**** Management host started. ****");
 
-        log(Level.INFO, "**** Migration service starting... ****");
-        super.startFactory(new LegacyMigrationTaskService());
-        super.startFactory(new MigrationTaskService());
         // Clean up authorization context to avoid privileged access.
         setAuthorizationContext(null);
 
+        startupTimeline.complete(this);
+
         return this;
     }
 
@@ -266,6 +280,12 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
 
         allServices.add(ServiceMetadata.factoryService(MigrationTaskService.class));
 
+        long startTimeNanos = System.nanoTime();
+        buildDocumentDescriptions(allServices);
+        startupTimeline.recordStep("postgres-schema/document-descriptions", startTimeNanos,
+                false);
+
+        startTimeNanos = System.nanoTime();
         for (ServiceMetadata serviceMetadata : allServices) {
             if (serviceMetadata.isFactory
                     && StatefulService.class.isAssignableFrom(serviceMetadata.serviceClass)) {
@@ -286,6 +306,34 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
             }
         }
         super.registerPostgresSchema(sm);
+        startupTimeline.recordStep("postgres-schema/tables", startTimeNanos, false);
+    }
+
+    /**
+     * Builds the document descriptions of the stateful services of the factories concurrently.
+     * The host caches them, so registering the tables of the factories one after another does not
+     * build them again.
+     */
+    private void buildDocumentDescriptions(Collection<ServiceMetadata> allServices) {
+        new LinkedHashSet<>(allServices).parallelStream()
+                .filter(serviceMetadata -> serviceMetadata.isFactory && StatefulService.class
+                        .isAssignableFrom(serviceMetadata.serviceClass))
+                .forEach(serviceMetadata -> {
+                    try {
+                        Service service = serviceMetadata.serviceInstance();
+                        service.setHost(this);
+                        service.getDocumentTemplate();
+                    } catch (Throwable e) {
+                        // reported when the table of the factory is registered
+                        log(Level.FINE, "Cannot build document description of %s: %s",
+                                serviceMetadata.serviceClass.getCanonicalName(),
+                                Utils.toString(e));
+                    }
+                });
+    }
+
+    public StartupTimeline getStartupTimeline() {
+        return startupTimeline;
     }
 
     protected void startFabricServices() throws Throwable {
@@ -311,18 +359,26 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
     protected void startCommonServices() throws Throwable {
         this.log(Level.INFO, "Common service starting ...");
 
-        HostInitCommonServiceConfig.startServices(this);
-        HostInitAuthServiceConfig.startServices(this);
-        HostInitUpgradeServiceConfig.startServices(this);
-
-        registerForServiceAvailability(AuthBootstrapService.startTask(this), true,
-                AuthBootstrapService.FACTORY_LINK);
-        if (!ConfigurationUtil.isVca()) {
-            registerForServiceAvailability(ProjectsTransformationBootstrapService.startTask(this),
-                    true,
-                    ProjectsTransformationBootstrapService.FACTORY_LINK,
-                    ProjectFactoryService.SELF_LINK);
-        }
+        // the auth and upgrade services read the configuration properties populated by the
+        // common services
+        new StartupScheduler("common", startupTimeline)
+                .addStep("common", () -> HostInitCommonServiceConfig.startServices(this))
+                .addStep("auth", () -> {
+                    HostInitAuthServiceConfig.startServices(this);
+                    registerForServiceAvailability(AuthBootstrapService.startTask(this), true,
+                            AuthBootstrapService.FACTORY_LINK);
+                }, "common")
+                .addStep("upgrade", () -> HostInitUpgradeServiceConfig.startServices(this),
+                        "common")
+                .addStep("projects-transformation", () -> {
+                    if (!ConfigurationUtil.isVca()) {
+                        registerForServiceAvailability(
+                                ProjectsTransformationBootstrapService.startTask(this), true,
+                                ProjectsTransformationBootstrapService.FACTORY_LINK,
+                                ProjectFactoryService.SELF_LINK);
+                    }
+                }, "auth", "upgrade")
+                .run();
 
         this.log(Level.INFO, "Common services started.");
     }
@@ -336,15 +392,26 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
         registerForServiceAvailability(CaSigningCertService.startTask(this), true,
                 CaSigningCertService.FACTORY_LINK);
 
-        HostInitComputeServicesConfig.startServices(this, false);
-        HostInitComputeBackgroundServicesConfig.startServices(this);
-        HostInitRequestServicesConfig.startServices(this);
-        HostInitImageServicesConfig.startServices(this);
-        HostInitUiServicesConfig.startServices(this);
-        HostInitHarborServices.startServices(this, startMockHostAdapterInstance);
-        HostInitDockerAdapterServiceConfig.startServices(this, startMockHostAdapterInstance);
-        HostInitKubernetesAdapterServiceConfig.startServices(this, startMockHostAdapterInstance);
-        HostInitRegistryAdapterServiceConfig.startServices(this);
+        // the composite component registry initialized with the compute services is used by the
+        // request and background services
+        new StartupScheduler("management", startupTimeline)
+                .addStep("compute", () -> HostInitComputeServicesConfig.startServices(this, false))
+                .addStep("compute-background",
+                        () -> HostInitComputeBackgroundServicesConfig.startServices(this),
+                        "compute")
+                .addStep("request", () -> HostInitRequestServicesConfig.startServices(this),
+                        "compute")
+                .addStep("image", () -> HostInitImageServicesConfig.startServices(this))
+                .addStep("ui", () -> HostInitUiServicesConfig.startServices(this))
+                .addStep("harbor", () -> HostInitHarborServices.startServices(this,
+                        startMockHostAdapterInstance))
+                .addStep("docker-adapter", () -> HostInitDockerAdapterServiceConfig
+                        .startServices(this, startMockHostAdapterInstance))
+                .addStep("kubernetes-adapter", () -> HostInitKubernetesAdapterServiceConfig
+                        .startServices(this, startMockHostAdapterInstance))
+                .addStep("registry-adapter",
+                        () -> HostInitRegistryAdapterServiceConfig.startServices(this))
+                .run();
 
         this.log(Level.INFO, "Management services started.");
     }
@@ -467,6 +534,7 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
     @Override
     public ServiceHost startService(Operation post, Service service) {
         interceptors.subscribeToService(service);
+        startupTimeline.recordServiceStart(post);
         return super.startService(post, service);
     }
 
@@ -503,6 +571,10 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
         // authorization token from a repository (Harbor may misbehave with it).
         addPrivilegedService(RegistryAdapterService.class);
 
+        // GroupResourcePlacementEscrowService settles the reservations granted by the node with
+        // the placements on maintenance, on behalf of none of the requesting principals.
+        addPrivilegedService(GroupResourcePlacementEscrowService.class);
+
         if (AuthUtil.useAuthConfig(this)) {
 
             Service authService = authProvider.getAuthenticationService();
@@ -514,8 +586,11 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
                     authProvider.getAuthenticationServiceUserLinkBuilder());
         }
 
+        long startTimeNanos = System.nanoTime();
         super.start();
+        startupTimeline.recordStep("xenon", startTimeNanos, false);
 
+        startTimeNanos = System.nanoTime();
         startDefaultCoreServicesSynchronously();
 
         if (AuthUtil.useAuthConfig(this)) {
@@ -536,6 +611,8 @@ public class ManagementHost extends PostgresServiceHost implements IExtensibilit
             }
         }
 
+        startupTimeline.recordStep("core", startTimeNanos, false);
+
         startPeerListener();
 
         log(Level.INFO, "Setting authorization context ...");
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vmware.xenon.common.OperationContext;
+
+/**
+ * Runs the steps starting the services of a host, each of them once the steps it depends on are
+ * completed. Steps which do not depend on each other are run concurrently, with the operation
+ * context of the thread calling {@link #run()}, so they start with the same authorization. The
+ * steps are recorded in the {@link StartupTimeline} of the host.
+ * <p>
+ * The steps are run one after another, in the order they were added and their dependencies
+ * allow, if the parallelism is set to 1.
+ */
+public class StartupScheduler {
+
+    public static final int PARALLELISM = Integer.getInteger(
+            "com.vmware.admiral.host.startup.parallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The action of a startup step.
+     */
+    @FunctionalInterface
+    public interface StartupStep {
+        void run() throws Throwable;
+    }
+
+    private static class Step {
+        private final String name;
+        private final StartupStep action;
+        private final List<String> dependencies;
+
+        private Step(String name, StartupStep action, List<String> dependencies) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final String name;
+    private final StartupTimeline timeline;
+    private final int parallelism;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+
+    public StartupScheduler(String name, StartupTimeline timeline) {
+        this(name, timeline, PARALLELISM);
+    }
+
+    public StartupScheduler(String name, StartupTimeline timeline, int parallelism) {
+        this.name = name;
+        this.timeline = timeline;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Adds a step run once the steps with the given names are completed. The dependencies have to
+     * be added to the scheduler too, before or after this step.
+     */
+    public StartupScheduler addStep(String stepName, StartupStep action, String... dependencies) {
+        if (steps.containsKey(stepName)) {
+            throw new IllegalArgumentException("Duplicate startup step " + stepName);
+        }
+        steps.put(stepName, new Step(stepName, action, Arrays.asList(dependencies)));
+        return this;
+    }
+
+    /**
+     * Runs all steps and waits for them to complete. Throws the failure of the first failed step,
+     * the steps depending on it are not run.
+     */
+    public void run() throws Throwable {
+        List<Step> ordered = sortByDependencies();
+        if (parallelism <= 1 || ordered.size() <= 1) {
+            for (Step step : ordered) {
+                runStep(step);
+            }
+            return;
+        }
+
+        OperationContext context = OperationContext.getOperationContext();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, ordered.size()), r -> {
+                    Thread thread = new Thread(r,
+                            "startup-" + name + "-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+            for (Step step : ordered) {
+                CompletableFuture<?>[] dependencies = step.dependencies.stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture<?>[]::new);
+                futures.put(step.name, CompletableFuture.allOf(dependencies)
+                        .thenRunAsync(() -> runStep(step, context), executor));
+            }
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                    .join();
+        } catch (CompletionException e) {
+            Throwable cause = e;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            throw cause;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void runStep(Step step, OperationContext context) {
+        OperationContext.restoreOperationContext(context);
+        try {
+            runStep(step);
+        } catch (Throwable e) {
+            throw e instanceof CompletionException ? (CompletionException) e
+                    : new CompletionException(e);
+        } finally {
+            OperationContext.reset();
+        }
+    }
+
+    private void runStep(Step step) throws Throwable {
+        long startTimeNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            step.action.run();
+            failed = false;
+        } finally {
+            timeline.recordStep(name + "/" + step.name, startTimeNanos, failed);
+        }
+    }
+
+    /**
+     * Returns the steps ordered so each of them follows its dependencies, keeping the order they
+     * were added in otherwise.
+     */
+    private List<Step> sortByDependencies() {
+        for (Step step : steps.values()) {
+            for (String dependency : step.dependencies) {
+                if (!steps.containsKey(dependency)) {
+                    throw new IllegalStateException(String.format(
+                            "Startup step %s depends on unknown step %s", step.name, dependency));
+                }
+            }
+        }
+
+        List<Step> ordered = new ArrayList<>(steps.size());
+        Map<String, Step> remaining = new LinkedHashMap<>(steps);
+        while (!remaining.isEmpty()) {
+            Step next = remaining.values().stream()
+                    .filter(step -> step.dependencies.stream()
+                            .noneMatch(remaining::containsKey))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException(
+                            "Cyclic dependencies between startup steps " + remaining.keySet()));
+            ordered.add(next);
+            remaining.remove(next.name);
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceHost;
+
+/**
+ * Records when the startup steps of a host and the services started during the startup began and
+ * how long they took, so regressions of the startup time can be tracked down to a step or a
+ * service. The services are recorded until the timeline is completed, or until
+ * {@link #MAX_SERVICES} are recorded if it is never completed (e.g. in tests starting only some of
+ * the services).
+ */
+public class StartupTimeline {
+
+    public static final int MAX_SERVICES = Integer.getInteger(
+            "com.vmware.admiral.host.startup.timeline.max.services", 5000);
+
+    private static final int LOGGED_SLOWEST_SERVICES = Integer.getInteger(
+            "com.vmware.admiral.host.startup.timeline.logged.services", 20);
+
+    /**
+     * A step or a service of the timeline. The start is relative to the start of the timeline.
+     */
+    public static class Entry {
+        public final String name;
+        public final long startMillis;
+        public final long durationMillis;
+        public final boolean failed;
+
+        private Entry(String name, long startMillis, long durationMillis, boolean failed) {
+            this.name = name;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+            this.failed = failed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: +%d ms, took %d ms%s", name, startMillis, durationMillis,
+                    failed ? " (failed)" : "");
+        }
+    }
+
+    private final long startTimeNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Entry> steps = new ConcurrentLinkedQueue<>();
+    private final Map<String, Entry> services = new ConcurrentHashMap<>();
+    private volatile boolean completed;
+
+    /**
+     * Records a step which started at the given {@link System#nanoTime()} and ended now.
+     */
+    public void recordStep(String name, long stepStartTimeNanos, boolean failed) {
+        steps.add(createEntry(name, stepStartTimeNanos, failed));
+    }
+
+    /**
+     * Records the start of the service started by the given operation once the operation
+     * completes. Must be called before the operation is passed to the host.
+     */
+    public void recordServiceStart(Operation post) {
+        if (isCompleted() || services.size() >= MAX_SERVICES) {
+            return;
+        }
+
+        long serviceStartTimeNanos = System.nanoTime();
+        post.nestCompletion((o, e) -> {
+            String path = o.getUri().getPath();
+            services.putIfAbsent(path, createEntry(path, serviceStartTimeNanos, e != null));
+            if (e != null) {
+                o.fail(e, o.hasBody() ? o.getBodyRaw() : null);
+                return;
+            }
+            o.complete();
+        });
+    }
+
+    /**
+     * Stops the recording of services and logs the timeline.
+     */
+    public void complete(ServiceHost host) {
+        if (isCompleted()) {
+            return;
+        }
+        completed = true;
+
+        host.log(Level.INFO, "Startup took %d ms, %d services started",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos),
+                services.size());
+        getSteps().forEach(step -> host.log(Level.INFO, "Startup step %s", step));
+
+        List<Entry> slowest = services.values().stream()
+                .sorted(Comparator.comparingLong((Entry entry) -> entry.durationMillis)
+                        .reversed())
+                .limit(LOGGED_SLOWEST_SERVICES)
+                .collect(Collectors.toList());
+        slowest.forEach(service -> host.log(Level.INFO, "Startup service %s", service));
+        getServices().forEach(service -> host.log(Level.FINE, "Startup service %s", service));
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the recorded steps ordered by their start.
+     */
+    public List<Entry> getSteps() {
+        return sortByStart(steps);
+    }
+
+    /**
+     * Returns the recorded services ordered by their start.
+     */
+    public List<Entry> getServices() {
+        return sortByStart(services.values());
+    }
+
+    private Entry createEntry(String name, long entryStartTimeNanos, boolean failed) {
+        long now = System.nanoTime();
+        return new Entry(name,
+                TimeUnit.NANOSECONDS.toMillis(entryStartTimeNanos - startTimeNanos),
+                TimeUnit.NANOSECONDS.toMillis(now - entryStartTimeNanos), failed);
+    }
+
+    private static List<Entry> sortByStart(Iterable<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>();
+        entries.forEach(sorted::add);
+        sorted.sort(Comparator.comparingLong(entry -> entry.startMillis));
+        return sorted;
+    }
+}
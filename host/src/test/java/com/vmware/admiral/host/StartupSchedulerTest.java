@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.host;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class StartupSchedulerTest {
+
+    @Test
+    public void testStepsStartAfterTheirDependencies() throws Throwable {
+        List<String> started = new CopyOnWriteArrayList<>();
+        StartupTimeline timeline = new StartupTimeline();
+
+        new StartupScheduler("test", timeline, 4)
+                .addStep("c", () -> started.add("c"), "a", "b")
+                .addStep("a", () -> started.add("a"))
+                .addStep("b", () -> started.add("b"), "a")
+                .run();
+
+        assertEquals(Arrays.asList("a", "b", "c"), started);
+        assertEquals(Arrays.asList("test/a", "test/b", "test/c"), timeline.getSteps().stream()
+                .map(step -> step.name)
+                .sorted()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testIndependentStepsRunConcurrently() throws Throwable {
+        CountDownLatch latch = new CountDownLatch(2);
+        StartupScheduler.StartupStep step = () -> {
+            latch.countDown();
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Steps are not run concurrently");
+            }
+        };
+
+        new StartupScheduler("test", new StartupTimeline(), 2)
+                .addStep("a", step)
+                .addStep("b", step)
+                .run();
+    }
+
+    @Test
+    public void testSerialRunKeepsOrderOfSteps() throws Throwable {
+        List<String> started = new CopyOnWriteArrayList<>();
+
+        new StartupScheduler("test", new StartupTimeline(), 1)
+                .addStep("b", () -> started.add("b"), "a")
+                .addStep("c", () -> started.add("c"))
+                .addStep("a", () -> started.add("a"))
+                .run();
+
+        assertEquals(Arrays.asList("c", "a", "b"), started);
+    }
+
+    @Test
+    public void testFailedStepSkipsDependentSteps() throws Throwable {
+        List<String> started = new CopyOnWriteArrayList<>();
+        IllegalStateException failure = new IllegalStateException("expected");
+        StartupTimeline timeline = new StartupTimeline();
+
+        try {
+            new StartupScheduler("test", timeline, 4)
+                    .addStep("a", () -> {
+                        throw failure;
+                    })
+                    .addStep("b", () -> started.add("b"), "a")
+                    .addStep("c", () -> started.add("c"))
+                    .run();
+            fail("Expected the failure of the step");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+
+        assertEquals(Arrays.asList("c"), started);
+        assertTrue(timeline.getSteps().stream()
+                .anyMatch(step -> step.name.equals("test/a") && step.failed));
+        assertFalse(timeline.getSteps().stream()
+                .anyMatch(step -> step.name.equals("test/b")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCyclicDependencies() throws Throwable {
+        new StartupScheduler("test", new StartupTimeline(), 4)
+                .addStep("a", () -> { }, "b")
+                .addStep("b", () -> { }, "a")
+                .run();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownDependency() throws Throwable {
+        new StartupScheduler("test", new StartupTimeline(), 4)
+                .addStep("a", () -> { }, "b")
+                .run();
+    }
+}
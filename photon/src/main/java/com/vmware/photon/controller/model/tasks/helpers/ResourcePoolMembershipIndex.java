@@ -0,0 +1,493 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.tasks.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import com.vmware.photon.controller.model.UriPaths;
+import com.vmware.photon.controller.model.query.QueryUtils.QueryByPages;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult.ResourcePoolData;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.AuthorizationContext;
+import com.vmware.xenon.common.Service;
+import com.vmware.xenon.common.Service.Action;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceDocumentDescription;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.ServiceSubscriptionState.ServiceSubscriber;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.services.common.QueryFilter;
+import com.vmware.xenon.services.common.QueryFilter.QueryFilterException;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+
+/**
+ * In-memory index of the computes participating in each resource pool, used by
+ * {@link ResourcePoolQueryHelper} instead of running the resource pool queries. The index is
+ * loaded once per host and then kept current by a continuous query on {@link ComputeState} and
+ * {@link ResourcePoolState} changes; the membership of a compute is evaluated against the resource
+ * pool queries with a {@link QueryFilter}.
+ * <p>
+ * Resource pools with queries which cannot be evaluated in memory are not answered from the
+ * index, the helper falls back to querying for them. With the consistency check enabled the
+ * helper runs both and logs the differences, returning the result of the queries.
+ * <p>
+ * Both are set per host, by default from the {@code rp.query.helper.index} and
+ * {@code rp.query.helper.index.check} system properties.
+ */
+public class ResourcePoolMembershipIndex {
+
+    private static final boolean DEFAULT_ENABLED = Boolean.getBoolean(
+            UriPaths.PROPERTY_PREFIX + "rp.query.helper.index");
+
+    private static final boolean DEFAULT_CONSISTENCY_CHECK = Boolean.getBoolean(
+            UriPaths.PROPERTY_PREFIX + "rp.query.helper.index.check");
+
+    private static final int PAGE_SIZE = Integer
+            .getInteger(UriPaths.PROPERTY_PREFIX + "rp.query.helper.page.size", 1024);
+
+    static final ServiceDocumentDescription COMPUTE_DESCRIPTION = ServiceDocumentDescription
+            .Builder.create().buildDescription(ComputeState.class);
+
+    private static final String COMPUTE_KIND = Utils.buildKind(ComputeState.class);
+    private static final String RESOURCE_POOL_KIND = Utils.buildKind(ResourcePoolState.class);
+
+    private static final Map<ServiceHost, ResourcePoolMembershipIndex> INSTANCES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static class ResourcePoolEntry {
+        private final ResourcePoolState state;
+        // null if the query of the resource pool cannot be evaluated in memory
+        private final QueryFilter filter;
+        private final Set<String> computeLinks = new HashSet<>();
+
+        private ResourcePoolEntry(ResourcePoolState state, QueryFilter filter) {
+            this.state = state;
+            this.filter = filter;
+        }
+    }
+
+    private final ServiceHost host;
+    private final AtomicBoolean starting = new AtomicBoolean();
+    private volatile boolean ready;
+    private volatile boolean enabled = DEFAULT_ENABLED;
+    private volatile boolean consistencyCheck = DEFAULT_CONSISTENCY_CHECK;
+    private final AtomicLong inconsistencyCount = new AtomicLong();
+
+    // guarded by this
+    private final Map<String, ResourcePoolEntry> resourcePools = new HashMap<>();
+    private final Map<String, ComputeState> computes = new HashMap<>();
+    private final Map<String, Set<String>> rpLinksByComputeLink = new HashMap<>();
+    // documents deleted while the index is loading, not to be added back by the load
+    private Set<String> deletedWhileLoading = new HashSet<>();
+
+    private ResourcePoolMembershipIndex(ServiceHost host) {
+        this.host = host;
+    }
+
+    public static ResourcePoolMembershipIndex getInstance(ServiceHost host) {
+        return INSTANCES.computeIfAbsent(host, ResourcePoolMembershipIndex::new);
+    }
+
+    /**
+     * Starts maintaining the index of the host of the given service, if it is enabled. The
+     * service has to be privileged, the documents are loaded with the system authorization.
+     */
+    public static void start(Service service) {
+        ResourcePoolMembershipIndex index = getInstance(service.getHost());
+        if (index.enabled) {
+            index.subscribe(service);
+        }
+    }
+
+    /**
+     * Whether the index is loaded and kept current.
+     */
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    /**
+     * Whether the queries are answered from the index.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Sets whether the queries are answered from the index. It has to be enabled before
+     * {@link #start(Service)} to be loaded.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Whether the queries are run along with the index to compare their results.
+     */
+    public boolean isConsistencyCheck() {
+        return this.consistencyCheck;
+    }
+
+    public void setConsistencyCheck(boolean consistencyCheck) {
+        this.consistencyCheck = consistencyCheck;
+    }
+
+    /**
+     * The number of results of the index which differed from the results of the queries.
+     */
+    public long getInconsistencyCount() {
+        return this.inconsistencyCount.get();
+    }
+
+    /**
+     * Answers a {@link ResourcePoolQueryHelper} query from the index. Returns {@code null} if the
+     * index cannot answer it, e.g. it is not loaded or a resource pool query cannot be evaluated
+     * in memory.
+     *
+     * @param resourcePoolLinks the requested resource pools or {@code null} for all of them
+     * @param computeLinks the requested computes or {@code null} for all of them
+     * @param computeFilter additional filter of the computes or {@code null}
+     */
+    synchronized QueryResult query(Collection<String> resourcePoolLinks,
+            Collection<String> computeLinks, QueryFilter computeFilter, boolean expandComputes) {
+        if (!this.ready) {
+            return null;
+        }
+
+        Collection<ResourcePoolEntry> entries;
+        if (resourcePoolLinks != null) {
+            entries = new ArrayList<>(resourcePoolLinks.size());
+            for (String rpLink : resourcePoolLinks) {
+                ResourcePoolEntry entry = this.resourcePools.get(rpLink);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } else {
+            entries = this.resourcePools.values();
+        }
+        if (entries.stream().anyMatch(entry -> entry.filter == null)) {
+            return null;
+        }
+
+        QueryResult result = new QueryResult();
+        for (ResourcePoolEntry entry : entries) {
+            ResourcePoolData rpData = new ResourcePoolData();
+            rpData.resourcePoolState = Utils.clone(entry.state);
+            rpData.computeStateLinks = new HashSet<>();
+            result.resourcesPools.put(entry.state.documentSelfLink, rpData);
+
+            for (String computeLink : entry.computeLinks) {
+                if (computeLinks != null && !computeLinks.contains(computeLink)) {
+                    continue;
+                }
+                if (addCompute(result, computeLink, computeFilter, expandComputes)) {
+                    rpData.computeStateLinks.add(computeLink);
+                    result.rpLinksByComputeLink.get(computeLink)
+                            .add(entry.state.documentSelfLink);
+                }
+            }
+        }
+
+        if (resourcePoolLinks != null) {
+            return result;
+        }
+
+        // computes without a resource pool
+        if (computeLinks != null) {
+            result.resourcesPools.values().removeIf(rpData -> rpData.computeStateLinks.isEmpty());
+            for (String computeLink : computeLinks) {
+                addCompute(result, computeLink, null, expandComputes);
+            }
+        } else {
+            for (String computeLink : this.computes.keySet()) {
+                addCompute(result, computeLink, computeFilter, expandComputes);
+            }
+        }
+        return result;
+    }
+
+    private boolean addCompute(QueryResult result, String computeLink, QueryFilter computeFilter,
+            boolean expandComputes) {
+        if (result.computesByLink.containsKey(computeLink)) {
+            return true;
+        }
+        ComputeState compute = this.computes.get(computeLink);
+        if (compute == null
+                || (computeFilter != null
+                        && !computeFilter.evaluate(compute, COMPUTE_DESCRIPTION))) {
+            return false;
+        }
+        result.computesByLink.put(computeLink, expandComputes ? Utils.clone(compute) : null);
+        result.rpLinksByComputeLink.put(computeLink, new HashSet<>());
+        return true;
+    }
+
+    /**
+     * Logs the differences between a result of the index and the result of the queries. Returns
+     * whether they are consistent.
+     */
+    boolean checkConsistency(QueryResult indexResult, QueryResult queryResult) {
+        if (queryResult.error != null) {
+            return true;
+        }
+        if (!Objects.equals(indexResult.rpLinksByComputeLink.keySet(),
+                queryResult.rpLinksByComputeLink.keySet())) {
+            this.host.log(Level.WARNING, "Resource pool membership index returned computes %s,"
+                            + " queries returned %s", indexResult.rpLinksByComputeLink.keySet(),
+                    queryResult.rpLinksByComputeLink.keySet());
+            this.inconsistencyCount.incrementAndGet();
+            return false;
+        }
+        boolean consistent = true;
+        for (Map.Entry<String, Set<String>> entry : queryResult.rpLinksByComputeLink.entrySet()) {
+            Set<String> indexRpLinks = indexResult.rpLinksByComputeLink.get(entry.getKey());
+            if (!Objects.equals(indexRpLinks, entry.getValue())) {
+                this.host.log(Level.WARNING, "Resource pool membership index returned resource"
+                                + " pools %s for compute %s, queries returned %s", indexRpLinks,
+                        entry.getKey(), entry.getValue());
+                consistent = false;
+            }
+        }
+        if (!consistent) {
+            this.inconsistencyCount.incrementAndGet();
+        }
+        return consistent;
+    }
+
+    private void subscribe(Service service) {
+        if (!this.starting.compareAndSet(false, true)) {
+            return;
+        }
+
+        AuthorizationContext systemContext;
+        try {
+            systemContext = service.getSystemAuthorizationContext();
+        } catch (RuntimeException e) {
+            // only privileged services may use the system context
+            this.host.log(Level.WARNING, "Resource pool membership index is disabled, %s is not"
+                    + " privileged", service.getClass().getSimpleName());
+            return;
+        }
+
+        Query query = Query.Builder.create()
+                .addKindFieldClause(ComputeState.class, Occurance.SHOULD_OCCUR)
+                .addKindFieldClause(ResourcePoolState.class, Occurance.SHOULD_OCCUR)
+                .build();
+        QueryTask task = QueryTask.Builder.create()
+                .addOption(QueryOption.CONTINUOUS)
+                .addOption(QueryOption.EXPAND_CONTENT)
+                .setQuery(query)
+                .build();
+        task.documentSelfLink = "resource-pool-membership-index-" + UUID.randomUUID().toString();
+        task.documentExpirationTimeMicros = Long.MAX_VALUE;
+
+        Operation post = Operation.createPost(this.host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS)
+                .setBody(task)
+                .setReferer(service.getUri())
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        this.host.log(Level.WARNING, "Resource pool membership index is disabled,"
+                                + " failed to start continuous query: %s", Utils.toString(e));
+                        return;
+                    }
+
+                    String taskUriPath = UriUtils.buildUriPath(
+                            ServiceUriPaths.CORE_LOCAL_QUERY_TASKS, task.documentSelfLink);
+                    Operation subscribePost = Operation.createPost(this.host, taskUriPath)
+                            .setReferer(service.getUri())
+                            .setCompletion((op, ex) -> {
+                                if (ex != null) {
+                                    this.host.log(Level.WARNING, "Resource pool membership index"
+                                            + " is disabled, failed to subscribe to continuous"
+                                            + " query: %s", Utils.toString(ex));
+                                    return;
+                                }
+                                load(service);
+                            });
+                    service.setAuthorizationContext(subscribePost, systemContext);
+                    this.host.startSubscriptionService(subscribePost, this::onChange,
+                            ServiceSubscriber.create(false));
+                });
+        service.setAuthorizationContext(post, systemContext);
+        this.host.sendRequest(post);
+    }
+
+    /**
+     * Loads all resource pools and computes. Changes received meanwhile are applied as they come,
+     * a loaded document does not replace a newer version of it.
+     */
+    private void load(Service service) {
+        // called on completion of the subscription, so the queries are sent with its system
+        // authorization
+        QueryByPages<ResourcePoolState> rpQuery = new QueryByPages<>(this.host,
+                Query.Builder.create().addKindFieldClause(ResourcePoolState.class).build(),
+                ResourcePoolState.class, null);
+        rpQuery.setReferer(service.getUri());
+        QueryByPages<ComputeState> computeQuery = new QueryByPages<>(this.host,
+                Query.Builder.create().addKindFieldClause(ComputeState.class).build(),
+                ComputeState.class, null);
+        computeQuery.setReferer(service.getUri());
+
+        DeferredResult.allOf(
+                rpQuery.setMaxPageSize(PAGE_SIZE).queryDocuments(this::loadResourcePool),
+                computeQuery.setMaxPageSize(PAGE_SIZE).queryDocuments(this::loadCompute))
+                .whenComplete((ignore, e) -> {
+                    if (e != null) {
+                        this.host.log(Level.WARNING, "Resource pool membership index is"
+                                + " disabled, failed to load documents: %s", Utils.toString(e));
+                        return;
+                    }
+                    synchronized (this) {
+                        this.deletedWhileLoading = null;
+                        this.ready = true;
+                        this.host.log(Level.INFO, "Resource pool membership index loaded %d"
+                                        + " resource pools and %d computes",
+                                this.resourcePools.size(), this.computes.size());
+                    }
+                });
+    }
+
+    private synchronized void loadResourcePool(ResourcePoolState rp) {
+        ResourcePoolEntry entry = this.resourcePools.get(rp.documentSelfLink);
+        if (!this.deletedWhileLoading.contains(rp.documentSelfLink)
+                && (entry == null || entry.state.documentVersion < rp.documentVersion)) {
+            updateResourcePool(rp);
+        }
+    }
+
+    private synchronized void loadCompute(ComputeState compute) {
+        ComputeState current = this.computes.get(compute.documentSelfLink);
+        if (!this.deletedWhileLoading.contains(compute.documentSelfLink)
+                && (current == null || current.documentVersion < compute.documentVersion)) {
+            updateCompute(compute);
+        }
+    }
+
+    private void onChange(Operation notification) {
+        notification.complete();
+
+        QueryTask task = notification.hasBody() ? notification.getBody(QueryTask.class) : null;
+        if (task == null || task.results == null || task.results.documents == null) {
+            return;
+        }
+
+        synchronized (this) {
+            for (Object json : task.results.documents.values()) {
+                ServiceDocument document = Utils.fromJson(json, ServiceDocument.class);
+                boolean deleted = Action.DELETE.toString().equals(document.documentUpdateAction);
+                if (COMPUTE_KIND.equals(document.documentKind)) {
+                    ComputeState current = this.computes.get(document.documentSelfLink);
+                    if (deleted) {
+                        removeCompute(document.documentSelfLink);
+                    } else if (current == null
+                            || current.documentVersion <= document.documentVersion) {
+                        updateCompute(Utils.fromJson(json, ComputeState.class));
+                    }
+                } else if (RESOURCE_POOL_KIND.equals(document.documentKind)) {
+                    ResourcePoolEntry current = this.resourcePools.get(document.documentSelfLink);
+                    if (deleted) {
+                        removeResourcePool(document.documentSelfLink);
+                    } else if (current == null
+                            || current.state.documentVersion <= document.documentVersion) {
+                        updateResourcePool(Utils.fromJson(json, ResourcePoolState.class));
+                    }
+                }
+                if (deleted && this.deletedWhileLoading != null) {
+                    this.deletedWhileLoading.add(document.documentSelfLink);
+                }
+            }
+        }
+    }
+
+    private void updateResourcePool(ResourcePoolState rp) {
+        QueryFilter filter = null;
+        if (rp.query != null) {
+            try {
+                filter = QueryFilter.create(rp.query);
+            } catch (QueryFilterException e) {
+                this.host.log(Level.FINE, "Query of resource pool %s cannot be evaluated in"
+                        + " memory: %s", rp.documentSelfLink, e.getMessage());
+            }
+        } else {
+            filter = QueryFilter.FALSE;
+        }
+
+        removeResourcePool(rp.documentSelfLink);
+        ResourcePoolEntry entry = new ResourcePoolEntry(rp, filter);
+        this.resourcePools.put(rp.documentSelfLink, entry);
+        if (filter == null) {
+            return;
+        }
+        for (ComputeState compute : this.computes.values()) {
+            if (filter.evaluate(compute, COMPUTE_DESCRIPTION)) {
+                entry.computeLinks.add(compute.documentSelfLink);
+                this.rpLinksByComputeLink.get(compute.documentSelfLink).add(rp.documentSelfLink);
+            }
+        }
+    }
+
+    private void removeResourcePool(String rpLink) {
+        ResourcePoolEntry entry = this.resourcePools.remove(rpLink);
+        if (entry == null) {
+            return;
+        }
+        for (String computeLink : entry.computeLinks) {
+            this.rpLinksByComputeLink.get(computeLink).remove(rpLink);
+        }
+    }
+
+    private void updateCompute(ComputeState compute) {
+        removeCompute(compute.documentSelfLink);
+        this.computes.put(compute.documentSelfLink, compute);
+        Set<String> rpLinks = new HashSet<>();
+        this.rpLinksByComputeLink.put(compute.documentSelfLink, rpLinks);
+        for (ResourcePoolEntry entry : this.resourcePools.values()) {
+            if (entry.filter != null && entry.filter.evaluate(compute, COMPUTE_DESCRIPTION)) {
+                entry.computeLinks.add(compute.documentSelfLink);
+                rpLinks.add(entry.state.documentSelfLink);
+            }
+        }
+    }
+
+    private void removeCompute(String computeLink) {
+        this.computes.remove(computeLink);
+        Set<String> rpLinks = this.rpLinksByComputeLink.remove(computeLink);
+        if (rpLinks == null) {
+            return;
+        }
+        for (String rpLink : rpLinks) {
+            this.resourcePools.get(rpLink).computeLinks.remove(computeLink);
+        }
+    }
+}
@@ -31,8 +31,12 @@ import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
 import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
 import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult.ResourcePoolData;
 import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation.AuthorizationContext;
+import com.vmware.xenon.common.OperationContext;
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.services.common.QueryFilter;
+import com.vmware.xenon.services.common.QueryFilter.QueryFilterException;
 import com.vmware.xenon.services.common.QueryTask.Query;
 
 /**
@@ -57,6 +61,9 @@ import com.vmware.xenon.services.common.QueryTask.Query;
  *
  * <p>By default computes are not expanded and values in {@link QueryResult#computesByLink} are
  * {@code null}. Use {@link ResourcePoolQueryHelper#setExpandComputes(boolean)} to change this.
+ *
+ * <p>If the {@link ResourcePoolMembershipIndex} is enabled and loaded, the queries are answered
+ * from it when possible.
  */
 public class ResourcePoolQueryHelper {
     private static final int PAGE_SIZE = Integer
@@ -184,7 +191,70 @@ public class ResourcePoolQueryHelper {
      * Perform the actual retrieval and returns to the client DeferredResult with actual QueryResult.
      */
     public DeferredResult<QueryResult> query() {
+        ResourcePoolMembershipIndex index = ResourcePoolMembershipIndex.getInstance(this.host);
+        QueryResult indexResult = queryIndex(index);
+        if (indexResult == null) {
+            return queryDocuments();
+        }
+        if (!index.isConsistencyCheck()) {
+            return DeferredResult.completed(indexResult);
+        }
+        return queryDocuments().thenApply(queryResult -> {
+            index.checkConsistency(indexResult, queryResult);
+            return queryResult;
+        });
+    }
+
+    /**
+     * Answers the query from the {@link ResourcePoolMembershipIndex} of the host. Returns
+     * {@code null} if the index is not enabled or cannot answer the query.
+     */
+    private QueryResult queryIndex(ResourcePoolMembershipIndex index) {
+        if (!index.isEnabled()
+                || this.additionalResourcePoolQueryClausesProvider != null
+                || !isSystemUser()) {
+            return null;
+        }
+        if (!index.isReady()) {
+            return null;
+        }
+
+        QueryFilter computeFilter = null;
+        if ((this.computeLinks == null || this.computeLinks.isEmpty())
+                && this.additionalQueryClausesProvider != null) {
+            Query.Builder queryBuilder = Query.Builder.create();
+            this.additionalQueryClausesProvider.accept(queryBuilder);
+            try {
+                computeFilter = QueryFilter.create(queryBuilder.build());
+            } catch (QueryFilterException e) {
+                return null;
+            }
+        }
+
+        return index.query(
+                this.resourcePoolLinks != null && !this.resourcePoolLinks.isEmpty()
+                        ? this.resourcePoolLinks : null,
+                this.computeLinks != null && !this.computeLinks.isEmpty()
+                        ? new HashSet<>(this.computeLinks) : null,
+                computeFilter, this.expandComputes);
+    }
 
+    /**
+     * The index contains all documents, so it is used only by the system user or if the
+     * authorization is disabled.
+     */
+    private boolean isSystemUser() {
+        if (!this.host.isAuthorizationEnabled()) {
+            return true;
+        }
+        AuthorizationContext authContext = OperationContext.getAuthorizationContext();
+        return authContext != null && authContext.isSystemUser();
+    }
+
+    /**
+     * Retrieves the resource pools and their computes with queries.
+     */
+    private DeferredResult<QueryResult> queryDocuments() {
         this.result = new QueryResult();
 
         // start by retrieving the requested resource pools
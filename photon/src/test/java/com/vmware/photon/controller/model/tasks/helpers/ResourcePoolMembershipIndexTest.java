@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.photon.controller.model.tasks.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.photon.controller.model.PhotonModelServices;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState;
+import com.vmware.photon.controller.model.resources.ResourcePoolService.ResourcePoolState.ResourcePoolProperty;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult;
+import com.vmware.photon.controller.model.tasks.helpers.ResourcePoolQueryHelper.QueryResult.ResourcePoolData;
+import com.vmware.xenon.common.BasicTestCase;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.StatelessService;
+import com.vmware.xenon.common.test.TestRequestSender;
+import com.vmware.xenon.services.common.QueryTask.Query;
+
+public class ResourcePoolMembershipIndexTest extends BasicTestCase {
+
+    private static final String DESC_A = "/resources/compute-descriptions/a";
+    private static final String DESC_B = "/resources/compute-descriptions/b";
+
+    /**
+     * Starts the index, which needs a privileged service.
+     */
+    public static class IndexStarterService extends StatelessService {
+        public static final String SELF_LINK = "/test-resource-pool-membership-index";
+    }
+
+    private TestRequestSender sender;
+    private ResourcePoolMembershipIndex index;
+
+    @Before
+    public void setUp() throws Throwable {
+        this.sender = this.host.getTestRequestSender();
+        PhotonModelServices.startServices(this.host);
+        this.host.waitForServiceAvailable(PhotonModelServices.LINKS);
+
+        this.index = ResourcePoolMembershipIndex.getInstance(this.host);
+        this.index.setEnabled(true);
+        this.host.addPrivilegedService(IndexStarterService.class);
+        ResourcePoolMembershipIndex.start(this.host.startServiceAndWait(
+                IndexStarterService.class, IndexStarterService.SELF_LINK));
+        this.host.waitFor("index not loaded", this.index::isReady);
+    }
+
+    @Test
+    public void testIndexAnswersAsTheQueries() throws Throwable {
+        ResourcePoolState rp = createResourcePool(null);
+        ResourcePoolState elasticRp = createResourcePool(computesOf(DESC_A));
+        ComputeState inBoth = createCompute(rp.documentSelfLink, DESC_A);
+        ComputeState withoutPool = createCompute(null, DESC_B);
+        ComputeState inRp = createCompute(rp.documentSelfLink, DESC_B);
+        List<ResourcePoolState> resourcePools = Arrays.asList(rp, elasticRp);
+        List<ComputeState> computes = Arrays.asList(inBoth, withoutPool, inRp);
+        waitForConsistentIndex(resourcePools, computes);
+
+        QueryResult result = query(ResourcePoolQueryHelper.create(this.host), true);
+        assertEquals(new HashSet<>(Arrays.asList(rp.documentSelfLink, elasticRp.documentSelfLink)),
+                result.rpLinksByComputeLink.get(inBoth.documentSelfLink));
+        assertEquals(Collections.emptySet(),
+                result.rpLinksByComputeLink.get(withoutPool.documentSelfLink));
+
+        // updated computes and resource pools
+        ComputeState computePatch = new ComputeState();
+        computePatch.resourcePoolLink = rp.documentSelfLink;
+        computePatch.descriptionLink = DESC_A;
+        this.sender.sendAndWait(Operation.createPatch(this.host, withoutPool.documentSelfLink)
+                .setBody(computePatch));
+        ResourcePoolState rpPatch = new ResourcePoolState();
+        rpPatch.query = computesOf(DESC_B);
+        this.sender.sendAndWait(Operation.createPatch(this.host, elasticRp.documentSelfLink)
+                .setBody(rpPatch));
+        waitForConsistentIndex(resourcePools, computes);
+
+        result = query(ResourcePoolQueryHelper.create(this.host), true);
+        assertEquals(Collections.singleton(rp.documentSelfLink),
+                result.rpLinksByComputeLink.get(inBoth.documentSelfLink));
+        assertEquals(Collections.singleton(rp.documentSelfLink),
+                result.rpLinksByComputeLink.get(withoutPool.documentSelfLink));
+        assertEquals(new HashSet<>(Arrays.asList(rp.documentSelfLink, elasticRp.documentSelfLink)),
+                result.rpLinksByComputeLink.get(inRp.documentSelfLink));
+
+        // deleted computes and resource pools
+        this.sender.sendAndWait(Operation.createDelete(this.host, inBoth.documentSelfLink));
+        this.sender.sendAndWait(Operation.createDelete(this.host, rp.documentSelfLink));
+        waitForConsistentIndex(resourcePools, computes);
+
+        result = query(ResourcePoolQueryHelper.create(this.host), true);
+        assertFalse(result.computesByLink.containsKey(inBoth.documentSelfLink));
+        assertFalse(result.resourcesPools.containsKey(rp.documentSelfLink));
+        assertEquals(Collections.singleton(elasticRp.documentSelfLink),
+                result.rpLinksByComputeLink.get(inRp.documentSelfLink));
+    }
+
+    @Test
+    public void testConsistencyCheck() throws Throwable {
+        ResourcePoolState rp = createResourcePool(null);
+        ComputeState compute = createCompute(rp.documentSelfLink, DESC_A);
+        waitForConsistentIndex(Collections.singletonList(rp),
+                Collections.singletonList(compute));
+        QueryResult indexResult = query(ResourcePoolQueryHelper.create(this.host), true);
+
+        // the queries are run along with the index, their result is returned
+        this.index.setConsistencyCheck(true);
+        QueryResult result = query(ResourcePoolQueryHelper.create(this.host), true);
+        assertEquals(Collections.singleton(rp.documentSelfLink),
+                result.rpLinksByComputeLink.get(compute.documentSelfLink));
+        assertEquals(0, this.index.getInconsistencyCount());
+
+        // the differences are counted
+        indexResult.rpLinksByComputeLink.put(compute.documentSelfLink, Collections.emptySet());
+        assertFalse(this.index.checkConsistency(indexResult, result));
+        assertEquals(1, this.index.getInconsistencyCount());
+
+        indexResult.rpLinksByComputeLink.put("/resources/compute/missing",
+                Collections.emptySet());
+        assertFalse(this.index.checkConsistency(indexResult, result));
+        assertEquals(2, this.index.getInconsistencyCount());
+    }
+
+    /**
+     * Waits until the index returns the same results as the queries, for all and for each of the
+     * given resource pools and for the given computes.
+     */
+    private void waitForConsistentIndex(List<ResourcePoolState> resourcePools,
+            List<ComputeState> computes) {
+        List<String> computeLinks = computes.stream().map(c -> c.documentSelfLink)
+                .collect(Collectors.toList());
+        this.host.waitFor("index differs from the queries", () -> {
+            if (!isSameResult(() -> ResourcePoolQueryHelper.create(this.host))
+                    || !isSameResult(() -> ResourcePoolQueryHelper.createForComputes(this.host,
+                            computeLinks))) {
+                return false;
+            }
+            for (ResourcePoolState rp : resourcePools) {
+                if (!isSameResult(() -> ResourcePoolQueryHelper.createForResourcePool(this.host,
+                        rp.documentSelfLink))) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private boolean isSameResult(Supplier<ResourcePoolQueryHelper> helper) throws Throwable {
+        QueryResult indexResult = query(helper.get(), true);
+        QueryResult queryResult = query(helper.get(), false);
+        if (!Objects.equals(indexResult.rpLinksByComputeLink, queryResult.rpLinksByComputeLink)
+                || !Objects.equals(indexResult.computesByLink.keySet(),
+                        queryResult.computesByLink.keySet())
+                || !Objects.equals(indexResult.resourcesPools.keySet(),
+                        queryResult.resourcesPools.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, ResourcePoolData> entry : queryResult.resourcesPools.entrySet()) {
+            if (!Objects.equals(entry.getValue().computeStateLinks,
+                    indexResult.resourcesPools.get(entry.getKey()).computeStateLinks)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the query of the helper from the index, or with the index disabled.
+     */
+    private QueryResult query(ResourcePoolQueryHelper helper, boolean fromIndex)
+            throws Throwable {
+        this.index.setEnabled(fromIndex);
+        try {
+            QueryResult result = helper.query().toCompletionStage().toCompletableFuture()
+                    .get(this.host.getTimeoutSeconds(), TimeUnit.SECONDS);
+            assertNull(result.error);
+            return result;
+        } finally {
+            this.index.setEnabled(true);
+        }
+    }
+
+    private ResourcePoolState createResourcePool(Query query) {
+        ResourcePoolState rp = new ResourcePoolState();
+        rp.name = "rp-" + UUID.randomUUID().toString();
+        if (query != null) {
+            rp.properties = EnumSet.of(ResourcePoolProperty.ELASTIC);
+            rp.query = query;
+        }
+        return this.sender.sendAndWait(Operation.createPost(this.host,
+                ResourcePoolService.FACTORY_LINK).setBody(rp), ResourcePoolState.class);
+    }
+
+    private ComputeState createCompute(String resourcePoolLink, String descriptionLink) {
+        ComputeState compute = new ComputeState();
+        compute.name = "compute-" + UUID.randomUUID().toString();
+        compute.resourcePoolLink = resourcePoolLink;
+        compute.descriptionLink = descriptionLink;
+        return this.sender.sendAndWait(Operation.createPost(this.host,
+                ComputeService.FACTORY_LINK).setBody(compute), ComputeState.class);
+    }
+
+    private static Query computesOf(String descriptionLink) {
+        return Query.Builder.create()
+                .addKindFieldClause(ComputeState.class)
+                .addFieldClause(ComputeState.FIELD_NAME_DESCRIPTION_LINK, descriptionLink)
+                .build();
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.xenon.services.rdbms;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.vmware.xenon.common.ReflectionUtils;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.Query.Occurance;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+
+/**
+ * Inverted dispatch index over the active continuous queries of the document index service.
+ *
+ * Every continuous query is inspected for required exact-match term clauses. Queries are bucketed
+ * by the {@code documentKind} values they require and, within a bucket, by one additional required
+ * term on a top level property. For an updated document only the queries from the matching
+ * buckets are returned as candidates. The candidates are a superset of the matching queries, so
+ * the caller still has to evaluate the query filter of each candidate.
+ *
+ * Reads are lock-free against an immutable snapshot which is rebuilt when a query is added or
+ * removed. Query activation is rare compared to index updates.
+ */
+final class PostgresContinuousQueryIndex {
+
+    private static final class Bucket {
+        final List<QueryTask> unkeyed = new ArrayList<>();
+        final Map<String, Map<String, List<QueryTask>>> byTerm = new HashMap<>();
+
+        boolean isEmpty() {
+            return this.unkeyed.isEmpty() && this.byTerm.isEmpty();
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<String, Bucket> bucketsByKind = new HashMap<>();
+        final Bucket anyKind = new Bucket();
+    }
+
+    /**
+     * Required term clause: a document property that must be equal to one of the given values.
+     */
+    private static final class RequiredTerm {
+        final String propertyName;
+        final Set<String> values;
+
+        RequiredTerm(String propertyName, Set<String> values) {
+            this.propertyName = propertyName;
+            this.values = values;
+        }
+    }
+
+    private final Map<String, QueryTask> queries = new HashMap<>();
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    synchronized void add(QueryTask task) {
+        this.queries.put(task.documentSelfLink, task);
+        this.snapshot = build(this.queries.values());
+    }
+
+    synchronized QueryTask remove(String taskLink) {
+        QueryTask task = this.queries.remove(taskLink);
+        if (task != null) {
+            this.snapshot = build(this.queries.values());
+        }
+        return task;
+    }
+
+    /**
+     * Returns the continuous queries that could match the given document.
+     */
+    Collection<QueryTask> getCandidates(ServiceDocument document) {
+        Snapshot s = this.snapshot;
+        Set<QueryTask> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        if (document.documentKind == null) {
+            // cannot use the kind buckets, fall back to all queries
+            for (Bucket bucket : s.bucketsByKind.values()) {
+                addAll(bucket, candidates);
+            }
+        } else {
+            Bucket bucket = s.bucketsByKind.get(document.documentKind);
+            if (bucket != null) {
+                addCandidates(bucket, document, candidates);
+            }
+        }
+        addCandidates(s.anyKind, document, candidates);
+
+        return candidates;
+    }
+
+    private static void addCandidates(Bucket bucket, ServiceDocument document,
+            Set<QueryTask> candidates) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        candidates.addAll(bucket.unkeyed);
+
+        for (Entry<String, Map<String, List<QueryTask>>> e : bucket.byTerm.entrySet()) {
+            Map<String, List<QueryTask>> tasksByValue = e.getValue();
+            Object value = getPropertyValue(document, e.getKey());
+            if (value == null) {
+                // the property has no value, so the required term clause can not match
+                continue;
+            }
+
+            if (value instanceof String) {
+                addCandidates(tasksByValue, (String) value, candidates);
+            } else if (value instanceof Enum) {
+                addCandidates(tasksByValue, ((Enum<?>) value).name(), candidates);
+            } else if (value instanceof Collection) {
+                for (Object item : (Collection<?>) value) {
+                    if (item != null) {
+                        addCandidates(tasksByValue, item.toString(), candidates);
+                    }
+                }
+            } else {
+                // unknown value type, evaluate all queries keyed on this property
+                tasksByValue.values().forEach(candidates::addAll);
+            }
+        }
+    }
+
+    private static void addCandidates(Map<String, List<QueryTask>> tasksByValue, String value,
+            Set<QueryTask> candidates) {
+        List<QueryTask> tasks = tasksByValue.get(value);
+        if (tasks != null) {
+            candidates.addAll(tasks);
+        }
+
+        // case insensitive term values are stored lower case
+        String lowerCaseValue = value.toLowerCase();
+        if (!lowerCaseValue.equals(value)) {
+            tasks = tasksByValue.get(lowerCaseValue);
+            if (tasks != null) {
+                candidates.addAll(tasks);
+            }
+        }
+    }
+
+    private static void addAll(Bucket bucket, Set<QueryTask> candidates) {
+        candidates.addAll(bucket.unkeyed);
+        for (Map<String, List<QueryTask>> tasksByValue : bucket.byTerm.values()) {
+            tasksByValue.values().forEach(candidates::addAll);
+        }
+    }
+
+    private static Object getPropertyValue(ServiceDocument document, String propertyName) {
+        Field field = ReflectionUtils.getField(document.getClass(), propertyName);
+        if (field == null) {
+            return null;
+        }
+        try {
+            return field.get(document);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static Snapshot build(Collection<QueryTask> tasks) {
+        Snapshot s = new Snapshot();
+        for (QueryTask task : tasks) {
+            List<RequiredTerm> requiredTerms = new ArrayList<>();
+            collectRequiredTerms(task.querySpec.query, requiredTerms);
+
+            RequiredTerm kindTerm = null;
+            RequiredTerm indexTerm = null;
+            for (RequiredTerm term : requiredTerms) {
+                if (ServiceDocument.FIELD_NAME_KIND.equals(term.propertyName)) {
+                    if (kindTerm == null) {
+                        kindTerm = term;
+                    }
+                } else if (indexTerm == null) {
+                    indexTerm = term;
+                }
+            }
+
+            if (kindTerm == null) {
+                addToBucket(s.anyKind, task, indexTerm);
+                continue;
+            }
+            for (String kind : kindTerm.values) {
+                Bucket bucket = s.bucketsByKind.computeIfAbsent(kind, k -> new Bucket());
+                addToBucket(bucket, task, indexTerm);
+            }
+        }
+        return s;
+    }
+
+    private static void addToBucket(Bucket bucket, QueryTask task, RequiredTerm indexTerm) {
+        if (indexTerm == null) {
+            bucket.unkeyed.add(task);
+            return;
+        }
+        Map<String, List<QueryTask>> tasksByValue = bucket.byTerm
+                .computeIfAbsent(indexTerm.propertyName, k -> new HashMap<>());
+        for (String value : indexTerm.values) {
+            tasksByValue.computeIfAbsent(value, k -> new ArrayList<>()).add(task);
+        }
+    }
+
+    /**
+     * Collects the exact-match term clauses that every matching document has to satisfy. A
+     * boolean clause consisting only of optional term clauses on the same property is collected
+     * as a single required term with multiple values.
+     */
+    private static void collectRequiredTerms(Query query, List<RequiredTerm> result) {
+        if (query == null) {
+            return;
+        }
+
+        if (query.term != null) {
+            if (isRequired(query) && isExactMatch(query.term)) {
+                result.add(new RequiredTerm(query.term.propertyName,
+                        Collections.singleton(query.term.matchValue)));
+            }
+            return;
+        }
+
+        if (query.booleanClauses == null || query.booleanClauses.isEmpty()) {
+            return;
+        }
+
+        if (!isRequired(query)) {
+            return;
+        }
+
+        boolean hasRequiredClause = false;
+        for (Query clause : query.booleanClauses) {
+            if (isRequired(clause)) {
+                hasRequiredClause = true;
+                collectRequiredTerms(clause, result);
+            }
+        }
+
+        if (!hasRequiredClause) {
+            RequiredTerm disjunction = toDisjunction(query.booleanClauses);
+            if (disjunction != null) {
+                result.add(disjunction);
+            }
+        }
+    }
+
+    private static RequiredTerm toDisjunction(List<Query> clauses) {
+        String propertyName = null;
+        Set<String> values = new HashSet<>();
+        for (Query clause : clauses) {
+            if (clause.occurance != Occurance.SHOULD_OCCUR || clause.term == null
+                    || !isExactMatch(clause.term)) {
+                return null;
+            }
+            if (propertyName == null) {
+                propertyName = clause.term.propertyName;
+            } else if (!propertyName.equals(clause.term.propertyName)) {
+                return null;
+            }
+            values.add(clause.term.matchValue);
+        }
+        return propertyName != null ? new RequiredTerm(propertyName, values) : null;
+    }
+
+    private static boolean isRequired(Query query) {
+        return query.occurance == null || query.occurance == Occurance.MUST_OCCUR;
+    }
+
+    private static boolean isExactMatch(QueryTerm term) {
+        if (term.propertyName == null || term.matchValue == null || term.range != null) {
+            return false;
+        }
+        if (term.matchType != null && term.matchType != MatchType.TERM) {
+            return false;
+        }
+        // only top level properties are indexed, nested fields, collection items and map
+        // entries use composite names
+        return term.propertyName.indexOf('.') == -1;
+    }
+}
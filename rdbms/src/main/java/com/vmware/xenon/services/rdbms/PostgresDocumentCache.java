@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.xenon.services.rdbms;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.vmware.xenon.common.ServiceDocument;
+
+/**
+ * Bounded LRU cache of documents loaded by {@link PostgresServiceDocumentDao}, keyed by
+ * self link.
+ *
+ * Cached states must never be handed out or modified directly, callers are expected to clone
+ * them. Writers must call {@link #invalidate(String)} after a document is changed; a load which
+ * started before the invalidation will not be able to cache its (possibly stale) result.
+ */
+final class PostgresDocumentCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final int maxSize;
+
+    private final Map<String, ServiceDocument> documents;
+
+    /**
+     * Invalidation counters, striped by self link hash
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    PostgresDocumentCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.documents = new LinkedHashMap<String, ServiceDocument>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ServiceDocument> eldest) {
+                if (size() > PostgresDocumentCache.this.maxSize) {
+                    PostgresDocumentCache.this.evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    ServiceDocument get(String selfLink) {
+        synchronized (this.documents) {
+            return this.documents.get(selfLink);
+        }
+    }
+
+    /**
+     * Returns the invalidation generation for the given self link. Must be read before the
+     * document is loaded from the database and passed to {@link #put(ServiceDocument, long)}.
+     */
+    long getGeneration(String selfLink) {
+        return this.generations.get(stripe(selfLink));
+    }
+
+    void put(ServiceDocument state, long generation) {
+        synchronized (this.documents) {
+            // skip documents which were changed while being loaded
+            if (this.generations.get(stripe(state.documentSelfLink)) != generation) {
+                return;
+            }
+            this.documents.put(state.documentSelfLink, state);
+        }
+    }
+
+    void invalidate(String selfLink) {
+        synchronized (this.documents) {
+            this.generations.incrementAndGet(stripe(selfLink));
+            this.documents.remove(selfLink);
+        }
+    }
+
+    void clear() {
+        synchronized (this.documents) {
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                this.generations.incrementAndGet(i);
+            }
+            this.documents.clear();
+        }
+    }
+
+    void recordHit() {
+        this.hitCount.incrementAndGet();
+    }
+
+    void recordMiss() {
+        this.missCount.incrementAndGet();
+    }
+
+    long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    long getMissCount() {
+        return this.missCount.get();
+    }
+
+    long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    int size() {
+        synchronized (this.documents) {
+            return this.documents.size();
+        }
+    }
+
+    private static int stripe(String selfLink) {
+        return (selfLink.hashCode() & 0x7fffffff) % GENERATION_STRIPES;
+    }
+}
@@ -12,13 +12,11 @@
 package com.vmware.xenon.services.rdbms;
 
 import java.net.URI;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -36,6 +34,7 @@ import javax.sql.DataSource;
 import com.vmware.xenon.common.NamedThreadFactory;
 import com.vmware.xenon.common.NodeSelectorService;
 import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.Operation.AuthorizationContext;
 import com.vmware.xenon.common.Operation.CompletionHandler;
 import com.vmware.xenon.common.OperationContext;
 import com.vmware.xenon.common.QueryFilterUtils;
@@ -66,6 +65,7 @@ import com.vmware.xenon.services.common.ServiceUriPaths;
 import com.vmware.xenon.services.common.SystemUserService;
 import com.vmware.xenon.services.common.UpdateIndexRequest;
 import com.vmware.xenon.services.rdbms.PostgresSchemaManager.TableDescription;
+import com.vmware.xenon.services.rdbms.PostgresServiceDocumentDao.DocumentUpdate;
 
 public class PostgresDocumentIndexService extends StatelessService {
 
@@ -96,12 +96,34 @@ public class PostgresDocumentIndexService extends StatelessService {
             10 * Service.OPERATION_QUEUE_DEFAULT_LIMIT
     );
 
+    /**
+     * Maximum number of pending index updates written in a single transaction. A value
+     * greater than 1 enables group commits: the update thread drains up to this many
+     * {@link UpdateIndexRequest} operations from the update queue and stores them with one JDBC
+     * batch per table.
+     */
+    public static final int UPDATE_GROUP_COMMIT_BATCH_SIZE = XenonConfiguration.integer(
+            PostgresDocumentIndexService.class,
+            "updateGroupCommitBatchSize",
+            1
+    );
+
     public static final int MIN_QUERY_RESULT_LIMIT = 1000;
 
     public static final int DEFAULT_QUERY_RESULT_LIMIT = 10000;
 
     public static final int DEFAULT_QUERY_PAGE_RESULT_LIMIT = 10000;
 
+    /**
+     * Maximum number of expired documents deleted with one statement during maintenance. The
+     * services of each chunk are stopped with a single request per node.
+     */
+    public static final int EXPIRATION_CHUNK_SIZE = XenonConfiguration.integer(
+            PostgresDocumentIndexService.class,
+            "expirationChunkSize",
+            500
+    );
+
     private static final int QUERY_EXECUTOR_WORK_QUEUE_CAPACITY = XenonConfiguration.integer(
             PostgresDocumentIndexService.class,
             "queryExecutorWorkQueueCapacity",
@@ -154,6 +176,12 @@ public class PostgresDocumentIndexService extends StatelessService {
 
     public static final String STAT_NAME_COMMIT_DURATION_MICROS = "commitDurationMicros";
 
+    public static final String STAT_NAME_GROUP_COMMIT_BATCH_SIZE = "groupCommitBatchSize";
+
+    public static final String STAT_NAME_GROUP_COMMIT_QUEUE_DEPTH = "groupCommitQueueDepth";
+
+    public static final String STAT_NAME_GROUP_COMMIT_FALLBACK_COUNT = "groupCommitFallbackCount";
+
     public static final String STAT_NAME_GROUP_QUERY_COUNT = "groupQueryCount";
 
     public static final String STAT_NAME_QUERY_DURATION_MICROS = "queryDurationMicros";
@@ -172,6 +200,12 @@ public class PostgresDocumentIndexService extends StatelessService {
 
     public static final String STAT_NAME_DOCUMENT_EXPIRATION_COUNT = "expiredDocumentCount";
 
+    public static final String STAT_NAME_DOCUMENT_EXPIRATION_RATE_PER_SECOND =
+            "expiredDocumentsPerSecond";
+
+    public static final String STAT_NAME_DOCUMENT_EXPIRATION_CHUNK_DURATION_MICROS =
+            "expirationChunkDurationMicros";
+
     public static final String STAT_NAME_MAINTENANCE_SEARCHER_REFRESH_DURATION_MICROS =
             "maintenanceSearcherRefreshDurationMicros";
 
@@ -208,6 +242,12 @@ public class PostgresDocumentIndexService extends StatelessService {
 
     protected Map<String, QueryTask> activeQueries = new ConcurrentHashMap<>();
 
+    /**
+     * Dispatch index over {@link #activeQueries}, used to find the continuous queries which need
+     * to be evaluated for an updated document
+     */
+    private final PostgresContinuousQueryIndex activeQueryIndex = new PostgresContinuousQueryIndex();
+
     private ExecutorService privateIndexingExecutor;
     private ExecutorService privateQueryExecutor;
 
@@ -241,6 +281,15 @@ public class PostgresDocumentIndexService extends StatelessService {
         static final String KIND = Utils.buildKind(MaintenanceRequest.class);
     }
 
+    /**
+     * Broadcast to all nodes after a chunk of documents expired, to stop the services of the
+     * expired documents which are attached on the node.
+     */
+    public static class StopExpiredServicesRequest extends ServiceDocument {
+        public List<String> documentLinks;
+        static final String KIND = Utils.buildKind(StopExpiredServicesRequest.class);
+    }
+
     public PostgresDocumentIndexService(ServiceHost host, DataSource ds) {
         super(ServiceDocument.class);
         toggleOption(ServiceOption.CORE, true);
@@ -443,6 +492,14 @@ public class PostgresDocumentIndexService extends StatelessService {
         if (op == null) {
             return;
         }
+        if (UPDATE_GROUP_COMMIT_BATCH_SIZE > 1 && isUpdateIndexRequest(op)) {
+            handleGroupCommitUpdateRequest(op);
+            return;
+        }
+        handleUpdateRequest(op);
+    }
+
+    private void handleUpdateRequest(Operation op) {
         OperationContext originalContext = OperationContext.getOperationContext();
         try {
             this.writerSync.acquire();
@@ -462,6 +519,10 @@ public class PostgresDocumentIndexService extends StatelessService {
                         handleMaintenanceImpl(op);
                         break;
                     }
+                    if (isStopExpiredServicesRequest(op)) {
+                        handleStopExpiredServices(op);
+                        break;
+                    }
                 }
                 Operation.failActionNotSupported(op);
                 break;
@@ -477,6 +538,67 @@ public class PostgresDocumentIndexService extends StatelessService {
         }
     }
 
+    /**
+     * Drains pending index updates from the update queue and stores them in a single transaction.
+     * Operations that are not index updates (e.g. maintenance) are handled one by one after the
+     * group commit.
+     */
+    private void handleGroupCommitUpdateRequest(Operation first) {
+        List<Operation> batch = new ArrayList<>();
+        List<Operation> deferred = null;
+        batch.add(first);
+        while (batch.size() < UPDATE_GROUP_COMMIT_BATCH_SIZE) {
+            Operation op = pollUpdateOperation();
+            if (op == null) {
+                break;
+            }
+            if (isUpdateIndexRequest(op)) {
+                batch.add(op);
+            } else {
+                if (deferred == null) {
+                    deferred = new ArrayList<>();
+                }
+                deferred.add(op);
+            }
+        }
+
+        if (hasOption(ServiceOption.INSTRUMENTATION)) {
+            int queueDepth = 0;
+            for (Integer size : this.updateQueue.sizesByKey().values()) {
+                queueDepth += size;
+            }
+            setTimeSeriesStat(STAT_NAME_GROUP_COMMIT_QUEUE_DEPTH, AGGREGATION_TYPE_AVG_MAX,
+                    queueDepth);
+            setTimeSeriesHistogramStat(STAT_NAME_GROUP_COMMIT_BATCH_SIZE,
+                    AGGREGATION_TYPE_AVG_MAX, batch.size());
+        }
+
+        OperationContext originalContext = OperationContext.getOperationContext();
+        try {
+            this.writerSync.acquire();
+            updateIndex(batch);
+        } catch (Exception e) {
+            // only thrown before any of the operations is processed
+            checkFailureAndRecover(e);
+            for (Operation op : batch) {
+                op.fail(e);
+            }
+        } finally {
+            OperationContext.setFrom(originalContext);
+            this.writerSync.release();
+        }
+
+        if (deferred != null) {
+            for (Operation op : deferred) {
+                handleUpdateRequest(op);
+            }
+        }
+    }
+
+    private static boolean isUpdateIndexRequest(Operation op) {
+        return op.getAction() == Action.POST && op.getBodyRaw() instanceof UpdateIndexRequest;
+    }
+
     private void handleQueryTaskPatch(Operation op, QueryTask task) throws Exception {
         if (task.querySpec.options.contains(QueryOption.CONTINUOUS)) {
             if (handleContinuousQueryTaskPatch(op, task, task.querySpec)) {
@@ -513,6 +635,7 @@ public class PostgresDocumentIndexService extends StatelessService {
             clonedTask.querySpec.context.filter = QueryFilter.create(qs.query);
             clonedTask.querySpec.context.subjectLink = getSubject(op);
             this.activeQueries.put(task.documentSelfLink, clonedTask);
+            this.activeQueryIndex.add(clonedTask);
             adjustTimeSeriesStat(STAT_NAME_ACTIVE_QUERY_FILTERS, AGGREGATION_TYPE_SUM,
                     1);
             logInfo("Activated continuous query task: %s", task.documentSelfLink);
@@ -520,6 +643,7 @@ public class PostgresDocumentIndexService extends StatelessService {
         case CANCELLED:
         case FAILED:
         case FINISHED:
+            this.activeQueryIndex.remove(task.documentSelfLink);
             if (this.activeQueries.remove(task.documentSelfLink) != null) {
                 adjustTimeSeriesStat(STAT_NAME_ACTIVE_QUERY_FILTERS, AGGREGATION_TYPE_SUM,
                         -1);
@@ -783,44 +907,125 @@ public class PostgresDocumentIndexService extends StatelessService {
     }
 
     protected void updateIndex(Operation updateOp) throws Exception {
+        UpdateIndexRequest r = validateUpdateIndexRequest(updateOp);
+        if (r == null) {
+            return;
+        }
+        ServiceDocument s = r.document;
+        ServiceDocumentDescription desc = r.description;
+
+        boolean forceIndexUpdate = isForceIndexUpdate(updateOp);
+
+        s.documentDescription = null;
+        long startNanos = System.nanoTime();
+        dao.saveDocument(s, desc, forceIndexUpdate);
+        updateCommitStats(startNanos);
+
+        completeUpdateIndex(updateOp, s, desc, forceIndexUpdate);
+    }
+
+    /**
+     * Stores the documents of the given update operations with a single group commit. If the
+     * group commit fails, e.g. because a single document cannot be serialized or has no table,
+     * every operation is retried on its own so that failures are reported only for the offending
+     * documents.
+     */
+    protected void updateIndex(List<Operation> updateOps) {
+        List<Operation> validOps = new ArrayList<>(updateOps.size());
+        List<UpdateIndexRequest> requests = new ArrayList<>(updateOps.size());
+        List<DocumentUpdate> updates = new ArrayList<>(updateOps.size());
+        for (Operation updateOp : updateOps) {
+            OperationContext.setFrom(updateOp);
+            UpdateIndexRequest r = validateUpdateIndexRequest(updateOp);
+            if (r == null) {
+                continue;
+            }
+            r.document.documentDescription = null;
+            validOps.add(updateOp);
+            requests.add(r);
+            updates.add(new DocumentUpdate(r.document, isForceIndexUpdate(updateOp)));
+        }
+
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            dao.saveDocuments(updates);
+        } catch (Throwable e) {
+            logWarning("Group commit of %d documents failed, retrying one by one: %s",
+                    updates.size(), e.toString());
+            adjustStat(STAT_NAME_GROUP_COMMIT_FALLBACK_COUNT, 1);
+            for (Operation updateOp : validOps) {
+                OperationContext.setFrom(updateOp);
+                try {
+                    updateIndex(updateOp);
+                } catch (Exception ex) {
+                    checkFailureAndRecover(ex);
+                    updateOp.fail(ex);
+                }
+            }
+            return;
+        }
+        updateCommitStats(startNanos);
+
+        for (int i = 0; i < validOps.size(); i++) {
+            Operation updateOp = validOps.get(i);
+            UpdateIndexRequest r = requests.get(i);
+            OperationContext.setFrom(updateOp);
+            completeUpdateIndex(updateOp, r.document, r.description,
+                    updates.get(i).forceIndexUpdate);
+        }
+    }
+
+    /**
+     * Returns the update request body, or fails the operation and returns {@code null} if the
+     * request is not valid.
+     */
+    private UpdateIndexRequest validateUpdateIndexRequest(Operation updateOp) {
         UpdateIndexRequest r = updateOp.getBody(UpdateIndexRequest.class);
         ServiceDocument s = r.document;
         ServiceDocumentDescription desc = r.description;
 
         if (updateOp.isRemote()) {
             updateOp.fail(new IllegalStateException("Remote requests not allowed"));
-            return;
+            return null;
         }
 
         if (s == null) {
             updateOp.fail(new IllegalArgumentException("document is required"));
-            return;
+            return null;
         }
 
         String link = s.documentSelfLink;
         if (link == null) {
             updateOp.fail(new IllegalArgumentException(
                     "documentSelfLink is required"));
-            return;
+            return null;
         }
 
         if (s.documentUpdateAction == null) {
             updateOp.fail(new IllegalArgumentException(
                     "documentUpdateAction is required"));
-            return;
+            return null;
         }
 
         if (desc == null) {
             updateOp.fail(new IllegalArgumentException("description is required"));
-            return;
+            return null;
         }
 
-        boolean forceIndexUpdate = updateOp.getAction() == Action.POST
-                && updateOp.hasPragmaDirective(Operation.PRAGMA_DIRECTIVE_FORCE_INDEX_UPDATE);
+        return r;
+    }
 
-        s.documentDescription = null;
-        dao.saveDocument(s, desc, forceIndexUpdate);
+    private static boolean isForceIndexUpdate(Operation updateOp) {
+        return updateOp.getAction() == Action.POST
+                && updateOp.hasPragmaDirective(Operation.PRAGMA_DIRECTIVE_FORCE_INDEX_UPDATE);
+    }
 
+    private void completeUpdateIndex(Operation updateOp, ServiceDocument s,
+            ServiceDocumentDescription desc, boolean forceIndexUpdate) {
         if (forceIndexUpdate) {
             // Delete all previous versions from the index.
             adjustStat(STAT_NAME_FORCED_UPDATE_DOCUMENT_DELETE_COUNT, 1);
@@ -835,6 +1040,16 @@ public class PostgresDocumentIndexService extends StatelessService {
         applyActiveQueries(updateOp, s, desc);
     }
 
+    private void updateCommitStats(long startNanos) {
+        if (!hasOption(ServiceOption.INSTRUMENTATION)) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        adjustTimeSeriesStat(STAT_NAME_COMMIT_COUNT, AGGREGATION_TYPE_SUM, 1);
+        setTimeSeriesHistogramStat(STAT_NAME_COMMIT_DURATION_MICROS, AGGREGATION_TYPE_AVG_MAX,
+                TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+
     /**
      * Will attempt to re-open index writer to recover from a specific exception. The method
      * assumes the caller has acquired the writer semaphore
@@ -849,31 +1064,112 @@ public class PostgresDocumentIndexService extends StatelessService {
         adjustStat(STAT_NAME_WRITER_ALREADY_CLOSED_EXCEPTION_COUNT, 1);
     }
 
-    private void deleteAllDocumentsForSelfLink(Connection conn, String tableName,
-            Operation postOrDelete, String link, ServiceDocument state)
-            throws Exception {
-        dao.deleteDocument(conn, tableName, link);
-        postOrDelete.complete();
-        adjustTimeSeriesStat(STAT_NAME_SERVICE_DELETE_COUNT, AGGREGATION_TYPE_SUM, 1);
-        logFine("%s expired", link);
-        if (state == null) {
-            return;
+    /**
+     * Notifies the active queries about the expired documents and stops their services. When
+     * authorization is enabled, instead of broadcasting a DELETE per document, a single request
+     * per node stops the services of the whole chunk. Without authorization the peers cannot tell
+     * that the request came from an index, so a DELETE per document is broadcast as before.
+     */
+    private void handleExpiredDocuments(Map<String, ServiceDocument> documents) {
+        Operation dummyDelete = Operation.createDelete(null);
+        List<String> documentLinks = new ArrayList<>(documents.size());
+        for (Entry<String, ServiceDocument> e : documents.entrySet()) {
+            logFine("%s expired", e.getKey());
+            ServiceDocument state = e.getValue();
+            if (state == null) {
+                continue;
+            }
+            applyActiveQueries(dummyDelete, state, null);
+            documentLinks.add(e.getKey());
         }
 
-        applyActiveQueries(postOrDelete, state, null);
+        adjustTimeSeriesStat(STAT_NAME_SERVICE_DELETE_COUNT, AGGREGATION_TYPE_SUM,
+                documents.size());
+        adjustTimeSeriesStat(STAT_NAME_DOCUMENT_EXPIRATION_COUNT, AGGREGATION_TYPE_SUM,
+                documents.size());
+
+        if (documentLinks.isEmpty()) {
+            return;
+        }
 
-        // remove service, if its running
-        // Broadcasting delete to all nodes, to make sure owner node stop the service
+        // remove services, if running
+        // Broadcasting to all nodes, to make sure owner node stop the service
         // TODO: Find better solution, all nodes query for expiration and stop if service owner?
-        // TODO: Consider skipping delete for IMMUTABLE and non-periodic services, since they will
-        // stop on idle
-        // TODO: Why handleDelete is not called? Noticed same behavior with lucene
-        Operation delete = Operation.createDelete(this, state.documentSelfLink)
-                .setBodyNoCloning(state)
+        if (!getHost().isAuthorizationEnabled()) {
+            for (String documentLink : documentLinks) {
+                Operation delete = Operation.createDelete(this, documentLink)
+                        .setBodyNoCloning(documents.get(documentLink))
+                        .disableFailureLogging(true)
+                        .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_NO_INDEX_UPDATE)
+                        .setReferer(getUri());
+                getHost().broadcastRequest(ServiceUriPaths.DEFAULT_NODE_SELECTOR, false, delete);
+            }
+            return;
+        }
+
+        StopExpiredServicesRequest body = new StopExpiredServicesRequest();
+        body.documentKind = StopExpiredServicesRequest.KIND;
+        body.documentLinks = documentLinks;
+        Operation post = Operation.createPost(this, getSelfLink())
+                .setBodyNoCloning(body)
                 .disableFailureLogging(true)
-                .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_NO_INDEX_UPDATE)
                 .setReferer(getUri());
-        getHost().broadcastRequest(ServiceUriPaths.DEFAULT_NODE_SELECTOR, false, delete);
+        setAuthorizationContext(post, getSystemAuthorizationContext());
+        getHost().broadcastRequest(ServiceUriPaths.DEFAULT_NODE_SELECTOR, false, post);
+    }
+
+    private static boolean isStopExpiredServicesRequest(Operation op) {
+        Object o = op.getBodyRaw();
+        if (o instanceof StopExpiredServicesRequest) {
+            return true;
+        }
+        if (!(o instanceof String)) {
+            return false;
+        }
+        // remote requests are not deserialized yet
+        ServiceDocument sd = op.getBody(ServiceDocument.class);
+        return StopExpiredServicesRequest.KIND.equals(sd.documentKind);
+    }
+
+    /**
+     * Services are stopped with the system authorization context, so the request is only accepted
+     * from the index itself or, when authorization is enabled, from the index of a peer node,
+     * which is the only remote caller holding a system user token. Without authorization the
+     * request is not broadcast, see {@link #handleExpiredDocuments(Map)}.
+     */
+    private boolean isStopExpiredServicesAllowed(Operation op) {
+        AuthorizationContext ctx = op.getAuthorizationContext();
+        if (ctx == null || !ctx.isSystemUser()) {
+            return false;
+        }
+        return !op.isRemote() || getHost().isAuthorizationEnabled();
+    }
+
+    private void handleStopExpiredServices(Operation op) {
+        if (!isStopExpiredServicesAllowed(op)) {
+            op.fail(Operation.STATUS_CODE_FORBIDDEN);
+            return;
+        }
+        StopExpiredServicesRequest request = op.getBody(StopExpiredServicesRequest.class);
+        op.complete();
+        if (request.documentLinks == null) {
+            return;
+        }
+
+        for (String documentLink : request.documentLinks) {
+            if (getHost().getServiceStage(documentLink) == null) {
+                // not attached on this node
+                continue;
+            }
+            // TODO: Consider skipping delete for IMMUTABLE and non-periodic services, since they
+            // will stop on idle
+            Operation delete = Operation.createDelete(UriUtils.buildUri(getHost(), documentLink))
+                    .disableFailureLogging(true)
+                    .addPragmaDirective(Operation.PRAGMA_DIRECTIVE_NO_INDEX_UPDATE)
+                    .setReferer(getUri());
+            setAuthorizationContext(delete, getSystemAuthorizationContext());
+            sendRequest(delete);
+        }
     }
 
     @Override
@@ -1040,74 +1336,54 @@ public class PostgresDocumentIndexService extends StatelessService {
     }
 
     private void applyDocumentExpirationPolicy(long deadline) throws Exception {
-        // TODO: need better solution to expire documents, this can be very slow to have
-        // deletion in batches across tables
         int limit = expiredDocumentSearchThreshold;
         long now = Utils.getNowMicrosUtc();
+        long startNanos = System.nanoTime();
+        int expired = 0;
         for (TableDescription tableDescription : this.dao.getPostgresSchemaManager().getTableDescriptions()) {
             if (Utils.getSystemNowMicrosUtc() >= deadline || limit <= 0) {
                 break;
             }
-            int expired = applyDocumentExpirationPolicyForTable(tableDescription, now, deadline, limit);
-            limit -= expired;
+            int count = applyDocumentExpirationPolicyForTable(tableDescription, now, deadline, limit);
+            limit -= count;
+            expired += count;
+        }
+
+        if (expired > 0) {
+            long durationNanos = Math.max(System.nanoTime() - startNanos, 1);
+            setTimeSeriesStat(STAT_NAME_DOCUMENT_EXPIRATION_RATE_PER_SECOND,
+                    AGGREGATION_TYPE_AVG_MAX,
+                    expired * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos);
         }
     }
 
+    /**
+     * Deletes the expired documents of the table in chunks of {@link #EXPIRATION_CHUNK_SIZE}.
+     * A new chunk is only started if it is expected to complete before the deadline, based on
+     * the duration of the previous chunk.
+     */
     private int applyDocumentExpirationPolicyForTable(TableDescription tableDescription,
             long now, long deadline, int limit) throws Exception {
         int expired = 0;
-        String tableName = tableDescription.getTableName();
-        String sql = String.format("SELECT data,documentexpirationtimemicros FROM %s WHERE documentexpirationtimemicros BETWEEN 1 AND ? ORDER BY documentexpirationtimemicros LIMIT ?",
-                tableName);
-
-        try (Connection conn = this.ds.getConnection()) {
-            conn.setAutoCommit(false);
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setLong(1, now);
-                stmt.setInt(2, limit);
-                // Use cursor
-                stmt.setFetchSize(PostgresServiceDocumentDao.FETCH_SIZE);
-
-                try (ResultSet rs = stmt.executeQuery()) {
-                    Operation dummyDelete = null;
-                    PostgresDocumentStoredFieldVisitor visitor = null;
-                    while (rs.next() && Utils.getSystemNowMicrosUtc() < deadline) {
-                        if (dummyDelete == null) {
-                            dummyDelete = Operation.createDelete(null);
-                            visitor = new PostgresDocumentStoredFieldVisitor();
-                        } else {
-                            visitor.reset();
-                        }
-
-                        dao.loadDoc(visitor, rs);
-
-                        String documentSelfLink = visitor.documentSelfLink;
-                        ServiceDocument serviceDocument = null;
-                        try {
-                            serviceDocument = this.dao
-                                    .getStateFromPostgresDocument(tableDescription,
-                                            visitor, documentSelfLink);
-                        } catch (Exception e) {
-                            logWarning("Error getting state for %s: %s", documentSelfLink,
-                                    e);
-                        }
+        long lastChunkDurationMicros = 0;
+        while (expired < limit
+                && Utils.getSystemNowMicrosUtc() + lastChunkDurationMicros < deadline) {
+            int chunkSize = Math.min(EXPIRATION_CHUNK_SIZE, limit - expired);
+            long startNanos = System.nanoTime();
 
-                        expired++;
+            Map<String, ServiceDocument> documents = this.dao
+                    .deleteExpiredDocuments(tableDescription, now, chunkSize);
+            if (!documents.isEmpty()) {
+                handleExpiredDocuments(documents);
+            }
 
-                        deleteAllDocumentsForSelfLink(conn, tableName, dummyDelete,
-                                documentSelfLink, serviceDocument);
+            lastChunkDurationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            setTimeSeriesHistogramStat(STAT_NAME_DOCUMENT_EXPIRATION_CHUNK_DURATION_MICROS,
+                    AGGREGATION_TYPE_AVG_MAX, lastChunkDurationMicros);
 
-                        adjustTimeSeriesStat(STAT_NAME_DOCUMENT_EXPIRATION_COUNT,
-                                AGGREGATION_TYPE_SUM,
-                                1);
-                    }
-                }
-            }
-            conn.commit();
-            try {
-                conn.setAutoCommit(true);
-            } catch (Exception ignore) {
-                // Ignore
+            expired += documents.size();
+            if (documents.size() < chunkSize) {
+                break;
             }
         }
         return expired;
@@ -1131,15 +1407,13 @@ public class PostgresDocumentIndexService extends StatelessService {
         // same context as the operation that updated the index
         OperationContext.setFrom(op);
 
-        // TODO Optimize. We currently traverse each query independently. We can collapse the queries
-        // and evaluate clauses keeping track which clauses applied, then skip any queries accordingly.
-
-        for (Entry<String, QueryTask> taskEntry : this.activeQueries.entrySet()) {
+        // Only evaluate the queries that require the kind and the exact-match terms of the
+        // updated document, instead of traversing each active query independently
+        for (QueryTask activeTask : this.activeQueryIndex.getCandidates(latestState)) {
             if (getHost().isStopping()) {
                 break;
             }
 
-            QueryTask activeTask = taskEntry.getValue();
             QueryFilter filter = activeTask.querySpec.context.filter;
             if (desc == null) {
                 if (!QueryFilterUtils.evaluate(filter, latestState, getHost())) {
@@ -84,6 +84,15 @@ public class PostgresHostUtils {
             "password");
     public static final String POSTGRES_SSL = System.getProperty("postgres.ssl",
             "false");
+    /**
+     * Number of executions of a query after which the driver switches to a named server-side
+     * prepared statement. Query conditions are sent as parameterized SQL, so the statements are
+     * reused across queries with the same shape.
+     */
+    public static final String POSTGRES_PREPARE_THRESHOLD = System.getProperty(
+            "postgres.prepareThreshold", "5");
+    public static final String POSTGRES_PREPARED_STATEMENT_CACHE_QUERIES = System.getProperty(
+            "postgres.preparedStatementCacheQueries", "512");
 
     private static final String HIKARI_PROPERTY_NAME_PREFIX = "hikari.";
     private static final String PRAGMA_DIRECTIVE_FROM_AUTH_BROADCAST = "xn-from-auth-broadcast";
@@ -135,6 +144,9 @@ public class PostgresHostUtils {
         props.setProperty("dataSource.serverName", POSTGRES_SERVER);
         props.setProperty("dataSource.portNumber", POSTGRES_PORT);
         props.setProperty("dataSource.ssl", POSTGRES_SSL);
+        props.setProperty("dataSource.prepareThreshold", POSTGRES_PREPARE_THRESHOLD);
+        props.setProperty("dataSource.preparedStatementCacheQueries",
+                POSTGRES_PREPARED_STATEMENT_CACHE_QUERIES);
         props.setProperty("maximumPoolSize", "10");
         props.setProperty("registerMbeans", Boolean.toString(REGISTER_MBEANS));
 
@@ -11,18 +11,16 @@
 
 package com.vmware.xenon.services.rdbms;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-
 import com.vmware.xenon.common.ServiceDocument;
 import com.vmware.xenon.common.ServiceDocumentDescription;
 import com.vmware.xenon.common.ServiceDocumentDescription.PropertyIndexingOption;
@@ -67,6 +65,12 @@ final class PostgresQueryConverter {
     static final String SQL_TRUE = "TRUE";
     static final String SQL_FALSE = "FALSE";
 
+    /**
+     * Native columns which never contain null values
+     */
+    private static final Set<String> NOT_NULL_COLUMNS = new HashSet<>(
+            Arrays.asList("documentselflink", "documentversion"));
+
     private static final StringBuilderThreadLocal builderPerThread = new StringBuilderThreadLocal();
 
     private static final QueryTask.QueryTerm QUERY_TERM_TRUE;
@@ -87,7 +91,17 @@ final class PostgresQueryConverter {
     private PostgresQueryConverter() {
     }
 
-    static String convert(Query query, QueryRuntimeContext context, TableDescription td) {
+    /**
+     * Converts the query to a SQL condition. Match values are not inlined in the returned SQL,
+     * every value is represented by a {@code ?} parameter and added to {@code params} in the
+     * order of the parameters, so the same SQL text is generated for queries which only differ
+     * in their values.
+     *
+     * The returned SQL must be executed as a {@link java.sql.PreparedStatement}, the JSONB
+     * {@code ?} operators are escaped as {@code ??}.
+     */
+    static String convert(Query query, QueryRuntimeContext context, TableDescription td,
+            List<Object> params) {
         query = reduceQuery(query, td);
 
         try {
@@ -97,11 +111,12 @@ final class PostgresQueryConverter {
 
             StringBuilder condition = builderPerThread.get();
 
-            convertToPostgresQuery(condition, true, query, context, td);
+            convertToPostgresQuery(condition, true, query, context, td, params);
 
             String sql = condition.toString();
             if (logger.isLoggable(Level.FINE)) {
-                logger.fine(String.format("Convert: %s\n%s", sql, Utils.toJsonHtml(query)));
+                logger.fine(String.format("Convert: %s\n%s\n%s", sql, params,
+                        Utils.toJsonHtml(query)));
             }
 
             return sql;
@@ -113,7 +128,7 @@ final class PostgresQueryConverter {
 
     @SuppressWarnings("unchecked")
     private static void convertToPostgresQuery(StringBuilder sb, boolean first, Query query,
-            QueryRuntimeContext context, TableDescription td) {
+            QueryRuntimeContext context, TableDescription td, List<Object> params) {
         if (query.occurance == null) {
             query.occurance = Query.Occurance.MUST_OCCUR;
         }
@@ -124,7 +139,7 @@ final class PostgresQueryConverter {
                         "term and booleanClauses are mutually exclusive");
             }
 
-            convertToSqlBooleanQuery(sb, first, query, context, td);
+            convertToSqlBooleanQuery(sb, first, query, context, td, params);
             return;
         }
 
@@ -166,16 +181,16 @@ final class PostgresQueryConverter {
         } else if (term == QUERY_TERM_FALSE) {
             condition = SQL_FALSE;
         } else if (term.range != null) {
-            condition = convertToSqlNumericRangeQuery(query, cd);
+            condition = convertToSqlNumericRangeQuery(query, cd, params);
         } else {
             if (term.matchType == QueryTask.QueryTerm.MatchType.WILDCARD) {
-                condition = convertToSqlLikeQuery(query, cd);
+                condition = convertToSqlLikeQuery(query, cd, params);
             } else if (term.matchType == QueryTask.QueryTerm.MatchType.PHRASE) {
-                condition = convertToSqlPhraseQuery(query, cd);
+                condition = convertToSqlPhraseQuery(query, cd, params);
             } else if (term.matchType == QueryTask.QueryTerm.MatchType.PREFIX) {
-                condition = convertToSqlPrefixQuery(query, cd);
+                condition = convertToSqlPrefixQuery(query, cd, params);
             } else {
-                condition = convertToSqlSingleTermQuery(query, cd);
+                condition = convertToSqlSingleTermQuery(query, cd, params);
             }
         }
 
@@ -288,7 +303,8 @@ final class PostgresQueryConverter {
         }
     }
 
-    private static String convertToSqlSingleTermQuery(Query query, ColumnDescription cd) {
+    private static String convertToSqlSingleTermQuery(Query query, ColumnDescription cd,
+            List<Object> params) {
         // support for "*" queries which does not specify WILDCARD search (by mistake)
         // TODO: Remove after fixing source
         if (query.term.matchValue.equals(UriUtils.URI_WILDCARD_CHAR)) {
@@ -302,8 +318,8 @@ final class PostgresQueryConverter {
             // TODO: Review
             // return String.format("%s @> '\"%s\"'", wrapNativeField(query.term.propertyName, cd),
             // escapeJsonString(query.term.matchValue));
-            return String.format("%s ? '%s'", wrapNativeField(query.term.propertyName, cd),
-                    escapeSqlString(query.term.matchValue));
+            params.add(query.term.matchValue);
+            return String.format("%s ?? ?", wrapNativeField(query.term.propertyName, cd));
         }
 
         String stringField = wrapStringField(query.term.propertyName, cd);
@@ -317,8 +333,8 @@ final class PostgresQueryConverter {
         if (isTextIndexingOption(cd)) {
             // Is text field
             // TODO: use postgres text indexing?
-            return String.format("%s LIKE '%%%s%%' ESCAPE '\\'", stringField,
-                    escapeSqlLike(stringValue));
+            params.add('%' + escapeSqlLike(stringValue) + '%');
+            return String.format("%s LIKE ? ESCAPE '\\'", stringField);
         }
 
         if (query.term.propertyName.contains(
@@ -331,7 +347,8 @@ final class PostgresQueryConverter {
             if (isCaseInsensitive) {
                 select = String.format("LOWER(%s)", select);
             }
-            return String.format("'%s' IN (SELECT %s)", escapeSqlString(stringValue), select);
+            params.add(stringValue);
+            return String.format("? IN (SELECT %s)", select);
         }
 
         // TODO: Need to support case insensitive in MAP
@@ -341,16 +358,18 @@ final class PostgresQueryConverter {
             isCaseInsensitive = false;
         }
         if (cd != null && !isCaseInsensitive && !cd.isNativeColumn()) {
-            String condition = toJsonContainsCondition(query, cd);
+            String condition = toJsonContainsCondition(query, cd, params);
             if (condition != null) {
                 return condition;
             }
         }
 
-        return String.format("%s = '%s'", stringField, escapeSqlString(stringValue));
+        params.add(stringValue);
+        return String.format("%s = ?", stringField);
     }
 
-    private static String toJsonContainsCondition(Query query, ColumnDescription cd) {
+    private static String toJsonContainsCondition(Query query, ColumnDescription cd,
+            List<Object> params) {
         String propertyName = normalizePropertyName(query.term.propertyName);
         String[] fields = propertyName.split(QuerySpecification.FIELD_NAME_REGEXP);
         if (fields.length < 2) {
@@ -410,15 +429,16 @@ final class PostgresQueryConverter {
             sb.append('}');
         }
 
-        return String.format("data -> '%s' @> '%s'", escapeSqlString(fields[0]),
-                escapeSqlString(sb.toString()));
+        params.add(sb.toString());
+        return String.format("data -> '%s' @> ?::jsonb", escapeSqlString(fields[0]));
     }
 
     // For language agnostic, or advanced token parsing a Tokenizer from the LUCENE
     // analysis package should be used.
     // TODO consider compiling the regular expression.
     // Currently phrase queries are considered a rare, special case.
-    private static String convertToSqlPhraseQuery(QueryTask.Query query, ColumnDescription cd) {
+    private static String convertToSqlPhraseQuery(QueryTask.Query query, ColumnDescription cd,
+            List<Object> params) {
         String stringField = wrapStringField(query.term.propertyName, cd);
         String stringValue = query.term.matchValue;
 
@@ -433,13 +453,14 @@ final class PostgresQueryConverter {
         String[] tokens = stringValue.split("\\W");
         StringJoiner joiner = new StringJoiner(" AND ");
         for (String token : tokens) {
-            joiner.add(String.format("%s LIKE '%%%s%%' ESCAPE '\\'", stringField,
-                    escapeSqlLike(token)));
+            params.add('%' + escapeSqlLike(token) + '%');
+            joiner.add(String.format("%s LIKE ? ESCAPE '\\'", stringField));
         }
         return joiner.toString();
     }
 
-    private static String convertToSqlPrefixQuery(QueryTask.Query query, ColumnDescription cd) {
+    private static String convertToSqlPrefixQuery(QueryTask.Query query, ColumnDescription cd,
+            List<Object> params) {
         String stringField = wrapStringField(query.term.propertyName, cd);
         String stringValue = query.term.matchValue;
 
@@ -459,10 +480,11 @@ final class PostgresQueryConverter {
                         wrapNativeField(query.term.propertyName, cd));
             }
 
+            params.add(escapedPrefix + '%');
             return String.format(
-                    "EXISTS(SELECT FROM jsonb_array_elements_text(%s) value WHERE value %s '%s%%' ESCAPE '\\')",
+                    "EXISTS(SELECT FROM jsonb_array_elements_text(%s) value WHERE value %s ? ESCAPE '\\')",
                     wrapNativeField(query.term.propertyName, cd),
-                    isCaseInsensitive ? "ILIKE" : "LIKE", escapedPrefix);
+                    isCaseInsensitive ? "ILIKE" : "LIKE");
 
             // TODO: Review
             // return String.format("%s LIKE '%%\"%s%%' ESCAPE '\\'", stringField, escapedPrefix);
@@ -473,16 +495,19 @@ final class PostgresQueryConverter {
                         + QuerySpecification.FIELD_NAME_CHARACTER)) {
             String[] s = query.term.propertyName.split(QuerySpecification.FIELD_NAME_REGEXP);
 
+            params.add(escapedPrefix + '%');
             return String.format(
-                    "EXISTS(SELECT FROM jsonb_array_elements(data -> '%s') value WHERE value ->> '%s' %s '%s%%' ESCAPE '\\')",
+                    "EXISTS(SELECT FROM jsonb_array_elements(data -> '%s') value WHERE value ->> '%s' %s ? ESCAPE '\\')",
                     escapeSqlString(s[0]), escapeSqlString(s[2]),
-                    isCaseInsensitive ? "ILIKE" : "LIKE", escapedPrefix);
+                    isCaseInsensitive ? "ILIKE" : "LIKE");
         }
 
-        return String.format("%s LIKE '%s%%' ESCAPE '\\'", stringField, escapedPrefix);
+        params.add(escapedPrefix + '%');
+        return String.format("%s LIKE ? ESCAPE '\\'", stringField);
     }
 
-    private static String convertToSqlLikeQuery(QueryTask.Query query, ColumnDescription cd) {
+    private static String convertToSqlLikeQuery(QueryTask.Query query, ColumnDescription cd,
+            List<Object> params) {
         String stringValue = query.term.matchValue;
 
         // if the query is a wildcard, this is typically used to check the field is not null
@@ -507,32 +532,35 @@ final class PostgresQueryConverter {
         String matchValue = escapeSqlLike(stringValue).replace('*', '%')
                 .replace('?', '_');
         if (isCollectionField(query)) {
-            return String.format("%s LIKE '%%\"%s\"%%' ESCAPE '\\'", stringField, matchValue);
+            params.add("%\"" + matchValue + "\"%");
+            return String.format("%s LIKE ? ESCAPE '\\'", stringField);
         }
 
         String condition;
         // Convert to simple equals if it's not a like condition
         if (matchValue.equals(stringValue)) {
-            condition = String.format("%s = '%s'", stringField, stringValue);
+            params.add(stringValue);
+            condition = String.format("%s = ?", stringField);
         } else {
-            condition = String.format("%s LIKE '%s' ESCAPE '\\'", stringField, matchValue);
+            params.add(matchValue);
+            condition = String.format("%s LIKE ? ESCAPE '\\'", stringField);
         }
         return condition;
     }
 
     private static String convertToSqlNumericRangeQuery(QueryTask.Query query,
-            ColumnDescription cd) {
+            ColumnDescription cd, List<Object> params) {
         QueryTask.QueryTerm term = query.term;
 
         term.range.validate();
         String condition;
         if (term.range.type == ServiceDocumentDescription.TypeName.LONG) {
-            condition = createLongRangeQuery(term.propertyName, term.range, cd);
+            condition = createLongRangeQuery(term.propertyName, term.range, cd, params);
         } else if (term.range.type == ServiceDocumentDescription.TypeName.DOUBLE) {
-            condition = createDoubleRangeQuery(term.propertyName, term.range, cd);
+            condition = createDoubleRangeQuery(term.propertyName, term.range, cd, params);
         } else if (term.range.type == ServiceDocumentDescription.TypeName.DATE) {
             // Date specifications must be in microseconds since epoch
-            condition = createLongRangeQuery(term.propertyName, term.range, cd);
+            condition = createLongRangeQuery(term.propertyName, term.range, cd, params);
         } else {
             throw new IllegalArgumentException("Type is not supported:"
                     + term.range.type);
@@ -562,7 +590,7 @@ final class PostgresQueryConverter {
 
     private static void convertToSqlBooleanQuery(StringBuilder sb, boolean first,
             QueryTask.Query query, QueryRuntimeContext context,
-            TableDescription td) {
+            TableDescription td, List<Object> params) {
         // Recursively build the boolean query. We allow arbitrary nesting and grouping.
         if (query.booleanClauses.isEmpty()) {
             throw new IllegalArgumentException("Empty booleanClauses");
@@ -604,6 +632,7 @@ final class PostgresQueryConverter {
 
                 if (!skip) {
                     StringBuilder values = null;
+                    List<Object> valueParams = null;
                     int valueCount = 0;
                     int initialIndex = index;
 
@@ -621,21 +650,17 @@ final class PostgresQueryConverter {
                         }
 
                         if (values == null) {
-                            values = new StringBuilder(q.term.matchValue.length()
-                                    + next.term.matchValue.length() + 10);
-                            values.append('\'')
-                                    .append(escapeSqlString(
-                                            isCaseInsensitive ? q.term.matchValue.toLowerCase()
-                                                    : q.term.matchValue))
-                                    .append('\'');
+                            values = new StringBuilder();
+                            valueParams = new ArrayList<>();
+                            values.append('?');
+                            valueParams.add(isCaseInsensitive ? q.term.matchValue.toLowerCase()
+                                    : q.term.matchValue);
                             valueCount = 1;
                         }
 
-                        values.append(',').append('\'')
-                                .append(escapeSqlString(
-                                        isCaseInsensitive ? next.term.matchValue.toLowerCase()
-                                                : next.term.matchValue))
-                                .append('\'');
+                        values.append(",?");
+                        valueParams.add(isCaseInsensitive ? next.term.matchValue.toLowerCase()
+                                : next.term.matchValue);
                         valueCount++;
                         index++;
                     } while (index + 1 < len);
@@ -649,14 +674,15 @@ final class PostgresQueryConverter {
                             switch (q.occurance) {
                             case MUST_NOT_OCCUR:
                             case SHOULD_OCCUR:
-                                condition = String.format("%s ?| ARRAY[%s]",
+                                condition = String.format("%s ??| ARRAY[%s]",
                                         wrapNativeField(q.term.propertyName, cd), values);
                                 break;
                             case MUST_OCCUR:
                             default:
-                                condition = String.format("%s ?& ARRAY[%s]",
+                                condition = String.format("%s ??& ARRAY[%s]",
                                         wrapNativeField(q.term.propertyName, cd), values);
                             }
+                            params.addAll(valueParams);
                         } else {
                             String stringField = wrapStringField(q.term.propertyName, cd);
                             if (isCaseInsensitive) {
@@ -667,6 +693,7 @@ final class PostgresQueryConverter {
                             case SHOULD_OCCUR:
                                 condition = String.format("%s = ANY(ARRAY[%s])", stringField,
                                         values);
+                                params.addAll(valueParams);
                                 break;
                             case MUST_OCCUR:
                             default:
@@ -677,6 +704,7 @@ final class PostgresQueryConverter {
                                         condition = String
                                                 .format("%s @> ARRAY[%s]", stringField, values);
                                     }
+                                    params.addAll(valueParams);
                                 } else {
                                     // This should not happen, value equals to different values
                                     condition = SQL_FALSE;
@@ -690,7 +718,7 @@ final class PostgresQueryConverter {
                 }
             }
 
-            convertToPostgresQuery(sb, index == 0, q, context, td);
+            convertToPostgresQuery(sb, index == 0, q, context, td, params);
         }
         if (query.occurance == Occurance.MUST_NOT_OCCUR) {
             sb.append(", FALSE");
@@ -843,7 +871,7 @@ final class PostgresQueryConverter {
     }
 
     private static String createLongRangeQuery(String propertyName, QueryTask.NumericRange<?> range,
-            ColumnDescription cd) {
+            ColumnDescription cd, List<Object> params) {
         // The range query constructed below is based-off
         // lucene documentation as per the link:
         // https://lucene.apache.org/core/6_0_0/core/org/apache/lucene/document/LongPoint.html
@@ -858,7 +886,8 @@ final class PostgresQueryConverter {
 
         String intField = wrapField(propertyName, cd, "bigint");
         if (min == max) {
-            return String.format("%s = %d", intField, max);
+            params.add(max);
+            return String.format("%s = ?", intField);
         }
         if (min > max) {
             // TODO: Why need to swap while using BETWEEN?
@@ -866,12 +895,14 @@ final class PostgresQueryConverter {
             min = max;
             max = t;
         }
-        return String.format("%s BETWEEN %d AND %d", intField, min, max);
+        params.add(min);
+        params.add(max);
+        return String.format("%s BETWEEN ? AND ?", intField);
     }
 
     private static String createDoubleRangeQuery(String propertyName,
             QueryTask.NumericRange<?> range,
-            ColumnDescription cd) {
+            ColumnDescription cd, List<Object> params) {
         if (range.min == null && range.max == null) {
             return SQL_TRUE;
         }
@@ -888,7 +919,8 @@ final class PostgresQueryConverter {
         }
         String numericField = wrapField(propertyName, cd, "numeric");
         if (min == max) {
-            return String.format("%s = %s", numericField, max);
+            params.add(BigDecimal.valueOf(max));
+            return String.format("%s = ?", numericField);
         }
         if (min > max) {
             // TODO: Why need to swap while using BETWEEN?
@@ -898,12 +930,16 @@ final class PostgresQueryConverter {
         }
 
         if (min == Double.NEGATIVE_INFINITY) {
-            return String.format("%s <= %s", numericField, max);
+            params.add(BigDecimal.valueOf(max));
+            return String.format("%s <= ?", numericField);
         }
         if (max == Double.POSITIVE_INFINITY) {
-            return String.format("%s >= %s", numericField, min);
+            params.add(BigDecimal.valueOf(min));
+            return String.format("%s >= ?", numericField);
         }
-        return String.format("%s BETWEEN %s AND %s", numericField, min, max);
+        params.add(BigDecimal.valueOf(min));
+        params.add(BigDecimal.valueOf(max));
+        return String.format("%s BETWEEN ? AND ?", numericField);
     }
 
     static String escapeSqlString(String s) {
@@ -933,8 +969,7 @@ final class PostgresQueryConverter {
     }
 
     private static String escapeJsonString(String s) {
-        return s.replace("'", "''")
-                .replace("\\", "\\\\")
+        return s.replace("\\", "\\\\")
                 .replace("\"", "\\\"");
     }
 
@@ -1225,80 +1260,88 @@ final class PostgresQueryConverter {
         }
     }
 
-    static String buildPaginationClause(TableDescription td, List<String> sortFields,
-            JsonObject bottom) {
-        StringBuilder names = new StringBuilder();
-        StringBuilder values = new StringBuilder();
-        boolean ascending = true;
-
-        for (String field : sortFields) {
-            field = field.trim();
-            int i = field.lastIndexOf(' ');
-            String columnName = field.substring(0, i);
-            if (names.length() == 0) {
-                String order = field.substring(i + 1);
-                ascending = order.equals("ASC");
+    /**
+     * Builds the keyset condition which selects the rows following the row with the given sort
+     * key values, in the order of the given sort fields. The values are added to {@code params}.
+     *
+     * Postgres sorts null values last in ascending and first in descending order, the condition
+     * follows the same ordering. The sort fields are expected to end with a unique column, so
+     * every page can seek directly to its first row instead of skipping the previous pages.
+     */
+    static String buildKeysetClause(List<String> sortFields, Object[] after,
+            List<Object> params) {
+        int count = sortFields.size();
+        if (after == null || after.length != count) {
+            throw new IllegalArgumentException("Keyset values do not match sort fields");
+        }
+
+        String[] columns = new String[count];
+        boolean[] ascending = new boolean[count];
+        boolean isRowComparable = true;
+        for (int i = 0; i < count; i++) {
+            String field = sortFields.get(i).trim();
+            int index = field.lastIndexOf(' ');
+            columns[i] = field.substring(0, index);
+            ascending[i] = field.substring(index + 1).equals("ASC");
+            if (after[i] == null || ascending[i] != ascending[0]
+                    || !NOT_NULL_COLUMNS.contains(columns[i])) {
+                isRowComparable = false;
             }
+        }
 
-            String propertyName;
-            i = columnName.indexOf('\'');
-            if (i > 0) {
-                propertyName = columnName.substring(i + 1, field.lastIndexOf('\''));
-            } else {
-                propertyName = columnName;
+        StringBuilder sb = new StringBuilder();
+        if (isRowComparable) {
+            // Row comparison can use a composite index directly
+            StringJoiner names = new StringJoiner(",", "(", ")");
+            StringJoiner values = new StringJoiner(",", "(", ")");
+            for (int i = 0; i < count; i++) {
+                names.add(columns[i]);
+                values.add("?");
+                params.add(after[i]);
             }
+            return sb.append(names).append(ascending[0] ? " > " : " < ").append(values)
+                    .toString();
+        }
 
-            JsonElement value = null;
-            if (propertyName.startsWith("{") && propertyName.endsWith("}")) {
-                String[] list = propertyName.substring(1, propertyName.length() - 1)
-                        .split(",");
-                value = bottom;
-                for (String s : list) {
-                    if (!value.isJsonObject()) {
-                        value = null;
-                        break;
-                    }
-                    value = value.getAsJsonObject().get(s);
-                }
-            } else if (propertyName.startsWith("document")) {
-                for (Map.Entry<String, JsonElement> element : bottom.entrySet()) {
-                    if (element.getKey().equalsIgnoreCase(propertyName)) {
-                        value = element.getValue();
-                        break;
-                    }
+        // (c1 after v1) OR (c1 = v1 AND ((c2 after v2) OR (c2 = v2 AND ...)))
+        for (int i = 0; i < count; i++) {
+            boolean last = i == count - 1;
+            String column = columns[i];
+            Object value = after[i];
+            if (!last) {
+                sb.append('(');
+            }
+            if (ascending[i]) {
+                if (value == null) {
+                    sb.append(SQL_FALSE);
+                } else {
+                    sb.append('(').append(column).append(" > ? OR ").append(column)
+                            .append(" IS NULL)");
+                    params.add(value);
                 }
             } else {
-                value = bottom.get(propertyName);
-            }
-            if (value == null || value.isJsonNull() || !value.isJsonPrimitive()) {
-                // This should not happen
-                continue;
-            }
-            if (names.length() > 0) {
-                names.append(',');
-                values.append(',');
+                if (value == null) {
+                    sb.append(column).append(" IS NOT NULL");
+                } else {
+                    sb.append(column).append(" < ?");
+                    params.add(value);
+                }
             }
-
-            names.append(columnName);
-
-            if (!value.getAsJsonPrimitive().isNumber()) {
-                String strValue = value.getAsString();
-                ColumnDescription cd = PostgresQueryConverter.getColumnDescription(td,
-                        propertyName);
-                // Make sure to check against lowercase if property is case insensitive
-                if (isCaseInsensitive(cd) && strValue != null) {
-                    strValue = strValue.toLowerCase();
+            if (!last) {
+                sb.append(" OR (");
+                if (value == null) {
+                    sb.append(column).append(" IS NULL");
+                } else {
+                    sb.append(column).append(" = ?");
+                    params.add(value);
                 }
-                values.append('\'')
-                        .append(PostgresQueryConverter.escapeSqlString(strValue))
-                        .append('\'');
-            } else {
-                values.append(value.getAsString());
+                sb.append(" AND ");
             }
         }
-
-        // TODO: This will not work if additionalSortTerms is used with different sort order
-        return String.format("(%s) %s (%s)", names, ascending ? ">" : "<", values);
+        for (int i = 1; i < count; i++) {
+            sb.append("))");
+        }
+        return sb.toString();
     }
 
     static boolean isSqlFalse(String tq) {
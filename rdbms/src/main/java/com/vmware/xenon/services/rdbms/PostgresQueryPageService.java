@@ -49,7 +49,10 @@ final class PostgresQueryPageService extends StatelessService {
 
     public static class PostgresQueryPage {
         public String previousPageLink;
-        public String after;
+        /**
+         * Sort key values of the last document of the previous page
+         */
+        public Object[] after;
         public Integer groupOffset;
 
         public PostgresQueryPage(String link, int groupOffset) {
@@ -57,7 +60,7 @@ final class PostgresQueryPageService extends StatelessService {
             this.groupOffset = groupOffset;
         }
 
-        public PostgresQueryPage(String link, String after) {
+        public PostgresQueryPage(String link, Object[] after) {
             this.previousPageLink = link;
             this.after = after;
         }
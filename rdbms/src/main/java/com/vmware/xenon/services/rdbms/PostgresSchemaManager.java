@@ -12,8 +12,13 @@
 package com.vmware.xenon.services.rdbms;
 
 import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -559,6 +564,42 @@ public class PostgresSchemaManager {
         return this.tableDescPerDocumentKind.get(documentKind);
     }
 
+    /**
+     * Returns a checksum of the registered tables, their factory links, document kinds and columns
+     * with the column types and indexes, and of the given additional content. It changes whenever
+     * the schema the database is verified against changes.
+     */
+    public String getFingerprint(String... additionalContent) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        this.tableDescPerFactoryLink.values().stream()
+                .sorted(Comparator.comparing(TableDescription::getFactoryLink))
+                .forEach(td -> {
+                    updateDigest(digest, td.getTableName(), td.getFactoryLink(),
+                            td.getDocumentKind());
+                    td.getColumns().stream()
+                            .sorted(Comparator.comparing(ColumnDescription::getPropertyName))
+                            .forEach(cd -> updateDigest(digest, cd.getPropertyName(),
+                                    cd.getColumnName(), cd.getColumnType(),
+                                    cd.getIndexType()));
+                });
+        updateDigest(digest, additionalContent);
+
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private static void updateDigest(MessageDigest digest, String... values) {
+        for (String value : values) {
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+
     public PostgresLiquibaseSnapshot getSnapshot() {
         PostgresLiquibaseSnapshot snapshot = new PostgresLiquibaseSnapshot();
         snapshot.addTableDescriptions(getTableDescriptions());
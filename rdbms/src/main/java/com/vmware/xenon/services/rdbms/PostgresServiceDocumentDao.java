@@ -36,12 +36,19 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -55,6 +62,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 
+import com.vmware.xenon.common.NamedThreadFactory;
 import com.vmware.xenon.common.NodeSelectorService.SelectOwnerResponse;
 import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.Operation.AuthorizationContext;
@@ -84,6 +92,8 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
     private static final String RESOURCE_PER_DOCUMENT_TABLE_TEMPLATE = "sql/per_document_table_template.sql";
     private static final String SQL_TEMPLATE_VAR_TABLE_NAME = "\\$tableName";
 
+    private static final String SCHEMA_METADATA_TABLE_NAME = "xenon_schema_metadata";
+
     private boolean isDetailedLoggingEnabled = XenonConfiguration.bool(
             PostgresServiceDocumentDao.class,
             "isDetailedLoggingEnabled",
@@ -111,6 +121,18 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             "logSlowQueriesThresholdSeconds",
             0));
 
+    private static final int DOCUMENT_CACHE_SIZE = XenonConfiguration.integer(
+            PostgresServiceDocumentDao.class,
+            "documentCacheSize",
+            10000);
+
+    // When enabled, every cache hit is confirmed with a version check against the database, so
+    // updates from other nodes are never missed. Disable only when a single node writes the data.
+    private boolean isDocumentCacheVersionCheckEnabled = XenonConfiguration.bool(
+            PostgresServiceDocumentDao.class,
+            "isDocumentCacheVersionCheckEnabled",
+            true);
+
     private static final String DOCUMENTS_WITHOUT_RESULTS = "DocumentsWithoutResults";
 
     private static final String SQL_UPSERT;
@@ -147,16 +169,35 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
     private final Service service;
     private final DataSource ds;
     private final PostgresSchemaManager schemaManager;
+    private final PostgresDocumentCache documentCache;
+
+    // Tables known to exist, their creation is skipped when their factories start
+    private final Set<String> verifiedTableNames = ConcurrentHashMap.newKeySet();
 
     // Used as a filename prefix when saving query information to filesystem. The time-based prefix
     // is used to avoid overriding files on node restart.
     private final long startTimeMillis = System.currentTimeMillis();
 
+    /**
+     * Pending document update, saved as part of a group commit.
+     */
+    static final class DocumentUpdate {
+        final ServiceDocument document;
+        final boolean forceIndexUpdate;
+
+        DocumentUpdate(ServiceDocument document, boolean forceIndexUpdate) {
+            this.document = document;
+            this.forceIndexUpdate = forceIndexUpdate;
+        }
+    }
+
     public PostgresServiceDocumentDao(ServiceHost host, Service service, DataSource ds) {
         this.host = host;
         this.service = service;
         this.ds = ds;
         this.schemaManager = new PostgresSchemaManager(host);
+        this.documentCache = DOCUMENT_CACHE_SIZE > 0
+                ? new PostgresDocumentCache(DOCUMENT_CACHE_SIZE) : null;
         registerMBeans();
     }
 
@@ -175,22 +216,122 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         this.schemaManager.addFactory(factoryLink, documentType, sdd);
 
         TableDescription desc = this.schemaManager.getTableDescriptionForFactoryLink(factoryLink);
-        if (desc != null) {
+        if (desc != null && !this.verifiedTableNames.contains(desc.getTableName())) {
             ensureTableExists(desc);
         }
     }
 
-    private void ensureTableExists(TableDescription desc) {
-        // load the create table SQL statement template
-        String sqlCreateTableTemplate;
+    /**
+     * Creates the tables which do not exist yet, running the statements of up to the given number
+     * of tables at a time, each on its own connection.
+     */
+    void ensureTablesExist(Collection<TableDescription> tables, int threadCount) {
+        if (tables.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threadCount, tables.size())),
+                new NamedThreadFactory("postgres-schema-verification"));
         try {
-            sqlCreateTableTemplate = PostgresHostUtils.getResourceAsString(
+            List<Future<?>> futures = tables.stream()
+                    .map(desc -> executor.submit(() -> ensureTableExists(desc)))
+                    .collect(Collectors.toList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Marks the given tables as existing, they are not created when their factories start.
+     */
+    void markTablesVerified(Collection<String> tableNames) {
+        this.verifiedTableNames.addAll(tableNames);
+    }
+
+    static String getCreateTableTemplate() {
+        try {
+            return PostgresHostUtils.getResourceAsString(
                     PostgresServiceDocumentDao.class.getClassLoader(),
                     RESOURCE_PER_DOCUMENT_TABLE_TEMPLATE);
         } catch (IOException e) {
             logger.severe(() -> String.format("Error reading SQL resource: %s", e));
             throw new AssertionError(e);
         }
+    }
+
+    /**
+     * Returns the schema fingerprint stored with the given name, or {@code null} if there is none.
+     */
+    String readSchemaFingerprint(String name) {
+        ensureSchemaMetadataTableExists();
+
+        String sql = String.format("SELECT fingerprint FROM %s WHERE name = ?",
+                SCHEMA_METADATA_TABLE_NAME);
+        try (Connection conn = this.ds.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            logger.warning(() -> String.format("Cannot read schema fingerprint %s: %s", name,
+                    e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given schema fingerprint, once the schema of the database is verified against
+     * it.
+     */
+    void writeSchemaFingerprint(String name, String fingerprint) {
+        ensureSchemaMetadataTableExists();
+
+        String sql = String.format("INSERT INTO %s (name, fingerprint, updatetimemicros) "
+                + "VALUES (?, ?, ?) ON CONFLICT (name) DO UPDATE SET "
+                + "(fingerprint, updatetimemicros) = (excluded.fingerprint, "
+                + "excluded.updatetimemicros)", SCHEMA_METADATA_TABLE_NAME);
+        try (Connection conn = this.ds.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            stmt.setString(2, fingerprint);
+            stmt.setLong(3, Utils.getSystemNowMicrosUtc());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            // the schema is verified again on the next start
+            logger.warning(() -> String.format("Cannot store schema fingerprint %s: %s", name,
+                    e.getMessage()));
+        }
+    }
+
+    private void ensureSchemaMetadataTableExists() {
+        String sql = String.format("CREATE TABLE IF NOT EXISTS %s (name text PRIMARY KEY, "
+                + "fingerprint text NOT NULL, updatetimemicros bigint)",
+                SCHEMA_METADATA_TABLE_NAME);
+        try (Connection conn = this.ds.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        } catch (SQLException e) {
+            // created concurrently by another node, or failing reads and writes are reported
+            logger.fine(() -> String.format("Cannot create table %s: %s",
+                    SCHEMA_METADATA_TABLE_NAME, e.getMessage()));
+        }
+    }
+
+    private void ensureTableExists(TableDescription desc) {
+        // load the create table SQL statement template
+        String sqlCreateTableTemplate = getCreateTableTemplate();
 
         // replace the table name into the template
         String tableName = desc.getTableName();
@@ -204,11 +345,13 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
 
             logger.info(() -> String.format("Created table %s, response code: %s",
                     tableName, response));
+            this.verifiedTableNames.add(tableName);
         } catch (SQLException e) {
             if (e.getMessage().contains("already exists") || e.getMessage()
                     .contains("pg_type_typname_nsp_index")) {
                 logger.info(() -> String.format("Table %s seems to already exist: %s", tableName,
                         e));
+                this.verifiedTableNames.add(tableName);
             } else {
                 logger.severe(() -> String.format("Cannot create table %s: %s",
                         tableName, e.getMessage()));
@@ -229,6 +372,9 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
      * will be filtered given the REAL latest version, not the latest version subject to the
      * resource group query. This means older versions of a document will NOT appear in the query
      * result if the user is not authorized to see the newer version.
+     *
+     * Loaded documents are kept in a read-through cache. A cached document is returned only if
+     * the version stored in the database still matches, unless the version check is disabled.
      */
     public ServiceDocument loadDocument(String selfLink) throws SQLException {
         TableDescription tableDescription = this.schemaManager
@@ -239,24 +385,62 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             return null;
         }
 
-        String sql = String
-                .format("SELECT data FROM %s WHERE documentselflink = ? AND (documentexpirationtimemicros = 0 OR documentexpirationtimemicros > ?)",
-                        tableDescription.getTableName());
+        ServiceDocument cached = null;
+        long cacheGeneration = 0;
+        if (this.documentCache != null) {
+            cacheGeneration = this.documentCache.getGeneration(selfLink);
+            cached = this.documentCache.get(selfLink);
+            if (cached != null && !this.isDocumentCacheVersionCheckEnabled) {
+                if (hasExpired(cached.documentExpirationTimeMicros)) {
+                    this.documentCache.invalidate(selfLink);
+                    return null;
+                }
+                this.documentCache.recordHit();
+                return Utils.clone(cached);
+            }
+        }
+
+        String sql;
+        if (cached != null) {
+            // skip transferring and parsing the document if the cached version is current
+            sql = String.format("SELECT CASE WHEN documentversion = ? AND documentupdatetimemicros = ? THEN NULL ELSE data END FROM %s WHERE documentselflink = ? AND (documentexpirationtimemicros = 0 OR documentexpirationtimemicros > ?)",
+                    tableDescription.getTableName());
+        } else {
+            sql = String.format("SELECT data FROM %s WHERE documentselflink = ? AND (documentexpirationtimemicros = 0 OR documentexpirationtimemicros > ?)",
+                    tableDescription.getTableName());
+        }
 
         PostgresDocumentStoredFieldVisitor visitor;
         try (Connection conn = this.ds.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, selfLink);
-            stmt.setLong(2, Utils.getSystemNowMicrosUtc());
+            int i = 1;
+            if (cached != null) {
+                stmt.setLong(i++, cached.documentVersion);
+                stmt.setLong(i++, cached.documentUpdateTimeMicros);
+            }
+            stmt.setString(i++, selfLink);
+            stmt.setLong(i, Utils.getSystemNowMicrosUtc());
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (!rs.next()) {
+                    if (cached != null) {
+                        this.documentCache.invalidate(selfLink);
+                    }
                     if (isDetailedLoggingEnabled) {
                         logger.info(String.format("SQL loadDocument NOT FOUND: %s", selfLink));
                     }
                     return null;
                 }
 
+                if (cached != null && rs.getString(1) == null) {
+                    this.documentCache.recordHit();
+                    if (isDetailedLoggingEnabled) {
+                        logger.info(String.format("SQL loadDocument CACHED: %s : ver=%d",
+                                selfLink, cached.documentVersion));
+                    }
+                    return Utils.clone(cached);
+                }
+
                 visitor = new PostgresDocumentStoredFieldVisitor();
                 loadDoc(visitor, rs);
 
@@ -271,29 +455,36 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         }
 
         Long expiration = visitor.documentExpirationTimeMicros;
-        boolean hasExpired = expiration != null
-                && expiration != 0
-                && expiration <= Utils.getSystemNowMicrosUtc();
-
-        if (hasExpired) {
+        if (expiration != null && hasExpired(expiration)) {
             return null;
         }
 
-        return getStateFromPostgresDocument(tableDescription, visitor, selfLink);
+        ServiceDocument state = getStateFromPostgresDocument(tableDescription, visitor, selfLink);
+        if (this.documentCache != null && state != null) {
+            this.documentCache.recordMiss();
+            this.documentCache.put(Utils.clone(state), cacheGeneration);
+        }
+        return state;
+    }
+
+    private static boolean hasExpired(long expirationTimeMicros) {
+        return expirationTimeMicros != 0
+                && expirationTimeMicros <= Utils.getSystemNowMicrosUtc();
+    }
+
+    private void invalidateCachedDocument(String documentSelfLink) {
+        if (this.documentCache != null) {
+            this.documentCache.invalidate(documentSelfLink);
+        }
     }
 
     public void saveDocument(ServiceDocument sd, ServiceDocumentDescription sdd,
             boolean forceIndexUpdate) throws SQLException {
-        String tableName = this.schemaManager.getTableNameForDocumentSelfLink(sd.documentSelfLink);
-        if (tableName == null) {
-            throw new IllegalArgumentException("Cannot determine SQL table name for document: "
-                    + sd.documentSelfLink);
-        }
+        String tableName = getTableNameForSave(sd);
 
         // Delete document if action is DELETE and soft delete is disabled
         // TODO: Need to check behavior when upset is after DELETE and not using soft delete
-        boolean delete = Action.DELETE.name().equals(sd.documentUpdateAction)
-                && !this.isSoftDeleteEnabled;
+        boolean delete = isHardDelete(sd);
 
         if (delete) {
             // SQL DELETE
@@ -313,6 +504,8 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
                                 sd.documentSelfLink, sd.documentVersion, sd.documentOwner,
                                 Utils.toString(e)));
                 throw e;
+            } finally {
+                invalidateCachedDocument(sd.documentSelfLink);
             }
             return;
         }
@@ -322,6 +515,150 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         // non-forced index update operations
         String sql = String.format(forceIndexUpdate ? SQL_UPSERT_FORCE_UPDATE : SQL_UPSERT,
                 tableName);
+
+        try (Connection conn = this.ds.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bindUpsert(stmt, sd);
+
+            logUpsertResult(sd, tableName, stmt.executeUpdate());
+        } catch (Exception e) {
+            logger.severe(String.format("Failed SQL upsert: %s : ver=%s documentOwner=%s : %s",
+                    sd.documentSelfLink, sd.documentVersion, sd.documentOwner, Utils.toString(e)));
+            throw e;
+        } finally {
+            invalidateCachedDocument(sd.documentSelfLink);
+        }
+    }
+
+    /**
+     * Saves a group of documents in a single transaction, using one JDBC batch per table and
+     * statement. Updates to the same table are applied in the given order.
+     *
+     * Either all documents are stored or none of them. On any failure the transaction is rolled
+     * back and the exception is rethrown. Callers can retry the documents one by one with
+     * {@link #saveDocument(ServiceDocument, ServiceDocumentDescription, boolean)} after any
+     * failure, to find the offending documents.
+     */
+    public void saveDocuments(List<DocumentUpdate> updates) throws SQLException {
+        Map<String, List<DocumentUpdate>> updatesByTable = new LinkedHashMap<>();
+        for (DocumentUpdate update : updates) {
+            String tableName = getTableNameForSave(update.document);
+            updatesByTable.computeIfAbsent(tableName, k -> new ArrayList<>()).add(update);
+        }
+
+        try (Connection conn = this.ds.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Entry<String, List<DocumentUpdate>> e : updatesByTable.entrySet()) {
+                    saveDocumentsForTable(conn, e.getKey(), e.getValue());
+                }
+                conn.commit();
+            } catch (Throwable e) {
+                // roll back on any failure, also on errors binding the documents, so that the
+                // connection is never returned, or its transaction committed by the
+                // setAutoCommit below, with a part of the batch applied
+                logger.severe(String.format("Failed SQL batch save of %d documents: %s",
+                        updates.size(), Utils.toString(e)));
+                try {
+                    conn.rollback();
+                } catch (Exception ignore) {
+                    // Ignore
+                }
+                throw e;
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (Exception ignore) {
+                    // Ignore
+                }
+                for (DocumentUpdate update : updates) {
+                    invalidateCachedDocument(update.document.documentSelfLink);
+                }
+            }
+        }
+    }
+
+    private void saveDocumentsForTable(Connection conn, String tableName,
+            List<DocumentUpdate> updates) throws SQLException {
+        String currentSql = null;
+        PreparedStatement stmt = null;
+        List<DocumentUpdate> batch = new ArrayList<>();
+        try {
+            for (DocumentUpdate update : updates) {
+                ServiceDocument sd = update.document;
+                boolean delete = isHardDelete(sd);
+                String sql;
+                if (delete) {
+                    sql = String.format("DELETE FROM %s WHERE documentselflink = ?", tableName);
+                } else {
+                    sql = String.format(update.forceIndexUpdate ? SQL_UPSERT_FORCE_UPDATE
+                            : SQL_UPSERT, tableName);
+                }
+
+                // Keep the order of updates by flushing the pending batch whenever the
+                // statement changes
+                if (!sql.equals(currentSql)) {
+                    if (stmt != null) {
+                        executeSaveBatch(stmt, tableName, batch);
+                        stmt.close();
+                    }
+                    stmt = conn.prepareStatement(sql);
+                    currentSql = sql;
+                }
+
+                if (delete) {
+                    stmt.setString(1, sd.documentSelfLink);
+                } else {
+                    bindUpsert(stmt, sd);
+                }
+                stmt.addBatch();
+                batch.add(update);
+            }
+
+            if (stmt != null) {
+                executeSaveBatch(stmt, tableName, batch);
+            }
+        } finally {
+            if (stmt != null) {
+                stmt.close();
+            }
+        }
+    }
+
+    private void executeSaveBatch(PreparedStatement stmt, String tableName,
+            List<DocumentUpdate> batch) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int[] results = stmt.executeBatch();
+        for (int i = 0; i < results.length && i < batch.size(); i++) {
+            ServiceDocument sd = batch.get(i).document;
+            if (isHardDelete(sd)) {
+                if (isDetailedLoggingEnabled) {
+                    logger.info(String.format("SQL delete: %s : ver=%s documentOwner=%s",
+                            sd.documentSelfLink, sd.documentVersion, sd.documentOwner));
+                }
+                continue;
+            }
+            logUpsertResult(sd, tableName, results[i]);
+        }
+        batch.clear();
+    }
+
+    private String getTableNameForSave(ServiceDocument sd) {
+        String tableName = this.schemaManager.getTableNameForDocumentSelfLink(sd.documentSelfLink);
+        if (tableName == null) {
+            throw new IllegalArgumentException("Cannot determine SQL table name for document: "
+                    + sd.documentSelfLink);
+        }
+        return tableName;
+    }
+
+    private boolean isHardDelete(ServiceDocument sd) {
+        return Action.DELETE.name().equals(sd.documentUpdateAction) && !this.isSoftDeleteEnabled;
+    }
+
+    private void bindUpsert(PreparedStatement stmt, ServiceDocument sd) throws SQLException {
         String json = Utils.toJson(sd);
 
         // Calling Utils.getBuilder() to make sure to trim large buffers from staying in the
@@ -331,33 +668,28 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             Utils.getBuilder();
         }
 
-        try (Connection conn = this.ds.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, json);
-            stmt.setString(2, sd.documentSelfLink);
-            stmt.setLong(3, sd.documentVersion);
-            stmt.setString(4, sd.documentKind);
-            stmt.setLong(5, sd.documentExpirationTimeMicros);
-            stmt.setLong(6, sd.documentUpdateTimeMicros);
-            stmt.setString(7, sd.documentTransactionId);
-            stmt.setString(8, sd.documentAuthPrincipalLink);
-            stmt.setString(9, sd.documentUpdateAction);
-
-            if (stmt.executeUpdate() == 0) {
-                // TODO: Fail operation?
-                logger.log(Level.WARNING, String.format(
-                        "Ignored SQL upsert: %s : ver=%s documentOwner=%s : most probably a newer version is already stored",
-                        sd.documentSelfLink, sd.documentVersion, sd.documentOwner));
-            } else if (isDetailedLoggingEnabled) {
-                logger.info(String.format(
-                        "SQL upsert: %s : ver=%s documentOwner=%s documentExpirationTimeMicros=%s table=%s",
-                        sd.documentSelfLink, sd.documentVersion, sd.documentOwner,
-                        sd.documentExpirationTimeMicros, tableName));
-            }
-        } catch (Exception e) {
-            logger.severe(String.format("Failed SQL upsert: %s : ver=%s documentOwner=%s : %s",
-                    sd.documentSelfLink, sd.documentVersion, sd.documentOwner, Utils.toString(e)));
-            throw e;
+        stmt.setString(1, json);
+        stmt.setString(2, sd.documentSelfLink);
+        stmt.setLong(3, sd.documentVersion);
+        stmt.setString(4, sd.documentKind);
+        stmt.setLong(5, sd.documentExpirationTimeMicros);
+        stmt.setLong(6, sd.documentUpdateTimeMicros);
+        stmt.setString(7, sd.documentTransactionId);
+        stmt.setString(8, sd.documentAuthPrincipalLink);
+        stmt.setString(9, sd.documentUpdateAction);
+    }
+
+    private void logUpsertResult(ServiceDocument sd, String tableName, int rows) {
+        if (rows == 0) {
+            // TODO: Fail operation?
+            logger.log(Level.WARNING, String.format(
+                    "Ignored SQL upsert: %s : ver=%s documentOwner=%s : most probably a newer version is already stored",
+                    sd.documentSelfLink, sd.documentVersion, sd.documentOwner));
+        } else if (isDetailedLoggingEnabled) {
+            logger.info(String.format(
+                    "SQL upsert: %s : ver=%s documentOwner=%s documentExpirationTimeMicros=%s table=%s",
+                    sd.documentSelfLink, sd.documentVersion, sd.documentOwner,
+                    sd.documentExpirationTimeMicros, tableName));
         }
     }
 
@@ -375,9 +707,60 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             logger.severe(String.format("Failed SQL delete: %s from %s : %s", documentSelfLink,
                     tableName, e));
             throw e;
+        } finally {
+            invalidateCachedDocument(documentSelfLink);
         }
     }
 
+    /**
+     * Deletes up to {@code limit} documents of the table which expired at {@code now} with a
+     * single statement, and returns their last states by self link. The state is null if it can
+     * not be deserialized. Rows locked by a concurrent update are skipped, they will expire with
+     * a later chunk.
+     */
+    Map<String, ServiceDocument> deleteExpiredDocuments(TableDescription tableDescription,
+            long now, int limit) throws SQLException {
+        String tableName = tableDescription.getTableName();
+        String sql = String.format("DELETE FROM %1$s WHERE documentselflink IN "
+                + "(SELECT documentselflink FROM %1$s WHERE documentexpirationtimemicros BETWEEN 1 AND ? "
+                + "ORDER BY documentexpirationtimemicros LIMIT ? FOR UPDATE SKIP LOCKED) "
+                + "RETURNING data", tableName);
+
+        Map<String, ServiceDocument> documents = new LinkedHashMap<>();
+        try (Connection conn = this.ds.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, now);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                PostgresDocumentStoredFieldVisitor visitor = new PostgresDocumentStoredFieldVisitor();
+                while (rs.next()) {
+                    visitor.reset();
+                    loadDoc(visitor, rs);
+                    String documentSelfLink = visitor.documentSelfLink;
+                    ServiceDocument state = null;
+                    try {
+                        state = getStateFromPostgresDocument(tableDescription, visitor,
+                                documentSelfLink);
+                    } catch (Exception e) {
+                        logger.warning(String.format("Error getting state for %s: %s",
+                                documentSelfLink, e));
+                    }
+                    documents.put(documentSelfLink, state);
+                }
+            }
+            if (isDetailedLoggingEnabled) {
+                logger.info(() -> String.format("SQL delete expired: %s, rows=%d", tableName,
+                        documents.size()));
+            }
+        } catch (SQLException e) {
+            logger.severe(String.format("Failed SQL delete expired: %s : %s", tableName, e));
+            throw e;
+        } finally {
+            documents.keySet().forEach(this::invalidateCachedDocument);
+        }
+        return documents;
+    }
+
     @SuppressWarnings("unchecked")
     public ServiceDocumentQueryResult queryDocuments(Operation op, QueryTask task)
             throws Exception {
@@ -489,11 +872,10 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         int groupLimit = qs.groupResultLimit != null ? qs.groupResultLimit
                 : PostgresDocumentIndexService.queryResultLimit;
 
+        List<Object> params = new ArrayList<>();
         if (tables.size() == 1) {
             TableDescription td = tables.iterator().next();
-            String where = tq != null ? tq
-                    : PostgresQueryConverter.convert(qs.query, qs.context, td);
-            where = updateQuery(op, td, where, startTimeMillis, qs, true);
+            String where = buildWhereClause(op, td, tq, startTimeMillis, qs, true, params);
             if (where == null) {
                 return rsp;
             }
@@ -507,9 +889,8 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         } else {
             Collection<String> tableSelects = tables.stream()
                     .map(td -> {
-                        String where = tq != null ? tq
-                                : PostgresQueryConverter.convert(qs.query, qs.context, td);
-                        where = updateQuery(op, td, where, startTimeMillis, qs, true);
+                        String where = buildWhereClause(op, td, tq, startTimeMillis, qs, true,
+                                params);
                         if (where == null) {
                             return null;
                         }
@@ -540,11 +921,12 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         long queryTime;
         try (Connection conn = this.ds.getConnection()) {
             conn.setAutoCommit(false);
-            try (Statement st = conn.createStatement()) {
+            try (PreparedStatement st = conn.prepareStatement(sql)) {
+                bindParameters(st, params);
                 // Turn use of the cursor on.
                 st.setFetchSize(FETCH_SIZE);
                 long startMillis = System.currentTimeMillis();
-                try (ResultSet rs = st.executeQuery(sql)) {
+                try (ResultSet rs = st.executeQuery()) {
                     queryTime = System.currentTimeMillis() - startMillis;
                     if (isDetailedLoggingEnabled) {
                         logger.info(String.format("SQL query execution time: %d ms", queryTime));
@@ -627,13 +1009,13 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
                     String.format("Group query result: %s", rsp.nextPageLinksPerGroup.keySet()));
         }
 
-        logQuery(op, rsp, qs, sql, queryTime);
+        logQuery(op, rsp, qs, sql, params, queryTime);
 
         return rsp;
     }
 
     private void logQuery(Operation op, ServiceDocumentQueryResult rsp, QuerySpecification qs,
-            String sql, long queryTime) {
+            String sql, List<Object> params, long queryTime) {
         if (isDebugQuery()) {
             appendDebugInfo(op,
                     "ExecuteQuery time ms: " + queryTime, null,
@@ -641,7 +1023,8 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
                     "Total query time ms: " + TimeUnit.MICROSECONDS.toMillis(rsp.queryTimeMicros),
                     null,
                     "QuerySpecification", Utils.toJsonHtml(qs),
-                    "SQL", prettySqlStatement(sql));
+                    "SQL", prettySqlStatement(sql),
+                    "SQL parameters", params.toString());
         }
 
         // Log slow queries
@@ -654,6 +1037,7 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             map.put("executeQueryTimeMillis", queryTime);
             map.put("documentCount", rsp.documentCount);
             map.put("sql", sql);
+            map.put("parameters", params);
             map.put("querySpecification", qs);
 
             logger.warning(String.format("Slow SQL Query, %d ms: %s", totalQueryTimeMillis,
@@ -798,21 +1182,26 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
      *
      * If no query needs to be executed return null
      *
+     * The values of the returned condition are added to {@code params}, {@code tqParams} holds
+     * the values of the user-specified query.
+     *
      * @return Augmented query.
      */
-    private String updateQuery(Operation op, TableDescription td, String tq, long now,
-            QuerySpecification qs, boolean forceIncludeDeleted) {
+    private String updateQuery(Operation op, TableDescription td, String tq,
+            List<Object> tqParams, long now, QuerySpecification qs, boolean forceIncludeDeleted,
+            List<Object> params) {
         if (isSqlFalse(tq)) {
             return null;
         }
 
         StringBuilder sb = new StringBuilder();
+        List<Object> sbParams = new ArrayList<>();
         if (!forceIncludeDeleted && !qs.options.contains(QueryOption.INCLUDE_DELETED)
                 && !qs.options.contains(QueryOption.INCLUDE_ALL_VERSIONS)) {
             sb.append("documentupdateaction in ('POST','PATCH','PUT')");
-            sb.append(String.format(
-                    " AND (documentexpirationtimemicros = 0 OR documentexpirationtimemicros > %d)",
-                    now));
+            sb.append(
+                    " AND (documentexpirationtimemicros = 0 OR documentexpirationtimemicros > ?)");
+            sbParams.add(now);
         }
 
         if (qs.options.contains(QueryOption.TIME_SNAPSHOT)
@@ -821,8 +1210,8 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             if (sb.length() > 0) {
                 sb.append(" AND ");
             }
-            sb.append(String.format("documentupdatetimemicros <= %d",
-                    qs.timeSnapshotBoundaryMicros));
+            sb.append("documentupdatetimemicros <= ?");
+            sbParams.add(qs.timeSnapshotBoundaryMicros);
         }
 
         if (this.host.isAuthorizationEnabled()) {
@@ -843,7 +1232,8 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
                 }
 
                 // Use first table for any needed property descriptions
-                String rq = PostgresQueryConverter.convert(resourceQuery, null, td);
+                List<Object> rqParams = new ArrayList<>();
+                String rq = PostgresQueryConverter.convert(resourceQuery, null, td, rqParams);
                 if (isSqlFalse(rq)) {
                     return null;
                 }
@@ -852,6 +1242,7 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
                         sb.append(" AND ");
                     }
                     sb.append(rq);
+                    sbParams.addAll(rqParams);
 
                     if (isDebugQuery()) {
                         appendDebugInfo(op,
@@ -862,25 +1253,50 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             }
         }
         if (sb.length() == 0) {
+            params.addAll(tqParams);
             return tq;
         }
+        params.addAll(sbParams);
         if (isSqlTrue(tq)) {
             return sb.toString();
         }
+        params.addAll(tqParams);
         return sb.toString() + " AND " + tq;
     }
 
+    /**
+     * Converts the query of the specification, or uses {@code tq} if set, for the given table
+     * and augments it using {@link #updateQuery}. The values of the returned condition are
+     * added to {@code params}.
+     */
+    private String buildWhereClause(Operation op, TableDescription td, String tq, long now,
+            QuerySpecification qs, boolean forceIncludeDeleted, List<Object> params) {
+        List<Object> tqParams = new ArrayList<>();
+        if (tq == null) {
+            tq = PostgresQueryConverter.convert(qs.query, qs.context, td, tqParams);
+        }
+        return updateQuery(op, td, tq, tqParams, now, qs, forceIncludeDeleted, params);
+    }
+
+    private static void bindParameters(PreparedStatement stmt, List<Object> params)
+            throws SQLException {
+        int index = 1;
+        for (Object param : params) {
+            stmt.setObject(index++, param);
+        }
+    }
+
     private ServiceDocumentQueryResult queryIndexCount(Operation op, QuerySpecification qs,
             Set<TableDescription> tables, String tq, long queryStartTimeMicros)
             throws SQLException {
         ServiceDocumentQueryResult response = new ServiceDocumentQueryResult();
+        List<Object> params = new ArrayList<>();
         String sql;
         if (tables.size() > 1) {
             String countClauses = String.join(" + ", tables.stream()
                     .map(td -> {
-                        String where = tq != null ? tq
-                                : PostgresQueryConverter.convert(qs.query, qs.context, td);
-                        where = updateQuery(op, td, where, queryStartTimeMicros, qs, false);
+                        String where = buildWhereClause(op, td, tq, queryStartTimeMicros, qs,
+                                false, params);
                         if (where == null) {
                             return null;
                         }
@@ -895,9 +1311,7 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             sql = String.format("SELECT %s", countClauses);
         } else {
             TableDescription td = tables.iterator().next();
-            String where = tq != null ? tq
-                    : PostgresQueryConverter.convert(qs.query, qs.context, td);
-            where = updateQuery(op, td, where, queryStartTimeMicros, qs, false);
+            String where = buildWhereClause(op, td, tq, queryStartTimeMicros, qs, false, params);
             if (where == null) {
                 return response;
             }
@@ -913,10 +1327,12 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         }
 
         try (Connection conn = this.ds.getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
-            rs.next();
-            response.documentCount = rs.getLong(1);
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bindParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                response.documentCount = rs.getLong(1);
+            }
         } catch (SQLException e) {
             logger.severe(() -> String.format("Failed SQL count: %s : %s",
                     prettySqlStatement(sql), Utils.toString(e)));
@@ -925,7 +1341,7 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
 
         response.queryTimeMicros = Utils.getNowMicrosUtc() - queryStartTimeMicros;
 
-        logQuery(op, response, qs, sql, response.queryTimeMicros);
+        logQuery(op, response, qs, sql, params, response.queryTimeMicros);
 
         if (isDetailedLoggingEnabled) {
             logger.info(() -> String.format("SQL count: %s : %s", response.documentCount,
@@ -945,7 +1361,7 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             options = EnumSet.noneOf(QueryOption.class);
         }
 
-        String after = null;
+        Object[] after = null;
         boolean useDirectSearch = options.contains(QueryOption.TOP_RESULTS);
         boolean hasExplicitLimit = count != Integer.MAX_VALUE;
         boolean isPaginatedQuery = hasExplicitLimit && !useDirectSearch;
@@ -1031,17 +1447,17 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             orderBy = "";
         }
 
+        List<Object> params = new ArrayList<>();
         if (tables.size() == 1) {
             TableDescription td = tables.iterator().next();
-            String where = tq != null ? tq
-                    : PostgresQueryConverter.convert(qs.query, qs.context, td);
-            where = updateQuery(op, td, where, queryStartTimeMicros, qs, false);
+            String where = buildWhereClause(op, td, tq, queryStartTimeMicros, qs, false, params);
             if (where == null) {
                 return rsp;
             }
 
             if (after != null) {
-                where += " AND " + after;
+                where += " AND " + PostgresQueryConverter.buildKeysetClause(sortFields, after,
+                        params);
             }
 
             if (!shouldProcessResults) {
@@ -1057,9 +1473,8 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         } else {
             Collection<String> tableSelects = tables.stream()
                     .map(td -> {
-                        String where = tq != null ? tq
-                                : PostgresQueryConverter.convert(qs.query, qs.context, td);
-                        where = updateQuery(op, td, where, queryStartTimeMicros, qs, false);
+                        String where = buildWhereClause(op, td, tq, queryStartTimeMicros, qs,
+                                false, params);
                         if (where == null) {
                             return null;
                         }
@@ -1076,7 +1491,10 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             if (!shouldProcessResults) {
                 sql = String.format("SELECT EXISTS (%s)", unionQuery);
             } else {
-                String where = after != null ? " WHERE " + after : "";
+                String where = after != null
+                        ? " WHERE " + PostgresQueryConverter.buildKeysetClause(sortFields, after,
+                                params)
+                        : "";
                 sql = String.format("SELECT %s FROM (%s) AS docs %s %s LIMIT %s",
                         fields, unionQuery, where, orderBy, hitCount);
                 if (offset > 0) {
@@ -1097,13 +1515,14 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             if (shouldProcessResults) {
                 conn.setAutoCommit(false);
             }
-            try (Statement st = conn.createStatement()) {
+            try (PreparedStatement st = conn.prepareStatement(sql)) {
+                bindParameters(st, params);
                 if (shouldProcessResults) {
                     // Turn use of the cursor on.
                     st.setFetchSize(FETCH_SIZE);
                 }
                 long startMillis = System.currentTimeMillis();
-                try (ResultSet rs = st.executeQuery(sql)) {
+                try (ResultSet rs = st.executeQuery()) {
                     queryTime = System.currentTimeMillis() - startMillis;
                     if (isDetailedLoggingEnabled) {
                         logger.info(String.format("SQL query execution time: %d ms", queryTime));
@@ -1118,10 +1537,11 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
                      * + totalHits + ", QuerySpec: " + Utils.toJson(qs)); } }
                      */
 
-                    JsonObject bottom = null;
+                    Object[] bottom = null;
                     if (shouldProcessResults) {
                         bottom = processQueryResults(qs, options, count, rsp, rs,
-                                queryStartTimeMicros, nodeSelectorLink, true);
+                                queryStartTimeMicros, nodeSelectorLink, true,
+                                sortFields != null ? sortFields.size() : 0);
                         if (hasOffset) {
                             offset += count;
                         }
@@ -1149,14 +1569,15 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
                         }
 
                         if (createNextPageLink) {
+                            // The next page seeks past the sort key of the last visited row, so
+                            // its cost does not depend on the number of previous pages. OFFSET
+                            // is only used until the first page has been read.
                             if (bottom != null) {
-                                after = PostgresQueryConverter
-                                        .buildPaginationClause(tables.iterator().next(), sortFields,
-                                                bottom);
+                                after = bottom;
                             }
                             rsp.nextPageLink = createNextPage(op, qs,
-                                    null, sortFields, !hasOffset ? after : null,
-                                    hasOffset ? offset : null, null,
+                                    null, sortFields, after,
+                                    after == null && hasOffset ? offset : null, null,
                                     expirationTimeMicros, indexLink, nodeSelectorLink, hasPage);
                         }
                     }
@@ -1179,7 +1600,7 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         rsp.queryTimeMicros = Utils.getNowMicrosUtc() - queryStartTimeMicros;
         rsp.documentCount = (long) rsp.documentLinks.size();
 
-        logQuery(op, rsp, qs, sql, queryTime);
+        logQuery(op, rsp, qs, sql, params, queryTime);
 
         return rsp;
     }
@@ -1192,7 +1613,7 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
     private String createNextPage(Operation op, QuerySpecification qs,
             String tq,
             List<String> sortFields,
-            String after,
+            Object[] after,
             Integer offset,
             Integer groupOffset,
             long expiration,
@@ -1280,13 +1701,17 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         return nextLink;
     }
 
-    private JsonObject processQueryResults(QuerySpecification qs, EnumSet<QueryOption> options,
+    /**
+     * Processes the query results and returns the sort key values of the last visited row. The
+     * sort key columns are expected to follow the data column.
+     */
+    private Object[] processQueryResults(QuerySpecification qs, EnumSet<QueryOption> options,
             int resultLimit, ServiceDocumentQueryResult rsp, ResultSet rs,
             long queryStartTimeMicros,
             String nodeSelectorPath,
-            boolean populateResponse) throws Exception {
+            boolean populateResponse, int sortKeyCount) throws Exception {
 
-        JsonObject lastDocVisited = null;
+        Object[] lastSortKeyVisited = null;
         final boolean hasCountOption = options.contains(QueryOption.COUNT);
 
         rsp.documentLinks.clear();
@@ -1311,7 +1736,12 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
             final String link = visitor.documentSelfLink;
             final String json = visitor.jsonSerializedState;
 
-            lastDocVisited = visitor.getAsJsonObject();
+            if (sortKeyCount > 0) {
+                lastSortKeyVisited = new Object[sortKeyCount];
+                for (int i = 0; i < sortKeyCount; i++) {
+                    lastSortKeyVisited[i] = rs.getObject(i + 2);
+                }
+            }
 
             if (hasCountOption || !populateResponse) {
                 // count unique instances of this link
@@ -1383,7 +1813,7 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         if (isDetailedLoggingEnabled) {
             logger.info(() -> String.format("Processed %s documents", rsp.documentCount));
         }
-        return lastDocVisited;
+        return lastSortKeyVisited;
     }
 
     private JsonObject toJsonObject(ServiceDocument state) {
@@ -1658,4 +2088,34 @@ final class PostgresServiceDocumentDao implements PostgresServiceDocumentDaoMXBe
         this.logSlowQueryThresholdMicros = TimeUnit.SECONDS.toMicros(seconds);
     }
 
+    public boolean isDocumentCacheVersionCheckEnabled() {
+        return this.isDocumentCacheVersionCheckEnabled;
+    }
+
+    public void setDocumentCacheVersionCheckEnabled(boolean enabled) {
+        this.isDocumentCacheVersionCheckEnabled = enabled;
+    }
+
+    public int getDocumentCacheSize() {
+        return this.documentCache != null ? this.documentCache.size() : 0;
+    }
+
+    public long getDocumentCacheHitCount() {
+        return this.documentCache != null ? this.documentCache.getHitCount() : 0;
+    }
+
+    public long getDocumentCacheMissCount() {
+        return this.documentCache != null ? this.documentCache.getMissCount() : 0;
+    }
+
+    public long getDocumentCacheEvictionCount() {
+        return this.documentCache != null ? this.documentCache.getEvictionCount() : 0;
+    }
+
+    public void clearDocumentCache() {
+        if (this.documentCache != null) {
+            this.documentCache.clear();
+        }
+    }
+
 }
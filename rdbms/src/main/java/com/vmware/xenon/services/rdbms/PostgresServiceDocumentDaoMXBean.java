@@ -19,4 +19,18 @@ public interface PostgresServiceDocumentDaoMXBean {
     long getLogSlowQueryThresholdSeconds();
 
     void setLogSlowQueryThresholdSeconds(long seconds);
+
+    boolean isDocumentCacheVersionCheckEnabled();
+
+    void setDocumentCacheVersionCheckEnabled(boolean enabled);
+
+    int getDocumentCacheSize();
+
+    long getDocumentCacheHitCount();
+
+    long getDocumentCacheMissCount();
+
+    long getDocumentCacheEvictionCount();
+
+    void clearDocumentCache();
 }
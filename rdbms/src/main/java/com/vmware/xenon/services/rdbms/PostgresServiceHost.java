@@ -11,7 +11,9 @@
 
 package com.vmware.xenon.services.rdbms;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.logging.Level;
 
 import javax.sql.DataSource;
@@ -42,6 +44,8 @@ public abstract class PostgresServiceHost extends ServiceHost {
             "liquibase/latest-snapshot.json";
     public static final String DEFAULT_CHANGELOG_RESOURCE_PATH = "liquibase/changelog.xml";
 
+    private static final String SCHEMA_FINGERPRINT_NAME = "document-tables";
+
     protected boolean enablePostgres = XenonConfiguration.bool(
             PostgresServiceHost.class,
             "enablePostgres",
@@ -77,6 +81,18 @@ public abstract class PostgresServiceHost extends ServiceHost {
             "enableClearCacheOnNodeGroupChange",
             true
     );
+    // Skips the verification of the registered schema when its fingerprint matches the one stored
+    // by the last successful verification
+    protected boolean enableSchemaFingerprint = XenonConfiguration.bool(
+            PostgresServiceHost.class,
+            "enableSchemaFingerprint",
+            false
+    );
+    protected int schemaVerificationThreadCount = XenonConfiguration.integer(
+            PostgresServiceHost.class,
+            "schemaVerificationThreadCount",
+            8
+    );
 
     private DataSource ds;
     private PostgresDocumentIndexService postgresDocumentIndexService;
@@ -137,7 +153,19 @@ public abstract class PostgresServiceHost extends ServiceHost {
             registerPostgresSchema(getPostgresSchemaManager());
         }
 
-        if (enableRegisterPostgresSchema && enableValidateLiquibaseSnapshot) {
+        String schemaFingerprint = null;
+        boolean schemaVerified = false;
+        if (enableRegisterPostgresSchema && enableSchemaFingerprint) {
+            schemaFingerprint = getSchemaFingerprint(getPostgresSchemaManager());
+            schemaVerified = schemaFingerprint.equals(this.postgresDocumentIndexService.getDao()
+                    .readSchemaFingerprint(SCHEMA_FINGERPRINT_NAME));
+            if (schemaVerified) {
+                log(Level.INFO, "Schema fingerprint %s matches, skipping schema verification",
+                        schemaFingerprint);
+            }
+        }
+
+        if (enableRegisterPostgresSchema && enableValidateLiquibaseSnapshot && !schemaVerified) {
             log(Level.INFO, "Validating Liquibase snapshot");
             boolean valid;
             try {
@@ -162,6 +190,22 @@ public abstract class PostgresServiceHost extends ServiceHost {
             log(Level.INFO, "Successful Liquibase update");
         }
 
+        if (enableRegisterPostgresSchema && createTableOnFactoryStart && enableSchemaFingerprint) {
+            PostgresSchemaManager sm = getPostgresSchemaManager();
+            if (schemaVerified) {
+                this.postgresDocumentIndexService.getDao().markTablesVerified(sm.getTableNames());
+            } else {
+                log(Level.INFO, "Verifying %d tables", sm.getTableNames().size());
+                this.postgresDocumentIndexService.getDao().ensureTablesExist(
+                        sm.getTableDescriptions(), this.schemaVerificationThreadCount);
+            }
+        }
+
+        if (schemaFingerprint != null && !schemaVerified) {
+            this.postgresDocumentIndexService.getDao().writeSchemaFingerprint(
+                    SCHEMA_FINGERPRINT_NAME, schemaFingerprint);
+        }
+
         // disable synchronization
         setPeerSynchronizationEnabled(false);
 
@@ -194,6 +238,22 @@ public abstract class PostgresServiceHost extends ServiceHost {
         return this.postgresDocumentIndexService;
     }
 
+    /**
+     * Returns the fingerprint of the registered schema, including everything the schema is
+     * verified against, so a change of any of it triggers the verification again.
+     */
+    protected String getSchemaFingerprint(PostgresSchemaManager schemaManager) {
+        List<String> content = new ArrayList<>();
+        content.add(PostgresServiceDocumentDao.getCreateTableTemplate());
+        content.add("createTableOnFactoryStart=" + this.createTableOnFactoryStart);
+        content.add("enableValidateLiquibaseSnapshot=" + this.enableValidateLiquibaseSnapshot);
+        if (this.enableValidateLiquibaseSnapshot) {
+            content.add(PostgresLiquibaseUtils.getLatestSnapshotAsJson(
+                    this.latestSnapshotResourcePath));
+        }
+        return schemaManager.getFingerprint(content.toArray(new String[0]));
+    }
+
     protected boolean validateLiquibaseSnapshot(PostgresSchemaManager schemaManager) throws Exception {
         return PostgresLiquibaseUtils.validateSnapshot(schemaManager.getSnapshot(),
                 this.latestSnapshotResourcePath, true);
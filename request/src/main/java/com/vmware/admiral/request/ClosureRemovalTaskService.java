@@ -95,7 +95,7 @@ public class ClosureRemovalTaskService extends
     private void removeResources(ClosureRemovalTaskState state, String subTaskLink) {
         if (subTaskLink == null) {
             // count 2 * resourceLinks (to keep track of each removal operation starting and ending)
-            createCounterSubTask(state, state.resourceLinks.size(),
+            createLocalCounterSubTask(state, state.resourceLinks.size(),
                     (link) -> removeResources(state, link));
             return;
         }
@@ -219,7 +219,7 @@ public class ContainerHostRemovalTaskService extends
                     TaskStage.STARTED, SubStage.SUSPENDED_HOSTS,
                     TaskStage.STARTED, SubStage.ERROR);
 
-            CounterSubTaskService.createSubTask(this, subTaskInitState,
+            CounterSubTaskService.createSubTask(this, subTaskInitState, true,
                     (link) -> disableContainerHosts(state, link));
             return;
         }
@@ -516,7 +516,8 @@ public class ContainerHostRemovalTaskService extends
             ArrayList<String> hostPortProfileLinks, String subTaskLink) {
         if (subTaskLink == null) {
             // create counter subtask to remove every host port profile. Go to REMOVED_PORT_PROFILES when complete
-            createCounterSubTask(state, hostPortProfileLinks.size(), SubStage.REMOVED_PORT_PROFILES,
+            createLocalCounterSubTask(state, hostPortProfileLinks.size(),
+                    SubStage.REMOVED_PORT_PROFILES,
                     (link) -> removePortProfiles(state, hostPortProfileLinks, link));
             return;
         }
@@ -536,7 +537,7 @@ public class ContainerHostRemovalTaskService extends
 
     private void removeHosts(ContainerHostRemovalTaskState state, String subTaskLink) {
         if (subTaskLink == null && !state.skipComputeHostRemoval) {
-            createCounterSubTask(state, state.resourceLinks.size(),
+            createLocalCounterSubTask(state, state.resourceLinks.size(),
                     (link) -> removeHosts(state, link));
             return;
         }
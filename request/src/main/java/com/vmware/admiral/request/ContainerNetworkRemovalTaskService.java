@@ -264,7 +264,7 @@ public class ContainerNetworkRemovalTaskService extends
     private void removeResources(ContainerNetworkRemovalTaskState state, String subTaskLink) {
         if (subTaskLink == null) {
             // count 2 * resourceLinks (to keep track of each removal operation starting and ending)
-            createCounterSubTask(state, state.resourceLinks.size(),
+            createLocalCounterSubTask(state, state.resourceLinks.size(),
                     (link) -> removeResources(state, link));
             return;
         }
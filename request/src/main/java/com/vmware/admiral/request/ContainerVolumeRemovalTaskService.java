@@ -249,7 +249,7 @@ public class ContainerVolumeRemovalTaskService extends
     private void removeResources(ContainerVolumeRemovalTaskState state, String subTaskLink) {
         if (subTaskLink == null) {
             // count 2 * resourceLinks (to keep track of each removal operation starting and ending)
-            createCounterSubTask(state, state.resourceLinks.size(),
+            createLocalCounterSubTask(state, state.resourceLinks.size(),
                     (link) -> removeResources(state, link));
             return;
         }
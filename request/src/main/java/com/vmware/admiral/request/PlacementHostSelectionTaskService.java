@@ -49,6 +49,7 @@ import com.vmware.admiral.request.allocation.filter.AffinityFilters;
 import com.vmware.admiral.request.allocation.filter.HostSelectionFilter;
 import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
 import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelectionFilterException;
+import com.vmware.admiral.request.allocation.filter.PlacementSnapshot;
 import com.vmware.admiral.service.common.AbstractTaskStatefulService;
 import com.vmware.admiral.service.common.ServiceTaskCallback.ServiceTaskCallbackResponse;
 import com.vmware.photon.controller.model.resources.ComputeDescriptionService.ComputeDescription;
@@ -288,6 +289,7 @@ public class PlacementHostSelectionTaskService
         return initHostSelectionMap;
     }
 
+    @SuppressWarnings("rawtypes")
     private void selection(final PlacementHostSelectionTaskState state,
             final ReservationComponentDescription description) {
         if (description == null) {
@@ -305,7 +307,11 @@ public class PlacementHostSelectionTaskService
         try {
             final AffinityFilters filters = AffinityFilters.build(getHost(),
                     description.getServiceDocument());
-            filter(state, filteredByMemory, filters.getQueue());
+            final Queue<HostSelectionFilter> queue = filters.getQueue();
+            final PlacementSnapshot snapshot = new PlacementSnapshot(getHost(),
+                    filteredByMemory.keySet());
+            queue.forEach(f -> f.setPlacementSnapshot(snapshot));
+            filter(state, filteredByMemory, queue);
         } catch (Exception e) {
             failTask(null, e);
         }
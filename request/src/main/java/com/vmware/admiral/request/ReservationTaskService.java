@@ -41,6 +41,7 @@ import com.vmware.admiral.compute.container.CompositeComponentRegistry;
 import com.vmware.admiral.compute.container.CompositeComponentRegistry.ComponentMeta;
 import com.vmware.admiral.compute.container.CompositeDescriptionFactoryService;
 import com.vmware.admiral.compute.container.CompositeDescriptionService.CompositeDescription;
+import com.vmware.admiral.compute.container.GroupResourcePlacementEscrowService;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.GroupResourcePlacementState;
 import com.vmware.admiral.compute.container.GroupResourcePlacementService.ResourcePlacementReservationRequest;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
@@ -516,8 +517,15 @@ public class ReservationTaskService
                 reservationRequest.resourceCount, reservationRequest.resourceDescriptionLink,
                 Service.getId(placementLink));
 
+        // in escrow mode the reservation is granted by the escrow of the node
+        String reservationLink = placementLink;
+        if (GroupResourcePlacementEscrowService.ENABLED) {
+            reservationRequest.groupResourcePlacementLink = placementLink;
+            reservationLink = GroupResourcePlacementEscrowService.SELF_LINK;
+        }
+
         sendRequest(Operation
-                .createPatch(this, placementLink)
+                .createPatch(this, reservationLink)
                 .setBody(reservationRequest)
                 .setCompletion((o, e) -> {
                     if (e != null) {
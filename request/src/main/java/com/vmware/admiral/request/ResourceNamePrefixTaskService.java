@@ -28,6 +28,7 @@ import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.service.common.AbstractTaskStatefulService;
 import com.vmware.admiral.service.common.DefaultSubStage;
+import com.vmware.admiral.service.common.ResourceNamePrefixRanges;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixRequest;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.NamePrefixResponse;
 import com.vmware.admiral.service.common.ResourceNamePrefixService.ResourceNamePrefixState;
@@ -134,6 +135,21 @@ public class ResourceNamePrefixTaskService
     private void requestResourceNamePrefix(ResourceNamePrefixTaskState state,
             String resourceNamePrefixLink, Iterator<String> iterator, boolean globalSearch) {
 
+        if (ResourceNamePrefixRanges.isEnabled()) {
+            ResourceNamePrefixRanges.getInstance(getHost())
+                    .getNamePrefixes(this, resourceNamePrefixLink, state.resourceCount)
+                    .whenComplete((prefixes, e) -> {
+                        if (e != null) {
+                            logWarning("Failure requesting resource name prefixes: %s. Retrying"
+                                    + " with the next one...", e.getMessage());
+                            selectResourceNamePrefix(state, iterator, globalSearch);
+                            return;
+                        }
+                        completeWithResourceNames(state, prefixes);
+                    });
+            return;
+        }
+
         NamePrefixRequest namePrefixRequest = new NamePrefixRequest();
         namePrefixRequest.resourceCount = state.resourceCount;
 
@@ -148,21 +164,24 @@ public class ResourceNamePrefixTaskService
                         return;
                     }
                     NamePrefixResponse response = o.getBody(NamePrefixResponse.class);
-                    Set<String> resourceNames = new LinkedHashSet<>(response.resourceNamePrefixes
-                            .size());
-                    for (String prefix : response.resourceNamePrefixes) {
-                        try {
-                            resourceNames.add(String.format(state.baseResourceNameFormat,
-                                    prefix));
-                        } catch (IllegalFormatException fe) {
-                            failTask("Failure formatting baseResourceNameFormat", fe);
-                            return;
-                        }
-                    }
-                    complete(DefaultSubStage.COMPLETED, s -> {
-                        s.resourceNames = resourceNames;
-                    });
+                    completeWithResourceNames(state, response.resourceNamePrefixes);
                 }));
     }
 
+    private void completeWithResourceNames(ResourceNamePrefixTaskState state,
+            List<String> prefixes) {
+        Set<String> resourceNames = new LinkedHashSet<>(prefixes.size());
+        for (String prefix : prefixes) {
+            try {
+                resourceNames.add(String.format(state.baseResourceNameFormat, prefix));
+            } catch (IllegalFormatException fe) {
+                failTask("Failure formatting baseResourceNameFormat", fe);
+                return;
+            }
+        }
+        complete(DefaultSubStage.COMPLETED, s -> {
+            s.resourceNames = resourceNames;
+        });
+    }
+
 }
@@ -18,12 +18,10 @@ import java.util.logging.Level;
 
 import com.vmware.admiral.common.util.QueryUtil;
 import com.vmware.admiral.common.util.ServiceDocumentQuery;
-import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
 import com.vmware.xenon.common.ServiceHost;
-import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.services.common.QueryTask;
 
 public abstract class BaseAffinityHostFilter
@@ -31,6 +29,7 @@ public abstract class BaseAffinityHostFilter
     protected final ServiceHost host;
     protected final String affinityPropertyName;
     protected Collection<String> affinityNames;
+    protected PlacementSnapshot placementSnapshot;
 
     protected BaseAffinityHostFilter(ServiceHost host, String affinityPropertyName) {
         this.host = host;
@@ -54,6 +53,11 @@ public abstract class BaseAffinityHostFilter
         findContainerDescriptions(state, hostSelectionMap, callback, getDescQuery());
     }
 
+    @Override
+    public void setPlacementSnapshot(PlacementSnapshot placementSnapshot) {
+        this.placementSnapshot = placementSnapshot;
+    }
+
     public Collection<String> getAffinity() {
         if (affinityNames == null) {
             affinityNames = getAffinityConstraints().keySet();
@@ -119,54 +123,44 @@ public abstract class BaseAffinityHostFilter
             final Map<String, HostSelection> initHostSelectionMap,
             final Map<String, DescName> containerDescLinksWithNames,
             final HostSelectionFilterCompletion callback) {
-        QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
-                ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK, UriUtils.buildUriPath(
-                        CompositeComponentFactoryService.SELF_LINK, state.contextId));
-        q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
-        QueryUtil.addExpandOption(q);
-
-        // Add componentDescriptions clause:
-        QueryUtil.addListValueClause(q,
-                ContainerState.FIELD_NAME_DESCRIPTION_LINK, containerDescLinksWithNames.keySet());
-
-        // Add computeHostLinks clause:
-        QueryUtil.addListValueClause(q,
-                ContainerState.FIELD_NAME_PARENT_LINK, initHostSelectionMap.keySet());
-
-        final Map<String, HostSelection> filteredHostSelectionMap = new HashMap<>();
-        new ServiceDocumentQuery<ContainerState>(host, ContainerState.class)
-                .query(q,
-                        (r) -> {
-                            if (r.hasException()) {
-                                host.log(
-                                        Level.WARNING,
-                                        "Exception while selecting containers with contextId [%s]. Error: [%s]",
-                                        state.contextId, r.getException().getMessage());
-                                callback.complete(null, r.getException());
-                            } else if (r.hasResult()) {
-                                final HostSelection hostSelection = initHostSelectionMap
-                                        .get(r.getResult().parentLink);
-                                filteredHostSelectionMap.put(r.getResult().parentLink,
-                                        hostSelection);
-                                final DescName descName = containerDescLinksWithNames
-                                        .get(r.getResult().descriptionLink);
-                                DescName newDescName = new DescName(descName);
-                                newDescName.addResourceNames(r.getResult().names);
-                                hostSelection.addDesc(newDescName);
-                            } else {
-                                try {
-                                    final Map<String, HostSelection> hostSelectionMap =
-                                            applyAffinityConstraints(state,
-                                                    initHostSelectionMap, filteredHostSelectionMap);
-                                    host.log(Level.INFO, "Selected host links for %s: %s - %s",
-                                            affinityPropertyName, getAffinity(),
-                                            hostSelectionMap.keySet());
-                                    callback.complete(hostSelectionMap, null);
-                                } catch (Throwable e) {
-                                    callback.complete(null, e);
-                                }
-                            }
-                        });
+        PlacementSnapshot.getOrCreate(placementSnapshot, host, initHostSelectionMap)
+                .getCompositeContainers(state.contextId)
+                .whenComplete((containers, ex) -> {
+                    if (ex != null) {
+                        host.log(
+                                Level.WARNING,
+                                "Exception while selecting containers with contextId [%s]. Error: [%s]",
+                                state.contextId, ex.getMessage());
+                        callback.complete(null, ex);
+                        return;
+                    }
+
+                    final Map<String, HostSelection> filteredHostSelectionMap = new HashMap<>();
+                    for (ContainerState container : containers) {
+                        final HostSelection hostSelection = initHostSelectionMap
+                                .get(container.parentLink);
+                        final DescName descName = containerDescLinksWithNames
+                                .get(container.descriptionLink);
+                        if (hostSelection == null || descName == null) {
+                            continue;
+                        }
+                        filteredHostSelectionMap.put(container.parentLink, hostSelection);
+                        DescName newDescName = new DescName(descName);
+                        newDescName.addResourceNames(container.names);
+                        hostSelection.addDesc(newDescName);
+                    }
+
+                    try {
+                        final Map<String, HostSelection> hostSelectionMap =
+                                applyAffinityConstraints(state, initHostSelectionMap,
+                                        filteredHostSelectionMap);
+                        host.log(Level.INFO, "Selected host links for %s: %s - %s",
+                                affinityPropertyName, getAffinity(), hostSelectionMap.keySet());
+                        callback.complete(hostSelectionMap, null);
+                    } catch (Throwable e) {
+                        callback.complete(null, e);
+                    }
+                });
     }
 
     protected Map<String, HostSelection> applyAffinityConstraints(
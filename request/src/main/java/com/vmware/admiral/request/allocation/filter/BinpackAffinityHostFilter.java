@@ -11,7 +11,6 @@
 
 package com.vmware.admiral.request.allocation.filter;
 
-import java.net.URI;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -20,16 +19,12 @@ import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
-import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService;
-import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService.ElasticPlacementZoneConfigurationState;
 import com.vmware.admiral.compute.ElasticPlacementZoneService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
 import com.vmware.admiral.request.ReservationTaskFactoryService;
-import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceHost;
-import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
 
 /**
@@ -53,6 +48,7 @@ public class BinpackAffinityHostFilter
     private static final Long MINIMAL_AVAILABLE_MEMORY_IN_BYTES = 3000000000L; // 3 GB
 
     private final ServiceHost host;
+    private PlacementSnapshot placementSnapshot;
 
     private Map<String, Long> dockerHostToMemory = new ConcurrentHashMap<>();
 
@@ -60,6 +56,11 @@ public class BinpackAffinityHostFilter
         this.host = host;
     }
 
+    @Override
+    public void setPlacementSnapshot(PlacementSnapshot placementSnapshot) {
+        this.placementSnapshot = placementSnapshot;
+    }
+
     @Override
     public boolean isActive() {
         return true;
@@ -93,19 +94,17 @@ public class BinpackAffinityHostFilter
         }
         String resourcePoolLink = state.resourcePoolLinks.get(0);
 
-        filterBasedOnBinpackPolicy(resourcePoolLink, hostSelectionMap, callback);
+        filterBasedOnBinpackPolicy(
+                PlacementSnapshot.getOrCreate(placementSnapshot, host, hostSelectionMap),
+                resourcePoolLink, hostSelectionMap, callback);
 
     }
 
-    private void filterBasedOnBinpackPolicy(String resourcePoolLink,
+    private void filterBasedOnBinpackPolicy(PlacementSnapshot snapshot, String resourcePoolLink,
             Map<String, HostSelection> hostSelectionMap, HostSelectionFilterCompletion callback) {
 
-        URI uri = UriUtils.buildUri(host, String.format("%s/%s",
-                ElasticPlacementZoneConfigurationService.SELF_LINK, resourcePoolLink));
-
-        host.sendRequest(Operation.createGet(uri)
-                .setReferer(host.getUri())
-                .setCompletion((o, ex) -> {
+        snapshot.getPlacementZoneConfiguration(resourcePoolLink)
+                .whenComplete((epz, ex) -> {
 
                     if (ex != null) {
                         host.log(Level.WARNING, Utils.toString(ex));
@@ -113,8 +112,6 @@ public class BinpackAffinityHostFilter
                         return;
                     }
 
-                    ElasticPlacementZoneConfigurationState epz = o
-                            .getBody(ElasticPlacementZoneConfigurationState.class);
                     if (epz != null && epz.epzState != null
                             && epz.epzState.placementPolicy == ElasticPlacementZoneService.PlacementPolicy.BINPACK) {
 
@@ -128,7 +125,7 @@ public class BinpackAffinityHostFilter
                         callback.complete(hostSelectionMap, null);
                     }
 
-                }));
+                });
     }
 
     // Get max loaded in terms of memory host.
@@ -18,16 +18,11 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
-import com.vmware.admiral.common.util.QueryUtil;
-import com.vmware.admiral.common.util.ServiceDocumentQuery;
-import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
 import com.vmware.admiral.request.utils.RequestUtils;
 import com.vmware.xenon.common.ServiceHost;
-import com.vmware.xenon.common.UriUtils;
-import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * A filter implementing {@link HostSelectionFilter} in order to provide host selection in case the
@@ -38,6 +33,7 @@ public class ClusterAntiAffinityHostFilter
         implements HostSelectionFilter<PlacementHostSelectionTaskState> {
     protected final ContainerDescription desc;
     protected final ServiceHost host;
+    protected PlacementSnapshot placementSnapshot;
 
     public ClusterAntiAffinityHostFilter(ServiceHost host, ContainerDescription desc) {
         this.host = host;
@@ -59,6 +55,11 @@ public class ClusterAntiAffinityHostFilter
         findContainers(state, hostSelectionMap, callback);
     }
 
+    @Override
+    public void setPlacementSnapshot(PlacementSnapshot placementSnapshot) {
+        this.placementSnapshot = placementSnapshot;
+    }
+
     @Override
     public boolean isActive() {
         return (desc._cluster != null) && (desc._cluster > 1);
@@ -80,32 +81,27 @@ public class ClusterAntiAffinityHostFilter
     protected void findContainers(final PlacementHostSelectionTaskState state,
             final Map<String, HostSelection> hostSelectionMap,
             final HostSelectionFilterCompletion callback) {
-        final QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
-                ContainerState.FIELD_NAME_DESCRIPTION_LINK,
-                desc.documentSelfLink,
-                ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK,
-                UriUtils.buildUriPath(CompositeComponentFactoryService.SELF_LINK, state.contextId));
-        QueryUtil.addListValueClause(q, ContainerState.FIELD_NAME_PARENT_LINK, hostSelectionMap.keySet());
-
-        q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
-        QueryUtil.addExpandOption(q);
-
-        new ServiceDocumentQuery<ContainerState>(host, ContainerState.class)
-                .query(q,
-                        (r) -> {
-                            if (r.hasException()) {
-                                host.log(
-                                        Level.WARNING,
-                                        "Exception while selecting containers with contextId [%s] during cluster node filtering. Error: [%s]",
-                                        state.contextId, r.getException().getMessage());
-                                callback.complete(null, r.getException());
-                            } else if (r.hasResult()) {
-                                HostSelection hostSelection = hostSelectionMap.get(r.getResult().parentLink);
-                                hostSelection.resourceCount += 1;
-                            } else {
-                                completeFilter(state, hostSelectionMap, callback);
-                            }
-                        });
+        PlacementSnapshot.getOrCreate(placementSnapshot, host, hostSelectionMap)
+                .getCompositeContainers(state.contextId)
+                .whenComplete((containers, ex) -> {
+                    if (ex != null) {
+                        host.log(
+                                Level.WARNING,
+                                "Exception while selecting containers with contextId [%s] during cluster node filtering. Error: [%s]",
+                                state.contextId, ex.getMessage());
+                        callback.complete(null, ex);
+                        return;
+                    }
+
+                    for (ContainerState container : containers) {
+                        HostSelection hostSelection = hostSelectionMap.get(container.parentLink);
+                        if (hostSelection != null
+                                && desc.documentSelfLink.equals(container.descriptionLink)) {
+                            hostSelection.resourceCount += 1;
+                        }
+                    }
+                    completeFilter(state, hostSelectionMap, callback);
+                });
     }
 
     private void completeFilter(final PlacementHostSelectionTaskState state,
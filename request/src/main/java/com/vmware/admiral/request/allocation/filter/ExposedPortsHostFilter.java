@@ -11,25 +11,17 @@
 
 package com.vmware.admiral.request.allocation.filter;
 
-import static com.vmware.admiral.compute.container.ContainerService.ContainerState.FIELD_NAME_POWER_STATE;
-
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.vmware.admiral.common.util.QueryUtil;
-import com.vmware.admiral.common.util.ServiceDocumentQuery;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState.PowerState;
 import com.vmware.admiral.compute.container.PortBinding;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
 import com.vmware.xenon.common.ServiceHost;
-import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * A filter implementing {@link HostSelectionFilter} aimed to provide host selection in case the
@@ -40,11 +32,9 @@ import com.vmware.xenon.services.common.QueryTask;
  */
 public class ExposedPortsHostFilter
         implements HostSelectionFilter<PlacementHostSelectionTaskState> {
-    private static final String HOST_PORT_QUERY_SELECTION = String.format("%s.item.%s",
-            ContainerState.FIELD_NAME_PORTS, PortBinding.FIELD_NAME_HOST_PORT);
-
     private final ServiceHost host;
     private final Set<String> descExposedPorts;
+    private PlacementSnapshot placementSnapshot;
 
     public ExposedPortsHostFilter(ServiceHost host, ContainerDescription desc) {
         this.host = host;
@@ -60,52 +50,47 @@ public class ExposedPortsHostFilter
             return;
         }
 
-        QueryTask q = QueryUtil.buildQuery(ContainerState.class, false);
-        QueryUtil.addListValueClause(q, ContainerState.FIELD_NAME_PARENT_LINK,
-                hostSelectionMap.keySet());
-
-        //Get only containers with hostPorts that match those from the description
-        // TODO It should be possible to handle it with query for now filter on the fly
-        // QueryUtil.addListValueClause(q, HOST_PORT_QUERY_SELECTION, descExposedPorts);
-
-        //Get only powered on containers or those being provisioned
-        QueryUtil.addListValueClause(q, FIELD_NAME_POWER_STATE,
-                Arrays.asList(PowerState.RUNNING.toString(), PowerState.PROVISIONING.toString()));
-
-        QueryUtil.addExpandOption(q);
+        PlacementSnapshot.getOrCreate(placementSnapshot, host, hostSelectionMap)
+                .getHostContainers()
+                .whenComplete((containers, ex) -> {
+                    if (ex != null) {
+                        callback.complete(null, new HostSelectionFilterException(ex,
+                                "Error querying for container states.",
+                                "request.exposed-ports.filter.containers.query.error"));
+                        return;
+                    }
 
-        ServiceDocumentQuery<ContainerState> query = new ServiceDocumentQuery<ContainerState>(
-                host, ContainerState.class);
-        List<ContainerState> containerStates = new ArrayList<>();
-        query.query(q, (r) -> {
-            if (r.hasException()) {
-                throw new HostSelectionFilterException("Error querying for container states.",
-                        "request.exposed-ports.filter.containers.query.error");
-            } else if (r.hasResult()) {
-                if (r.getResult().ports != null) {
-                    for (PortBinding portBinding : r.getResult().ports) {
-                        if (descExposedPorts.contains(portBinding.hostPort)) {
-                            containerStates.add(r.getResult());
-                            break;
+                    // only powered on containers or those being provisioned
+                    for (ContainerState cs : containers) {
+                        if (cs.ports == null || !hostSelectionMap.containsKey(cs.parentLink)
+                                || (cs.powerState != PowerState.RUNNING
+                                        && cs.powerState != PowerState.PROVISIONING)) {
+                            continue;
+                        }
+                        for (PortBinding portBinding : cs.ports) {
+                            if (descExposedPorts.contains(portBinding.hostPort)) {
+                                hostSelectionMap.remove(cs.parentLink);
+                                break;
+                            }
                         }
                     }
-                }
-            } else {
-                for (ContainerState cs : containerStates) {
-                    hostSelectionMap.remove(cs.parentLink);
-                }
 
-                if (hostSelectionMap.isEmpty()) {
-                    String errMsg = String.format(
-                            "No compute hosts found with unexposed ports %s.",
-                            descExposedPorts.toString());
-                    callback.complete(null, new HostSelectionFilterException(errMsg,
-                            "request.exposed-ports.filter.compute-hosts.unavailable", descExposedPorts.toString()));
-                } else {
-                    callback.complete(hostSelectionMap, null);
-                }
-            }
-        });
+                    if (hostSelectionMap.isEmpty()) {
+                        String errMsg = String.format(
+                                "No compute hosts found with unexposed ports %s.",
+                                descExposedPorts.toString());
+                        callback.complete(null, new HostSelectionFilterException(errMsg,
+                                "request.exposed-ports.filter.compute-hosts.unavailable",
+                                descExposedPorts.toString()));
+                    } else {
+                        callback.complete(hostSelectionMap, null);
+                    }
+                });
+    }
+
+    @Override
+    public void setPlacementSnapshot(PlacementSnapshot placementSnapshot) {
+        this.placementSnapshot = placementSnapshot;
     }
 
     @Override
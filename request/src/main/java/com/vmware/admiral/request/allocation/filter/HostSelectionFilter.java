@@ -40,6 +40,16 @@ public interface HostSelectionFilter<T> extends AffinityFilter {
     void filter(T state, Map<String, HostSelection> hostSelectionMap,
             HostSelectionFilterCompletion callback);
 
+    /**
+     * Set the placement snapshot shared by all filters of the host selection. Filters which query
+     * the state of the candidate hosts should use it instead of querying on their own.
+     *
+     * @param placementSnapshot
+     *            - the snapshot of the candidate hosts.
+     */
+    default void setPlacementSnapshot(PlacementSnapshot placementSnapshot) {
+    }
+
     /**
      * Completion callback interface used when the filter is completed.
      */
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request.allocation.filter;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import com.vmware.admiral.common.util.QueryUtil;
+import com.vmware.admiral.common.util.ServiceDocumentQuery;
+import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService;
+import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService.ElasticPlacementZoneConfigurationState;
+import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
+import com.vmware.xenon.common.DeferredResult;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceDocument;
+import com.vmware.xenon.common.ServiceHost;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+
+/**
+ * Placement related state of the candidate hosts of a single host selection, shared by all
+ * {@link HostSelectionFilter}s in the chain. Each part of the snapshot is loaded with a single
+ * query the first time a filter needs it and is reused by the rest of the filters instead of
+ * every filter querying the same containers again.
+ */
+public class PlacementSnapshot {
+
+    /**
+     * The container fields used by the filters, the rest are not loaded for the host containers.
+     */
+    private static final String[] HOST_CONTAINER_FIELDS = {
+            ServiceDocument.FIELD_NAME_SELF_LINK,
+            ContainerState.FIELD_NAME_PARENT_LINK,
+            ContainerState.FIELD_NAME_POWER_STATE,
+            ContainerState.FIELD_NAME_PORTS,
+            ContainerState.FIELD_NAME_DESCRIPTION_LINK,
+            ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK,
+            ContainerState.FIELD_NAME_NAMES };
+
+    private final ServiceHost host;
+    private final Set<String> hostLinks;
+
+    private DeferredResult<List<ContainerState>> hostContainers;
+    private final Map<String, DeferredResult<List<ContainerState>>> compositeContainers =
+            new HashMap<>();
+    private final Map<String, DeferredResult<ElasticPlacementZoneConfigurationState>> placementZoneConfigurations =
+            new HashMap<>();
+
+    public PlacementSnapshot(ServiceHost host, Collection<String> hostLinks) {
+        this.host = host;
+        this.hostLinks = new HashSet<>(hostLinks);
+    }
+
+    /**
+     * Returns the given snapshot if it covers all hosts of the selection or a new snapshot for the
+     * selection otherwise, e.g. when a filter is used on its own.
+     */
+    static PlacementSnapshot getOrCreate(PlacementSnapshot snapshot, ServiceHost host,
+            Map<String, HostSelection> hostSelectionMap) {
+        if (snapshot != null && snapshot.hostLinks.containsAll(hostSelectionMap.keySet())) {
+            return snapshot;
+        }
+        return new PlacementSnapshot(host, hostSelectionMap.keySet());
+    }
+
+    /**
+     * All containers on the hosts of the snapshot. Only the fields used for placement are loaded.
+     */
+    public synchronized DeferredResult<List<ContainerState>> getHostContainers() {
+        if (hostContainers == null) {
+            QueryTask q = QueryUtil.buildQuery(ContainerState.class, false);
+            QueryUtil.addListValueClause(q, ContainerState.FIELD_NAME_PARENT_LINK, hostLinks);
+            q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
+            q.querySpec.options.add(QueryOption.EXPAND_SELECTED_FIELDS);
+            q.querySpec.selectTerms = new ArrayList<>();
+            for (String field : HOST_CONTAINER_FIELDS) {
+                QueryTask.QueryTerm term = new QueryTask.QueryTerm();
+                term.propertyName = field;
+                q.querySpec.selectTerms.add(term);
+            }
+            hostContainers = queryContainers(q);
+        }
+        return hostContainers;
+    }
+
+    /**
+     * All containers of the composite component with the given context id, on any host.
+     */
+    public synchronized DeferredResult<List<ContainerState>> getCompositeContainers(
+            String contextId) {
+        return compositeContainers.computeIfAbsent(contextId, (id) -> {
+            QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
+                    ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK,
+                    UriUtils.buildUriPath(CompositeComponentFactoryService.SELF_LINK, id));
+            q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
+            QueryUtil.addExpandOption(q);
+            return queryContainers(q);
+        });
+    }
+
+    /**
+     * The elastic placement zone configuration of the given resource pool.
+     */
+    public synchronized DeferredResult<ElasticPlacementZoneConfigurationState> getPlacementZoneConfiguration(
+            String resourcePoolLink) {
+        return placementZoneConfigurations.computeIfAbsent(resourcePoolLink, (link) -> {
+            URI uri = UriUtils.buildUri(host, String.format("%s/%s",
+                    ElasticPlacementZoneConfigurationService.SELF_LINK, link));
+            DeferredResult<ElasticPlacementZoneConfigurationState> result =
+                    new DeferredResult<>();
+            host.sendRequest(Operation.createGet(uri)
+                    .setReferer(host.getUri())
+                    .setCompletion((o, ex) -> {
+                        if (ex != null) {
+                            result.fail(ex);
+                        } else {
+                            result.complete(
+                                    o.getBody(ElasticPlacementZoneConfigurationState.class));
+                        }
+                    }));
+            return result;
+        });
+    }
+
+    private DeferredResult<List<ContainerState>> queryContainers(QueryTask q) {
+        DeferredResult<List<ContainerState>> result = new DeferredResult<>();
+        List<ContainerState> containers = new ArrayList<>();
+        new ServiceDocumentQuery<>(host, ContainerState.class).query(q, (r) -> {
+            if (r.hasException()) {
+                host.log(Level.WARNING, "Exception while loading placement snapshot: %s",
+                        r.getException().getMessage());
+                result.fail(r.getException());
+            } else if (r.hasResult()) {
+                containers.add(r.getResult());
+            } else {
+                result.complete(containers);
+            }
+        });
+        return result;
+    }
+}
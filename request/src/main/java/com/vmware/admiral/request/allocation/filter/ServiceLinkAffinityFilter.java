@@ -19,16 +19,11 @@ import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
-import com.vmware.admiral.common.util.QueryUtil;
-import com.vmware.admiral.common.util.ServiceDocumentQuery;
-import com.vmware.admiral.compute.container.CompositeComponentFactoryService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.compute.container.ServiceNetwork;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
 import com.vmware.xenon.common.ServiceHost;
-import com.vmware.xenon.common.UriUtils;
-import com.vmware.xenon.services.common.QueryTask;
 
 /**
  * Parse ContainerDescription serviceLinks and provide the dependency
@@ -64,61 +59,55 @@ public class ServiceLinkAffinityFilter extends BaseAffinityHostFilter {
             final Map<String, HostSelection> initHostSelectionMap,
             final Map<String, DescName> containerDescLinksWithNames,
             final HostSelectionFilterCompletion callback) {
-        QueryTask q = QueryUtil.buildPropertyQuery(ContainerState.class,
-                ContainerState.FIELD_NAME_COMPOSITE_COMPONENT_LINK, UriUtils.buildUriPath(
-                        CompositeComponentFactoryService.SELF_LINK, state.contextId));
-        q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
-        QueryUtil.addExpandOption(q);
-
-        // Add componentDescriptions clause:
-        QueryUtil.addListValueClause(q,
-                ContainerState.FIELD_NAME_DESCRIPTION_LINK, containerDescLinksWithNames.keySet());
-
         final Map<String, HostSelection> filteredHostSelectionMap = new HashMap<>();
 
         if (networks != null && !networks.isEmpty()) {
             filteredHostSelectionMap.putAll(initHostSelectionMap);
         }
 
-        new ServiceDocumentQuery<ContainerState>(host, ContainerState.class)
-                .query(q,
-                        (r) -> {
-                            if (r.hasException()) {
-                                host.log(
-                                        Level.WARNING,
-                                        "Exception while selecting containers with contextId [%s]. Error: [%s]",
-                                        state.contextId, r.getException().getMessage());
-                                callback.complete(null, r.getException());
-                            } else if (r.hasResult()) {
-                                ContainerState result = r.getResult();
-
-                                DescName descName = containerDescLinksWithNames
-                                        .get(result.descriptionLink);
-                                descName.addResourceNames(result.names);
-
-                                // When there are user defined networks, the dependent service can be on any host
-                                if (networks != null && !networks.isEmpty()) {
-                                    for (HostSelection hs : initHostSelectionMap.values()) {
-                                        hs.addDesc(descName);
-                                    }
-                                } else {
-                                    HostSelection hostSelection = initHostSelectionMap
-                                            .get(result.parentLink);
-
-                                    if (hostSelection != null) {
-                                        hostSelection.addDesc(descName);
-                                        filteredHostSelectionMap.put(result.parentLink,
-                                                hostSelection);
-                                    }
-                                }
-                            } else {
-                                try {
-                                    callback.complete(filteredHostSelectionMap, null);
-                                } catch (Throwable e) {
-                                    callback.complete(null, e);
-                                }
+        PlacementSnapshot.getOrCreate(placementSnapshot, host, initHostSelectionMap)
+                .getCompositeContainers(state.contextId)
+                .whenComplete((containers, ex) -> {
+                    if (ex != null) {
+                        host.log(
+                                Level.WARNING,
+                                "Exception while selecting containers with contextId [%s]. Error: [%s]",
+                                state.contextId, ex.getMessage());
+                        callback.complete(null, ex);
+                        return;
+                    }
+
+                    for (ContainerState result : containers) {
+                        DescName descName = containerDescLinksWithNames
+                                .get(result.descriptionLink);
+                        if (descName == null) {
+                            continue;
+                        }
+                        descName.addResourceNames(result.names);
+
+                        // When there are user defined networks, the dependent service can be on any host
+                        if (networks != null && !networks.isEmpty()) {
+                            for (HostSelection hs : initHostSelectionMap.values()) {
+                                hs.addDesc(descName);
+                            }
+                        } else {
+                            HostSelection hostSelection = initHostSelectionMap
+                                    .get(result.parentLink);
+
+                            if (hostSelection != null) {
+                                hostSelection.addDesc(descName);
+                                filteredHostSelectionMap.put(result.parentLink,
+                                        hostSelection);
                             }
-                        });
+                        }
+                    }
+
+                    try {
+                        callback.complete(filteredHostSelectionMap, null);
+                    } catch (Throwable e) {
+                        callback.complete(null, e);
+                    }
+                });
     }
 
     private String extractNameFromServiceLink(String serviceLink) {
@@ -11,7 +11,6 @@
 
 package com.vmware.admiral.request.allocation.filter;
 
-import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -20,10 +19,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
-import com.vmware.admiral.common.util.QueryUtil;
-import com.vmware.admiral.common.util.ServiceDocumentQuery;
-import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService;
-import com.vmware.admiral.compute.ElasticPlacementZoneConfigurationService.ElasticPlacementZoneConfigurationState;
 import com.vmware.admiral.compute.ElasticPlacementZoneService;
 import com.vmware.admiral.compute.container.ContainerDescriptionService.ContainerDescription;
 import com.vmware.admiral.compute.container.ContainerService.ContainerState;
@@ -31,11 +26,8 @@ import com.vmware.admiral.compute.container.ContainerService.ContainerState;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService;
 import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
 import com.vmware.admiral.request.ReservationTaskFactoryService;
-import com.vmware.xenon.common.Operation;
 import com.vmware.xenon.common.ServiceHost;
-import com.vmware.xenon.common.UriUtils;
 import com.vmware.xenon.common.Utils;
-import com.vmware.xenon.services.common.QueryTask;
 
 /**
 *
@@ -55,11 +47,17 @@ public class SpreadAffinityHostFilter implements
         HostSelectionFilter<PlacementHostSelectionTaskService.PlacementHostSelectionTaskState> {
 
     private final ServiceHost host;
+    private PlacementSnapshot placementSnapshot;
 
     public SpreadAffinityHostFilter(ServiceHost host, ContainerDescription desc) {
         this.host = host;
     }
 
+    @Override
+    public void setPlacementSnapshot(PlacementSnapshot placementSnapshot) {
+        this.placementSnapshot = placementSnapshot;
+    }
+
     @Override
     public boolean isActive() {
         return true;
@@ -95,12 +93,10 @@ public class SpreadAffinityHostFilter implements
         // On allocation stage only one resource pool exists.
         String resourcePoolLink = state.resourcePoolLinks.get(0);
 
-        URI uri = UriUtils.buildUri(host, String.format("%s/%s",
-                ElasticPlacementZoneConfigurationService.SELF_LINK, resourcePoolLink));
-
-        host.sendRequest(Operation.createGet(uri)
-                .setReferer(host.getUri())
-                .setCompletion((o, ex) -> {
+        PlacementSnapshot snapshot = PlacementSnapshot.getOrCreate(placementSnapshot, host,
+                hostSelectionMap);
+        snapshot.getPlacementZoneConfiguration(resourcePoolLink)
+                .whenComplete((epz, ex) -> {
 
                     if (ex != null) {
                         host.log(Level.WARNING, Utils.toString(ex));
@@ -108,47 +104,39 @@ public class SpreadAffinityHostFilter implements
                         return;
                     }
 
-                    ElasticPlacementZoneConfigurationState epz = o
-                            .getBody(ElasticPlacementZoneConfigurationState.class);
                     if (epz != null && epz.epzState != null
                             && epz.epzState.placementPolicy == ElasticPlacementZoneService.PlacementPolicy.SPREAD) {
                         // First find how many resources every host has.
-                        retrieveContainers(hostSelectionMap, callback);
+                        retrieveContainers(snapshot, hostSelectionMap, callback);
                     } else {
                         callback.complete(hostSelectionMap, null);
                     }
-                }));
+                });
 
     }
 
-    private void retrieveContainers(
+    private void retrieveContainers(PlacementSnapshot snapshot,
             Map<String, HostSelection> hostSelectionMap,
             HostSelectionFilterCompletion callback) {
 
-        QueryTask.Query.Builder queryBuilder = QueryTask.Query.Builder.create()
-                .addKindFieldClause(ContainerState.class)
-                .addInClause(ContainerState.FIELD_NAME_PARENT_LINK, hostSelectionMap.keySet());
-
-        QueryTask q = QueryTask.Builder.create().setQuery(queryBuilder.build()).build();
-        q.querySpec.resultLimit = ServiceDocumentQuery.DEFAULT_QUERY_RESULT_LIMIT;
-        QueryUtil.addExpandOption(q);
-
-        new ServiceDocumentQuery<>(host, ContainerState.class).query(q, (r) -> {
-            if (r.hasException()) {
+        snapshot.getHostContainers().whenComplete((containers, ex) -> {
+            if (ex != null) {
                 host.log(Level.WARNING,
                         "Exception while quering containers during 'Spread' filtering."
                                 + "Error: [%s]",
-                        r.getException().getMessage());
-                callback.complete(null, r.getException());
+                        ex.getMessage());
+                callback.complete(null, ex);
                 return;
-            } else if (r.hasResult()) {
-                HostSelection hostSelection = hostSelectionMap
-                        .get(r.getResult().parentLink);
-                hostSelection.resourceCount += 1;
-            } else {
-                // Return the host with minimum number of containers.
-                completeFilter(hostSelectionMap, callback);
             }
+
+            for (ContainerState container : containers) {
+                HostSelection hostSelection = hostSelectionMap.get(container.parentLink);
+                if (hostSelection != null) {
+                    hostSelection.resourceCount += 1;
+                }
+            }
+            // Return the host with minimum number of containers.
+            completeFilter(hostSelectionMap, callback);
         });
     }
 
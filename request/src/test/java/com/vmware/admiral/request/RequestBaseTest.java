@@ -220,7 +220,7 @@ public abstract class RequestBaseTest extends BaseTestCase {
         HostInitCommonServiceConfig.startServices(h);
         HostInitComputeServicesConfig.startServices(h, true);
         HostInitRequestServicesConfig.startServices(h);
-        HostInitDockerAdapterServiceConfig.startServices(h, true);
+        startDockerAdapterServices(h);
         HostInitKubernetesAdapterServiceConfig.startServices(h, true);
 
         for (String factoryLink : getFactoryServiceList()) {
@@ -242,6 +242,10 @@ public abstract class RequestBaseTest extends BaseTestCase {
         waitForInitialBootServiceToBeSelfStopped(RequestInitialBootService.SELF_LINK);
     }
 
+    protected void startDockerAdapterServices(VerificationHost h) {
+        HostInitDockerAdapterServiceConfig.startServices(h, true);
+    }
+
     protected void addForDeletion(ServiceDocument doc) {
         documentsForDeletion.add(doc);
     }
@@ -41,6 +41,7 @@ import com.vmware.admiral.request.RequestStatusService.RequestStatus;
 import com.vmware.admiral.request.composition.CompositionTaskFactoryService;
 import com.vmware.admiral.request.composition.CompositionTaskService.CompositionTaskState;
 import com.vmware.admiral.request.util.TestRequestStateFactory;
+import com.vmware.admiral.service.common.AbstractTaskStatefulService.TaskStatusState;
 import com.vmware.admiral.service.common.DefaultSubStage;
 import com.vmware.admiral.service.test.MockDockerAdapterService;
 import com.vmware.xenon.common.Operation;
@@ -303,6 +304,44 @@ public class RequestStatusServiceTest extends RequestBaseTest {
         }
     }
 
+    @Test
+    public void testCoalescedUpdates() throws Throwable {
+        RequestStatus requestStatus = createRequestStatus();
+        requestStatus.taskInfo = TaskState.create();
+        requestStatus.progress = 0;
+        requestStatus.addTrackedTasks(ContainerAllocationTaskService.DISPLAY_NAME,
+                ReservationTaskService.DISPLAY_NAME);
+        requestStatus = doPost(requestStatus, RequestStatusFactoryService.SELF_LINK);
+        requestId = UriUtils.getLastPathSegment(requestStatus.documentSelfLink);
+
+        TaskStatusState reservationUpdate = new TaskStatusState();
+        reservationUpdate.documentSelfLink = requestId;
+        reservationUpdate.phase = ReservationTaskService.DISPLAY_NAME;
+        reservationUpdate.taskInfo = TaskState.createAsStarted();
+        reservationUpdate.subStage = DefaultSubStage.COMPLETED.name();
+        reservationUpdate.progress = 100;
+
+        TaskStatusState allocationUpdate = new TaskStatusState();
+        allocationUpdate.documentSelfLink = requestId;
+        allocationUpdate.phase = ContainerAllocationTaskService.DISPLAY_NAME;
+        allocationUpdate.taskInfo = TaskState.createAsStarted();
+        allocationUpdate.subStage = DefaultSubStage.PROCESSING.name();
+        allocationUpdate.progress = 50;
+
+        TaskStatusState coalescedUpdate = new TaskStatusState();
+        coalescedUpdate.coalescedUpdates = Arrays.asList(reservationUpdate, allocationUpdate);
+        doOperation(coalescedUpdate, UriUtils.buildUri(host, requestStatus.documentSelfLink),
+                false, Action.PATCH);
+
+        RequestStatus status = getRequestStatus(requestId);
+        assertEquals(ContainerAllocationTaskService.DISPLAY_NAME, status.phase);
+        assertEquals(DefaultSubStage.PROCESSING.name(), status.subStage);
+        assertEquals(Integer.valueOf(75), status.progress);
+        assertEquals(Integer.valueOf(100), status.requestProgressByComponent
+                .get(ReservationTaskService.DISPLAY_NAME)
+                .get(RequestStatusService.DEFAULT_COMPONENT_NAME));
+    }
+
     @After
     public void logRequestHistory() throws Throwable {
         try {
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request.allocation.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.request.allocation.filter.HostSelectionFilter.HostSelection;
+import com.vmware.xenon.common.DeferredResult;
+
+public class PlacementSnapshotTest extends BaseAffinityHostFilterTest {
+
+    @Test
+    public void testHostContainers() throws Throwable {
+        createContainer(containerDesc, initialHostLinks.get(0));
+        createContainer(containerDesc, initialHostLinks.get(0));
+        createContainerWithDifferentContextId(containerDesc, initialHostLinks.get(1));
+
+        PlacementSnapshot snapshot = new PlacementSnapshot(host, initialHostLinks);
+        DeferredResult<List<ContainerState>> hostContainers = snapshot.getHostContainers();
+        assertSame(hostContainers, snapshot.getHostContainers());
+
+        List<ContainerState> containers = await(hostContainers);
+        assertEquals(3, containers.size());
+        for (ContainerState container : containers) {
+            assertNotNull(container.parentLink);
+            assertNotNull(container.descriptionLink);
+            assertNotNull(container.powerState);
+        }
+
+        List<ContainerState> compositeContainers = await(
+                snapshot.getCompositeContainers(state.contextId));
+        assertEquals(2, compositeContainers.size());
+    }
+
+    @Test
+    public void testGetOrCreate() throws Throwable {
+        Map<String, HostSelection> hostSelectionMap = prepareHostSelectionMap();
+        PlacementSnapshot snapshot = new PlacementSnapshot(host, hostSelectionMap.keySet());
+        assertSame(snapshot, PlacementSnapshot.getOrCreate(snapshot, host, hostSelectionMap));
+
+        hostSelectionMap.remove(initialHostLinks.get(0));
+        assertSame(snapshot, PlacementSnapshot.getOrCreate(snapshot, host, hostSelectionMap));
+
+        PlacementSnapshot partialSnapshot = new PlacementSnapshot(host,
+                hostSelectionMap.keySet());
+        assertNotSame(partialSnapshot, PlacementSnapshot.getOrCreate(partialSnapshot, host,
+                prepareHostSelectionMap()));
+    }
+
+    private <T> T await(DeferredResult<T> deferredResult) throws Throwable {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        host.testStart(1);
+        deferredResult.whenComplete((r, e) -> {
+            result.set(r);
+            error.set(e);
+            host.completeIteration();
+        });
+        host.testWait();
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return result.get();
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) 2018 VMware, Inc. All Rights Reserved.
+ *
+ * This product is licensed to you under the Apache License, Version 2.0 (the "License").
+ * You may not use this product except in compliance with the License.
+ *
+ * This product may include a number of subcomponents with separate copyright notices
+ * and license terms. Your use of these subcomponents is subject to the terms and
+ * conditions of the subcomponent's license, as noted in the LICENSE file.
+ */
+
+package com.vmware.admiral.request.simulation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.vmware.admiral.common.DeploymentProfileConfig;
+import com.vmware.admiral.compute.ComputeConstants;
+import com.vmware.admiral.compute.ContainerHostService;
+import com.vmware.admiral.compute.ContainerHostUtil;
+import com.vmware.admiral.compute.container.ContainerHostDataCollectionService;
+import com.vmware.admiral.compute.container.ContainerHostDataCollectionService.ContainerHostDataCollectionState;
+import com.vmware.admiral.compute.container.ContainerService.ContainerState;
+import com.vmware.admiral.compute.container.GroupResourcePlacementService;
+import com.vmware.admiral.compute.container.HostPortProfileService;
+import com.vmware.admiral.compute.container.HostPortProfileService.HostPortProfileState;
+import com.vmware.admiral.compute.container.SystemContainerDescriptions;
+import com.vmware.admiral.request.ContainerAllocationTaskService.ContainerAllocationTaskState;
+import com.vmware.admiral.request.PlacementHostSelectionTaskService.PlacementHostSelectionTaskState;
+import com.vmware.admiral.request.RequestBaseTest;
+import com.vmware.admiral.request.RequestBrokerFactoryService;
+import com.vmware.admiral.request.RequestBrokerService.RequestBrokerState;
+import com.vmware.admiral.request.ReservationTaskService.ReservationTaskState;
+import com.vmware.admiral.request.util.TestRequestStateFactory;
+import com.vmware.admiral.service.common.TaskServiceDocument;
+import com.vmware.admiral.service.test.MockComputeHostInstanceAdapter;
+import com.vmware.admiral.service.test.MockDockerHostAdapterImageService;
+import com.vmware.admiral.service.test.MockDockerNetworkAdapterService;
+import com.vmware.admiral.service.test.MockDockerNetworkToHostService;
+import com.vmware.admiral.service.test.MockDockerVolumeAdapterService;
+import com.vmware.admiral.service.test.MockDockerVolumeToHostService;
+import com.vmware.admiral.service.test.SimulatedDockerAdapterService;
+import com.vmware.admiral.service.test.SimulatedDockerFleet;
+import com.vmware.admiral.service.test.SimulatedDockerFleet.Profile;
+import com.vmware.admiral.service.test.SimulatedDockerHostAdapterService;
+import com.vmware.admiral.service.test.SimulationStats;
+import com.vmware.photon.controller.model.resources.ComputeService;
+import com.vmware.photon.controller.model.resources.ComputeService.ComputeState;
+import com.vmware.xenon.common.Operation;
+import com.vmware.xenon.common.ServiceSubscriptionState.ServiceSubscriber;
+import com.vmware.xenon.common.TaskState.TaskStage;
+import com.vmware.xenon.common.UriUtils;
+import com.vmware.xenon.common.Utils;
+import com.vmware.xenon.common.test.TestContext;
+import com.vmware.xenon.common.test.VerificationHost;
+import com.vmware.xenon.services.common.QueryTask;
+import com.vmware.xenon.services.common.QueryTask.Query;
+import com.vmware.xenon.services.common.QueryTask.QuerySpecification.QueryOption;
+import com.vmware.xenon.services.common.QueryTask.QueryTerm.MatchType;
+import com.vmware.xenon.services.common.ServiceUriPaths;
+
+/**
+ * Drives host registration, data collection, placement and provisioning against a fleet of
+ * simulated docker hosts in one JVM and logs the throughput and the latency percentiles of each
+ * subsystem. It is skipped by the regular build unless <code>simulation.enabled</code> is set:
+ *
+ * <pre>
+ * mvn test -pl request -Dtest=DockerFleetSimulationTest -Dsimulation.enabled=true
+ * </pre>
+ *
+ * The defaults keep the run short, a load test is run with a larger fleet, e.g.:
+ *
+ * <pre>
+ * mvn test -pl request -Dtest=DockerFleetSimulationTest -Dsimulation.enabled=true
+ *     -Dsimulation.hosts=2000 -Dsimulation.containers.per.host=50 -Dsimulation.requests=1000
+ *     -Dsimulation.requests.per.second=20 -Dsimulation.failure.rate=0.01
+ *     -Ddcp.management.test.change.count=60000
+ * </pre>
+ *
+ * The waits use the regular test timeout, so larger runs need a larger
+ * <code>dcp.management.test.change.count</code> as well.
+ */
+public class DockerFleetSimulationTest extends RequestBaseTest {
+
+    private static final int HOSTS = Integer.getInteger("simulation.hosts", 20);
+    private static final int CONTAINERS_PER_HOST = Integer.getInteger(
+            "simulation.containers.per.host", 5);
+    private static final int REQUESTS = Integer.getInteger("simulation.requests", 20);
+    private static final double REQUESTS_PER_SECOND = Double.parseDouble(
+            System.getProperty("simulation.requests.per.second", "10"));
+    private static final long LATENCY_MEDIAN_MILLIS = Long.getLong(
+            "simulation.latency.median.millis", 2);
+    private static final long LATENCY_P99_MILLIS = Long.getLong(
+            "simulation.latency.p99.millis", 20);
+    private static final double FAILURE_RATE = Double.parseDouble(
+            System.getProperty("simulation.failure.rate", "0"));
+    private static final double EVENTS_PER_SECOND = Double.parseDouble(
+            System.getProperty("simulation.events.per.second", "5"));
+    private static final long COLLECTION_INTERVAL_MILLIS = Long.getLong(
+            "simulation.collection.interval.millis", 2000);
+    private static final int REGISTRATION_BATCH_SIZE = Integer.getInteger(
+            "simulation.registration.batch.size", 100);
+
+    private SimulatedDockerFleet fleet;
+    private final List<String> hostLinks = new ArrayList<>();
+    private volatile boolean collectionRunning;
+
+    private final SimulationStats registrationStats = new SimulationStats("host.registration");
+    private final TaskLatencyTracker<RequestBrokerState> requestTracker =
+            new TaskLatencyTracker<>("request", RequestBrokerState.class);
+    private final TaskLatencyTracker<ReservationTaskState> reservationTracker =
+            new TaskLatencyTracker<>("placement.reservation", ReservationTaskState.class);
+    private final TaskLatencyTracker<PlacementHostSelectionTaskState> hostSelectionTracker =
+            new TaskLatencyTracker<>("placement.host-selection",
+                    PlacementHostSelectionTaskState.class);
+    private final TaskLatencyTracker<ContainerAllocationTaskState> allocationTracker =
+            new TaskLatencyTracker<>("provisioning.allocation",
+                    ContainerAllocationTaskState.class);
+
+    /**
+     * Records the time from the first to the final version of the tasks of a kind, as seen by a
+     * continuous query.
+     */
+    private static class TaskLatencyTracker<T extends TaskServiceDocument<?>> {
+        private final Class<T> type;
+        private final SimulationStats stats;
+        private final Map<String, Long> startTimes = new ConcurrentHashMap<>();
+        private final Map<String, TaskStage> finalStages = new ConcurrentHashMap<>();
+
+        TaskLatencyTracker(String name, Class<T> type) {
+            this.type = type;
+            this.stats = new SimulationStats(name);
+        }
+
+        void onNotification(Operation notification) {
+            QueryTask queryTask = notification.getBody(QueryTask.class);
+            notification.complete();
+            if (queryTask.results == null || queryTask.results.documents == null) {
+                return;
+            }
+
+            for (Object json : queryTask.results.documents.values()) {
+                T task = Utils.fromJson(json, type);
+                long startMicros = startTimes.merge(task.documentSelfLink,
+                        task.documentUpdateTimeMicros, Math::min);
+                if (task.taskInfo == null || (task.taskInfo.stage != TaskStage.FINISHED
+                        && task.taskInfo.stage != TaskStage.FAILED)) {
+                    continue;
+                }
+                if (finalStages.putIfAbsent(task.documentSelfLink, task.taskInfo.stage) == null) {
+                    stats.record(startMicros, task.documentUpdateTimeMicros - startMicros,
+                            task.taskInfo.stage == TaskStage.FAILED);
+                }
+            }
+        }
+    }
+
+    @BeforeClass
+    public static void assumeSimulationEnabled() {
+        Assume.assumeTrue("The simulation runs only with -Dsimulation.enabled=true",
+                Boolean.getBoolean("simulation.enabled"));
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Throwable {
+        fleet = SimulatedDockerFleet.getInstance(host);
+        Profile profile = new Profile();
+        profile.containersPerHost = CONTAINERS_PER_HOST;
+        profile.latencyMedianMicros = TimeUnit.MILLISECONDS.toMicros(LATENCY_MEDIAN_MILLIS);
+        profile.latencyP99Micros = TimeUnit.MILLISECONDS.toMicros(LATENCY_P99_MILLIS);
+        profile.failureRate = FAILURE_RATE;
+        profile.eventsPerSecond = EVENTS_PER_SECOND;
+        fleet.setProfile(profile);
+
+        host.addPrivilegedService(ContainerHostDataCollectionService.class);
+        startServices(host);
+        setUpDockerHostAuthentication();
+
+        createResourcePool();
+        groupPlacementState = createGroupResourcePlacement(resourcePool,
+                (int) GroupResourcePlacementService.UNLIMITED_NUMBER_INSTANCES);
+        dockerHostDesc = createDockerHostDescription();
+        createContainerDescription();
+    }
+
+    @After
+    public void tearDown() {
+        collectionRunning = false;
+        if (fleet != null) {
+            fleet.stopEvents();
+        }
+    }
+
+    @Override
+    protected void startDockerAdapterServices(VerificationHost h) {
+        DeploymentProfileConfig.getInstance().setTest(true);
+        h.startService(Operation.createPost(UriUtils.buildUri(h,
+                SimulatedDockerAdapterService.class)), new SimulatedDockerAdapterService());
+        h.startService(Operation.createPost(UriUtils.buildUri(h,
+                SimulatedDockerHostAdapterService.class)), new SimulatedDockerHostAdapterService());
+
+        h.startService(Operation.createPost(UriUtils.buildUri(h,
+                MockComputeHostInstanceAdapter.class)), new MockComputeHostInstanceAdapter());
+        h.startService(Operation.createPost(UriUtils.buildUri(h,
+                MockDockerNetworkAdapterService.class)), new MockDockerNetworkAdapterService());
+        h.startFactory(new MockDockerNetworkToHostService());
+        h.startService(Operation.createPost(UriUtils.buildUri(h,
+                MockDockerVolumeAdapterService.class)), new MockDockerVolumeAdapterService());
+        h.startFactory(new MockDockerVolumeToHostService());
+        h.startService(Operation.createPost(UriUtils.buildUri(h,
+                MockDockerHostAdapterImageService.class)), new MockDockerHostAdapterImageService());
+    }
+
+    @Test
+    public void testFleetSimulation() throws Throwable {
+        host.log(Level.INFO, "Simulating %d hosts with %d containers each, %d requests at %.1f/s,"
+                + " adapter latency p50 %d ms p99 %d ms, failure rate %.3f, %.1f events/s",
+                HOSTS, CONTAINERS_PER_HOST, REQUESTS, REQUESTS_PER_SECOND,
+                LATENCY_MEDIAN_MILLIS, LATENCY_P99_MILLIS, FAILURE_RATE, EVENTS_PER_SECOND);
+
+        registerHosts();
+        long discoveryMillis = collectInitialInventory();
+
+        subscribe(requestTracker);
+        subscribe(reservationTracker);
+        subscribe(hostSelectionTracker);
+        subscribe(allocationTracker);
+
+        fleet.startEvents();
+        collectionRunning = true;
+        scheduleCollectionRound();
+
+        long provisioningStart = System.currentTimeMillis();
+        Set<String> requestLinks = submitRequests();
+        waitFor("Requests did not complete", () -> requestLinks.stream()
+                .allMatch(requestTracker.finalStages::containsKey));
+        long provisioningMillis = System.currentTimeMillis() - provisioningStart;
+
+        collectionRunning = false;
+        fleet.stopEvents();
+
+        report(discoveryMillis, provisioningMillis);
+
+        if (FAILURE_RATE == 0) {
+            for (String requestLink : requestLinks) {
+                assertEquals("Request " + requestLink + " failed", TaskStage.FINISHED,
+                        requestTracker.finalStages.get(requestLink));
+            }
+        }
+    }
+
+    /**
+     * Creates the compute states and port profiles of the hosts in batches of concurrent posts.
+     */
+    private void registerHosts() throws Throwable {
+        for (int batchStart = 0; batchStart < HOSTS; batchStart += REGISTRATION_BATCH_SIZE) {
+            int batchSize = Math.min(REGISTRATION_BATCH_SIZE, HOSTS - batchStart);
+            TestContext ctx = testCreate(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                ComputeState computeState = createSimulatedHostState();
+                String hostLink = UriUtils.buildUriPath(ComputeService.FACTORY_LINK,
+                        computeState.documentSelfLink);
+                fleet.addHost(hostLink);
+                hostLinks.add(hostLink);
+
+                HostPortProfileState portProfile = new HostPortProfileState();
+                portProfile.hostLink = hostLink;
+                portProfile.id = computeState.id;
+                portProfile.documentSelfLink = portProfile.id;
+
+                long startMicros = Utils.getSystemNowMicrosUtc();
+                host.send(Operation.createPost(host, ComputeService.FACTORY_LINK)
+                        .setBody(computeState)
+                        .setCompletion((o, e) -> {
+                            if (e != null) {
+                                ctx.failIteration(e);
+                                return;
+                            }
+                            host.send(Operation
+                                    .createPost(host, HostPortProfileService.FACTORY_LINK)
+                                    .setBody(portProfile)
+                                    .setCompletion((o1, e1) -> {
+                                        if (e1 != null) {
+                                            ctx.failIteration(e1);
+                                            return;
+                                        }
+                                        registrationStats.record(startMicros,
+                                                Utils.getSystemNowMicrosUtc() - startMicros,
+                                                false);
+                                        ctx.completeIteration();
+                                    }));
+                        }));
+            }
+            testWait(ctx);
+        }
+        assertEquals(HOSTS, fleet.getHostCount());
+    }
+
+    private ComputeState createSimulatedHostState() {
+        ComputeState computeState = TestRequestStateFactory.createDockerComputeHost();
+        computeState.id = UUID.randomUUID().toString();
+        computeState.documentSelfLink = computeState.id;
+        computeState.resourcePoolLink = resourcePool.documentSelfLink;
+        computeState.tenantLinks = dockerHostDesc.tenantLinks;
+        computeState.descriptionLink = dockerHostDesc.documentSelfLink;
+        computeState.powerState = ComputeService.PowerState.ON;
+        if (computeState.customProperties == null) {
+            computeState.customProperties = new HashMap<>();
+        }
+        computeState.customProperties.put(ComputeConstants.COMPUTE_CONTAINER_HOST_PROP_NAME,
+                "true");
+        computeState.customProperties.put(ContainerHostUtil.PROPERTY_NAME_DRIVER, "overlay");
+        computeState.customProperties.put(
+                ContainerHostService.DOCKER_HOST_AVAILABLE_MEMORY_PROP_NAME,
+                String.valueOf(fleet.getProfile().hostMemoryBytes));
+        computeState.customProperties.put(ContainerHostService.DOCKER_HOST_PLUGINS_PROP_NAME,
+                createSupportedPluginsInfoString(Collections.emptySet()));
+        return computeState;
+    }
+
+    /**
+     * Runs a data collection round on all hosts and waits until the containers of the fleet are
+     * discovered. Returns the time it took in milliseconds.
+     */
+    private long collectInitialInventory() throws Throwable {
+        long start = System.currentTimeMillis();
+        triggerCollection();
+
+        long expected = (long) HOSTS * CONTAINERS_PER_HOST;
+        waitFor("Containers of the simulated hosts were not discovered", () -> {
+            long discovered = countDiscoveredContainers();
+            host.log(Level.INFO, "Discovered %d of %d containers", discovered, expected);
+            return discovered >= expected;
+        });
+        assertEquals(expected, countDiscoveredContainers());
+        return System.currentTimeMillis() - start;
+    }
+
+    private long countDiscoveredContainers() {
+        Query query = Query.Builder.create()
+                .addKindFieldClause(ContainerState.class)
+                .addFieldClause(ContainerState.FIELD_NAME_DESCRIPTION_LINK,
+                        SystemContainerDescriptions.DISCOVERED_DESCRIPTION_LINK,
+                        MatchType.PREFIX)
+                .build();
+        QueryTask queryTask = QueryTask.Builder.createDirectTask()
+                .addOption(QueryOption.COUNT)
+                .setQuery(query)
+                .build();
+        QueryTask result = host.getTestRequestSender().sendAndWait(Operation
+                .createPost(host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS)
+                .setBody(queryTask), QueryTask.class);
+        return result.results.documentCount;
+    }
+
+    private void triggerCollection() {
+        fleet.startCollectionRound();
+        ContainerHostDataCollectionState body = new ContainerHostDataCollectionState();
+        body.computeContainerHostLinks = new ArrayList<>(hostLinks);
+        host.send(Operation.createPatch(host,
+                ContainerHostDataCollectionService.HOST_INFO_DATA_COLLECTION_LINK)
+                .setBody(body)
+                .setCompletion((o, e) -> {
+                    if (e != null) {
+                        host.log(Level.WARNING, "Data collection failed: %s",
+                                Utils.toString(e));
+                    }
+                }));
+    }
+
+    private void scheduleCollectionRound() {
+        host.schedule(() -> {
+            if (!collectionRunning) {
+                return;
+            }
+            triggerCollection();
+            scheduleCollectionRound();
+        }, COLLECTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void subscribe(TaskLatencyTracker<?> tracker) throws Throwable {
+        QueryTask queryTask = QueryTask.Builder.create()
+                .addOptions(EnumSet.of(QueryOption.CONTINUOUS, QueryOption.EXPAND_CONTENT))
+                .setQuery(Query.Builder.create().addKindFieldClause(tracker.type).build())
+                .build();
+        queryTask.documentSelfLink = "simulation-" + UUID.randomUUID().toString();
+        queryTask.documentExpirationTimeMicros = Utils.fromNowMicrosUtc(
+                TimeUnit.HOURS.toMicros(1));
+
+        host.getTestRequestSender().sendAndWait(Operation
+                .createPost(host, ServiceUriPaths.CORE_LOCAL_QUERY_TASKS)
+                .setBody(queryTask));
+
+        TestContext ctx = testCreate(1);
+        Operation subscribe = Operation.createPost(host, UriUtils.buildUriPath(
+                ServiceUriPaths.CORE_LOCAL_QUERY_TASKS, queryTask.documentSelfLink))
+                .setReferer(host.getUri())
+                .setCompletion(ctx.getCompletion());
+        host.startSubscriptionService(subscribe, tracker::onNotification,
+                ServiceSubscriber.create(false));
+        testWait(ctx);
+    }
+
+    /**
+     * Submits single container requests at the configured arrival rate. Returns the links of
+     * the accepted requests.
+     */
+    private Set<String> submitRequests() throws Throwable {
+        Set<String> requestLinks = ConcurrentHashMap.newKeySet();
+        TestContext ctx = testCreate(REQUESTS);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / REQUESTS_PER_SECOND);
+        long next = System.nanoTime();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            RequestBrokerState request = TestRequestStateFactory.createRequestState();
+            request.resourceDescriptionLink = containerDesc.documentSelfLink;
+            request.tenantLinks = groupPlacementState.tenantLinks;
+
+            host.send(Operation.createPost(host, RequestBrokerFactoryService.SELF_LINK)
+                    .setBody(request)
+                    .setCompletion((o, e) -> {
+                        if (e != null) {
+                            ctx.failIteration(e);
+                            return;
+                        }
+                        requestLinks.add(o.getBody(RequestBrokerState.class).documentSelfLink);
+                        ctx.completeIteration();
+                    }));
+
+            next += intervalNanos;
+            long sleepNanos = next - System.nanoTime();
+            if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+        }
+        testWait(ctx);
+        assertEquals(REQUESTS, requestLinks.size());
+        return requestLinks;
+    }
+
+    private void report(long discoveryMillis, long provisioningMillis) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%nInitial discovery of %d containers on %d hosts: %d ms",
+                (long) HOSTS * CONTAINERS_PER_HOST, HOSTS, discoveryMillis));
+        report.append(String.format("%nProvisioning of %d requests: %d ms (%.1f requests/s)",
+                REQUESTS, provisioningMillis,
+                REQUESTS / Math.max(provisioningMillis / 1000.0, 0.001)));
+
+        report.append(String.format("%n%n")).append(SimulationStats.formatHeader());
+        for (SimulationStats stats : new SimulationStats[] { registrationStats,
+                fleet.getCollectionStats(), requestTracker.stats, reservationTracker.stats,
+                hostSelectionTracker.stats, allocationTracker.stats }) {
+            report.append(String.format("%n")).append(stats);
+        }
+
+        report.append(String.format("%n%nadapter%n")).append(SimulationStats.formatHeader());
+        for (SimulationStats stats : fleet.getOperationStats()) {
+            report.append(String.format("%n")).append(stats);
+        }
+
+        report.append(String.format("%n%nevents: %s, containers on the hosts: %d",
+                fleet.getEventCounts(), fleet.getContainerCount()));
+        host.log(Level.INFO, "Simulation report:%s", report);
+    }
+}